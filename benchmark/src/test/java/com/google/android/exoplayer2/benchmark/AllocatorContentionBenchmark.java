@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.Allocation;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks a {@link DefaultAllocator} shared by 4 threads that allocate and release batches of
+ * allocations, as sample queues do for each track, and a thread polling the number of bytes
+ * allocated, as {@code DefaultLoadControl} does on the playback thread.
+ *
+ * <p>Once the allocations have been created, neither allocating nor releasing should allocate, so
+ * {@code gc.alloc.rate.norm} should be close to zero.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AllocatorContentionBenchmark {
+
+  private static final int BATCH_SIZE = 8;
+
+  /** The allocator shared by all threads. */
+  @State(Scope.Group)
+  public static class AllocatorState {
+
+    public DefaultAllocator allocator;
+
+    @Setup
+    public void setUp() {
+      allocator = new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE);
+    }
+  }
+
+  /** The batch of allocations held by a loading thread. */
+  @State(Scope.Thread)
+  public static class LoaderState {
+
+    public final Allocation[] allocations = new Allocation[BATCH_SIZE];
+  }
+
+  @Benchmark
+  @Group("contention")
+  @GroupThreads(4)
+  public void allocateAndRelease(AllocatorState allocatorState, LoaderState loaderState) {
+    DefaultAllocator allocator = allocatorState.allocator;
+    Allocation[] allocations = loaderState.allocations;
+    for (int i = 0; i < allocations.length; i++) {
+      allocations[i] = allocator.allocate();
+    }
+    allocator.release(allocations);
+  }
+
+  @Benchmark
+  @Group("contention")
+  @GroupThreads(1)
+  public int getTotalBytesAllocated(AllocatorState allocatorState) {
+    return allocatorState.allocator.getTotalBytesAllocated();
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import static org.junit.Assume.assumeTrue;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks in this package.
+ *
+ * <p>Benchmarks run in the Robolectric sandbox of this test, rather than in forked JVMs, so that
+ * the Android classes used by the library are available to them. They are only run if the {@value
+ * #INCLUDE_PROPERTY} system property is set to a regular expression matching the benchmarks to run.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class BenchmarkRunner {
+
+  private static final String INCLUDE_PROPERTY = "exoplayer.benchmark.include";
+  private static final String RESULT_FILE_PROPERTY = "exoplayer.benchmark.resultFile";
+
+  @Test
+  public void runBenchmarks() throws RunnerException {
+    @Nullable String include = System.getProperty(INCLUDE_PROPERTY);
+    assumeTrue("Benchmarks are only run with -Pbenchmarks=<regex>", include != null);
+    ChainedOptionsBuilder options =
+        new OptionsBuilder()
+            .include(include)
+            .forks(0)
+            .addProfiler(GCProfiler.class)
+            .shouldFailOnError(true);
+    @Nullable String resultFile = System.getProperty(RESULT_FILE_PROPERTY);
+    if (resultFile != null) {
+      options.resultFormat(ResultFormatType.JSON).result(resultFile);
+    }
+    new Runner(options.build()).run();
+  }
+}
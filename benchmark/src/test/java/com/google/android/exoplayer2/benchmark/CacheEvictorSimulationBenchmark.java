@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import androidx.test.core.app.ApplicationProvider;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.cache.CacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+import com.google.android.exoplayer2.upstream.cache.FrequencyAwareCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Replays a synthetic request trace against a {@link SimpleCache} to compare cache evictors.
+ *
+ * <p>The trace mixes repeated requests for popular segments, chosen with a Zipf distribution,
+ * with long sequential scans of segments that are only requested once, as when a long video is
+ * watched once while other content is watched repeatedly. Each request that misses the cache
+ * writes the segment to the cache, as a {@code CacheDataSource} would. The hit and miss counts and
+ * the number of bytes fetched from upstream are reported as secondary results.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CacheEvictorSimulationBenchmark {
+
+  private static final int SEGMENT_LENGTH = 16 * 1024;
+  private static final long MAX_CACHE_BYTES = 200L * SEGMENT_LENGTH;
+  private static final int POPULAR_SEGMENT_COUNT = 400;
+  private static final int TRACE_LENGTH = 100_000;
+  private static final double SCAN_START_PROBABILITY = 0.01;
+  private static final int SCAN_LENGTH = 300;
+
+  /** The cache and the request trace replayed against it. */
+  @State(Scope.Benchmark)
+  public static class SimulationState {
+
+    @Param({"LeastRecentlyUsed", "FrequencyAware"})
+    public String evictor;
+
+    public final byte[] data = new byte[SEGMENT_LENGTH];
+
+    public File cacheDir;
+    public SimpleCache simpleCache;
+    public String[] trace;
+    public int traceIndex;
+
+    @Setup
+    public void setUp() throws Exception {
+      cacheDir =
+          Util.createTempFile(
+              ApplicationProvider.getApplicationContext(), "CacheEvictorSimulation");
+      cacheDir.delete();
+      cacheDir.mkdirs();
+      CacheEvictor cacheEvictor =
+          evictor.equals("FrequencyAware")
+              ? new FrequencyAwareCacheEvictor(MAX_CACHE_BYTES)
+              : new LeastRecentlyUsedCacheEvictor(MAX_CACHE_BYTES);
+      simpleCache =
+          new SimpleCache(cacheDir, cacheEvictor, TestUtil.getInMemoryDatabaseProvider());
+      trace = buildTrace(new Random(/* seed= */ 0));
+    }
+
+    @TearDown
+    public void tearDown() {
+      simpleCache.release();
+      Util.recursiveDelete(cacheDir);
+    }
+  }
+
+  /** The results of the requests replayed during an iteration. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Counters {
+
+    public long hits;
+    public long misses;
+    public long bytesFetched;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      hits = 0;
+      misses = 0;
+      bytesFetched = 0;
+    }
+  }
+
+  @Benchmark
+  public void replayRequest(SimulationState state, Counters counters) throws Exception {
+    SimpleCache simpleCache = state.simpleCache;
+    String key = state.trace[state.traceIndex];
+    state.traceIndex = (state.traceIndex + 1) % state.trace.length;
+    CacheSpan span = simpleCache.startReadWrite(key, /* position= */ 0, SEGMENT_LENGTH);
+    if (span.isCached) {
+      counters.hits++;
+      return;
+    }
+    counters.misses++;
+    counters.bytesFetched += SEGMENT_LENGTH;
+    File file = simpleCache.startFile(key, /* position= */ 0, SEGMENT_LENGTH);
+    try (FileOutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(state.data);
+    }
+    simpleCache.commitFile(file, SEGMENT_LENGTH);
+    simpleCache.releaseHoleSpan(span);
+  }
+
+  private static String[] buildTrace(Random random) {
+    double[] cumulativeWeights = new double[POPULAR_SEGMENT_COUNT];
+    double totalWeight = 0;
+    for (int i = 0; i < POPULAR_SEGMENT_COUNT; i++) {
+      totalWeight += 1d / (i + 1);
+      cumulativeWeights[i] = totalWeight;
+    }
+    String[] trace = new String[TRACE_LENGTH];
+    int scanCount = 0;
+    int scanPosition = SCAN_LENGTH;
+    for (int i = 0; i < TRACE_LENGTH; i++) {
+      if (scanPosition < SCAN_LENGTH) {
+        trace[i] = "scan" + scanCount + "_" + scanPosition++;
+      } else if (random.nextDouble() < SCAN_START_PROBABILITY) {
+        scanCount++;
+        scanPosition = 0;
+        trace[i] = "scan" + scanCount + "_" + scanPosition++;
+      } else {
+        double weight = random.nextDouble() * totalWeight;
+        int segment = 0;
+        while (segment < POPULAR_SEGMENT_COUNT - 1 && cumulativeWeights[segment] < weight) {
+          segment++;
+        }
+        trace[i] = "popular" + segment;
+      }
+    }
+    return trace;
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifest;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifestParser;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifestPatch;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifestPatchApplier;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifestPatchParser;
+import com.google.android.exoplayer2.source.dash.manifest.DocumentToManifestConverter;
+import com.google.android.exoplayer2.util.Util;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+/**
+ * Benchmarks applying an MPD patch that extends the segment timelines of a live manifest, either
+ * to the parsed {@link DashManifest} or to the document of the manifest, which is then converted
+ * back into a manifest.
+ *
+ * <p>The manifest has a video timeline with a single repeated {@code S} element, and an audio
+ * timeline with one {@code S} element per segment. The patch updates the publish time, extends the
+ * video timeline by changing its repeat count and appends a segment to the audio timeline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DashManifestPatchBenchmark {
+
+  private static final String BASE_URL = "https://example.com/test.mpd";
+  private static final long SEGMENT_DURATION = 40_000_000;
+  private static final String TIMELINE_SELECTOR =
+      "/MPD/Period[@id='1']/AdaptationSet[%d]/SegmentTemplate/SegmentTimeline";
+
+  /** The number of segments of each timeline. */
+  @Param({"15", "900"})
+  public int segmentCount;
+
+  private String patchString;
+  private DashManifestPatchParser patchParser;
+  private DashManifestPatchApplier patchApplier;
+  private DashManifest manifest;
+  private Document document;
+
+  @Setup
+  public void setUp() throws IOException {
+    patchString = buildPatch(segmentCount);
+    patchParser = new DashManifestPatchParser();
+    DashManifestParser manifestParser = new DashManifestParser();
+    byte[] manifestData = Util.getUtf8Bytes(buildManifest(segmentCount));
+    manifest = manifestParser.parse(Uri.parse(BASE_URL), new ByteArrayInputStream(manifestData));
+    patchApplier = new DashManifestPatchApplier(manifestParser);
+    try {
+      document =
+          DocumentBuilderFactory.newInstance()
+              .newDocumentBuilder()
+              .parse(new ByteArrayInputStream(manifestData));
+    } catch (Exception e) {
+      throw new IOException(e);
+    }
+  }
+
+  /** A copy of the document of the manifest, as patches are applied to documents in place. */
+  @State(Scope.Thread)
+  public static class DocumentCopy {
+
+    public Document document;
+
+    @Setup(Level.Invocation)
+    public void setUp(DashManifestPatchBenchmark benchmark) {
+      document = (Document) benchmark.document.cloneNode(/* deep= */ true);
+    }
+  }
+
+  @Benchmark
+  public DashManifest applyToManifest() throws IOException {
+    DashManifestPatch patch = patchParser.parse(patchString);
+    @Nullable DashManifest patchedManifest = patchApplier.apply(manifest, patch);
+    if (patchedManifest == null) {
+      throw new IllegalStateException();
+    }
+    return patchedManifest;
+  }
+
+  @Benchmark
+  public DashManifest applyToDocument(DocumentCopy documentCopy) throws IOException {
+    DashManifestPatch patch = patchParser.parse(patchString);
+    if (!patch.applyPatch(documentCopy.document)) {
+      throw new IllegalStateException();
+    }
+    return DocumentToManifestConverter.convert(documentCopy.document, BASE_URL);
+  }
+
+  private static String buildManifest(int segmentCount) {
+    StringBuilder audioTimeline = new StringBuilder();
+    for (int i = 0; i < segmentCount; i++) {
+      audioTimeline
+          .append("<S t=\"")
+          .append(i * SEGMENT_DURATION + (i % 3))
+          .append("\" d=\"")
+          .append(SEGMENT_DURATION - (i % 3 == 2 ? 2 : 0))
+          .append("\"/>");
+    }
+    return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+        + "<MPD type=\"dynamic\" availabilityStartTime=\"2021-01-01T00:00:00Z\""
+        + " minimumUpdatePeriod=\"PT4S\" minBufferTime=\"PT4S\""
+        + " publishTime=\"2021-01-01T01:00:00Z\" timeShiftBufferDepth=\"PT1H\">"
+        + "<PatchLocation ttl=\"60\">manifest-patch.mpd</PatchLocation>"
+        + "<Period start=\"PT0S\" id=\"1\">"
+        + "<AdaptationSet mimeType=\"video/mp4\">"
+        + "<SegmentTemplate timescale=\"10000000\" media=\"$RepresentationID$/$Time$.m4v\""
+        + " initialization=\"$RepresentationID$/init.m4i\">"
+        + "<SegmentTimeline><S t=\"0\" d=\""
+        + SEGMENT_DURATION
+        + "\" r=\""
+        + (segmentCount - 1)
+        + "\"/></SegmentTimeline>"
+        + "</SegmentTemplate>"
+        + "<Representation id=\"video_0\" bandwidth=\"500000\" codecs=\"avc1.4d4029\"/>"
+        + "<Representation id=\"video_1\" bandwidth=\"2500000\" codecs=\"avc1.640029\"/>"
+        + "</AdaptationSet>"
+        + "<AdaptationSet mimeType=\"audio/mp4\" lang=\"eng\">"
+        + "<SegmentTemplate timescale=\"10000000\" media=\"$RepresentationID$/$Time$.m4a\""
+        + " initialization=\"$RepresentationID$/init.m4i\">"
+        + "<SegmentTimeline>"
+        + audioTimeline
+        + "</SegmentTimeline>"
+        + "</SegmentTemplate>"
+        + "<Representation id=\"audio_0\" bandwidth=\"48000\" codecs=\"mp4a.40.2\"/>"
+        + "</AdaptationSet>"
+        + "</Period>"
+        + "</MPD>";
+  }
+
+  private static String buildPatch(int segmentCount) {
+    return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+        + "<Patch mpdId=\"mpd-id\" originalPublishTime=\"2021-01-01T01:00:00Z\""
+        + " publishTime=\"2021-01-01T01:00:04Z\">"
+        + "<replace sel=\"/MPD/@publishTime\">2021-01-01T01:00:04Z</replace>"
+        + "<replace sel=\""
+        + Util.formatInvariant(TIMELINE_SELECTOR, 1)
+        + "/S/@r\">"
+        + segmentCount
+        + "</replace>"
+        + "<add sel=\""
+        + Util.formatInvariant(TIMELINE_SELECTOR, 2)
+        + "\"><S t=\""
+        + segmentCount * SEGMENT_DURATION
+        + "\" d=\""
+        + SEGMENT_DURATION
+        + "\"/></add>"
+        + "</Patch>";
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import android.net.Uri;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifest;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifestParser;
+import com.google.android.exoplayer2.util.Util;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks refreshing a live DASH manifest whose DVR window slides forward by one segment per
+ * refresh.
+ *
+ * <p>With {@code reuseParser} set, every refresh is parsed by the same {@link DashManifestParser},
+ * which reuses the segments the refreshed timelines have in common with the previous ones. Without
+ * it, every refresh is parsed by a new parser, which stores all segments again. Compare the bytes
+ * allocated per refresh ({@code gc.alloc.rate.norm}) as well as the throughput.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DashManifestRefreshBenchmark {
+
+  private static final Uri MANIFEST_URI = Uri.parse("https://example.com/test.mpd");
+  private static final int REFRESH_COUNT = 64;
+  // Audio segments alternate between two durations, so that each one has its own S element.
+  private static final long AUDIO_SEGMENT_DURATION = 192_000;
+  private static final long AUDIO_SEGMENT_DURATION_DELTA = 512;
+  private static final long VIDEO_SEGMENT_DURATION = 360_000;
+
+  /** The number of segments in the DVR window of each timeline. */
+  @Param({"900", "5400"})
+  public int windowSegmentCount;
+
+  @Param({"true", "false"})
+  public boolean reuseParser;
+
+  private byte[][] manifests;
+  private DashManifestParser parser;
+  private int refreshIndex;
+
+  @Setup
+  public void setUp() {
+    manifests = new byte[REFRESH_COUNT][];
+    for (int i = 0; i < REFRESH_COUNT; i++) {
+      manifests[i] = Util.getUtf8Bytes(buildManifest(/* firstSegmentIndex= */ i));
+    }
+    parser = new DashManifestParser();
+  }
+
+  @Benchmark
+  public DashManifest refreshManifest() throws IOException {
+    // The window jumps back once every REFRESH_COUNT refreshes, which can't reuse any segments.
+    byte[] manifest = manifests[refreshIndex];
+    refreshIndex = (refreshIndex + 1) % REFRESH_COUNT;
+    DashManifestParser parser = reuseParser ? this.parser : new DashManifestParser();
+    return parser.parse(MANIFEST_URI, new ByteArrayInputStream(manifest));
+  }
+
+  private String buildManifest(int firstSegmentIndex) {
+    StringBuilder audioTimeline = new StringBuilder();
+    for (int i = firstSegmentIndex; i < firstSegmentIndex + windowSegmentCount; i++) {
+      audioTimeline
+          .append("<S t=\"")
+          .append(getAudioSegmentStartTime(i))
+          .append("\" d=\"")
+          .append(getAudioSegmentStartTime(i + 1) - getAudioSegmentStartTime(i))
+          .append("\"/>");
+    }
+    return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+        + "<MPD type=\"dynamic\" availabilityStartTime=\"2021-01-01T00:00:00Z\""
+        + " minimumUpdatePeriod=\"PT4S\" minBufferTime=\"PT4S\""
+        + " publishTime=\"2021-01-01T01:00:00Z\">"
+        + "<Period start=\"PT0S\" id=\"1\">"
+        + "<AdaptationSet mimeType=\"video/mp4\">"
+        + "<SegmentTemplate timescale=\"90000\" media=\"$RepresentationID$/$Time$.m4v\""
+        + " initialization=\"$RepresentationID$/init.m4i\">"
+        + "<SegmentTimeline><S t=\""
+        + firstSegmentIndex * VIDEO_SEGMENT_DURATION
+        + "\" d=\""
+        + VIDEO_SEGMENT_DURATION
+        + "\" r=\""
+        + (windowSegmentCount - 1)
+        + "\"/></SegmentTimeline>"
+        + "</SegmentTemplate>"
+        + "<Representation id=\"video_0\" bandwidth=\"500000\" codecs=\"avc1.4d4029\"/>"
+        + "<Representation id=\"video_1\" bandwidth=\"2500000\" codecs=\"avc1.640029\"/>"
+        + "</AdaptationSet>"
+        + "<AdaptationSet mimeType=\"audio/mp4\" lang=\"eng\">"
+        + "<SegmentTemplate timescale=\"48000\" media=\"$RepresentationID$/$Time$.m4a\""
+        + " initialization=\"$RepresentationID$/init.m4i\">"
+        + "<SegmentTimeline>"
+        + audioTimeline
+        + "</SegmentTimeline>"
+        + "</SegmentTemplate>"
+        + "<Representation id=\"audio_0\" bandwidth=\"48000\" codecs=\"mp4a.40.2\"/>"
+        + "</AdaptationSet>"
+        + "</Period>"
+        + "</MPD>";
+  }
+
+  private static long getAudioSegmentStartTime(int segmentIndex) {
+    return segmentIndex * AUDIO_SEGMENT_DURATION
+        + (segmentIndex % 2) * AUDIO_SEGMENT_DURATION_DELTA;
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import androidx.test.core.app.ApplicationProvider;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.mkv.MatroskaExtractor;
+import com.google.android.exoplayer2.extractor.mp4.FragmentedMp4Extractor;
+import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
+import com.google.android.exoplayer2.extractor.ts.TsExtractor;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks extracting all samples from a file, for each of the main container formats. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ExtractorBenchmark {
+
+  @Param({"FRAGMENTED_MP4", "FRAGMENTED_MP4_REUSE_ATOMS", "MP4", "TS", "MATROSKA"})
+  public String container;
+
+  private byte[] data;
+
+  @Setup
+  public void setUp() throws IOException {
+    data = TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), getFileName());
+  }
+
+  @Benchmark
+  public FakeExtractorOutput extractAllSamples() throws IOException {
+    Extractor extractor = createExtractor();
+    FakeExtractorOutput output = new FakeExtractorOutput();
+    extractor.init(output);
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(data).build();
+    PositionHolder positionHolder = new PositionHolder();
+    int readResult = Extractor.RESULT_CONTINUE;
+    while (readResult != Extractor.RESULT_END_OF_INPUT) {
+      while (readResult == Extractor.RESULT_CONTINUE) {
+        readResult = extractor.read(input, positionHolder);
+      }
+      if (readResult == Extractor.RESULT_SEEK) {
+        input.setPosition((int) positionHolder.position);
+        readResult = Extractor.RESULT_CONTINUE;
+      }
+    }
+    extractor.release();
+    return output;
+  }
+
+  private String getFileName() {
+    switch (container) {
+      case "FRAGMENTED_MP4":
+      case "FRAGMENTED_MP4_REUSE_ATOMS":
+        return "media/mp4/sample_fragmented.mp4";
+      case "MP4":
+        return "media/mp4/sample.mp4";
+      case "TS":
+        return "media/ts/sample_h264_mpeg_audio.ts";
+      case "MATROSKA":
+        return "media/mkv/sample.mkv";
+      default:
+        throw new IllegalStateException(container);
+    }
+  }
+
+  private Extractor createExtractor() {
+    switch (container) {
+      case "FRAGMENTED_MP4":
+        return new FragmentedMp4Extractor();
+      case "FRAGMENTED_MP4_REUSE_ATOMS":
+        return new FragmentedMp4Extractor(FragmentedMp4Extractor.FLAG_REUSE_FRAGMENT_ATOMS);
+      case "MP4":
+        return new Mp4Extractor();
+      case "TS":
+        return new TsExtractor();
+      case "MATROSKA":
+        return new MatroskaExtractor();
+      default:
+        throw new IllegalStateException(container);
+    }
+  }
+}
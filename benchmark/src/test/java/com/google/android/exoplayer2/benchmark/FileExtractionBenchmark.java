@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import android.content.Context;
+import android.net.Uri;
+import androidx.test.core.app.ApplicationProvider;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.DefaultExtractorInput;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.mkv.MatroskaExtractor;
+import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.FileDataSource;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks extracting local files read through a {@link FileDataSource}, with and without memory
+ * mapping. The number of bytes extracted per second is reported as the secondary result {@code
+ * bytes}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FileExtractionBenchmark {
+
+  @Param({"MP4", "MATROSKA"})
+  public String container;
+
+  @Param({"false", "true"})
+  public boolean memoryMappingEnabled;
+
+  private File file;
+  private Uri uri;
+  private FileDataSource dataSource;
+
+  /** The number of bytes extracted during an iteration. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters {
+
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      bytes = 0;
+    }
+  }
+
+  @Setup
+  public void setUp() throws IOException {
+    Context context = ApplicationProvider.getApplicationContext();
+    String assetPath = container.equals("MP4") ? "media/mp4/sample.mp4" : "media/mkv/sample.mkv";
+    file = Util.createTempFile(context, "FileExtractionBenchmark");
+    try (FileOutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(TestUtil.getByteArray(context, assetPath));
+    }
+    uri = Uri.fromFile(file);
+    dataSource =
+        new FileDataSource.Factory()
+            .setMemoryMappingEnabled(memoryMappingEnabled)
+            .createDataSource();
+  }
+
+  @TearDown
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Benchmark
+  public FakeExtractorOutput extractFile(Counters counters) throws IOException {
+    Extractor extractor = container.equals("MP4") ? new Mp4Extractor() : new MatroskaExtractor();
+    FakeExtractorOutput output = new FakeExtractorOutput();
+    extractor.init(output);
+    PositionHolder positionHolder = new PositionHolder();
+    long position = 0;
+    int readResult = Extractor.RESULT_SEEK;
+    while (readResult == Extractor.RESULT_SEEK) {
+      long bytesRemaining = dataSource.open(new DataSpec(uri, position, C.LENGTH_UNSET));
+      DefaultExtractorInput input =
+          new DefaultExtractorInput(dataSource, position, position + bytesRemaining);
+      try {
+        do {
+          readResult = extractor.read(input, positionHolder);
+        } while (readResult == Extractor.RESULT_CONTINUE);
+      } finally {
+        dataSource.close();
+      }
+      position = positionHolder.position;
+    }
+    extractor.release();
+    counters.bytes += file.length();
+    return output;
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import android.net.Uri;
+import androidx.test.core.app.ApplicationProvider;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifest;
+import com.google.android.exoplayer2.source.dash.manifest.DashManifestParser;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylist;
+import com.google.android.exoplayer2.source.hls.playlist.HlsPlaylistParser;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks parsing DASH manifests and HLS media playlists. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ManifestParserBenchmark {
+
+  private static final String DASH_MANIFEST = "media/mpd/sample_mpd_segment_template";
+  private static final String HLS_PLAYLIST = "media/m3u8/live_low_latency_segments_and_parts";
+
+  private static final Uri DASH_URI = Uri.parse("https://example.com/test.mpd");
+  private static final Uri HLS_URI = Uri.parse("https://example.com/test.m3u8");
+
+  private byte[] dashManifestData;
+  private byte[] hlsPlaylistData;
+  private DashManifestParser dashManifestParser;
+  private HlsPlaylistParser hlsPlaylistParser;
+
+  @Setup
+  public void setUp() throws IOException {
+    dashManifestData =
+        TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), DASH_MANIFEST);
+    hlsPlaylistData =
+        TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), HLS_PLAYLIST);
+    dashManifestParser = new DashManifestParser();
+    hlsPlaylistParser = new HlsPlaylistParser();
+  }
+
+  @Benchmark
+  public DashManifest parseDashManifest() throws IOException {
+    return dashManifestParser.parse(DASH_URI, new ByteArrayInputStream(dashManifestData));
+  }
+
+  @Benchmark
+  public HlsPlaylist parseHlsMediaPlaylist() throws IOException {
+    return hlsPlaylistParser.parse(HLS_URI, new ByteArrayInputStream(hlsPlaylistData));
+  }
+}
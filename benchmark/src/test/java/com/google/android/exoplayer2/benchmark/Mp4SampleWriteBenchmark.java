@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import androidx.test.core.app.ApplicationProvider;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.TrackOutput;
+import com.google.android.exoplayer2.extractor.mp4.FragmentedMp4Extractor;
+import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
+import com.google.android.exoplayer2.source.SampleQueue;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks extracting MP4 files into {@link SampleQueue SampleQueues}, as a loader thread does.
+ * The number of bytes extracted per second is reported as the secondary result {@code bytes}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class Mp4SampleWriteBenchmark {
+
+  @Param({"FRAGMENTED_MP4", "MP4"})
+  public String container;
+
+  private byte[] data;
+  private SampleQueueOutput output;
+
+  /** The number of bytes extracted during an iteration. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters {
+
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      bytes = 0;
+    }
+  }
+
+  @Setup
+  public void setUp() throws IOException {
+    String file =
+        container.equals("FRAGMENTED_MP4")
+            ? "media/mp4/sample_fragmented.mp4"
+            : "media/mp4/sample.mp4";
+    data = TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), file);
+    output = new SampleQueueOutput();
+  }
+
+  @TearDown
+  public void tearDown() {
+    output.release();
+  }
+
+  @Benchmark
+  public void extractIntoSampleQueues(Counters counters) throws IOException {
+    Extractor extractor =
+        container.equals("FRAGMENTED_MP4") ? new FragmentedMp4Extractor() : new Mp4Extractor();
+    extractor.init(output);
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(data).build();
+    PositionHolder positionHolder = new PositionHolder();
+    int readResult = Extractor.RESULT_CONTINUE;
+    while (readResult != Extractor.RESULT_END_OF_INPUT) {
+      readResult = extractor.read(input, positionHolder);
+      if (readResult == Extractor.RESULT_SEEK) {
+        input.setPosition((int) positionHolder.position);
+      }
+    }
+    extractor.release();
+    output.reset();
+    counters.bytes += data.length;
+  }
+
+  /** An {@link ExtractorOutput} that writes each track to a {@link SampleQueue}. */
+  private static final class SampleQueueOutput implements ExtractorOutput {
+
+    private final DefaultAllocator allocator;
+    private final List<SampleQueue> sampleQueues;
+    private int trackCount;
+
+    public SampleQueueOutput() {
+      allocator = new DefaultAllocator(false, C.DEFAULT_BUFFER_SEGMENT_SIZE);
+      sampleQueues = new ArrayList<>();
+    }
+
+    @Override
+    public TrackOutput track(int id, int type) {
+      // Sample queues are reused in track order when the same file is extracted again.
+      if (trackCount == sampleQueues.size()) {
+        sampleQueues.add(SampleQueue.createWithoutDrm(allocator));
+      }
+      return sampleQueues.get(trackCount++);
+    }
+
+    @Override
+    public void endTracks() {}
+
+    @Override
+    public void seekMap(SeekMap seekMap) {}
+
+    /** Discards the extracted samples, and prepares to extract the file again. */
+    public void reset() {
+      for (SampleQueue sampleQueue : sampleQueues) {
+        sampleQueue.reset();
+      }
+      trackCount = 0;
+    }
+
+    public void release() {
+      for (SampleQueue sampleQueue : sampleQueues) {
+        sampleQueue.release();
+      }
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import static java.lang.Math.min;
+
+import androidx.test.core.app.ApplicationProvider;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.ts.TsExtractor;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer2.testutil.FakeTrackOutput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.NalUnitUtil;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks finding the NAL units of H.264 and H.265 elementary streams with {@link
+ * NalUnitUtil#findNalUnit(byte[], int, int, boolean[])}.
+ *
+ * <p>The elementary streams are demuxed from the transport streams in the test data. They're
+ * scanned in chunks the size of a TS packet payload, as a {@code H264Reader} or {@code H265Reader}
+ * would scan them, so that start codes split across chunks are found using the prefix flags.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class NalUnitUtilBenchmark {
+
+  private static final int TS_PAYLOAD_SIZE = 184;
+
+  @Param({"H264", "H265"})
+  public String codec;
+
+  private byte[] data;
+  private boolean[] prefixFlags;
+
+  @Setup
+  public void setUp() throws IOException {
+    String file = codec.equals("H264") ? "media/ts/bbb_2500ms.ts" : "media/ts/sample_h265.ts";
+    data = demuxVideo(TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), file));
+    prefixFlags = new boolean[3];
+  }
+
+  @Benchmark
+  public int findNalUnits() {
+    int nalUnitCount = 0;
+    NalUnitUtil.clearPrefixFlags(prefixFlags);
+    for (int chunkStart = 0; chunkStart < data.length; chunkStart += TS_PAYLOAD_SIZE) {
+      int chunkEnd = min(chunkStart + TS_PAYLOAD_SIZE, data.length);
+      int offset = chunkStart;
+      while (true) {
+        int nalUnitOffset = NalUnitUtil.findNalUnit(data, offset, chunkEnd, prefixFlags);
+        if (nalUnitOffset == chunkEnd) {
+          break;
+        }
+        nalUnitCount++;
+        offset = nalUnitOffset + 3;
+      }
+    }
+    return nalUnitCount;
+  }
+
+  /** Returns the concatenated samples of the video track of a transport stream. */
+  private static byte[] demuxVideo(byte[] tsData) throws IOException {
+    Extractor extractor = new TsExtractor();
+    FakeExtractorOutput output = new FakeExtractorOutput();
+    extractor.init(output);
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(tsData).build();
+    PositionHolder positionHolder = new PositionHolder();
+    int readResult = Extractor.RESULT_CONTINUE;
+    while (readResult != Extractor.RESULT_END_OF_INPUT) {
+      readResult = extractor.read(input, positionHolder);
+      if (readResult == Extractor.RESULT_SEEK) {
+        input.setPosition((int) positionHolder.position);
+      }
+    }
+    extractor.release();
+
+    ByteArrayOutputStream videoData = new ByteArrayOutputStream();
+    for (int i = 0; i < output.trackOutputs.size(); i++) {
+      FakeTrackOutput trackOutput = output.trackOutputs.valueAt(i);
+      if (trackOutput.lastFormat != null
+          && MimeTypes.isVideo(trackOutput.lastFormat.sampleMimeType)) {
+        for (int j = 0; j < trackOutput.getSampleCount(); j++) {
+          videoData.write(trackOutput.getSampleData(j));
+        }
+      }
+    }
+    return videoData.toByteArray();
+  }
+}
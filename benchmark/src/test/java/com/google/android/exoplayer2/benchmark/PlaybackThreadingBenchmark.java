@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import android.os.ConditionVariable;
+import android.os.Handler;
+import android.os.HandlerThread;
+import androidx.annotation.Nullable;
+import androidx.test.core.app.ApplicationProvider;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.PlaybackThreadPool;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.testutil.ExoPlayerTestRunner;
+import com.google.android.exoplayer2.testutil.FakeMediaSource;
+import com.google.android.exoplayer2.testutil.FakeTimeline;
+import com.google.android.exoplayer2.testutil.FakeTimeline.TimelineWindowDefinition;
+import com.google.android.exoplayer2.testutil.FakeVideoRenderer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the CPU time and number of threads used by many players playing at the same time, with
+ * and without sharing a {@link PlaybackThreadPool}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class PlaybackThreadingBenchmark {
+
+  /** Resource usage of the players while playing, reported alongside the benchmark score. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class ResourceUsage {
+
+    /** CPU time used by all threads while playing, in milliseconds. */
+    public long cpuTimeMs;
+    /** Number of threads started for the players. */
+    public long threadCount;
+  }
+
+  private static final int SHARED_PLAYBACK_THREAD_COUNT = 2;
+  private static final long PLAYBACK_DURATION_MS = 1000;
+
+  @Param({"1", "4", "9", "16"})
+  public int playerCount;
+
+  @Param({"false", "true"})
+  public boolean sharedPlaybackThreads;
+
+  private HandlerThread applicationThread;
+  private Handler applicationHandler;
+  private List<SimpleExoPlayer> players;
+  private int initialThreadCount;
+
+  @Setup(Level.Iteration)
+  public void setUp() {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    applicationThread = new HandlerThread("PlaybackThreadingBenchmark");
+    applicationThread.start();
+    applicationHandler = new Handler(applicationThread.getLooper());
+    initialThreadCount = threadMXBean.getThreadCount();
+    @Nullable
+    PlaybackThreadPool playbackThreadPool =
+        sharedPlaybackThreads ? new PlaybackThreadPool(SHARED_PLAYBACK_THREAD_COUNT) : null;
+    players = new ArrayList<>();
+    runOnApplicationThread(
+        () -> {
+          for (int i = 0; i < playerCount; i++) {
+            SimpleExoPlayer player =
+                new SimpleExoPlayer.Builder(
+                        ApplicationProvider.getApplicationContext(),
+                        (eventHandler,
+                            videoRendererEventListener,
+                            audioRendererEventListener,
+                            textRendererOutput,
+                            metadataRendererOutput) ->
+                            new Renderer[] {
+                              new FakeVideoRenderer(eventHandler, videoRendererEventListener)
+                            })
+                    .setLooper(applicationThread.getLooper())
+                    .setPlaybackThreadPool(playbackThreadPool)
+                    .build();
+            player.setMediaSource(
+                new FakeMediaSource(
+                    new FakeTimeline(
+                        new TimelineWindowDefinition(
+                            /* isSeekable= */ true,
+                            /* isDynamic= */ false,
+                            /* durationUs= */ 3600 * C.MICROS_PER_SECOND)),
+                    ExoPlayerTestRunner.VIDEO_FORMAT));
+            player.prepare();
+            player.play();
+            players.add(player);
+          }
+        });
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() {
+    runOnApplicationThread(
+        () -> {
+          for (int i = 0; i < players.size(); i++) {
+            players.get(i).release();
+          }
+        });
+    applicationThread.quit();
+  }
+
+  @Benchmark
+  public void play(ResourceUsage resourceUsage) throws InterruptedException {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    long startCpuTimeNs = getTotalThreadCpuTimeNs(threadMXBean);
+    Thread.sleep(PLAYBACK_DURATION_MS);
+    resourceUsage.cpuTimeMs += (getTotalThreadCpuTimeNs(threadMXBean) - startCpuTimeNs) / 1_000_000;
+    resourceUsage.threadCount += threadMXBean.getThreadCount() - initialThreadCount;
+  }
+
+  private void runOnApplicationThread(Runnable runnable) {
+    ConditionVariable finished = new ConditionVariable();
+    applicationHandler.post(
+        () -> {
+          runnable.run();
+          finished.open();
+        });
+    finished.block();
+  }
+
+  private static long getTotalThreadCpuTimeNs(ThreadMXBean threadMXBean) {
+    long cpuTimeNs = 0;
+    for (long threadId : threadMXBean.getAllThreadIds()) {
+      long threadCpuTimeNs = threadMXBean.getThreadCpuTime(threadId);
+      if (threadCpuTimeNs != -1) {
+        cpuTimeNs += threadCpuTimeNs;
+      }
+    }
+    return cpuTimeNs;
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.PrefetchingDataSource;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks reading a sequence of segments through a {@link PrefetchingDataSource}, from an
+ * upstream with a fixed request latency.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PrefetchingDataSourceBenchmark {
+
+  private static final int SEGMENT_COUNT = 10;
+  private static final int SEGMENT_LENGTH = 256 * 1024;
+  private static final long REQUEST_LATENCY_MS = 20;
+
+  @Param({"1", "2", "4"})
+  public int maxPrefetchCount;
+
+  private PrefetchingDataSource dataSource;
+  private List<DataSpec> dataSpecs;
+  private byte[] readBuffer;
+  private int iteration;
+
+  @Setup
+  public void setUp() {
+    byte[] segmentData = new byte[SEGMENT_LENGTH];
+    dataSource =
+        new PrefetchingDataSource(
+            () -> new LatencyDataSource(segmentData), maxPrefetchCount, /* listener= */ null);
+    dataSpecs = new ArrayList<>();
+    readBuffer = new byte[32 * 1024];
+  }
+
+  @TearDown
+  public void tearDown() {
+    dataSource.release();
+  }
+
+  @Benchmark
+  public long readSegments() throws IOException {
+    // Use different URIs on each invocation, so that prefetches never carry over between them.
+    iteration++;
+    dataSpecs.clear();
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      dataSpecs.add(new DataSpec(Uri.parse("https://example.com/" + iteration + "/" + i)));
+    }
+    long bytesRead = 0;
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      dataSource.prefetch(dataSpecs.subList(i, SEGMENT_COUNT));
+      dataSource.open(dataSpecs.get(i));
+      int result;
+      while ((result = dataSource.read(readBuffer, 0, readBuffer.length))
+          != C.RESULT_END_OF_INPUT) {
+        bytesRead += result;
+      }
+      dataSource.close();
+    }
+    return bytesRead;
+  }
+
+  /** A {@link ByteArrayDataSource} that takes a fixed amount of time to open. */
+  private static final class LatencyDataSource implements DataSource {
+
+    private final ByteArrayDataSource dataSource;
+
+    public LatencyDataSource(byte[] data) {
+      dataSource = new ByteArrayDataSource(data);
+    }
+
+    @Override
+    public void addTransferListener(TransferListener transferListener) {
+      dataSource.addTransferListener(transferListener);
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) throws IOException {
+      try {
+        Thread.sleep(REQUEST_LATENCY_MS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+      return dataSource.open(dataSpec);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) {
+      return dataSource.read(buffer, offset, readLength);
+    }
+
+    @Override
+    @Nullable
+    public Uri getUri() {
+      return dataSource.getUri();
+    }
+
+    @Override
+    public void close() {
+      dataSource.close();
+    }
+  }
+}
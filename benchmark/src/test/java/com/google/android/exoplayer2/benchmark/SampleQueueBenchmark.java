@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.FormatHolder;
+import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
+import com.google.android.exoplayer2.source.SampleQueue;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks writing samples to and reading them from a {@link SampleQueue}. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SampleQueueBenchmark {
+
+  private static final Format FORMAT =
+      new Format.Builder().setSampleMimeType(MimeTypes.VIDEO_H264).build();
+  private static final int SAMPLE_COUNT = 1000;
+  private static final int KEYFRAME_INTERVAL = 30;
+  private static final long SAMPLE_DURATION_US = 33_333;
+
+  @Param({"1024", "16384"})
+  public int sampleSize;
+
+  private SampleQueue sampleQueue;
+  private ParsableByteArray sampleData;
+  private FormatHolder formatHolder;
+  private DecoderInputBuffer buffer;
+
+  @Setup
+  public void setUp() {
+    sampleQueue =
+        SampleQueue.createWithoutDrm(new DefaultAllocator(false, C.DEFAULT_BUFFER_SEGMENT_SIZE));
+    sampleData = new ParsableByteArray(sampleSize);
+    formatHolder = new FormatHolder();
+    buffer = new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_NORMAL);
+  }
+
+  @TearDown
+  public void tearDown() {
+    sampleQueue.release();
+  }
+
+  @Benchmark
+  public int writeAndReadSamples() {
+    sampleQueue.format(FORMAT);
+    for (int i = 0; i < SAMPLE_COUNT; i++) {
+      sampleData.setPosition(0);
+      sampleQueue.sampleData(sampleData, sampleSize);
+      int flags = i % KEYFRAME_INTERVAL == 0 ? C.BUFFER_FLAG_KEY_FRAME : 0;
+      sampleQueue.sampleMetadata(
+          i * SAMPLE_DURATION_US, flags, sampleSize, /* offset= */ 0, /* cryptoData= */ null);
+    }
+    int samplesRead = 0;
+    int result;
+    do {
+      buffer.clear();
+      result =
+          sampleQueue.read(
+              formatHolder, buffer, /* formatRequired= */ false, /* loadingFinished= */ false);
+      if (result == C.RESULT_BUFFER_READ) {
+        samplesRead++;
+      }
+    } while (result != C.RESULT_NOTHING_READ);
+    sampleQueue.reset();
+    return samplesRead;
+  }
+}
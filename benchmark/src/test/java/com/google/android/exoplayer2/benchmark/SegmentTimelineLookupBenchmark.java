@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.source.dash.manifest.RangedUri;
+import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.SegmentTemplate;
+import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.SegmentTimelineElement;
+import com.google.android.exoplayer2.source.dash.manifest.UrlTemplate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks looking up segments in the timeline of a {@link SegmentTemplate} covering 24 hours of
+ * 4 second segments, as {@code DefaultDashChunkSource} does for every chunk.
+ *
+ * <p>With {@code shape} set to {@code UNIFORM}, all segments have the same duration and the
+ * timeline is a single run. With {@code ALTERNATING}, consecutive segments differ in duration, as
+ * audio segments of AAC frames do, so that every segment is a run of its own.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SegmentTimelineLookupBenchmark {
+
+  private static final long TIMESCALE = 90_000;
+  private static final long SEGMENT_DURATION = 4 * TIMESCALE;
+  private static final long SEGMENT_DURATION_DELTA = 960;
+  private static final int SEGMENT_COUNT = 24 * 60 * 60 / 4;
+  private static final long PERIOD_DURATION_US = 24L * 60 * 60 * C.MICROS_PER_SECOND;
+  private static final int LOOKUP_COUNT = 1024;
+
+  @Param({"UNIFORM", "ALTERNATING"})
+  public String shape;
+
+  private SegmentTemplate segmentTemplate;
+  private long[] timesUs;
+  private long[] segmentNums;
+  private int lookupIndex;
+
+  @Setup
+  public void setUp() {
+    List<SegmentTimelineElement> segmentTimeline = new ArrayList<>(SEGMENT_COUNT);
+    long startTime = 0;
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      long duration = SEGMENT_DURATION;
+      if (shape.equals("ALTERNATING")) {
+        duration += i % 2 == 0 ? SEGMENT_DURATION_DELTA : -SEGMENT_DURATION_DELTA;
+      }
+      segmentTimeline.add(new SegmentTimelineElement(startTime, duration));
+      startTime += duration;
+    }
+    segmentTemplate =
+        new SegmentTemplate(
+            new RangedUri(/* referenceUri= */ null, /* start= */ 0, C.LENGTH_UNSET),
+            TIMESCALE,
+            /* presentationTimeOffset= */ 0,
+            /* startNumber= */ 1,
+            /* endNumber= */ C.INDEX_UNSET,
+            /* duration= */ 0,
+            segmentTimeline,
+            /* availabilityTimeOffsetUs= */ C.TIME_UNSET,
+            /* initializationTemplate= */ null,
+            UrlTemplate.compile("$Time$.m4s"),
+            /* timeShiftBufferDepthUs= */ C.TIME_UNSET,
+            /* periodStartUnixTimeUs= */ C.TIME_UNSET);
+    Random random = new Random(/* seed= */ 0);
+    timesUs = new long[LOOKUP_COUNT];
+    segmentNums = new long[LOOKUP_COUNT];
+    for (int i = 0; i < LOOKUP_COUNT; i++) {
+      timesUs[i] = (long) (random.nextDouble() * PERIOD_DURATION_US);
+      segmentNums[i] = 1 + random.nextInt(SEGMENT_COUNT);
+    }
+  }
+
+  @Benchmark
+  public long getSegmentNum() {
+    long timeUs = timesUs[lookupIndex];
+    lookupIndex = (lookupIndex + 1) % LOOKUP_COUNT;
+    return segmentTemplate.getSegmentNum(timeUs, PERIOD_DURATION_US);
+  }
+
+  @Benchmark
+  public long getSegmentTimeUs() {
+    long segmentNum = segmentNums[lookupIndex];
+    lookupIndex = (lookupIndex + 1) % LOOKUP_COUNT;
+    return segmentTemplate.getSegmentTimeUs(segmentNum);
+  }
+
+  @Benchmark
+  public long getSegmentDurationUs() {
+    long segmentNum = segmentNums[lookupIndex];
+    lookupIndex = (lookupIndex + 1) % LOOKUP_COUNT;
+    return segmentTemplate.getSegmentDurationUs(segmentNum, PERIOD_DURATION_US);
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import androidx.test.core.app.ApplicationProvider;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks looking up cached spans in a {@link SimpleCache}. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SimpleCacheBenchmark {
+
+  private static final String KEY = "key";
+  private static final int SPAN_LENGTH = 100;
+  // Leaves a hole between consecutive spans, so that they aren't merged by lookups.
+  private static final int SPAN_STRIDE = 2 * SPAN_LENGTH;
+
+  @Param({"10", "1000"})
+  public int spanCount;
+
+  private File cacheDir;
+  private SimpleCache simpleCache;
+  private long lookupPosition;
+
+  @Setup
+  public void setUp() throws IOException {
+    cacheDir = Util.createTempFile(ApplicationProvider.getApplicationContext(), "SimpleCacheBench");
+    cacheDir.delete();
+    cacheDir.mkdirs();
+    simpleCache =
+        new SimpleCache(cacheDir, new NoOpCacheEvictor(), TestUtil.getInMemoryDatabaseProvider());
+    byte[] data = new byte[SPAN_LENGTH];
+    for (int i = 0; i < spanCount; i++) {
+      File file = simpleCache.startFile(KEY, (long) i * SPAN_STRIDE, SPAN_LENGTH);
+      try (FileOutputStream outputStream = new FileOutputStream(file)) {
+        outputStream.write(data);
+      }
+      simpleCache.commitFile(file, SPAN_LENGTH);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    simpleCache.release();
+    Util.recursiveDelete(cacheDir);
+  }
+
+  @Benchmark
+  public long getCachedLength() {
+    return simpleCache.getCachedLength(KEY, nextLookupPosition(), SPAN_LENGTH);
+  }
+
+  @Benchmark
+  public boolean isCached() {
+    return simpleCache.isCached(KEY, nextLookupPosition(), SPAN_LENGTH);
+  }
+
+  private long nextLookupPosition() {
+    // Alternates between cached spans and holes, walking through the whole key.
+    lookupPosition = (lookupPosition + SPAN_LENGTH) % ((long) spanCount * SPAN_STRIDE);
+    return lookupPosition;
+  }
+}
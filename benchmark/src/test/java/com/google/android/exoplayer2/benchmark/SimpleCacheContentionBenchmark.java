@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import androidx.test.core.app.ApplicationProvider;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks a {@link SimpleCache} used concurrently by 8 writers and 4 readers, each using its own
+ * key, as when downloads run in parallel with playback from the cache.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SimpleCacheContentionBenchmark {
+
+  private static final int SPAN_LENGTH = 1024;
+  private static final int READER_SPAN_COUNT = 100;
+  private static final long MAX_CACHE_BYTES = 16 * 1024 * 1024;
+
+  /** The cache shared by all threads. */
+  @State(Scope.Group)
+  public static class CacheState {
+
+    public final AtomicInteger nextWriterIndex = new AtomicInteger();
+    public final AtomicInteger nextReaderIndex = new AtomicInteger();
+
+    public File cacheDir;
+    public SimpleCache simpleCache;
+
+    @Setup
+    public void setUp() throws Exception {
+      cacheDir =
+          Util.createTempFile(ApplicationProvider.getApplicationContext(), "SimpleCacheContention");
+      cacheDir.delete();
+      cacheDir.mkdirs();
+      simpleCache =
+          new SimpleCache(
+              cacheDir,
+              new LeastRecentlyUsedCacheEvictor(MAX_CACHE_BYTES),
+              TestUtil.getInMemoryDatabaseProvider());
+    }
+
+    @TearDown
+    public void tearDown() {
+      simpleCache.release();
+      Util.recursiveDelete(cacheDir);
+    }
+  }
+
+  /** The key and position written by a writer thread. */
+  @State(Scope.Thread)
+  public static class WriterState {
+
+    public final byte[] data = new byte[SPAN_LENGTH];
+
+    public String key;
+    public long position;
+
+    @Setup
+    public void setUp(CacheState cacheState) {
+      key = "writer" + cacheState.nextWriterIndex.getAndIncrement();
+    }
+  }
+
+  /** The key and position read by a reader thread. */
+  @State(Scope.Thread)
+  public static class ReaderState {
+
+    public String key;
+    public long position;
+
+    @Setup
+    public void setUp(CacheState cacheState) throws Exception {
+      key = "reader" + cacheState.nextReaderIndex.getAndIncrement();
+      byte[] data = new byte[SPAN_LENGTH];
+      for (int i = 0; i < READER_SPAN_COUNT; i++) {
+        CacheSpan holeSpan =
+            cacheState.simpleCache.startReadWrite(key, (long) i * SPAN_LENGTH, SPAN_LENGTH);
+        writeSpan(cacheState.simpleCache, key, (long) i * SPAN_LENGTH, data);
+        cacheState.simpleCache.releaseHoleSpan(holeSpan);
+      }
+    }
+  }
+
+  @Benchmark
+  @Group("contention")
+  @GroupThreads(8)
+  public void write(CacheState cacheState, WriterState writerState) throws Exception {
+    SimpleCache simpleCache = cacheState.simpleCache;
+    CacheSpan holeSpan =
+        simpleCache.startReadWrite(writerState.key, writerState.position, SPAN_LENGTH);
+    Assertions.checkState(!holeSpan.isCached);
+    writeSpan(simpleCache, writerState.key, writerState.position, writerState.data);
+    simpleCache.releaseHoleSpan(holeSpan);
+    writerState.position += SPAN_LENGTH;
+  }
+
+  @Benchmark
+  @Group("contention")
+  @GroupThreads(4)
+  public long read(CacheState cacheState, ReaderState readerState) throws Exception {
+    SimpleCache simpleCache = cacheState.simpleCache;
+    long position = readerState.position;
+    readerState.position = (position + SPAN_LENGTH) % ((long) READER_SPAN_COUNT * SPAN_LENGTH);
+    CacheSpan span = simpleCache.startReadWrite(readerState.key, position, C.LENGTH_UNSET);
+    if (!span.isCached) {
+      // The span was evicted to make room for the data added by the writers.
+      simpleCache.releaseHoleSpan(span);
+      return 0;
+    }
+    return simpleCache.getCachedLength(readerState.key, position, C.LENGTH_UNSET);
+  }
+
+  private static void writeSpan(SimpleCache simpleCache, String key, long position, byte[] data)
+      throws IOException {
+    File file = simpleCache.startFile(key, position, data.length);
+    try (FileOutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(data);
+    }
+    simpleCache.commitFile(file, data.length);
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import static com.google.android.exoplayer2.C.LENGTH_UNSET;
+
+import androidx.test.core.app.ApplicationProvider;
+import com.google.android.exoplayer2.database.DatabaseProvider;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.cache.CacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+import com.google.android.exoplayer2.upstream.cache.FrequencyAwareCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks initializing a {@link SimpleCache} that holds 100 resources of 100 spans each, with
+ * different evictors. Each operation initializes and releases the cache.
+ *
+ * <p>None of the evictors needs to evict any of the spans, so the differences between them are the
+ * costs of being notified of the loaded spans.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SimpleCacheInitializationBenchmark {
+
+  private static final int KEY_COUNT = 100;
+  private static final int SPANS_PER_KEY = 100;
+  private static final int SPAN_LENGTH = 100;
+  private static final long MAX_CACHE_BYTES = 2L * KEY_COUNT * SPANS_PER_KEY * SPAN_LENGTH;
+
+  @Param({"NoOp", "LeastRecentlyUsed", "FrequencyAware"})
+  public String evictor;
+
+  @Param({"true", "false"})
+  public boolean parallelDirectoryScan;
+
+  private File cacheDir;
+  private DatabaseProvider databaseProvider;
+
+  @Setup
+  public void setUp() throws Exception {
+    cacheDir =
+        Util.createTempFile(ApplicationProvider.getApplicationContext(), "SimpleCacheInitBench");
+    cacheDir.delete();
+    cacheDir.mkdirs();
+    databaseProvider = TestUtil.getInMemoryDatabaseProvider();
+    SimpleCache simpleCache = new SimpleCache(cacheDir, new NoOpCacheEvictor(), databaseProvider);
+    byte[] data = new byte[SPAN_LENGTH];
+    for (int i = 0; i < KEY_COUNT; i++) {
+      String key = "key" + i;
+      for (int j = 0; j < SPANS_PER_KEY; j++) {
+        long position = (long) j * SPAN_LENGTH;
+        CacheSpan holeSpan = simpleCache.startReadWrite(key, position, LENGTH_UNSET);
+        File file = simpleCache.startFile(key, position, SPAN_LENGTH);
+        try (FileOutputStream outputStream = new FileOutputStream(file)) {
+          outputStream.write(data);
+        }
+        simpleCache.commitFile(file, SPAN_LENGTH);
+        simpleCache.releaseHoleSpan(holeSpan);
+      }
+    }
+    simpleCache.release();
+  }
+
+  @TearDown
+  public void tearDown() {
+    Util.recursiveDelete(cacheDir);
+  }
+
+  @Benchmark
+  public long initialize() {
+    SimpleCache simpleCache =
+        new SimpleCache(
+            cacheDir,
+            createEvictor(),
+            databaseProvider,
+            /* legacyIndexSecretKey= */ null,
+            /* legacyIndexEncrypt= */ false,
+            /* preferLegacyIndex= */ false,
+            parallelDirectoryScan);
+    try {
+      // Blocks until the cache has been initialized.
+      return simpleCache.getCacheSpace();
+    } finally {
+      simpleCache.release();
+    }
+  }
+
+  private CacheEvictor createEvictor() {
+    switch (evictor) {
+      case "LeastRecentlyUsed":
+        return new LeastRecentlyUsedCacheEvictor(MAX_CACHE_BYTES);
+      case "FrequencyAware":
+        return new FrequencyAwareCacheEvictor(MAX_CACHE_BYTES);
+      default:
+        return new NoOpCacheEvictor();
+    }
+  }
+}
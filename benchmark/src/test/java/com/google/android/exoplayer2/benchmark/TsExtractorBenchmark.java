@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.benchmark;
+
+import androidx.test.core.app.ApplicationProvider;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.ts.TsExtractor;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks demuxing transport streams with a {@link TsExtractor} in {@link
+ * TsExtractor#MODE_HLS}, as when loading HLS segments. The number of bytes demuxed per second is
+ * reported as the secondary result {@code bytes}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TsExtractorBenchmark {
+
+  @Param({"bbb_2500ms.ts", "sample_eac3.ts", "sample_h264_mpeg_audio.ts"})
+  public String file;
+
+  private byte[] data;
+
+  /** The number of bytes demuxed during an iteration. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters {
+
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      bytes = 0;
+    }
+  }
+
+  @Setup
+  public void setUp() throws IOException {
+    data = TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), "media/ts/" + file);
+  }
+
+  @Benchmark
+  public FakeExtractorOutput demux(Counters counters) throws IOException {
+    Extractor extractor =
+        new TsExtractor(
+            TsExtractor.MODE_HLS,
+            /* defaultTsPayloadReaderFlags= */ 0,
+            TsExtractor.DEFAULT_TIMESTAMP_SEARCH_BYTES);
+    FakeExtractorOutput output = new FakeExtractorOutput();
+    extractor.init(output);
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(data).build();
+    PositionHolder positionHolder = new PositionHolder();
+    while (extractor.read(input, positionHolder) == Extractor.RESULT_CONTINUE) {}
+    extractor.release();
+    counters.bytes += data.length;
+    return output;
+  }
+}
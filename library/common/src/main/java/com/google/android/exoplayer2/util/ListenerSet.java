@@ -22,7 +22,8 @@ import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.common.base.Supplier;
 import java.util.ArrayDeque;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.annotation.Nonnull;
 
 /**
@@ -32,7 +33,9 @@ import javax.annotation.Nonnull;
  * triggered recursively from another listener.
  *
  * <p>Events are also guaranteed to be only sent to the listeners registered at the time the event
- * was enqueued and haven't been removed since.
+ * was enqueued and haven't been removed since. The registered listeners are kept in an immutable
+ * array that is only replaced when a listener is added or removed, so that enqueuing an event does
+ * not need to copy the set of listeners.
  *
  * @param <T> The listener type.
  * @param <E> The {@link MutableFlags} type used to indicate which events occurred.
@@ -75,7 +78,8 @@ public final class ListenerSet<T, E extends MutableFlags> {
   private final HandlerWrapper handler;
   private final Supplier<E> eventFlagsSupplier;
   private final IterationFinishedEvent<T, E> iterationFinishedEvent;
-  private final CopyOnWriteArraySet<ListenerHolder<T, E>> listeners;
+  // Shared with copies of this set. The array is never modified, only replaced.
+  private final AtomicReference<ListenerHolder<T, E>[]> listeners;
   private final ArrayDeque<Runnable> flushingEvents;
   private final ArrayDeque<Runnable> queuedEvents;
 
@@ -98,7 +102,7 @@ public final class ListenerSet<T, E extends MutableFlags> {
       Supplier<E> eventFlagsSupplier,
       IterationFinishedEvent<T, E> iterationFinishedEvent) {
     this(
-        /* listeners= */ new CopyOnWriteArraySet<>(),
+        /* listeners= */ new AtomicReference<>(emptyHolderArray()),
         looper,
         clock,
         eventFlagsSupplier,
@@ -106,7 +110,7 @@ public final class ListenerSet<T, E extends MutableFlags> {
   }
 
   private ListenerSet(
-      CopyOnWriteArraySet<ListenerHolder<T, E>> listeners,
+      AtomicReference<ListenerHolder<T, E>[]> listeners,
       Looper looper,
       Clock clock,
       Supplier<E> eventFlagsSupplier,
@@ -145,11 +149,25 @@ public final class ListenerSet<T, E extends MutableFlags> {
    * @param listener The listener to be added.
    */
   public void add(T listener) {
-    if (released) {
-      return;
+    addInternal(listener, /* consumedEventFlags= */ null);
+  }
+
+  /**
+   * Adds a listener to the set that only receives events with one of the given flags.
+   *
+   * <p>Events reported without a flag are always sent to the listener. If a listener is already
+   * present, it will not be added again.
+   *
+   * @param listener The listener to be added.
+   * @param consumedEventFlags The flags of the events the listener consumes. The flags are copied,
+   *     so later changes to this instance have no effect.
+   */
+  public void add(T listener, MutableFlags consumedEventFlags) {
+    MutableFlags flagsCopy = new MutableFlags();
+    for (int i = 0; i < consumedEventFlags.size(); i++) {
+      flagsCopy.add(consumedEventFlags.get(i));
     }
-    Assertions.checkNotNull(listener);
-    listeners.add(new ListenerHolder<>(listener, eventFlagsSupplier));
+    addInternal(listener, flagsCopy);
   }
 
   /**
@@ -160,14 +178,37 @@ public final class ListenerSet<T, E extends MutableFlags> {
    * @param listener The listener to be removed.
    */
   public void remove(T listener) {
-    for (ListenerHolder<T, E> listenerHolder : listeners) {
-      if (listenerHolder.listener.equals(listener)) {
-        listenerHolder.release(iterationFinishedEvent);
-        listeners.remove(listenerHolder);
+    synchronized (listeners) {
+      ListenerHolder<T, E>[] holders = listeners.get();
+      for (int i = 0; i < holders.length; i++) {
+        if (holders[i].listener.equals(listener)) {
+          holders[i].release(iterationFinishedEvent);
+          ListenerHolder<T, E>[] newHolders = Arrays.copyOf(holders, holders.length - 1);
+          System.arraycopy(holders, i + 1, newHolders, i, holders.length - i - 1);
+          listeners.set(newHolders);
+          return;
+        }
       }
     }
   }
 
+  /**
+   * Returns whether at least one registered listener consumes events with the given flag.
+   *
+   * <p>Can be used to avoid creating the data for an event that no listener will receive.
+   *
+   * @param eventFlag An integer flag indicating the type of the event.
+   * @return Whether at least one listener consumes the event.
+   */
+  public boolean hasListenersFor(int eventFlag) {
+    for (ListenerHolder<T, E> holder : listeners.get()) {
+      if (holder.consumes(eventFlag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Adds an event that is sent to the listeners when {@link #flushEvents} is called.
    *
@@ -176,8 +217,10 @@ public final class ListenerSet<T, E extends MutableFlags> {
    * @param event The event.
    */
   public void queueEvent(int eventFlag, Event<T> event) {
-    CopyOnWriteArraySet<ListenerHolder<T, E>> listenerSnapshot =
-        new CopyOnWriteArraySet<>(listeners);
+    ListenerHolder<T, E>[] listenerSnapshot = listeners.get();
+    if (listenerSnapshot.length == 0) {
+      return;
+    }
     queuedEvents.add(
         () -> {
           for (ListenerHolder<T, E> holder : listenerSnapshot) {
@@ -226,10 +269,12 @@ public final class ListenerSet<T, E extends MutableFlags> {
    * <p>This will ensure no events are sent to any listener after this method has been called.
    */
   public void release() {
-    for (ListenerHolder<T, E> listenerHolder : listeners) {
-      listenerHolder.release(iterationFinishedEvent);
+    synchronized (listeners) {
+      for (ListenerHolder<T, E> listenerHolder : listeners.get()) {
+        listenerHolder.release(iterationFinishedEvent);
+      }
+      listeners.set(emptyHolderArray());
     }
-    listeners.clear();
     released = true;
   }
 
@@ -249,7 +294,7 @@ public final class ListenerSet<T, E extends MutableFlags> {
 
   private boolean handleMessage(Message message) {
     if (message.what == MSG_ITERATION_FINISHED) {
-      for (ListenerHolder<T, E> holder : listeners) {
+      for (ListenerHolder<T, E> holder : listeners.get()) {
         holder.iterationFinished(eventFlagsSupplier, iterationFinishedEvent);
         if (handler.hasMessages(MSG_ITERATION_FINISHED)) {
           // The invocation above triggered new events (and thus scheduled a new message). We need
@@ -268,19 +313,54 @@ public final class ListenerSet<T, E extends MutableFlags> {
     return true;
   }
 
+  private void addInternal(T listener, @Nullable MutableFlags consumedEventFlags) {
+    if (released) {
+      return;
+    }
+    Assertions.checkNotNull(listener);
+    synchronized (listeners) {
+      ListenerHolder<T, E>[] holders = listeners.get();
+      for (ListenerHolder<T, E> holder : holders) {
+        if (holder.listener.equals(listener)) {
+          return;
+        }
+      }
+      ListenerHolder<T, E>[] newHolders = Arrays.copyOf(holders, holders.length + 1);
+      newHolders[holders.length] =
+          new ListenerHolder<>(listener, eventFlagsSupplier, consumedEventFlags);
+      listeners.set(newHolders);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T, E extends MutableFlags> ListenerHolder<T, E>[] emptyHolderArray() {
+    return (ListenerHolder<T, E>[]) new ListenerHolder<?, ?>[0];
+  }
+
   private static final class ListenerHolder<T, E extends MutableFlags> {
 
     @Nonnull public final T listener;
+    @Nullable private final MutableFlags consumedEventFlags;
 
     private E eventsFlags;
     private boolean needsIterationFinishedEvent;
     private boolean released;
 
-    public ListenerHolder(@Nonnull T listener, Supplier<E> eventFlagSupplier) {
+    public ListenerHolder(
+        @Nonnull T listener,
+        Supplier<E> eventFlagSupplier,
+        @Nullable MutableFlags consumedEventFlags) {
       this.listener = listener;
+      this.consumedEventFlags = consumedEventFlags;
       this.eventsFlags = eventFlagSupplier.get();
     }
 
+    public boolean consumes(int eventFlag) {
+      return eventFlag == C.INDEX_UNSET
+          || consumedEventFlags == null
+          || consumedEventFlags.contains(eventFlag);
+    }
+
     public void release(IterationFinishedEvent<T, E> event) {
       released = true;
       if (needsIterationFinishedEvent) {
@@ -289,7 +369,7 @@ public final class ListenerSet<T, E extends MutableFlags> {
     }
 
     public void invoke(int eventFlag, Event<T> event) {
-      if (!released) {
+      if (!released && consumes(eventFlag)) {
         if (eventFlag != C.INDEX_UNSET) {
           eventsFlags.add(eventFlag);
         }
@@ -309,21 +389,5 @@ public final class ListenerSet<T, E extends MutableFlags> {
         event.invoke(listener, flagToNotify);
       }
     }
-
-    @Override
-    public boolean equals(@Nullable Object other) {
-      if (this == other) {
-        return true;
-      }
-      if (other == null || getClass() != other.getClass()) {
-        return false;
-      }
-      return listener.equals(((ListenerHolder<?, ?>) other).listener);
-    }
-
-    @Override
-    public int hashCode() {
-      return listener.hashCode();
-    }
   }
 }
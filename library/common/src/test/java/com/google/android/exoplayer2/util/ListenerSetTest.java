@@ -15,6 +15,7 @@
  */
 package com.google.android.exoplayer2.util;
 
+import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -408,6 +409,50 @@ public class ListenerSetTest {
     verifyNoMoreInteractions(listener);
   }
 
+  @Test
+  public void add_withConsumedEventFlags_onlySendsConsumedAndUnflaggedEvents() {
+    ListenerSet<TestListener, Flags> listenerSet =
+        new ListenerSet<>(
+            Looper.myLooper(), Clock.DEFAULT, Flags::new, TestListener::iterationFinished);
+    TestListener listener = mock(TestListener.class);
+    listenerSet.add(listener, Flags.create(EVENT_ID_1));
+
+    listenerSet.queueEvent(EVENT_ID_1, TestListener::callback1);
+    listenerSet.queueEvent(EVENT_ID_2, TestListener::callback2);
+    listenerSet.queueEvent(C.INDEX_UNSET, TestListener::callback3);
+    listenerSet.flushEvents();
+    ShadowLooper.runMainLooperToNextTask();
+
+    verify(listener).callback1();
+    verify(listener).callback3();
+    verify(listener).iterationFinished(Flags.create(EVENT_ID_1));
+    verifyNoMoreInteractions(listener);
+  }
+
+  @Test
+  public void hasListenersFor_returnsWhetherAnyListenerConsumesEvent() {
+    ListenerSet<TestListener, Flags> listenerSet =
+        new ListenerSet<>(
+            Looper.myLooper(), Clock.DEFAULT, Flags::new, TestListener::iterationFinished);
+    TestListener listener1 = mock(TestListener.class);
+    TestListener listener2 = mock(TestListener.class);
+
+    boolean hasListenersWhenEmpty = listenerSet.hasListenersFor(EVENT_ID_1);
+    listenerSet.add(listener1, Flags.create(EVENT_ID_1));
+    boolean hasListenersForConsumedEvent = listenerSet.hasListenersFor(EVENT_ID_1);
+    boolean hasListenersForOtherEvent = listenerSet.hasListenersFor(EVENT_ID_2);
+    listenerSet.add(listener2);
+    boolean hasListenersWithUnfilteredListener = listenerSet.hasListenersFor(EVENT_ID_2);
+    listenerSet.remove(listener2);
+    boolean hasListenersAfterRemoval = listenerSet.hasListenersFor(EVENT_ID_2);
+
+    assertThat(hasListenersWhenEmpty).isFalse();
+    assertThat(hasListenersForConsumedEvent).isTrue();
+    assertThat(hasListenersForOtherEvent).isFalse();
+    assertThat(hasListenersWithUnfilteredListener).isTrue();
+    assertThat(hasListenersAfterRemoval).isFalse();
+  }
+
   private interface TestListener {
     default void callback1() {}
 
@@ -16,10 +16,14 @@
 package com.google.android.exoplayer2.util;
 
 import static com.google.common.truth.Truth.assertThat;
+import static java.lang.Math.min;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -135,6 +139,28 @@ public final class NalUnitUtilTest {
     assertThat(data.separateColorPlaneFlag).isFalse();
   }
 
+  @Test
+  public void findNalUnit_splitAcrossArbitraryBoundaries_findsSameNalUnitsAsContiguousData() {
+    // Use data in which start codes, and partial start codes, are frequent.
+    Random random = new Random(/* seed= */ 0);
+    byte[] data = new byte[1000];
+    for (int i = 0; i < data.length; i++) {
+      int value = random.nextInt(8);
+      data[i] = (byte) (value < 3 ? 0 : value == 3 ? 1 : random.nextInt(256));
+    }
+    List<Integer> expectedPositions = new ArrayList<>();
+    for (int i = 0; i < data.length - 2; i++) {
+      if (data[i] == 0 && data[i + 1] == 0 && data[i + 2] == 1) {
+        expectedPositions.add(i);
+        i += 2;
+      }
+    }
+
+    for (int chunkLength : new int[] {1, 2, 3, 4, 5, 7, 184, data.length}) {
+      assertThat(findNalUnitPositions(data, chunkLength)).isEqualTo(expectedPositions);
+    }
+  }
+
   @Test
   public void unescapeDoesNotModifyBuffersWithoutStartCodes() {
     assertUnescapeDoesNotModify("");
@@ -186,6 +212,29 @@ public final class NalUnitUtilTest {
     assertThat(flags[0] || flags[1] || flags[2]).isEqualTo(false);
   }
 
+  /**
+   * Returns the positions of the NAL units in {@code data}, found by passing it to {@link
+   * NalUnitUtil#findNalUnit(byte[], int, int, boolean[])} in chunks of {@code chunkLength} bytes.
+   */
+  private static List<Integer> findNalUnitPositions(byte[] data, int chunkLength) {
+    List<Integer> positions = new ArrayList<>();
+    boolean[] prefixFlags = new boolean[3];
+    for (int chunkStart = 0; chunkStart < data.length; chunkStart += chunkLength) {
+      int chunkEnd = min(chunkStart + chunkLength, data.length);
+      int offset = chunkStart;
+      while (true) {
+        // The NAL unit may start in a previous chunk, in which case its position is before offset.
+        int nalUnitPosition = NalUnitUtil.findNalUnit(data, offset, chunkEnd, prefixFlags);
+        if (nalUnitPosition == chunkEnd) {
+          break;
+        }
+        positions.add(nalUnitPosition);
+        offset = nalUnitPosition + 3;
+      }
+    }
+    return positions;
+  }
+
   private static void assertUnescapeDoesNotModify(String input) {
     assertUnescapeMatchesExpected(input, input);
   }
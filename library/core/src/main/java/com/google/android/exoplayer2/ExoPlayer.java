@@ -163,6 +163,8 @@ public interface ExoPlayer extends Player {
     private boolean buildCalled;
 
     private long setForegroundModeTimeoutMs;
+    private boolean dynamicSchedulingEnabled;
+    @Nullable private PlaybackThreadPool playbackThreadPool;
 
     /**
      * Creates a builder with a list of {@link Renderer Renderers}.
@@ -244,6 +246,38 @@ public interface ExoPlayer extends Player {
       return this;
     }
 
+    /**
+     * Sets whether the player's playback loop is scheduled dynamically while playing. If enabled,
+     * the loop runs when the first of the enabled renderers needs to make progress, as reported by
+     * {@link Renderer#getDurationToProgressUs(long, long)}, rather than at a fixed interval. This
+     * reduces the number of wakeups, and so the power consumption, when rendering is not needed
+     * as often. It has no effect while buffering or paused.
+     *
+     * <p>This method is experimental, and will be renamed or removed in a future release.
+     *
+     * @param dynamicSchedulingEnabled Whether to enable dynamic scheduling.
+     */
+    public Builder experimentalSetDynamicSchedulingEnabled(boolean dynamicSchedulingEnabled) {
+      this.dynamicSchedulingEnabled = dynamicSchedulingEnabled;
+      return this;
+    }
+
+    /**
+     * Sets a {@link PlaybackThreadPool} whose threads run the player's internal playback loop,
+     * rather than a thread owned by the player. Sharing a pool between many players bounds the
+     * number of playback threads they use. The default is null.
+     *
+     * @param playbackThreadPool A {@link PlaybackThreadPool}, or null to use a playback thread
+     *     owned by the player.
+     * @return This builder.
+     * @throws IllegalStateException If {@link #build()} has already been called.
+     */
+    public Builder setPlaybackThreadPool(@Nullable PlaybackThreadPool playbackThreadPool) {
+      Assertions.checkState(!buildCalled);
+      this.playbackThreadPool = playbackThreadPool;
+      return this;
+    }
+
     /**
      * Sets the {@link TrackSelector} that will be used by the player.
      *
@@ -440,11 +474,13 @@ public interface ExoPlayer extends Player {
               pauseAtEndOfMediaItems,
               clock,
               looper,
+              playbackThreadPool,
               /* wrappingPlayer= */ null);
 
       if (setForegroundModeTimeoutMs > 0) {
         player.experimentalSetForegroundModeTimeoutMs(setForegroundModeTimeoutMs);
       }
+      player.experimentalSetDynamicSchedulingEnabled(dynamicSchedulingEnabled);
       return player;
     }
   }
@@ -119,6 +119,8 @@ import java.util.List;
    * @param clock The {@link Clock}.
    * @param applicationLooper The {@link Looper} that must be used for all calls to the player and
    *     which is used to call listeners on.
+   * @param playbackThreadPool The {@link PlaybackThreadPool} providing the playback thread, or null
+   *     to use a playback thread owned by the player.
    * @param wrappingPlayer The {@link Player} wrapping this one if applicable. This player instance
    *     should be used for all externally visible callbacks.
    */
@@ -137,6 +139,7 @@ import java.util.List;
       boolean pauseAtEndOfMediaItems,
       Clock clock,
       Looper applicationLooper,
+      @Nullable PlaybackThreadPool playbackThreadPool,
       @Nullable Player wrappingPlayer) {
     Log.i(
         TAG,
@@ -200,6 +203,7 @@ import java.util.List;
             releaseTimeoutMs,
             pauseAtEndOfMediaItems,
             applicationLooper,
+            playbackThreadPool,
             clock,
             playbackInfoUpdateListener);
   }
@@ -218,6 +222,19 @@ import java.util.List;
     internalPlayer.experimentalSetForegroundModeTimeoutMs(timeoutMs);
   }
 
+  /**
+   * Sets whether the playback loop is scheduled dynamically while playing, based on when the
+   * renderers next need to make progress, rather than at a fixed interval.
+   *
+   * <p>This method is experimental, and will be renamed or removed in a future release. It should
+   * only be called before the player is used.
+   *
+   * @param dynamicSchedulingEnabled Whether to enable dynamic scheduling.
+   */
+  public void experimentalSetDynamicSchedulingEnabled(boolean dynamicSchedulingEnabled) {
+    internalPlayer.experimentalSetDynamicSchedulingEnabled(dynamicSchedulingEnabled);
+  }
+
   @Override
   public void experimentalSetOffloadSchedulingEnabled(boolean offloadSchedulingEnabled) {
     internalPlayer.experimentalSetOffloadSchedulingEnabled(offloadSchedulingEnabled);
@@ -146,6 +146,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
   private static final int MSG_SET_PAUSE_AT_END_OF_WINDOW = 23;
   private static final int MSG_SET_OFFLOAD_SCHEDULING_ENABLED = 24;
   private static final int MSG_ATTEMPT_ERROR_RECOVERY = 25;
+  private static final int MSG_SET_DYNAMIC_SCHEDULING_ENABLED = 26;
 
   private static final int ACTIVE_INTERVAL_MS = 10;
   private static final int IDLE_INTERVAL_MS = 1000;
@@ -166,7 +167,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
   private final LoadControl loadControl;
   private final BandwidthMeter bandwidthMeter;
   private final HandlerWrapper handler;
-  private final HandlerThread internalPlaybackThread;
+  @Nullable private final HandlerThread internalPlaybackThread;
+  @Nullable private final PlaybackThreadPool playbackThreadPool;
   private final Looper playbackLooper;
   private final Timeline.Window window;
   private final Timeline.Period period;
@@ -196,6 +198,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
   private boolean foregroundMode;
   private boolean requestForRendererSleep;
   private boolean offloadSchedulingEnabled;
+  private boolean dynamicSchedulingEnabled;
 
   private int enabledRendererCount;
   @Nullable private SeekPosition pendingInitialSeekPosition;
@@ -220,6 +223,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
       long releaseTimeoutMs,
       boolean pauseAtEndOfWindow,
       Looper applicationLooper,
+      @Nullable PlaybackThreadPool playbackThreadPool,
       Clock clock,
       PlaybackInfoUpdateListener playbackInfoUpdateListener) {
     this.playbackInfoUpdateListener = playbackInfoUpdateListener;
@@ -259,11 +263,18 @@ import java.util.concurrent.atomic.AtomicBoolean;
     queue = new MediaPeriodQueue(analyticsCollector, eventHandler);
     mediaSourceList = new MediaSourceList(/* listener= */ this, analyticsCollector, eventHandler);
 
-    // Note: The documentation for Process.THREAD_PRIORITY_AUDIO that states "Applications can
-    // not normally change to this priority" is incorrect.
-    internalPlaybackThread = new HandlerThread("ExoPlayer:Playback", Process.THREAD_PRIORITY_AUDIO);
-    internalPlaybackThread.start();
-    playbackLooper = internalPlaybackThread.getLooper();
+    this.playbackThreadPool = playbackThreadPool;
+    if (playbackThreadPool != null) {
+      internalPlaybackThread = null;
+      playbackLooper = playbackThreadPool.obtainLooper();
+    } else {
+      // Note: The documentation for Process.THREAD_PRIORITY_AUDIO that states "Applications can
+      // not normally change to this priority" is incorrect.
+      internalPlaybackThread =
+          new HandlerThread("ExoPlayer:Playback", Process.THREAD_PRIORITY_AUDIO);
+      internalPlaybackThread.start();
+      playbackLooper = internalPlaybackThread.getLooper();
+    }
     handler = clock.createHandler(playbackLooper, this);
   }
 
@@ -271,6 +282,13 @@ import java.util.concurrent.atomic.AtomicBoolean;
     this.setForegroundModeTimeoutMs = setForegroundModeTimeoutMs;
   }
 
+  public void experimentalSetDynamicSchedulingEnabled(boolean dynamicSchedulingEnabled) {
+    handler
+        .obtainMessage(
+            MSG_SET_DYNAMIC_SCHEDULING_ENABLED, dynamicSchedulingEnabled ? 1 : 0, /* unused */ 0)
+        .sendToTarget();
+  }
+
   public void experimentalSetOffloadSchedulingEnabled(boolean offloadSchedulingEnabled) {
     handler
         .obtainMessage(
@@ -367,7 +385,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
   @Override
   public synchronized void sendMessage(PlayerMessage message) {
-    if (released || !internalPlaybackThread.isAlive()) {
+    if (released || !playbackLooper.getThread().isAlive()) {
       Log.w(TAG, "Ignoring messages sent after release.");
       message.markAsProcessed(/* isDelivered= */ false);
       return;
@@ -382,7 +400,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
    * @return Whether the operations succeeded. If false, the operation timed out.
    */
   public synchronized boolean setForegroundMode(boolean foregroundMode) {
-    if (released || !internalPlaybackThread.isAlive()) {
+    if (released || !playbackLooper.getThread().isAlive()) {
       return true;
     }
     if (foregroundMode) {
@@ -404,7 +422,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
    * @return Whether the release succeeded. If false, the release timed out.
    */
   public synchronized boolean release() {
-    if (released || !internalPlaybackThread.isAlive()) {
+    if (released || !playbackLooper.getThread().isAlive()) {
       return true;
     }
     handler.sendEmptyMessage(MSG_RELEASE);
@@ -537,6 +555,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
         case MSG_ATTEMPT_ERROR_RECOVERY:
           attemptErrorRecovery((ExoPlaybackException) msg.obj);
           break;
+        case MSG_SET_DYNAMIC_SCHEDULING_ENABLED:
+          setDynamicSchedulingEnabledInternal(msg.arg1 == 1);
+          break;
         case MSG_RELEASE:
           releaseInternal();
           // Return immediately to not send playback info updates after release.
@@ -783,6 +804,18 @@ import java.util.concurrent.atomic.AtomicBoolean;
     }
   }
 
+  private void setDynamicSchedulingEnabledInternal(boolean dynamicSchedulingEnabled) {
+    if (dynamicSchedulingEnabled == this.dynamicSchedulingEnabled) {
+      return;
+    }
+    this.dynamicSchedulingEnabled = dynamicSchedulingEnabled;
+    @Player.State int state = playbackInfo.playbackState;
+    if (!dynamicSchedulingEnabled && state != Player.STATE_ENDED && state != Player.STATE_IDLE) {
+      // Replace a wake-up that may have been delayed based on the renderers' progress.
+      handler.sendEmptyMessage(MSG_DO_SOME_WORK);
+    }
+  }
+
   private void setRepeatModeInternal(@Player.RepeatMode int repeatMode)
       throws ExoPlaybackException {
     this.repeatMode = repeatMode;
@@ -936,6 +969,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
     boolean renderersEnded = true;
     boolean renderersAllowPlayback = true;
+    long renderersDurationToProgressUs = Long.MAX_VALUE;
     if (playingPeriodHolder.prepared) {
       long rendererPositionElapsedRealtimeUs = SystemClock.elapsedRealtime() * 1000;
       playingPeriodHolder.mediaPeriod.discardBuffer(
@@ -945,10 +979,14 @@ import java.util.concurrent.atomic.AtomicBoolean;
         if (!isRendererEnabled(renderer)) {
           continue;
         }
-        // TODO: Each renderer should return the maximum delay before which it wishes to be called
-        // again. The minimum of these values should then be used as the delay before the next
-        // invocation of this method.
         renderer.render(rendererPositionUs, rendererPositionElapsedRealtimeUs);
+        if (dynamicSchedulingEnabled) {
+          renderersDurationToProgressUs =
+              min(
+                  renderersDurationToProgressUs,
+                  renderer.getDurationToProgressUs(
+                      rendererPositionUs, rendererPositionElapsedRealtimeUs));
+        }
         renderersEnded = renderersEnded && renderer.isEnded();
         // Determine whether the renderer allows playback to continue. Playback can continue if the
         // renderer is ready or ended. Also continue playback if the renderer is reading ahead into
@@ -1024,8 +1062,13 @@ import java.util.concurrent.atomic.AtomicBoolean;
     }
 
     boolean sleepingForOffload = false;
-    if ((shouldPlayWhenReady() && playbackInfo.playbackState == Player.STATE_READY)
-        || playbackInfo.playbackState == Player.STATE_BUFFERING) {
+    if (shouldPlayWhenReady() && playbackInfo.playbackState == Player.STATE_READY) {
+      long activeIntervalMs =
+          dynamicSchedulingEnabled && renderersDurationToProgressUs != Long.MAX_VALUE
+              ? min(C.usToMs(renderersDurationToProgressUs), IDLE_INTERVAL_MS)
+              : ACTIVE_INTERVAL_MS;
+      sleepingForOffload = !maybeScheduleWakeup(operationStartTimeMs, activeIntervalMs);
+    } else if (playbackInfo.playbackState == Player.STATE_BUFFERING) {
       sleepingForOffload = !maybeScheduleWakeup(operationStartTimeMs, ACTIVE_INTERVAL_MS);
     } else if (enabledRendererCount != 0 && playbackInfo.playbackState != Player.STATE_ENDED) {
       scheduleNextWork(operationStartTimeMs, IDLE_INTERVAL_MS);
@@ -1332,7 +1375,13 @@ import java.util.concurrent.atomic.AtomicBoolean;
         /* resetError= */ false);
     loadControl.onReleased();
     setState(Player.STATE_IDLE);
-    internalPlaybackThread.quit();
+    if (internalPlaybackThread != null) {
+      internalPlaybackThread.quit();
+    } else {
+      // The thread is shared with other players, so only drop the messages of this player.
+      handler.removeCallbacksAndMessages(/* token= */ null);
+      Assertions.checkNotNull(playbackThreadPool).releaseLooper(playbackLooper);
+    }
     synchronized (this) {
       released = true;
       notifyAll();
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.util.Assertions;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+
+/**
+ * A bounded pool of playback threads that can be shared by many players.
+ *
+ * <p>By default each player runs its internal playback loop on a thread of its own. Players built
+ * with the same pool share its threads instead, which reduces the number of threads and the
+ * context switching between them when many players are used at the same time. Each player is
+ * assigned to the thread with the fewest players when it's created, and keeps using that thread
+ * until it's released, so the order in which a player handles its operations is unchanged.
+ *
+ * <p>Threads are started when they're first needed, and stopped when the last player using them is
+ * released.
+ */
+public final class PlaybackThreadPool {
+
+  private final @NullableType HandlerThread[] threads;
+  private final int[] playerCounts;
+
+  /**
+   * Creates an instance.
+   *
+   * @param maxThreadCount The maximum number of playback threads.
+   */
+  public PlaybackThreadPool(int maxThreadCount) {
+    Assertions.checkArgument(maxThreadCount > 0);
+    threads = new HandlerThread[maxThreadCount];
+    playerCounts = new int[maxThreadCount];
+  }
+
+  /** Returns the maximum number of playback threads. */
+  public int getMaxThreadCount() {
+    return threads.length;
+  }
+
+  /** Returns the number of playback threads that are currently running. */
+  public synchronized int getThreadCount() {
+    int threadCount = 0;
+    for (HandlerThread thread : threads) {
+      if (thread != null) {
+        threadCount++;
+      }
+    }
+    return threadCount;
+  }
+
+  /**
+   * Obtains the {@link Looper} of the playback thread with the fewest players, starting the thread
+   * if needed. Must be balanced with a call to {@link #releaseLooper(Looper)}.
+   */
+  /* package */ synchronized Looper obtainLooper() {
+    int index = 0;
+    for (int i = 1; i < playerCounts.length; i++) {
+      if (playerCounts[i] < playerCounts[index]) {
+        index = i;
+      }
+    }
+    @Nullable HandlerThread thread = threads[index];
+    if (thread == null) {
+      thread = new HandlerThread("ExoPlayer:Playback:" + index, Process.THREAD_PRIORITY_AUDIO);
+      thread.start();
+      threads[index] = thread;
+    }
+    playerCounts[index]++;
+    return thread.getLooper();
+  }
+
+  /**
+   * Releases a {@link Looper} obtained from {@link #obtainLooper()}, stopping its thread if it's
+   * no longer used by any player.
+   */
+  /* package */ synchronized void releaseLooper(Looper looper) {
+    for (int i = 0; i < threads.length; i++) {
+      @Nullable HandlerThread thread = threads[i];
+      if (thread != null && thread.getLooper() == looper) {
+        playerCounts[i]--;
+        if (playerCounts[i] == 0) {
+          thread.quit();
+          threads[i] = null;
+        }
+        return;
+      }
+    }
+    throw new IllegalStateException();
+  }
+}
@@ -440,6 +440,34 @@ public interface Renderer extends PlayerMessage.Target {
    */
   void render(long positionUs, long elapsedRealtimeUs) throws ExoPlaybackException;
 
+  /**
+   * The default duration until a renderer needs {@link #render(long, long)} to be called again, in
+   * microseconds. Used by renderers that can't tell when they'll next be able to make progress.
+   */
+  long DEFAULT_DURATION_TO_PROGRESS_US = 10_000;
+
+  /**
+   * Returns the duration until the renderer needs {@link #render(long, long)} to be called again to
+   * make progress, in microseconds. Called after each call to {@link #render(long, long)} while
+   * playing, if the player schedules its playback loop dynamically.
+   *
+   * <p>The renderer may be rendered earlier than requested, for example if another renderer needs
+   * to make progress sooner. Renderers can also request an earlier call by notifying {@link
+   * WakeupListener#onWakeup()}.
+   *
+   * <p>The default implementation returns {@link #DEFAULT_DURATION_TO_PROGRESS_US}.
+   *
+   * @param positionUs The current media time in microseconds, measured at the start of the current
+   *     iteration of the rendering loop.
+   * @param elapsedRealtimeUs {@link android.os.SystemClock#elapsedRealtime()} in microseconds,
+   *     measured at the start of the current iteration of the rendering loop.
+   * @return The duration until {@link #render(long, long)} needs to be called again, in
+   *     microseconds.
+   */
+  default long getDurationToProgressUs(long positionUs, long elapsedRealtimeUs) {
+    return DEFAULT_DURATION_TO_PROGRESS_US;
+  }
+
   /**
    * Whether the renderer is able to immediately render media from the current position.
    * <p>
@@ -117,6 +117,8 @@ public class SimpleExoPlayer extends BasePlayer
     private long releaseTimeoutMs;
     private long detachSurfaceTimeoutMs;
     private boolean pauseAtEndOfMediaItems;
+    private boolean dynamicSchedulingEnabled;
+    @Nullable private PlaybackThreadPool playbackThreadPool;
     private boolean buildCalled;
 
     /**
@@ -518,6 +520,41 @@ public class SimpleExoPlayer extends BasePlayer
       return this;
     }
 
+    /**
+     * Sets whether the player's playback loop is scheduled dynamically while playing. If enabled,
+     * the loop runs when the first of the enabled renderers needs to make progress, as reported by
+     * {@link Renderer#getDurationToProgressUs(long, long)}, rather than at a fixed interval. This
+     * reduces the number of wakeups, and so the power consumption, when rendering is not needed
+     * as often. It has no effect while buffering or paused.
+     *
+     * <p>This method is experimental, and will be renamed or removed in a future release.
+     *
+     * @param dynamicSchedulingEnabled Whether to enable dynamic scheduling.
+     * @return This builder.
+     * @throws IllegalStateException If {@link #build()} has already been called.
+     */
+    public Builder experimentalSetDynamicSchedulingEnabled(boolean dynamicSchedulingEnabled) {
+      Assertions.checkState(!buildCalled);
+      this.dynamicSchedulingEnabled = dynamicSchedulingEnabled;
+      return this;
+    }
+
+    /**
+     * Sets a {@link PlaybackThreadPool} whose threads run the player's internal playback loop,
+     * rather than a thread owned by the player. Sharing a pool between many players bounds the
+     * number of playback threads they use. The default is null.
+     *
+     * @param playbackThreadPool A {@link PlaybackThreadPool}, or null to use a playback thread
+     *     owned by the player.
+     * @return This builder.
+     * @throws IllegalStateException If {@link #build()} has already been called.
+     */
+    public Builder setPlaybackThreadPool(@Nullable PlaybackThreadPool playbackThreadPool) {
+      Assertions.checkState(!buildCalled);
+      this.playbackThreadPool = playbackThreadPool;
+      return this;
+    }
+
     /**
      * Sets the {@link LivePlaybackSpeedControl} that will control the playback speed when playing
      * live streams, in order to maintain a steady target offset from the live stream edge.
@@ -683,7 +720,9 @@ public class SimpleExoPlayer extends BasePlayer
             builder.pauseAtEndOfMediaItems,
             builder.clock,
             builder.looper,
+            builder.playbackThreadPool,
             /* wrappingPlayer= */ this);
+    player.experimentalSetDynamicSchedulingEnabled(builder.dynamicSchedulingEnabled);
     player.addListener(componentListener);
 
     audioBecomingNoisyManager =
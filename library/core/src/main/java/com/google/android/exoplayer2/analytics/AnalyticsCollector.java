@@ -49,6 +49,7 @@ import com.google.android.exoplayer2.upstream.BandwidthMeter;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Clock;
 import com.google.android.exoplayer2.util.ListenerSet;
+import com.google.android.exoplayer2.util.MutableFlags;
 import com.google.android.exoplayer2.util.Util;
 import com.google.android.exoplayer2.video.VideoRendererEventListener;
 import com.google.common.base.Objects;
@@ -111,6 +112,28 @@ public class AnalyticsCollector
     listeners.add(listener);
   }
 
+  /**
+   * Adds a listener for analytics events that only consumes events of the given types.
+   *
+   * <p>Events of other types are not sent to the listener and, for frequently reported events, are
+   * not generated at all if no other listener consumes them. Events without a type, for example
+   * {@link AnalyticsListener#onSeekStarted}, are always sent.
+   *
+   * @param listener The listener to add.
+   * @param consumedEvents The {@link AnalyticsListener.EventFlags} of the events the listener
+   *     consumes.
+   */
+  @CallSuper
+  public void addListener(
+      AnalyticsListener listener, @AnalyticsListener.EventFlags int... consumedEvents) {
+    Assertions.checkNotNull(listener);
+    MutableFlags consumedEventFlags = new MutableFlags();
+    for (int consumedEvent : consumedEvents) {
+      consumedEventFlags.add(consumedEvent);
+    }
+    listeners.add(listener, consumedEventFlags);
+  }
+
   /**
    * Removes a previously added analytics event listener.
    *
@@ -396,6 +419,9 @@ public class AnalyticsCollector
 
   @Override
   public final void onDroppedFrames(int count, long elapsedMs) {
+    if (!listeners.hasListenersFor(AnalyticsListener.EVENT_DROPPED_VIDEO_FRAMES)) {
+      return;
+    }
     EventTime eventTime = generatePlayingMediaPeriodEventTime();
     sendEvent(
         eventTime,
@@ -448,6 +474,9 @@ public class AnalyticsCollector
 
   @Override
   public final void onVideoFrameProcessingOffset(long totalProcessingOffsetUs, int frameCount) {
+    if (!listeners.hasListenersFor(AnalyticsListener.EVENT_VIDEO_FRAME_PROCESSING_OFFSET)) {
+      return;
+    }
     EventTime eventTime = generatePlayingMediaPeriodEventTime();
     sendEvent(
         eventTime,
@@ -496,6 +525,9 @@ public class AnalyticsCollector
       @Nullable MediaPeriodId mediaPeriodId,
       LoadEventInfo loadEventInfo,
       MediaLoadData mediaLoadData) {
+    if (!listeners.hasListenersFor(AnalyticsListener.EVENT_LOAD_COMPLETED)) {
+      return;
+    }
     EventTime eventTime = generateMediaPeriodEventTime(windowIndex, mediaPeriodId);
     sendEvent(
         eventTime,
@@ -719,6 +751,9 @@ public class AnalyticsCollector
 
   @Override
   public final void onBandwidthSample(int elapsedMs, long bytes, long bitrate) {
+    if (!listeners.hasListenersFor(AnalyticsListener.EVENT_BANDWIDTH_ESTIMATE)) {
+      return;
+    }
     EventTime eventTime = generateLoadingMediaPeriodEventTime();
     sendEvent(
         eventTime,
@@ -27,6 +27,7 @@ import android.media.MediaCodec;
 import android.media.MediaCrypto;
 import android.media.MediaFormat;
 import android.os.Handler;
+import android.os.SystemClock;
 import androidx.annotation.CallSuper;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
@@ -102,6 +103,7 @@ public class MediaCodecAudioRenderer extends MediaCodecRenderer implements Media
   private boolean allowFirstBufferPositionDiscontinuity;
   private boolean allowPositionDiscontinuity;
   private boolean audioSinkNeedsReset;
+  private long nextBufferToWritePresentationTimeUs;
 
   private boolean experimentalKeepAudioTrackOnSeek;
 
@@ -241,6 +243,7 @@ public class MediaCodecAudioRenderer extends MediaCodecRenderer implements Media
     this.audioSink = audioSink;
     eventDispatcher = new EventDispatcher(eventHandler, eventListener);
     audioSink.setListener(new AudioSinkListener());
+    nextBufferToWritePresentationTimeUs = C.TIME_UNSET;
   }
 
   @Override
@@ -503,10 +506,24 @@ public class MediaCodecAudioRenderer extends MediaCodecRenderer implements Media
     }
 
     currentPositionUs = positionUs;
+    nextBufferToWritePresentationTimeUs = C.TIME_UNSET;
     allowFirstBufferPositionDiscontinuity = true;
     allowPositionDiscontinuity = true;
   }
 
+  @Override
+  public long getDurationToProgressUs(long positionUs, long elapsedRealtimeUs) {
+    if (getState() != STATE_STARTED || nextBufferToWritePresentationTimeUs == C.TIME_UNSET) {
+      return DEFAULT_DURATION_TO_PROGRESS_US;
+    }
+    // The audio sink is full. Come back when half of the audio it holds has been played out, so
+    // that there's plenty of headroom left to refill it.
+    long durationUs =
+        (long) ((nextBufferToWritePresentationTimeUs - positionUs) / getPlaybackSpeed() / 2);
+    durationUs -= SystemClock.elapsedRealtime() * 1000 - elapsedRealtimeUs;
+    return max(DEFAULT_DURATION_TO_PROGRESS_US, durationUs);
+  }
+
   @Override
   protected void onStarted() {
     super.onStarted();
@@ -523,6 +540,7 @@ public class MediaCodecAudioRenderer extends MediaCodecRenderer implements Media
   @Override
   protected void onDisabled() {
     audioSinkNeedsReset = true;
+    nextBufferToWritePresentationTimeUs = C.TIME_UNSET;
     try {
       audioSink.flush();
     } finally {
@@ -639,9 +657,11 @@ public class MediaCodecAudioRenderer extends MediaCodecRenderer implements Media
         codec.releaseOutputBuffer(bufferIndex, false);
       }
       decoderCounters.renderedOutputBufferCount += sampleCount;
+      nextBufferToWritePresentationTimeUs = C.TIME_UNSET;
       return true;
     }
 
+    nextBufferToWritePresentationTimeUs = bufferPresentationTimeUs;
     return false;
   }
 
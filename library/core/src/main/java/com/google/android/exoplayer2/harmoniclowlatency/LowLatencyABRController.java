@@ -38,6 +38,12 @@ abrController.start();
 player.prepare(curMediaSource!!)
 
  */
+/**
+ * @deprecated Use a {@link LowLatencyAdaptiveTrackSelection.Factory} as the track selection factory
+ *     of the {@link LowLatencyTrackSelector} instead. This controller only reacts to stalls, polls
+ *     with {@link Timer} threads and always adapts the tracks of renderer 0.
+ */
+@Deprecated
 public final class LowLatencyABRController {
     private int currentSelectedBitrate;
     private final int videoRendererIndex;
@@ -0,0 +1,656 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.harmoniclowlatency;
+
+import androidx.annotation.CallSuper;
+import androidx.annotation.IntDef;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.source.MediaSource.MediaPeriodId;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.source.chunk.Chunk;
+import com.google.android.exoplayer2.source.chunk.MediaChunk;
+import com.google.android.exoplayer2.source.chunk.MediaChunkIterator;
+import com.google.android.exoplayer2.trackselection.BaseTrackSelection;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
+import com.google.android.exoplayer2.trackselection.FixedTrackSelection;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.PrefetchingDataSource;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.SlidingPercentile;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.Iterables;
+import java.io.IOException;
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+
+/**
+ * An adaptive {@link ExoTrackSelection} for low-latency live streams.
+ *
+ * <p>The selection is re-evaluated on the playback thread whenever the player is about to load the
+ * next chunk. The ideal track is the one of highest quality that fits in a throughput estimate
+ * derived from the download timings of the loaded {@link MediaChunk MediaChunks}, reduced for each
+ * rebuffer in the recent past. A load is timed from the update right before it is started until
+ * {@link #onChunkLoadCompleted(Chunk)}, so that the time for which loading is paused isn't counted.
+ * The buffered duration is compared with the target live offset to decide whether a switch to the
+ * ideal track is safe, and to step down a quality level when the buffer is close to running out.
+ *
+ * <p>Chunks delivered with chunked transfer encoding at the live edge are loaded at the rate at
+ * which the packager produces them, so their load duration is close to their media duration
+ * however fast the network is. Throughput samples from such paced chunks are only used to raise
+ * the estimate, never to lower it.
+ *
+ * <p>Chunks whose data doesn't come from the network when they're loaded don't yield throughput
+ * samples. These are chunks whose data was prefetched by a {@link PrefetchingDataSource} for which
+ * the {@link Factory} is set as {@link PrefetchingDataSource.Listener}, and chunks that load faster
+ * than a network round trip, which are read from a cache.
+ */
+public class LowLatencyAdaptiveTrackSelection extends BaseTrackSelection {
+
+    /** Listener for the decisions of a {@link LowLatencyAdaptiveTrackSelection}. */
+    public interface EventListener {
+
+        /**
+         * Called on the playback thread when a throughput sample is taken from a loaded chunk.
+         *
+         * @param bytesLoaded The number of bytes loaded for the chunk.
+         * @param loadDurationMs The time taken to load the chunk, in milliseconds.
+         * @param paced Whether the chunk was loaded at the rate at which it was produced.
+         * @param bitrateEstimate The throughput estimate after the sample, in bits per second.
+         */
+        default void onThroughputSample(
+                long bytesLoaded, long loadDurationMs, boolean paced, long bitrateEstimate) {}
+
+        /**
+         * Called on the playback thread when the selected track changes.
+         *
+         * @param previousFormat The previously selected {@link Format}, or null for the initial
+         *     selection.
+         * @param selectedFormat The newly selected {@link Format}.
+         * @param decisionReason The {@link DecisionReason} for the change.
+         * @param bitrateEstimate The throughput estimate, in bits per second.
+         * @param bufferedDurationUs The buffered duration, in microseconds.
+         * @param targetLiveOffsetUs The target live offset, in microseconds.
+         * @param recentRebufferCount The number of rebuffers in the rebuffer history.
+         */
+        default void onSelectionDecision(
+                @Nullable Format previousFormat,
+                Format selectedFormat,
+                @DecisionReason int decisionReason,
+                long bitrateEstimate,
+                long bufferedDurationUs,
+                long targetLiveOffsetUs,
+                int recentRebufferCount) {}
+    }
+
+    /**
+     * Factory for {@link LowLatencyAdaptiveTrackSelection} instances.
+     *
+     * <p>If the factory is set as the {@link PrefetchingDataSource.Listener} of the data sources
+     * from which chunks are loaded, the selections don't take throughput samples from chunks whose
+     * data was prefetched.
+     */
+    public static class Factory
+            implements ExoTrackSelection.Factory, PrefetchingDataSource.Listener {
+
+        private final int defaultTargetLiveOffsetMs;
+        private final float bandwidthFraction;
+        private final float minBufferFractionForQualityIncrease;
+        private final float lowBufferFraction;
+        private final int rebufferHistoryMs;
+        @Nullable private final EventListener eventListener;
+        private final Clock clock;
+        private final PrefetchHistory prefetchHistory;
+
+        /** Creates a factory with default parameters. */
+        public Factory() {
+            this(/* eventListener= */ null);
+        }
+
+        /**
+         * Creates a factory with default parameters.
+         *
+         * @param eventListener An optional {@link EventListener} for the selection decisions.
+         */
+        public Factory(@Nullable EventListener eventListener) {
+            this(
+                    DEFAULT_TARGET_LIVE_OFFSET_MS,
+                    DEFAULT_BANDWIDTH_FRACTION,
+                    DEFAULT_MIN_BUFFER_FRACTION_FOR_QUALITY_INCREASE,
+                    DEFAULT_LOW_BUFFER_FRACTION,
+                    DEFAULT_REBUFFER_HISTORY_MS,
+                    eventListener,
+                    Clock.DEFAULT);
+        }
+
+        /**
+         * Creates a factory.
+         *
+         * @param defaultTargetLiveOffsetMs The target live offset to use when the media doesn't
+         *     define one, in milliseconds.
+         * @param bandwidthFraction The fraction of the throughput estimate that the selection
+         *     should consider available for use.
+         * @param minBufferFractionForQualityIncrease The minimum buffered duration, as a fraction
+         *     of the target live offset, required to switch to a track of higher quality.
+         * @param lowBufferFraction The buffered duration, as a fraction of the target live offset,
+         *     below which the selection steps down one quality level.
+         * @param rebufferHistoryMs The duration for which a rebuffer reduces the bandwidth
+         *     considered available, in milliseconds.
+         * @param eventListener An optional {@link EventListener} for the selection decisions.
+         * @param clock A {@link Clock}.
+         */
+        public Factory(
+                int defaultTargetLiveOffsetMs,
+                float bandwidthFraction,
+                float minBufferFractionForQualityIncrease,
+                float lowBufferFraction,
+                int rebufferHistoryMs,
+                @Nullable EventListener eventListener,
+                Clock clock) {
+            this.defaultTargetLiveOffsetMs = defaultTargetLiveOffsetMs;
+            this.bandwidthFraction = bandwidthFraction;
+            this.minBufferFractionForQualityIncrease = minBufferFractionForQualityIncrease;
+            this.lowBufferFraction = lowBufferFraction;
+            this.rebufferHistoryMs = rebufferHistoryMs;
+            this.eventListener = eventListener;
+            this.clock = clock;
+            prefetchHistory = new PrefetchHistory();
+        }
+
+        @Override
+        public void onPrefetchFinished(
+                DataSpec dataSpec,
+                int pipelineDepth,
+                long timeToFirstByteMs,
+                long loadDurationMs,
+                long bytesLoaded,
+                @Nullable IOException error) {
+            prefetchHistory.add(dataSpec);
+        }
+
+        @Override
+        public final @NullableType ExoTrackSelection[] createTrackSelections(
+                @NullableType Definition[] definitions,
+                BandwidthMeter bandwidthMeter,
+                MediaPeriodId mediaPeriodId,
+                Timeline timeline) {
+            long targetLiveOffsetUs = getTargetLiveOffsetUs(mediaPeriodId, timeline);
+            ExoTrackSelection[] selections = new ExoTrackSelection[definitions.length];
+            for (int i = 0; i < definitions.length; i++) {
+                @Nullable Definition definition = definitions[i];
+                if (definition == null || definition.tracks.length == 0) {
+                    continue;
+                }
+                selections[i] =
+                        definition.tracks.length == 1
+                                ? new FixedTrackSelection(
+                                        definition.group,
+                                        definition.tracks[0],
+                                        definition.reason,
+                                        definition.data)
+                                : new LowLatencyAdaptiveTrackSelection(
+                                        definition.group,
+                                        definition.tracks,
+                                        bandwidthMeter,
+                                        targetLiveOffsetUs,
+                                        bandwidthFraction,
+                                        minBufferFractionForQualityIncrease,
+                                        lowBufferFraction,
+                                        rebufferHistoryMs,
+                                        eventListener,
+                                        clock,
+                                        prefetchHistory);
+            }
+            return selections;
+        }
+
+        private long getTargetLiveOffsetUs(MediaPeriodId mediaPeriodId, Timeline timeline) {
+            int periodIndex = timeline.getIndexOfPeriod(mediaPeriodId.periodUid);
+            if (periodIndex != C.INDEX_UNSET) {
+                int windowIndex = timeline.getPeriod(periodIndex, new Timeline.Period()).windowIndex;
+                Timeline.Window window = timeline.getWindow(windowIndex, new Timeline.Window());
+                if (window.liveConfiguration != null
+                        && window.liveConfiguration.targetOffsetMs != C.TIME_UNSET) {
+                    return C.msToUs(window.liveConfiguration.targetOffsetMs);
+                }
+            }
+            return C.msToUs(defaultTargetLiveOffsetMs);
+        }
+    }
+
+    /**
+     * The reason for a selection decision. One of {@link #DECISION_REASON_INITIAL}, {@link
+     * #DECISION_REASON_BANDWIDTH}, {@link #DECISION_REASON_REBUFFER} or {@link
+     * #DECISION_REASON_LOW_BUFFER}.
+     */
+    @Documented
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({
+        DECISION_REASON_INITIAL,
+        DECISION_REASON_BANDWIDTH,
+        DECISION_REASON_REBUFFER,
+        DECISION_REASON_LOW_BUFFER
+    })
+    public @interface DecisionReason {}
+    /** The initial selection. */
+    public static final int DECISION_REASON_INITIAL = 0;
+    /** The throughput estimate changed. */
+    public static final int DECISION_REASON_BANDWIDTH = 1;
+    /** The throughput estimate changed while recent rebuffers reduced the available bandwidth. */
+    public static final int DECISION_REASON_REBUFFER = 2;
+    /** The buffer was close to running out. */
+    public static final int DECISION_REASON_LOW_BUFFER = 3;
+
+    public static final int DEFAULT_TARGET_LIVE_OFFSET_MS = 3_000;
+    public static final float DEFAULT_BANDWIDTH_FRACTION = 0.8f;
+    public static final float DEFAULT_MIN_BUFFER_FRACTION_FOR_QUALITY_INCREASE = 0.5f;
+    public static final float DEFAULT_LOW_BUFFER_FRACTION = 0.25f;
+    public static final int DEFAULT_REBUFFER_HISTORY_MS = 60_000;
+
+    /** The buffered fraction of the target live offset above which switching down is deferred. */
+    private static final float MAX_BUFFER_FRACTION_FOR_QUALITY_DECREASE = 0.9f;
+    /**
+     * The range of load durations, as fractions of the playout duration of a chunk, for which the
+     * load is considered paced. A load that takes much longer than the playout duration is limited
+     * by the network, not by the packager.
+     */
+    private static final float MIN_PACED_LOAD_FRACTION = 0.8f;
+    private static final float MAX_PACED_LOAD_FRACTION = 1.25f;
+    private static final int THROUGHPUT_SLIDING_WINDOW_MAX_WEIGHT = 2000;
+    /**
+     * The minimum load duration of a chunk for which a throughput sample is taken. Faster loads
+     * can't have waited for a network round trip, so their data was read from a local cache.
+     */
+    private static final long MIN_LOAD_DURATION_FOR_SAMPLE_MS = 20;
+
+    private final BandwidthMeter bandwidthMeter;
+    private final long targetLiveOffsetUs;
+    private final float bandwidthFraction;
+    private final long minBufferForQualityIncreaseUs;
+    private final long maxBufferForQualityDecreaseUs;
+    private final long lowBufferUs;
+    private final int rebufferHistoryMs;
+    @Nullable private final EventListener eventListener;
+    private final Clock clock;
+    @Nullable private final PrefetchHistory prefetchHistory;
+    private final SlidingPercentile throughputPercentile;
+    private final ArrayDeque<Long> rebufferTimesMs;
+
+    private float playbackSpeed;
+    private int selectedIndex;
+    private int reason;
+    private float lastThroughputSample;
+    private long loadStartMs;
+
+    /**
+     * @param group The {@link TrackGroup}.
+     * @param tracks The indices of the selected tracks within the {@link TrackGroup}. Must not be
+     *     empty. May be in any order.
+     * @param bandwidthMeter Provides the throughput estimate until the first chunk is loaded.
+     */
+    public LowLatencyAdaptiveTrackSelection(
+            TrackGroup group, int[] tracks, BandwidthMeter bandwidthMeter) {
+        this(
+                group,
+                tracks,
+                bandwidthMeter,
+                C.msToUs(DEFAULT_TARGET_LIVE_OFFSET_MS),
+                DEFAULT_BANDWIDTH_FRACTION,
+                DEFAULT_MIN_BUFFER_FRACTION_FOR_QUALITY_INCREASE,
+                DEFAULT_LOW_BUFFER_FRACTION,
+                DEFAULT_REBUFFER_HISTORY_MS,
+                /* eventListener= */ null,
+                Clock.DEFAULT);
+    }
+
+    /**
+     * @param group The {@link TrackGroup}.
+     * @param tracks The indices of the selected tracks within the {@link TrackGroup}. Must not be
+     *     empty. May be in any order.
+     * @param bandwidthMeter Provides the throughput estimate until the first chunk is loaded.
+     * @param targetLiveOffsetUs The target live offset, in microseconds.
+     * @param bandwidthFraction The fraction of the throughput estimate that the selection should
+     *     consider available for use.
+     * @param minBufferFractionForQualityIncrease The minimum buffered duration, as a fraction of
+     *     the target live offset, required to switch to a track of higher quality.
+     * @param lowBufferFraction The buffered duration, as a fraction of the target live offset,
+     *     below which the selection steps down one quality level.
+     * @param rebufferHistoryMs The duration for which a rebuffer reduces the bandwidth considered
+     *     available, in milliseconds.
+     * @param eventListener An optional {@link EventListener} for the selection decisions.
+     * @param clock The {@link Clock}.
+     */
+    protected LowLatencyAdaptiveTrackSelection(
+            TrackGroup group,
+            int[] tracks,
+            BandwidthMeter bandwidthMeter,
+            long targetLiveOffsetUs,
+            float bandwidthFraction,
+            float minBufferFractionForQualityIncrease,
+            float lowBufferFraction,
+            int rebufferHistoryMs,
+            @Nullable EventListener eventListener,
+            Clock clock) {
+        this(
+                group,
+                tracks,
+                bandwidthMeter,
+                targetLiveOffsetUs,
+                bandwidthFraction,
+                minBufferFractionForQualityIncrease,
+                lowBufferFraction,
+                rebufferHistoryMs,
+                eventListener,
+                clock,
+                /* prefetchHistory= */ null);
+    }
+
+    /* package */ LowLatencyAdaptiveTrackSelection(
+            TrackGroup group,
+            int[] tracks,
+            BandwidthMeter bandwidthMeter,
+            long targetLiveOffsetUs,
+            float bandwidthFraction,
+            float minBufferFractionForQualityIncrease,
+            float lowBufferFraction,
+            int rebufferHistoryMs,
+            @Nullable EventListener eventListener,
+            Clock clock,
+            @Nullable PrefetchHistory prefetchHistory) {
+        super(group, tracks);
+        this.bandwidthMeter = bandwidthMeter;
+        this.targetLiveOffsetUs = targetLiveOffsetUs;
+        this.bandwidthFraction = bandwidthFraction;
+        this.minBufferForQualityIncreaseUs =
+                (long) (targetLiveOffsetUs * minBufferFractionForQualityIncrease);
+        this.maxBufferForQualityDecreaseUs =
+                (long) (targetLiveOffsetUs * MAX_BUFFER_FRACTION_FOR_QUALITY_DECREASE);
+        this.lowBufferUs = (long) (targetLiveOffsetUs * lowBufferFraction);
+        this.rebufferHistoryMs = rebufferHistoryMs;
+        this.eventListener = eventListener;
+        this.clock = clock;
+        this.prefetchHistory = prefetchHistory;
+        throughputPercentile = new SlidingPercentile(THROUGHPUT_SLIDING_WINDOW_MAX_WEIGHT);
+        rebufferTimesMs = new ArrayDeque<>();
+        playbackSpeed = 1f;
+        reason = C.SELECTION_REASON_UNKNOWN;
+        lastThroughputSample = Float.NaN;
+        loadStartMs = C.TIME_UNSET;
+    }
+
+    @CallSuper
+    @Override
+    public void enable() {
+        loadStartMs = C.TIME_UNSET;
+    }
+
+    @Override
+    public void onPlaybackSpeed(float playbackSpeed) {
+        this.playbackSpeed = playbackSpeed;
+    }
+
+    @Override
+    public void onRebuffer() {
+        rebufferTimesMs.addLast(clock.elapsedRealtime());
+    }
+
+    @Override
+    public void updateSelectedTrack(
+            long playbackPositionUs,
+            long bufferedDurationUs,
+            long availableDurationUs,
+            List<? extends MediaChunk> queue,
+            MediaChunkIterator[] mediaChunkIterators) {
+        long nowMs = clock.elapsedRealtime();
+        @Nullable MediaChunk lastChunk = queue.isEmpty() ? null : Iterables.getLast(queue);
+        // This method is called right before each load is started, but not every call is followed
+        // by a load. The load of the next completed chunk started at the last call.
+        loadStartMs = nowMs;
+        discardExpiredRebuffers(nowMs);
+
+        // Make initial selection
+        if (reason == C.SELECTION_REASON_UNKNOWN) {
+            reason = C.SELECTION_REASON_INITIAL;
+            selectedIndex = determineIdealSelectedIndex(nowMs);
+            notifySelectionDecision(
+                    /* previousFormat= */ null, DECISION_REASON_INITIAL, bufferedDurationUs);
+            return;
+        }
+
+        int oldSelectedIndex = selectedIndex;
+        int previousSelectedIndex = selectedIndex;
+        int previousReason = reason;
+        if (lastChunk != null) {
+            int formatIndexOfPreviousChunk = indexOf(lastChunk.trackFormat);
+            if (formatIndexOfPreviousChunk != C.INDEX_UNSET) {
+                previousSelectedIndex = formatIndexOfPreviousChunk;
+                previousReason = lastChunk.trackSelectionReason;
+            }
+        }
+        int newSelectedIndex = determineIdealSelectedIndex(nowMs);
+        @DecisionReason
+        int decisionReason =
+                rebufferTimesMs.isEmpty() ? DECISION_REASON_BANDWIDTH : DECISION_REASON_REBUFFER;
+        if (!isBlacklisted(previousSelectedIndex, nowMs)) {
+            // Tracks are sorted by decreasing bitrate, so a lower index is a higher quality.
+            if (newSelectedIndex < previousSelectedIndex
+                    && bufferedDurationUs < minBufferForQualityIncreaseUs) {
+                // Not enough buffer to safely switch up. Defer switching up for now.
+                newSelectedIndex = previousSelectedIndex;
+            } else if (newSelectedIndex > previousSelectedIndex
+                    && bufferedDurationUs >= maxBufferForQualityDecreaseUs) {
+                // Buffered up to the target live offset. Defer switching down for now.
+                newSelectedIndex = previousSelectedIndex;
+            }
+            if (lastChunk != null
+                    && bufferedDurationUs < lowBufferUs
+                    && newSelectedIndex <= previousSelectedIndex) {
+                // The buffer is draining although chunks are being loaded. Step down one quality
+                // level even if the throughput estimate would allow the current one.
+                int lowerIndex = getNextLowerQualityIndex(previousSelectedIndex, nowMs);
+                if (lowerIndex != C.INDEX_UNSET) {
+                    newSelectedIndex = lowerIndex;
+                    decisionReason = DECISION_REASON_LOW_BUFFER;
+                }
+            }
+        }
+        // If we adapted, update the trigger.
+        reason =
+                newSelectedIndex == previousSelectedIndex
+                        ? previousReason
+                        : C.SELECTION_REASON_ADAPTIVE;
+        selectedIndex = newSelectedIndex;
+        if (newSelectedIndex != oldSelectedIndex) {
+            notifySelectionDecision(
+                    getFormat(oldSelectedIndex), decisionReason, bufferedDurationUs);
+        }
+    }
+
+    @CallSuper
+    @Override
+    public void onChunkLoadCompleted(Chunk chunk) {
+        if (chunk instanceof MediaChunk && loadStartMs != C.TIME_UNSET) {
+            addThroughputSample((MediaChunk) chunk, clock.elapsedRealtime() - loadStartMs);
+        }
+        loadStartMs = C.TIME_UNSET;
+    }
+
+    @Override
+    public int getSelectedIndex() {
+        return selectedIndex;
+    }
+
+    @Override
+    public int getSelectionReason() {
+        return reason;
+    }
+
+    @Override
+    @Nullable
+    public Object getSelectionData() {
+        return null;
+    }
+
+    @Override
+    public int evaluateQueueSize(long playbackPositionUs, List<? extends MediaChunk> queue) {
+        // The buffer never holds more than the target live offset, so there's nothing to gain from
+        // discarding and reloading chunks at a higher quality.
+        return queue.size();
+    }
+
+    /**
+     * Returns the current throughput estimate, in bits per second. This is the lower of the median
+     * of the recent throughput samples and the last sample, so that a drop in throughput is acted
+     * on after a single chunk. Until the first chunk is loaded this is the estimate of the {@link
+     * BandwidthMeter}.
+     */
+    public long getBitrateEstimate() {
+        float throughput = throughputPercentile.getPercentile(0.5f);
+        return Float.isNaN(throughput)
+                ? bandwidthMeter.getBitrateEstimate()
+                : (long) Math.min(throughput, lastThroughputSample);
+    }
+
+    private void addThroughputSample(MediaChunk chunk, long loadDurationMs) {
+        long bytesLoaded = chunk.bytesLoaded();
+        if (bytesLoaded <= 0 || loadDurationMs < MIN_LOAD_DURATION_FOR_SAMPLE_MS) {
+            return;
+        }
+        if (prefetchHistory != null && prefetchHistory.remove(chunk.dataSpec)) {
+            // The data was loaded from the network before the chunk was, so the load duration of
+            // the chunk says nothing about the throughput.
+            return;
+        }
+        float bitsPerSecond = bytesLoaded * 8000f / loadDurationMs;
+        boolean paced = false;
+        if (chunk.endTimeUs != C.TIME_UNSET) {
+            long playoutDurationMs =
+                    Util.getPlayoutDurationForMediaDuration(
+                            C.usToMs(chunk.endTimeUs - chunk.startTimeUs), playbackSpeed);
+            paced =
+                    loadDurationMs >= playoutDurationMs * MIN_PACED_LOAD_FRACTION
+                            && loadDurationMs <= playoutDurationMs * MAX_PACED_LOAD_FRACTION;
+        }
+        // A paced load only shows that the network is at least as fast as the measured throughput.
+        if (!paced || bitsPerSecond > getBitrateEstimate()) {
+            throughputPercentile.addSample((int) Math.sqrt(bytesLoaded), bitsPerSecond);
+            lastThroughputSample = bitsPerSecond;
+        }
+        if (eventListener != null) {
+            eventListener.onThroughputSample(
+                    bytesLoaded, loadDurationMs, paced, getBitrateEstimate());
+        }
+    }
+
+    private void discardExpiredRebuffers(long nowMs) {
+        while (!rebufferTimesMs.isEmpty()
+                && nowMs - rebufferTimesMs.getFirst() >= rebufferHistoryMs) {
+            rebufferTimesMs.removeFirst();
+        }
+    }
+
+    /**
+     * Computes the ideal selected index ignoring buffer health.
+     *
+     * @param nowMs The current time in the timebase of {@link Clock#elapsedRealtime()}.
+     */
+    private int determineIdealSelectedIndex(long nowMs) {
+        // Each rebuffer in the history reduces the bandwidth considered available.
+        long effectiveBitrate =
+                (long) (getBitrateEstimate() * bandwidthFraction / (1 + rebufferTimesMs.size()));
+        int lowestBitrateAllowedIndex = 0;
+        for (int i = 0; i < length; i++) {
+            if (!isBlacklisted(i, nowMs)) {
+                Format format = getFormat(i);
+                if (Math.round(format.bitrate * playbackSpeed) <= effectiveBitrate) {
+                    return i;
+                } else {
+                    lowestBitrateAllowedIndex = i;
+                }
+            }
+        }
+        return lowestBitrateAllowedIndex;
+    }
+
+    private int getNextLowerQualityIndex(int index, long nowMs) {
+        for (int i = index + 1; i < length; i++) {
+            if (!isBlacklisted(i, nowMs)) {
+                return i;
+            }
+        }
+        return C.INDEX_UNSET;
+    }
+
+    private void notifySelectionDecision(
+            @Nullable Format previousFormat,
+            @DecisionReason int decisionReason,
+            long bufferedDurationUs) {
+        if (eventListener != null) {
+            eventListener.onSelectionDecision(
+                    previousFormat,
+                    getFormat(selectedIndex),
+                    decisionReason,
+                    getBitrateEstimate(),
+                    bufferedDurationUs,
+                    targetLiveOffsetUs,
+                    rebufferTimesMs.size());
+        }
+    }
+
+    /** The most recently prefetched {@link DataSpec DataSpecs}, which may be read by any thread. */
+    /* package */ static final class PrefetchHistory {
+
+        private static final int MAX_SIZE = 16;
+
+        private final ArrayDeque<DataSpec> dataSpecs;
+
+        public PrefetchHistory() {
+            dataSpecs = new ArrayDeque<>();
+        }
+
+        /** Adds a prefetched {@link DataSpec}, discarding the oldest if the history is full. */
+        public synchronized void add(DataSpec dataSpec) {
+            if (dataSpecs.size() == MAX_SIZE) {
+                dataSpecs.removeFirst();
+            }
+            dataSpecs.addLast(dataSpec);
+        }
+
+        /** Removes a {@link DataSpec} for the same data, and returns whether there was one. */
+        public synchronized boolean remove(DataSpec dataSpec) {
+            Iterator<DataSpec> iterator = dataSpecs.iterator();
+            while (iterator.hasNext()) {
+                DataSpec prefetchedDataSpec = iterator.next();
+                if (prefetchedDataSpec.position == dataSpec.position
+                        && prefetchedDataSpec.length == dataSpec.length
+                        && prefetchedDataSpec.uri.equals(dataSpec.uri)
+                        && Util.areEqual(prefetchedDataSpec.key, dataSpec.key)) {
+                    iterator.remove();
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
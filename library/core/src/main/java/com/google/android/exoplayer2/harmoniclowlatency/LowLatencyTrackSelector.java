@@ -1,7 +1,7 @@
 package com.google.android.exoplayer2.harmoniclowlatency;
 
-import com.google.android.exoplayer2.trackselection.AdaptiveTrackSelection.Factory;
 import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 
@@ -14,7 +14,7 @@ public final class LowLatencyTrackSelector extends DefaultTrackSelector {
         return this.isAuto.get();
     }
 
-    public LowLatencyTrackSelector(Factory aTSF) {
+    public LowLatencyTrackSelector(ExoTrackSelection.Factory aTSF) {
         super(aTSF);
         this.isAuto = new AtomicBoolean(true);
     }
@@ -16,6 +16,8 @@
 package com.google.android.exoplayer2.mediacodec;
 
 import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 
 import androidx.annotation.IntRange;
 import androidx.annotation.Nullable;
@@ -23,6 +25,7 @@ import androidx.annotation.VisibleForTesting;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
 import java.nio.ByteBuffer;
+import org.checkerframework.checker.nullness.qual.EnsuresNonNull;
 
 /** Buffer to which multiple sample buffers can be appended for batch processing */
 /* package */ final class BatchBuffer extends DecoderInputBuffer {
@@ -109,13 +112,28 @@ import java.nio.ByteBuffer;
     }
     @Nullable ByteBuffer bufferData = buffer.data;
     if (bufferData != null) {
-      ensureSpaceForWrite(bufferData.remaining());
+      ensureSpaceForAppend(bufferData.remaining());
       data.put(bufferData);
     }
     lastSampleTimeUs = buffer.timeUs;
     return true;
   }
 
+  /**
+   * Ensures that {@code length} bytes can be appended to {@link #data}. If the buffer needs to be
+   * replaced, its capacity is at least doubled (up to {@link #MAX_SIZE_BYTES}), so that filling a
+   * batch doesn't allocate a new buffer and copy all previously appended samples for every sample.
+   */
+  @EnsuresNonNull("data")
+  private void ensureSpaceForAppend(int length) {
+    @Nullable ByteBuffer currentData = data;
+    if (currentData != null && currentData.capacity() - currentData.position() < length) {
+      int grownCapacity = min(MAX_SIZE_BYTES, currentData.capacity() * 2);
+      length = max(length, grownCapacity - currentData.position());
+    }
+    ensureSpaceForWrite(length);
+  }
+
   private boolean canAppendSampleBuffer(DecoderInputBuffer buffer) {
     if (!hasSamples()) {
       // Always allow appending when the buffer is empty, else no progress can be made.
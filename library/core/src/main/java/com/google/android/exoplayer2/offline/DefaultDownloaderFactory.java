@@ -37,6 +37,7 @@ public class DefaultDownloaderFactory implements DownloaderFactory {
 
   private final CacheDataSource.Factory cacheDataSourceFactory;
   private final Executor executor;
+  private final boolean pinDownloadedContent;
 
   /**
    * Creates an instance.
@@ -62,8 +63,30 @@ public class DefaultDownloaderFactory implements DownloaderFactory {
    */
   public DefaultDownloaderFactory(
       CacheDataSource.Factory cacheDataSourceFactory, Executor executor) {
+    this(cacheDataSourceFactory, executor, /* pinDownloadedContent= */ false);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param cacheDataSourceFactory A {@link CacheDataSource.Factory} for the cache into which
+   *     downloads will be written.
+   * @param executor An {@link Executor} used to download data. Passing {@code Runnable::run} will
+   *     cause each download task to download data on its own thread. Passing an {@link Executor}
+   *     that uses multiple threads will speed up download tasks that can be split into smaller
+   *     parts for parallel execution.
+   * @param pinDownloadedContent Whether the created downloaders pin the content they've downloaded
+   *     in the cache, which stops evictors that support pinning, such as {@link
+   *     com.google.android.exoplayer2.upstream.cache.FrequencyAwareCacheEvictor}, from evicting it.
+   *     Should only be {@code true} if the cache uses such an evictor.
+   */
+  public DefaultDownloaderFactory(
+      CacheDataSource.Factory cacheDataSourceFactory,
+      Executor executor,
+      boolean pinDownloadedContent) {
     this.cacheDataSourceFactory = Assertions.checkNotNull(cacheDataSourceFactory);
     this.executor = Assertions.checkNotNull(executor);
+    this.pinDownloadedContent = pinDownloadedContent;
   }
 
   @Override
@@ -76,13 +99,16 @@ public class DefaultDownloaderFactory implements DownloaderFactory {
       case C.TYPE_SS:
         return createDownloader(request, contentType);
       case C.TYPE_OTHER:
-        return new ProgressiveDownloader(
-            new MediaItem.Builder()
-                .setUri(request.uri)
-                .setCustomCacheKey(request.customCacheKey)
-                .build(),
-            cacheDataSourceFactory,
-            executor);
+        ProgressiveDownloader progressiveDownloader =
+            new ProgressiveDownloader(
+                new MediaItem.Builder()
+                    .setUri(request.uri)
+                    .setCustomCacheKey(request.customCacheKey)
+                    .build(),
+                cacheDataSourceFactory,
+                executor);
+        progressiveDownloader.setPinDownloadedContent(pinDownloadedContent);
+        return progressiveDownloader;
       default:
         throw new IllegalArgumentException("Unsupported type: " + contentType);
     }
@@ -100,12 +126,17 @@ public class DefaultDownloaderFactory implements DownloaderFactory {
             .setCustomCacheKey(request.customCacheKey)
             .setDrmKeySetId(request.keySetId)
             .build();
+    Downloader downloader;
     try {
-      return constructor.newInstance(mediaItem, cacheDataSourceFactory, executor);
+      downloader = constructor.newInstance(mediaItem, cacheDataSourceFactory, executor);
     } catch (Exception e) {
       throw new IllegalStateException(
           "Failed to instantiate downloader for content type " + contentType);
     }
+    if (downloader instanceof SegmentDownloader) {
+      ((SegmentDownloader<?>) downloader).setPinDownloadedContent(pinDownloadedContent);
+    }
+    return downloader;
   }
 
   // LINT.IfChange
@@ -20,8 +20,11 @@ import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.MediaItem;
 import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.cache.Cache;
 import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
 import com.google.android.exoplayer2.upstream.cache.CacheWriter;
+import com.google.android.exoplayer2.upstream.cache.ContentMetadata;
+import com.google.android.exoplayer2.upstream.cache.ContentMetadataMutations;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.PriorityTaskManager;
 import com.google.android.exoplayer2.util.PriorityTaskManager.PriorityTooLowException;
@@ -44,6 +47,7 @@ public final class ProgressiveDownloader implements Downloader {
   @Nullable private ProgressListener progressListener;
   private volatile @MonotonicNonNull RunnableFutureTask<Void, IOException> downloadRunnable;
   private volatile boolean isCanceled;
+  private boolean pinDownloadedContent;
 
   /** @deprecated Use {@link #ProgressiveDownloader(MediaItem, CacheDataSource.Factory)} instead. */
   @SuppressWarnings("deprecation")
@@ -114,6 +118,18 @@ public final class ProgressiveDownloader implements Downloader {
     priorityTaskManager = cacheDataSourceFactory.getUpstreamPriorityTaskManager();
   }
 
+  /**
+   * Sets whether the content is {@link ContentMetadata#isPinned(ContentMetadata) pinned} in the
+   * cache once it's been downloaded, which stops evictors that support pinning, such as {@link
+   * com.google.android.exoplayer2.upstream.cache.FrequencyAwareCacheEvictor}, from evicting it.
+   * The default value is {@code false}.
+   *
+   * @param pinDownloadedContent Whether to pin the downloaded content.
+   */
+  public void setPinDownloadedContent(boolean pinDownloadedContent) {
+    this.pinDownloadedContent = pinDownloadedContent;
+  }
+
   @Override
   public void download(@Nullable ProgressListener progressListener)
       throws IOException, InterruptedException {
@@ -145,6 +161,9 @@ public final class ProgressiveDownloader implements Downloader {
         try {
           downloadRunnable.get();
           finished = true;
+          if (pinDownloadedContent) {
+            pinIfNotPinned();
+          }
         } catch (ExecutionException e) {
           Throwable cause = Assertions.checkNotNull(e.getCause());
           if (cause instanceof PriorityTooLowException) {
@@ -181,6 +200,15 @@ public final class ProgressiveDownloader implements Downloader {
     dataSource.getCache().removeResource(dataSource.getCacheKeyFactory().buildCacheKey(dataSpec));
   }
 
+  private void pinIfNotPinned() throws IOException {
+    Cache cache = dataSource.getCache();
+    String cacheKey = dataSource.getCacheKeyFactory().buildCacheKey(dataSpec);
+    if (!ContentMetadata.isPinned(cache.getContentMetadata(cacheKey))) {
+      cache.applyContentMetadataMutations(
+          cacheKey, ContentMetadataMutations.setPinned(new ContentMetadataMutations(), true));
+    }
+  }
+
   private void onProgress(long contentLength, long bytesCached, long newBytesCached) {
     if (progressListener == null) {
       return;
@@ -30,6 +30,7 @@ import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
 import com.google.android.exoplayer2.upstream.cache.CacheKeyFactory;
 import com.google.android.exoplayer2.upstream.cache.CacheWriter;
 import com.google.android.exoplayer2.upstream.cache.ContentMetadata;
+import com.google.android.exoplayer2.upstream.cache.ContentMetadataMutations;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.PriorityTaskManager;
 import com.google.android.exoplayer2.util.PriorityTaskManager.PriorityTooLowException;
@@ -40,6 +41,7 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
@@ -95,6 +97,7 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
   private final ArrayList<RunnableFutureTask<?, ?>> activeRunnables;
 
   private volatile boolean isCanceled;
+  private boolean pinDownloadedContent;
 
   /**
    * @param mediaItem The {@link MediaItem} to be downloaded.
@@ -122,11 +125,28 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
     activeRunnables = new ArrayList<>();
   }
 
+  /**
+   * Sets whether segments are {@link ContentMetadata#isPinned(ContentMetadata) pinned} in the cache
+   * once they've been downloaded, which stops evictors that support pinning, such as {@link
+   * com.google.android.exoplayer2.upstream.cache.FrequencyAwareCacheEvictor}, from evicting them.
+   * The default value is {@code false}.
+   *
+   * <p>The segments are pinned together once the download finishes, since pinning causes the
+   * cache index to be stored. If the download fails, the segments that were downloaded are pinned
+   * when it's next resumed. This should only be enabled if the cache uses such an evictor.
+   *
+   * @param pinDownloadedContent Whether to pin downloaded segments.
+   */
+  public final void setPinDownloadedContent(boolean pinDownloadedContent) {
+    this.pinDownloadedContent = pinDownloadedContent;
+  }
+
   @Override
   public final void download(@Nullable ProgressListener progressListener)
       throws IOException, InterruptedException {
     ArrayDeque<Segment> pendingSegments = new ArrayDeque<>();
     ArrayDeque<SegmentDownloadRunnable> recycledRunnables = new ArrayDeque<>();
+    HashSet<String> cacheKeysToPin = new HashSet<>();
     if (priorityTaskManager != null) {
       priorityTaskManager.add(C.PRIORITY_DOWNLOAD);
     }
@@ -152,10 +172,10 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
       for (int i = segments.size() - 1; i >= 0; i--) {
         DataSpec dataSpec = segments.get(i).dataSpec;
         String cacheKey = cacheKeyFactory.buildCacheKey(dataSpec);
+        ContentMetadata contentMetadata = cache.getContentMetadata(cacheKey);
         long segmentLength = dataSpec.length;
         if (segmentLength == C.LENGTH_UNSET) {
-          long resourceLength =
-              ContentMetadata.getContentLength(cache.getContentMetadata(cacheKey));
+          long resourceLength = ContentMetadata.getContentLength(contentMetadata);
           if (resourceLength != C.LENGTH_UNSET) {
             segmentLength = resourceLength - dataSpec.position;
           }
@@ -168,6 +188,9 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
             // The segment is fully downloaded.
             segmentsDownloaded++;
             segments.remove(i);
+            if (pinDownloadedContent) {
+              cacheKeysToPin.add(cacheKey);
+            }
           }
           if (contentLength != C.LENGTH_UNSET) {
             contentLength += segmentLength;
@@ -224,6 +247,9 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
               activeRunnable.get();
               removeActiveRunnable(j);
               recycledRunnables.addLast(activeRunnable);
+              if (pinDownloadedContent) {
+                cacheKeysToPin.add(cacheKeyFactory.buildCacheKey(activeRunnable.segment.dataSpec));
+              }
             } catch (ExecutionException e) {
               Throwable cause = Assertions.checkNotNull(e.getCause());
               if (cause instanceof PriorityTooLowException) {
@@ -245,6 +271,7 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
         // drip feeds runnables to the executor, rather than providing them all up front.
         downloadRunnable.blockUntilStarted();
       }
+      pinIfNotPinned(cacheKeysToPin);
     } finally {
       // If one of the runnables has thrown an exception, then it's possible there are other active
       // runnables still doing work. We need to wait until they finish before exiting this method.
@@ -413,6 +440,21 @@ public abstract class SegmentDownloader<M extends FilterableManifest<M>> impleme
     }
   }
 
+  private void pinIfNotPinned(HashSet<String> cacheKeys) throws IOException {
+    // Pinning causes the index to be stored, so pin all of the resources that aren't already
+    // pinned at once.
+    ArrayList<String> cacheKeysToPin = new ArrayList<>();
+    for (String cacheKey : cacheKeys) {
+      if (!ContentMetadata.isPinned(cache.getContentMetadata(cacheKey))) {
+        cacheKeysToPin.add(cacheKey);
+      }
+    }
+    if (!cacheKeysToPin.isEmpty()) {
+      cache.applyContentMetadataMutations(
+          cacheKeysToPin, ContentMetadataMutations.setPinned(new ContentMetadataMutations(), true));
+    }
+  }
+
   private static void mergeSegments(List<Segment> segments, CacheKeyFactory keyFactory) {
     HashMap<String, Integer> lastIndexByCacheKey = new HashMap<>();
     int nextOutIndex = 0;
@@ -339,7 +339,8 @@ public final class ExtractorMediaSource extends CompositeMediaSource<Void> {
             extractorsFactory,
             DrmSessionManager.DRM_UNSUPPORTED,
             loadableLoadErrorHandlingPolicy,
-            continueLoadingCheckIntervalBytes);
+            continueLoadingCheckIntervalBytes,
+            /* loadExecutor= */ null);
   }
 
   /**
@@ -61,6 +61,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import org.checkerframework.checker.nullness.compatqual.NullableType;
 import org.checkerframework.checker.nullness.qual.EnsuresNonNull;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
@@ -160,6 +161,51 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
    * @param continueLoadingCheckIntervalBytes The number of bytes that should be loaded between each
    *     invocation of {@link Callback#onContinueLoadingRequested(SequenceableLoader)}.
    */
+  public ProgressiveMediaPeriod(
+      Uri uri,
+      DataSource dataSource,
+      ExtractorsFactory extractorsFactory,
+      DrmSessionManager drmSessionManager,
+      DrmSessionEventListener.EventDispatcher drmEventDispatcher,
+      LoadErrorHandlingPolicy loadErrorHandlingPolicy,
+      MediaSourceEventListener.EventDispatcher mediaSourceEventDispatcher,
+      Listener listener,
+      Allocator allocator,
+      @Nullable String customCacheKey,
+      int continueLoadingCheckIntervalBytes) {
+    this(
+        uri,
+        dataSource,
+        extractorsFactory,
+        drmSessionManager,
+        drmEventDispatcher,
+        loadErrorHandlingPolicy,
+        mediaSourceEventDispatcher,
+        listener,
+        allocator,
+        customCacheKey,
+        continueLoadingCheckIntervalBytes,
+        /* loadExecutor= */ null);
+  }
+
+  /**
+   * @param uri The {@link Uri} of the media stream.
+   * @param dataSource The data source to read the media.
+   * @param extractorsFactory The {@link ExtractorsFactory} to use to read the data source.
+   * @param drmSessionManager A {@link DrmSessionManager} to allow DRM interactions.
+   * @param drmEventDispatcher A dispatcher to notify of {@link DrmSessionEventListener} events.
+   * @param loadErrorHandlingPolicy The {@link LoadErrorHandlingPolicy}.
+   * @param mediaSourceEventDispatcher A dispatcher to notify of {@link MediaSourceEventListener}
+   *     events.
+   * @param listener A listener to notify when information about the period changes.
+   * @param allocator An {@link Allocator} from which to obtain media buffer allocations.
+   * @param customCacheKey A custom key that uniquely identifies the original stream. Used for cache
+   *     indexing. May be null.
+   * @param continueLoadingCheckIntervalBytes The number of bytes that should be loaded between each
+   *     invocation of {@link Callback#onContinueLoadingRequested(SequenceableLoader)}.
+   * @param loadExecutor A shared {@link Executor} on which to load the media, or null to load it on
+   *     a thread owned by this period. See {@link Loader#Loader(Executor)}.
+   */
   // maybeFinishPrepare is not posted to the handler until initialization completes.
   @SuppressWarnings({
     "nullness:argument.type.incompatible",
@@ -176,7 +222,8 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       Listener listener,
       Allocator allocator,
       @Nullable String customCacheKey,
-      int continueLoadingCheckIntervalBytes) {
+      int continueLoadingCheckIntervalBytes,
+      @Nullable Executor loadExecutor) {
     this.uri = uri;
     this.dataSource = dataSource;
     this.drmSessionManager = drmSessionManager;
@@ -187,7 +234,10 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     this.allocator = allocator;
     this.customCacheKey = customCacheKey;
     this.continueLoadingCheckIntervalBytes = continueLoadingCheckIntervalBytes;
-    loader = new Loader("Loader:ProgressiveMediaPeriod");
+    loader =
+        loadExecutor != null
+            ? new Loader(loadExecutor)
+            : new Loader("Loader:ProgressiveMediaPeriod");
     this.progressiveMediaExtractor = new BundledExtractorsAdapter(extractorsFactory);
     loadCondition = new ConditionVariable();
     maybeFinishPrepareRunnable = this::maybeFinishPrepare;
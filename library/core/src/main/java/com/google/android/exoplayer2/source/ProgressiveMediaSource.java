@@ -34,6 +34,7 @@ import com.google.android.exoplayer2.upstream.DefaultLoadErrorHandlingPolicy;
 import com.google.android.exoplayer2.upstream.HttpDataSource;
 import com.google.android.exoplayer2.upstream.LoadErrorHandlingPolicy;
 import com.google.android.exoplayer2.upstream.TransferListener;
+import java.util.concurrent.Executor;
 
 /**
  * Provides one period that loads data from a {@link Uri} and extracted using an {@link Extractor}.
@@ -59,6 +60,7 @@ public final class ProgressiveMediaSource extends BaseMediaSource
     private DrmSessionManagerProvider drmSessionManagerProvider;
     private LoadErrorHandlingPolicy loadErrorHandlingPolicy;
     private int continueLoadingCheckIntervalBytes;
+    @Nullable private Executor loadExecutor;
     @Nullable private String customCacheKey;
     @Nullable private Object tag;
 
@@ -149,6 +151,23 @@ public final class ProgressiveMediaSource extends BaseMediaSource
       return this;
     }
 
+    /**
+     * Sets a shared {@link Executor} on which media is loaded. The default is null, in which case
+     * each period of a created media source loads on a thread of its own.
+     *
+     * <p>Sharing a bounded executor between the media sources of many players limits the number
+     * of loading threads. Loads are queued while all of the executor's threads are busy, so it
+     * should have enough threads for the loads that are expected to run at the same time. The
+     * executor is not shut down when media sources are released.
+     *
+     * @param loadExecutor A shared {@link Executor}, or null to use a thread per loader.
+     * @return This factory, for convenience.
+     */
+    public Factory setLoadExecutor(@Nullable Executor loadExecutor) {
+      this.loadExecutor = loadExecutor;
+      return this;
+    }
+
     @Override
     public Factory setDrmSessionManagerProvider(
         @Nullable DrmSessionManagerProvider drmSessionManagerProvider) {
@@ -223,7 +242,8 @@ public final class ProgressiveMediaSource extends BaseMediaSource
           extractorsFactory,
           drmSessionManagerProvider.get(mediaItem),
           loadErrorHandlingPolicy,
-          continueLoadingCheckIntervalBytes);
+          continueLoadingCheckIntervalBytes,
+          loadExecutor);
     }
 
     @Override
@@ -245,6 +265,7 @@ public final class ProgressiveMediaSource extends BaseMediaSource
   private final DrmSessionManager drmSessionManager;
   private final LoadErrorHandlingPolicy loadableLoadErrorHandlingPolicy;
   private final int continueLoadingCheckIntervalBytes;
+  @Nullable private final Executor loadExecutor;
 
   private boolean timelineIsPlaceholder;
   private long timelineDurationUs;
@@ -259,7 +280,8 @@ public final class ProgressiveMediaSource extends BaseMediaSource
       ExtractorsFactory extractorsFactory,
       DrmSessionManager drmSessionManager,
       LoadErrorHandlingPolicy loadableLoadErrorHandlingPolicy,
-      int continueLoadingCheckIntervalBytes) {
+      int continueLoadingCheckIntervalBytes,
+      @Nullable Executor loadExecutor) {
     this.playbackProperties = checkNotNull(mediaItem.playbackProperties);
     this.mediaItem = mediaItem;
     this.dataSourceFactory = dataSourceFactory;
@@ -267,6 +289,7 @@ public final class ProgressiveMediaSource extends BaseMediaSource
     this.drmSessionManager = drmSessionManager;
     this.loadableLoadErrorHandlingPolicy = loadableLoadErrorHandlingPolicy;
     this.continueLoadingCheckIntervalBytes = continueLoadingCheckIntervalBytes;
+    this.loadExecutor = loadExecutor;
     this.timelineIsPlaceholder = true;
     this.timelineDurationUs = C.TIME_UNSET;
   }
@@ -316,7 +339,8 @@ public final class ProgressiveMediaSource extends BaseMediaSource
         this,
         allocator,
         playbackProperties.customCacheKey,
-        continueLoadingCheckIntervalBytes);
+        continueLoadingCheckIntervalBytes,
+        loadExecutor);
   }
 
   @Override
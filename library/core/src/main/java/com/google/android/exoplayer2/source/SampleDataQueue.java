@@ -206,7 +206,7 @@ import java.util.Arrays;
       return;
     }
     // Bulk release allocations for performance (it's significantly faster when using
-    // DefaultAllocator because the allocator's lock only needs to be acquired and released once)
+    // DefaultAllocator because the released allocations only need to be published once)
     // [Internal: See b/29542039].
     int allocationCount =
         (writeAllocationNode.wasInitialized ? 1 : 0)
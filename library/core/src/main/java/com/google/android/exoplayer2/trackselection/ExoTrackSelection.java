@@ -257,6 +257,19 @@ public interface ExoTrackSelection extends TrackSelection {
     return false;
   }
 
+  /**
+   * Called when the load of a {@link Chunk} has been completed.
+   *
+   * <p>May be called by sources that load media in discrete {@link MediaChunk MediaChunks}. The
+   * chunk was obtained after the most recent call to {@link #updateSelectedTrack(long, long, long,
+   * List, MediaChunkIterator[])}, and its load was started right after that call.
+   *
+   * <p>This method will only be called when the selection is enabled.
+   *
+   * @param chunk The chunk whose load has been completed.
+   */
+  default void onChunkLoadCompleted(Chunk chunk) {}
+
   /**
    * Attempts to exclude the track at the specified index in the selection, making it ineligible for
    * selection by calls to {@link #updateSelectedTrack(long, long, long, List,
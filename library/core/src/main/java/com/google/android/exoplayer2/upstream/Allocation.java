@@ -15,6 +15,8 @@
  */
 package com.google.android.exoplayer2.upstream;
 
+import androidx.annotation.Nullable;
+
 /**
  * An allocation within a byte array.
  * <p>
@@ -34,6 +36,12 @@ public final class Allocation {
    */
   public final int offset;
 
+  /**
+   * The next allocation on the stack of available allocations of a {@link DefaultAllocator}, while
+   * this allocation is available.
+   */
+  @Nullable /* package */ Allocation nextAvailable;
+
   /**
    * @param data The array containing the allocated space.
    * @param offset The offset of the allocated space in {@code data}.
@@ -0,0 +1,443 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static java.lang.Math.min;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A {@link DataSource} that shares upstream requests between the instances created by the same
+ * {@link Factory}.
+ *
+ * <p>When an instance opens data that another instance created by the same factory is already
+ * reading, no new upstream request is made. Instead, the data of the existing request is read as it
+ * arrives. This avoids requesting the same data more than once when, for example, a player and a
+ * download, or several players, load the same media segment at the same time. It also works when
+ * the factory provides the upstream of a {@link
+ * com.google.android.exoplayer2.upstream.cache.CacheDataSource}, in which case an instance that
+ * bypasses the cache because another instance is writing the same data shares that instance's
+ * request.
+ *
+ * <p>Requests are shared if they're for the same key, or URI if the key is not set, range, request
+ * headers and flags, and use {@link DataSpec#HTTP_METHOD_GET} without a body. The data of a shared request is held in
+ * memory until all of the instances reading it are closed, so requests are only shared if the
+ * length of the data is known and at most the maximum shared length.
+ */
+public final class DeduplicatingDataSource implements DataSource {
+
+  /** {@link DataSource.Factory} for {@link DeduplicatingDataSource} instances. */
+  public static final class Factory implements DataSource.Factory {
+
+    /** The default maximum length of the data of a shared request, in bytes. */
+    public static final int DEFAULT_MAX_SHARED_LENGTH = 8 * 1024 * 1024;
+
+    private final DataSource.Factory upstreamFactory;
+    private final int maxSharedLength;
+    private final ArrayList<SharedRequest> sharedRequests;
+
+    /**
+     * Creates an instance.
+     *
+     * @param upstreamFactory A {@link DataSource.Factory} for the {@link DataSource DataSources}
+     *     from which data is read.
+     */
+    public Factory(DataSource.Factory upstreamFactory) {
+      this(upstreamFactory, DEFAULT_MAX_SHARED_LENGTH);
+    }
+
+    /**
+     * Creates an instance.
+     *
+     * @param upstreamFactory A {@link DataSource.Factory} for the {@link DataSource DataSources}
+     *     from which data is read.
+     * @param maxSharedLength The maximum length of the data of a shared request, in bytes. Longer
+     *     data is read by each instance separately.
+     */
+    public Factory(DataSource.Factory upstreamFactory, int maxSharedLength) {
+      Assertions.checkArgument(maxSharedLength > 0);
+      this.upstreamFactory = upstreamFactory;
+      this.maxSharedLength = maxSharedLength;
+      sharedRequests = new ArrayList<>();
+    }
+
+    @Override
+    public DeduplicatingDataSource createDataSource() {
+      return new DeduplicatingDataSource(this);
+    }
+
+    /** Returns the number of shared requests, which are being read by at least one instance. */
+    public synchronized int getSharedRequestCount() {
+      return sharedRequests.size();
+    }
+
+    /**
+     * Returns a shared request for the given {@link DataSpec}, creating one owned by {@code owner}
+     * if there's no existing request that can be joined.
+     */
+    private synchronized SharedRequest acquireRequest(
+        DataSpec dataSpec, DeduplicatingDataSource owner) {
+      for (int i = 0; i < sharedRequests.size(); i++) {
+        SharedRequest request = sharedRequests.get(i);
+        if (isSameData(request.dataSpec, dataSpec) && request.isJoinable()) {
+          request.referenceCount++;
+          return request;
+        }
+      }
+      SharedRequest request =
+          new SharedRequest(dataSpec, upstreamFactory.createDataSource(), maxSharedLength, owner);
+      request.referenceCount++;
+      sharedRequests.add(request);
+      return request;
+    }
+
+    /** Releases a shared request, closing it if it's no longer being read by any instance. */
+    private void releaseRequest(SharedRequest request) throws IOException {
+      synchronized (this) {
+        if (--request.referenceCount > 0) {
+          return;
+        }
+        sharedRequests.remove(request);
+      }
+      request.close();
+    }
+
+    private static boolean isSameData(DataSpec dataSpec, DataSpec other) {
+      return dataSpec.position == other.position
+          && dataSpec.length == other.length
+          && (dataSpec.key != null
+              ? dataSpec.key.equals(other.key)
+              : other.key == null && dataSpec.uri.equals(other.uri))
+          && dataSpec.httpMethod == other.httpMethod
+          && Arrays.equals(dataSpec.httpBody, other.httpBody)
+          && dataSpec.httpRequestHeaders.equals(other.httpRequestHeaders)
+          && dataSpec.flags == other.flags;
+    }
+  }
+
+  private final Factory factory;
+  private final List<TransferListener> transferListeners;
+
+  /**
+   * The upstream for data that isn't shared, or null if no such data has been read. Shared data is
+   * read by the upstream of the {@link SharedRequest}.
+   */
+  @Nullable private DataSource upstream;
+
+  @Nullable private SharedRequest currentRequest;
+  private int currentReadPosition;
+
+  private DeduplicatingDataSource(Factory factory) {
+    this.factory = factory;
+    transferListeners = new CopyOnWriteArrayList<>();
+  }
+
+  @Override
+  public void addTransferListener(TransferListener transferListener) {
+    Assertions.checkNotNull(transferListener);
+    if (upstream != null) {
+      upstream.addTransferListener(transferListener);
+    }
+    transferListeners.add(transferListener);
+  }
+
+  @Override
+  public long open(DataSpec dataSpec) throws IOException {
+    if (dataSpec.httpMethod != DataSpec.HTTP_METHOD_GET || dataSpec.httpBody != null) {
+      return getUpstream().open(dataSpec);
+    }
+    SharedRequest request = factory.acquireRequest(dataSpec, /* owner= */ this);
+    currentRequest = request;
+    currentReadPosition = 0;
+    if (request.owner == this) {
+      // Transfers are only reported to the listeners of the instance making the request.
+      return request.openUpstream(transferListeners);
+    }
+    if (!request.blockUntilOpened()) {
+      // The data can't be shared, so read it separately.
+      currentRequest = null;
+      factory.releaseRequest(request);
+      return getUpstream().open(dataSpec);
+    }
+    return request.getResolvedLength();
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int readLength) throws IOException {
+    @Nullable SharedRequest request = currentRequest;
+    if (request == null) {
+      return Assertions.checkNotNull(upstream).read(buffer, offset, readLength);
+    }
+    int bytesRead = request.read(currentReadPosition, buffer, offset, readLength);
+    if (bytesRead != C.RESULT_END_OF_INPUT) {
+      currentReadPosition += bytesRead;
+    }
+    return bytesRead;
+  }
+
+  @Override
+  @Nullable
+  public Uri getUri() {
+    @Nullable SharedRequest request = currentRequest;
+    if (request != null) {
+      return request.getUri();
+    }
+    return upstream != null ? upstream.getUri() : null;
+  }
+
+  @Override
+  public Map<String, List<String>> getResponseHeaders() {
+    @Nullable SharedRequest request = currentRequest;
+    if (request != null) {
+      return request.getResponseHeaders();
+    }
+    return upstream != null ? upstream.getResponseHeaders() : Collections.emptyMap();
+  }
+
+  @Override
+  public void close() throws IOException {
+    @Nullable SharedRequest request = currentRequest;
+    if (request != null) {
+      currentRequest = null;
+      factory.releaseRequest(request);
+    } else if (upstream != null) {
+      upstream.close();
+    }
+  }
+
+  private DataSource getUpstream() {
+    @Nullable DataSource upstream = this.upstream;
+    if (upstream == null) {
+      upstream = factory.upstreamFactory.createDataSource();
+      for (int i = 0; i < transferListeners.size(); i++) {
+        upstream.addTransferListener(transferListeners.get(i));
+      }
+      this.upstream = upstream;
+    }
+    return upstream;
+  }
+
+  /**
+   * An upstream request whose data is read by one or more instances. Data is read from upstream by
+   * whichever instance needs it first, and held in memory for the other instances.
+   */
+  private static final class SharedRequest {
+
+    private static final int READ_BUFFER_SIZE = 32 * 1024;
+
+    public final DataSpec dataSpec;
+    public final DeduplicatingDataSource owner;
+
+    /** The number of instances reading the request. Guarded by the {@link Factory}. */
+    public int referenceCount;
+
+    private final DataSource upstream;
+    private final int maxSharedLength;
+
+    private byte[] data;
+    private int length;
+    private long resolvedLength;
+    private boolean opened;
+    private boolean shared;
+    private boolean reading;
+    private boolean ended;
+    private boolean upstreamPositionUnknown;
+    @Nullable private IOException error;
+    @Nullable private Uri uri;
+    private Map<String, List<String>> responseHeaders;
+
+    public SharedRequest(
+        DataSpec dataSpec,
+        DataSource upstream,
+        int maxSharedLength,
+        DeduplicatingDataSource owner) {
+      this.dataSpec = dataSpec;
+      this.upstream = upstream;
+      this.maxSharedLength = maxSharedLength;
+      this.owner = owner;
+      data = Util.EMPTY_BYTE_ARRAY;
+      resolvedLength = C.LENGTH_UNSET;
+      shared = true;
+      responseHeaders = Collections.emptyMap();
+    }
+
+    /** Returns whether other instances can read the request. */
+    public synchronized boolean isJoinable() {
+      return shared && error == null;
+    }
+
+    /** Opens the upstream request. Must only be called by the owner. */
+    public long openUpstream(List<TransferListener> transferListeners) throws IOException {
+      for (int i = 0; i < transferListeners.size(); i++) {
+        upstream.addTransferListener(transferListeners.get(i));
+      }
+      long resolvedLength;
+      try {
+        resolvedLength = upstream.open(dataSpec);
+      } catch (IOException e) {
+        synchronized (this) {
+          error = e;
+          notifyAll();
+        }
+        throw e;
+      }
+      synchronized (this) {
+        this.resolvedLength = resolvedLength;
+        uri = upstream.getUri();
+        responseHeaders = upstream.getResponseHeaders();
+        if (resolvedLength != C.LENGTH_UNSET && resolvedLength <= maxSharedLength) {
+          data = new byte[(int) resolvedLength];
+        } else {
+          // Holding the data in memory would be too expensive. Only the owner reads it.
+          shared = false;
+        }
+        opened = true;
+        notifyAll();
+      }
+      return resolvedLength;
+    }
+
+    /**
+     * Blocks until the owner has opened the upstream request, and returns whether the data can be
+     * shared.
+     *
+     * @throws IOException If the upstream request failed to open.
+     */
+    public synchronized boolean blockUntilOpened() throws IOException {
+      while (!opened && error == null) {
+        waitForProgress();
+      }
+      if (error != null) {
+        throw error;
+      }
+      return shared;
+    }
+
+    public synchronized boolean isShared() {
+      return shared;
+    }
+
+    public synchronized long getResolvedLength() {
+      return resolvedLength;
+    }
+
+    @Nullable
+    public synchronized Uri getUri() {
+      return uri;
+    }
+
+    public synchronized Map<String, List<String>> getResponseHeaders() {
+      return responseHeaders;
+    }
+
+    public int read(int position, byte[] buffer, int offset, int readLength) throws IOException {
+      if (readLength == 0) {
+        return 0;
+      } else if (!isShared()) {
+        // Only the owner is reading, directly from upstream.
+        return upstream.read(buffer, offset, readLength);
+      }
+      byte[] target;
+      int targetOffset;
+      boolean reopenUpstream;
+      synchronized (this) {
+        while (position >= length && !ended && error == null && reading) {
+          waitForProgress();
+        }
+        if (position < length) {
+          int bytesToRead = min(readLength, length - position);
+          System.arraycopy(data, position, buffer, offset, bytesToRead);
+          return bytesToRead;
+        } else if (ended || length == data.length) {
+          return C.RESULT_END_OF_INPUT;
+        } else if (error != null) {
+          throw error;
+        }
+        // No other instance is reading from upstream, so this one does.
+        reading = true;
+        target = data;
+        targetOffset = length;
+        reopenUpstream = upstreamPositionUnknown;
+        upstreamPositionUnknown = false;
+      }
+      // Other instances only read the data before targetOffset, so it's safe to write the data
+      // after it without holding the lock.
+      int bytesRead;
+      try {
+        if (reopenUpstream) {
+          upstream.close();
+          upstream.open(dataSpec.subrange(targetOffset));
+        }
+        int bytesToRead = min(READ_BUFFER_SIZE, target.length - targetOffset);
+        bytesRead = upstream.read(target, targetOffset, bytesToRead);
+      } catch (IOException e) {
+        synchronized (this) {
+          reading = false;
+          if (e instanceof InterruptedIOException || Thread.currentThread().isInterrupted()) {
+            // This instance was canceled, which mustn't fail the other instances. The interrupted
+            // read may have left the upstream at an unknown position, so the next instance to read
+            // reopens it at the end of the data read so far. If the failure wasn't caused by the
+            // cancelation, reopening fails too and the error is reported to all instances.
+            upstreamPositionUnknown = true;
+          } else {
+            error = e;
+          }
+          notifyAll();
+        }
+        throw e;
+      }
+      synchronized (this) {
+        reading = false;
+        if (bytesRead == C.RESULT_END_OF_INPUT) {
+          ended = true;
+        } else {
+          length += bytesRead;
+        }
+        notifyAll();
+      }
+      return read(position, buffer, offset, readLength);
+    }
+
+    public void close() throws IOException {
+      synchronized (this) {
+        data = Util.EMPTY_BYTE_ARRAY;
+        length = 0;
+      }
+      upstream.close();
+    }
+
+    private void waitForProgress() throws InterruptedIOException {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+    }
+  }
+}
@@ -20,25 +20,28 @@ import static java.lang.Math.max;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
-import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.checkerframework.checker.nullness.compatqual.NullableType;
 
 /**
  * Default implementation of {@link Allocator}.
+ *
+ * <p>Allocations are typically requested by loading threads and released by the playback thread.
+ * {@link #release(Allocation)}, {@link #release(Allocation[])} and {@link
+ * #getTotalBytesAllocated()} are lock-free and don't allocate, so that the playback thread never
+ * blocks on loading threads. {@link #allocate()} only synchronizes with other calls to it and with
+ * {@link #trim()}, and only while taking an available allocation.
  */
 public final class DefaultAllocator implements Allocator {
 
-  private static final int AVAILABLE_EXTRA_CAPACITY = 100;
-
   private final boolean trimOnReset;
   private final int individualAllocationSize;
   @Nullable private final byte[] initialAllocationBlock;
-  private final Allocation[] singleAllocationReleaseHolder;
+  private final AtomicInteger allocatedCount;
+  private final AtomicReference<@NullableType Allocation> availableAllocations;
 
-  private int targetBufferSize;
-  private int allocatedCount;
-  private int availableCount;
-  private @NullableType Allocation[] availableAllocations;
+  private volatile int targetBufferSize;
 
   /**
    * Constructs an instance without creating any {@link Allocation}s up front.
@@ -67,18 +70,21 @@ public final class DefaultAllocator implements Allocator {
     Assertions.checkArgument(initialAllocationCount >= 0);
     this.trimOnReset = trimOnReset;
     this.individualAllocationSize = individualAllocationSize;
-    this.availableCount = initialAllocationCount;
-    this.availableAllocations = new Allocation[initialAllocationCount + AVAILABLE_EXTRA_CAPACITY];
+    allocatedCount = new AtomicInteger();
+    availableAllocations = new AtomicReference<>();
     if (initialAllocationCount > 0) {
       initialAllocationBlock = new byte[initialAllocationCount * individualAllocationSize];
-      for (int i = 0; i < initialAllocationCount; i++) {
+      @Nullable Allocation head = null;
+      for (int i = initialAllocationCount - 1; i >= 0; i--) {
         int allocationOffset = i * individualAllocationSize;
-        availableAllocations[i] = new Allocation(initialAllocationBlock, allocationOffset);
+        Allocation allocation = new Allocation(initialAllocationBlock, allocationOffset);
+        allocation.nextAvailable = head;
+        head = allocation;
       }
+      availableAllocations.set(head);
     } else {
       initialAllocationBlock = null;
     }
-    singleAllocationReleaseHolder = new Allocation[1];
   }
 
   public synchronized void reset() {
@@ -96,85 +102,89 @@ public final class DefaultAllocator implements Allocator {
   }
 
   @Override
-  public synchronized Allocation allocate() {
-    allocatedCount++;
-    Allocation allocation;
-    if (availableCount > 0) {
-      allocation = Assertions.checkNotNull(availableAllocations[--availableCount]);
-      availableAllocations[availableCount] = null;
-    } else {
-      allocation = new Allocation(new byte[individualAllocationSize], 0);
+  public Allocation allocate() {
+    allocatedCount.incrementAndGet();
+    if (availableAllocations.get() != null) {
+      @Nullable Allocation allocation = popAvailableAllocation();
+      if (allocation != null) {
+        return allocation;
+      }
     }
-    return allocation;
+    return new Allocation(new byte[individualAllocationSize], 0);
   }
 
   @Override
-  public synchronized void release(Allocation allocation) {
-    singleAllocationReleaseHolder[0] = allocation;
-    release(singleAllocationReleaseHolder);
+  public void release(Allocation allocation) {
+    pushAvailableAllocations(allocation, allocation);
+    allocatedCount.decrementAndGet();
   }
 
   @Override
-  public synchronized void release(Allocation[] allocations) {
-    if (availableCount + allocations.length >= availableAllocations.length) {
-      availableAllocations =
-          Arrays.copyOf(
-              availableAllocations,
-              max(availableAllocations.length * 2, availableCount + allocations.length));
+  public void release(Allocation[] allocations) {
+    if (allocations.length == 0) {
+      return;
     }
-    for (Allocation allocation : allocations) {
-      availableAllocations[availableCount++] = allocation;
+    // Link all allocations up front, so that they are made available with a single update.
+    for (int i = 0; i < allocations.length - 1; i++) {
+      allocations[i].nextAvailable = allocations[i + 1];
     }
-    allocatedCount -= allocations.length;
-    // Wake up threads waiting for the allocated size to drop.
-    notifyAll();
+    pushAvailableAllocations(allocations[0], allocations[allocations.length - 1]);
+    allocatedCount.addAndGet(-allocations.length);
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Available allocations are detached while they are trimmed, so concurrent calls to {@link
+   * #allocate()} may create new allocations during that time.
+   */
   @Override
   public synchronized void trim() {
     int targetAllocationCount = Util.ceilDivide(targetBufferSize, individualAllocationSize);
-    int targetAvailableCount = max(0, targetAllocationCount - allocatedCount);
-    if (targetAvailableCount >= availableCount) {
-      // We're already at or below the target.
+    int targetAvailableCount = max(0, targetAllocationCount - allocatedCount.get());
+    @Nullable Allocation head = availableAllocations.getAndSet(null);
+    if (head == null) {
       return;
     }
 
+    // All allocations backed by the initial block are kept, and count towards the target.
+    int keptOtherCount = targetAvailableCount;
     if (initialAllocationBlock != null) {
-      // Some allocations are backed by an initial block. We need to make sure that we hold onto all
-      // such allocations. Re-order the available allocations so that the ones backed by the initial
-      // block come first.
-      int lowIndex = 0;
-      int highIndex = availableCount - 1;
-      while (lowIndex <= highIndex) {
-        Allocation lowAllocation = Assertions.checkNotNull(availableAllocations[lowIndex]);
-        if (lowAllocation.data == initialAllocationBlock) {
-          lowIndex++;
-        } else {
-          Allocation highAllocation = Assertions.checkNotNull(availableAllocations[highIndex]);
-          if (highAllocation.data != initialAllocationBlock) {
-            highIndex--;
-          } else {
-            availableAllocations[lowIndex++] = highAllocation;
-            availableAllocations[highIndex--] = lowAllocation;
-          }
+      for (@Nullable Allocation allocation = head;
+          allocation != null;
+          allocation = allocation.nextAvailable) {
+        if (allocation.data == initialAllocationBlock) {
+          keptOtherCount--;
         }
       }
-      // lowIndex is the index of the first allocation not backed by an initial block.
-      targetAvailableCount = max(targetAvailableCount, lowIndex);
-      if (targetAvailableCount >= availableCount) {
-        // We're already at or below the target.
-        return;
-      }
     }
 
-    // Discard allocations beyond the target.
-    Arrays.fill(availableAllocations, targetAvailableCount, availableCount, null);
-    availableCount = targetAvailableCount;
+    // The kept allocations are unlinked from the discarded ones, and made available again.
+    @Nullable Allocation first = null;
+    @Nullable Allocation last = null;
+    @Nullable Allocation allocation = head;
+    while (allocation != null) {
+      @Nullable Allocation next = allocation.nextAvailable;
+      allocation.nextAvailable = null;
+      boolean isInitialAllocation = allocation.data == initialAllocationBlock;
+      if (isInitialAllocation || keptOtherCount-- > 0) {
+        if (last == null) {
+          first = allocation;
+        } else {
+          last.nextAvailable = allocation;
+        }
+        last = allocation;
+      }
+      allocation = next;
+    }
+    if (first != null) {
+      pushAvailableAllocations(first, Assertions.checkNotNull(last));
+    }
   }
 
   @Override
-  public synchronized int getTotalBytesAllocated() {
-    return allocatedCount * individualAllocationSize;
+  public int getTotalBytesAllocated() {
+    return allocatedCount.get() * individualAllocationSize;
   }
 
   @Override
@@ -182,4 +192,41 @@ public final class DefaultAllocator implements Allocator {
     return individualAllocationSize;
   }
 
+  /**
+   * Pops an allocation from the stack of available allocations, or returns null if the stack is
+   * empty.
+   *
+   * <p>Allocations are their own stack nodes, so an allocation that is popped and pushed again
+   * returns to the stack as the same node. If two threads could pop concurrently, one of them
+   * could replace such a node by a stale {@link Allocation#nextAvailable} (the ABA problem), so
+   * popping is synchronized. Pushing is not, as it stays correct when the head is replaced by the
+   * same node.
+   */
+  @Nullable
+  private synchronized Allocation popAvailableAllocation() {
+    while (true) {
+      @Nullable Allocation head = availableAllocations.get();
+      if (head == null) {
+        return null;
+      }
+      if (availableAllocations.compareAndSet(head, head.nextAvailable)) {
+        head.nextAvailable = null;
+        return head;
+      }
+    }
+  }
+
+  /**
+   * Pushes a linked list of allocations that are not available yet onto the stack of available
+   * allocations.
+   */
+  private void pushAvailableAllocations(Allocation first, Allocation last) {
+    while (true) {
+      @Nullable Allocation head = availableAllocations.get();
+      last.nextAvailable = head;
+      if (availableAllocations.compareAndSet(head, first)) {
+        return;
+      }
+    }
+  }
 }
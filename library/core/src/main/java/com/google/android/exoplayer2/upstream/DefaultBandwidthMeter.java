@@ -46,6 +46,11 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
  * time a transfer ends. The initial estimate is based on the current operator's network country
  * code or the locale of the user, as well as the network connection type. This can be configured in
  * the {@link Builder}.
+ *
+ * <p>Low-latency streams delivered with chunked transfer encoding arrive at the rate at which the
+ * server produces them, so a transfer is mostly idle and its average rate is the bitrate of the
+ * media rather than the network bandwidth. {@link Builder#setIdleTransferGapThresholdMs(long)}
+ * excludes pauses in the data flow from the estimate, so that only the bursts of data are measured.
  */
 public final class DefaultBandwidthMeter implements BandwidthMeter, TransferListener {
 
@@ -107,6 +112,7 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
     private int slidingWindowMaxWeight;
     private Clock clock;
     private boolean resetOnNetworkTypeChange;
+    private long idleTransferGapThresholdMs;
 
     /**
      * Creates a builder with default parameters and without listener.
@@ -120,6 +126,7 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
       slidingWindowMaxWeight = DEFAULT_SLIDING_WINDOW_MAX_WEIGHT;
       clock = Clock.DEFAULT;
       resetOnNetworkTypeChange = true;
+      idleTransferGapThresholdMs = C.TIME_UNSET;
     }
 
     /**
@@ -198,6 +205,27 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
       return this;
     }
 
+    /**
+     * Sets the minimum duration of a pause in the data flow for it to be excluded from the
+     * estimate, along with the bytes whose arrival ends the pause. This should be set for
+     * low-latency streams delivered with chunked transfer encoding, to a value above the usual
+     * delay between two reads of a transfer that isn't waiting for data (for example 50 ms). The
+     * default value is {@link C#TIME_UNSET}, which measures each transfer from start to end.
+     *
+     * <p>Pauses are measured across all transfers rather than per transfer, because concurrent
+     * transfers share the elapsed time of a sample. A transfer that is waiting for data while
+     * another one is reading doesn't pause the data flow, so only pauses during which none of the
+     * transfers made progress are excluded.
+     *
+     * @param idleTransferGapThresholdMs The minimum duration of an excluded pause, in
+     *     milliseconds, or {@link C#TIME_UNSET} to not exclude pauses.
+     * @return This builder.
+     */
+    public Builder setIdleTransferGapThresholdMs(long idleTransferGapThresholdMs) {
+      this.idleTransferGapThresholdMs = idleTransferGapThresholdMs;
+      return this;
+    }
+
     /**
      * Builds the bandwidth meter.
      *
@@ -209,7 +237,8 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
           initialBitrateEstimates,
           slidingWindowMaxWeight,
           clock,
-          resetOnNetworkTypeChange);
+          resetOnNetworkTypeChange,
+          idleTransferGapThresholdMs);
     }
 
     private static Map<Integer, Long> getInitialBitrateEstimatesForCountry(String countryCode) {
@@ -267,10 +296,15 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
   private final EventDispatcher eventDispatcher;
   private final SlidingPercentile slidingPercentile;
   private final Clock clock;
+  private final long idleTransferGapThresholdMs;
 
   private int streamCount;
   private long sampleStartTimeMs;
   private long sampleBytesTransferred;
+  private long sampleIdleTimeMs;
+  private long sampleIdleBytesTransferred;
+  // Shared by concurrent transfers, as the data flow only pauses when none of them is reading.
+  private long lastTransferActivityMs;
 
   @C.NetworkType private int networkType;
   private long totalElapsedTimeMs;
@@ -289,7 +323,8 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
         /* initialBitrateEstimates= */ ImmutableMap.of(),
         DEFAULT_SLIDING_WINDOW_MAX_WEIGHT,
         Clock.DEFAULT,
-        /* resetOnNetworkTypeChange= */ false);
+        /* resetOnNetworkTypeChange= */ false,
+        /* idleTransferGapThresholdMs= */ C.TIME_UNSET);
   }
 
   private DefaultBandwidthMeter(
@@ -297,12 +332,14 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
       Map<Integer, Long> initialBitrateEstimates,
       int maxWeight,
       Clock clock,
-      boolean resetOnNetworkTypeChange) {
+      boolean resetOnNetworkTypeChange,
+      long idleTransferGapThresholdMs) {
     this.context = context == null ? null : context.getApplicationContext();
     this.initialBitrateEstimates = ImmutableMap.copyOf(initialBitrateEstimates);
     this.eventDispatcher = new EventDispatcher();
     this.slidingPercentile = new SlidingPercentile(maxWeight);
     this.clock = clock;
+    this.idleTransferGapThresholdMs = idleTransferGapThresholdMs;
     // Set the initial network type and bitrate estimate
     networkType = context == null ? C.NETWORK_TYPE_UNKNOWN : Util.getNetworkType(context);
     bitrateEstimate = getInitialBitrateEstimateForNetworkType(networkType);
@@ -363,6 +400,12 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
     }
     if (streamCount == 0) {
       sampleStartTimeMs = clock.elapsedRealtime();
+      lastTransferActivityMs = sampleStartTimeMs;
+      // Bytes carried forward from a sample that was too short are kept, but idle time measured
+      // before the new start time would be subtracted from an elapsed time that doesn't include it.
+      sampleBytesTransferred -= sampleIdleBytesTransferred;
+      sampleIdleTimeMs = 0;
+      sampleIdleBytesTransferred = 0;
     }
     streamCount++;
   }
@@ -370,10 +413,20 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
   @Override
   public synchronized void onBytesTransferred(
       DataSource source, DataSpec dataSpec, boolean isNetwork, int bytes) {
-    if (!isTransferAtFullNetworkSpeed(dataSpec, isNetwork)) {
+    if (!isTransferAtFullNetworkSpeed(dataSpec, isNetwork) || bytes == 0) {
       return;
     }
     sampleBytesTransferred += bytes;
+    if (idleTransferGapThresholdMs != C.TIME_UNSET) {
+      long nowMs = clock.elapsedRealtime();
+      if (nowMs - lastTransferActivityMs >= idleTransferGapThresholdMs) {
+        // The transfer was waiting for the server to produce more data. The read that ended the
+        // pause took an unknown part of it, so its bytes are excluded as well.
+        sampleIdleTimeMs += nowMs - lastTransferActivityMs;
+        sampleIdleBytesTransferred += bytes;
+      }
+      lastTransferActivityMs = nowMs;
+    }
   }
 
   @Override
@@ -383,19 +436,29 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
     }
     Assertions.checkState(streamCount > 0);
     long nowMs = clock.elapsedRealtime();
-    int sampleElapsedTimeMs = (int) (nowMs - sampleStartTimeMs);
-    totalElapsedTimeMs += sampleElapsedTimeMs;
-    totalBytesTransferred += sampleBytesTransferred;
-    if (sampleElapsedTimeMs > 0) {
-      float bitsPerSecond = (sampleBytesTransferred * 8000f) / sampleElapsedTimeMs;
-      slidingPercentile.addSample((int) Math.sqrt(sampleBytesTransferred), bitsPerSecond);
+    if (idleTransferGapThresholdMs != C.TIME_UNSET) {
+      if (nowMs - lastTransferActivityMs >= idleTransferGapThresholdMs) {
+        sampleIdleTimeMs += nowMs - lastTransferActivityMs;
+      }
+      lastTransferActivityMs = nowMs;
+    }
+    int sampleElapsedTimeMs = (int) (nowMs - sampleStartTimeMs - sampleIdleTimeMs);
+    long sampleActiveBytesTransferred = sampleBytesTransferred - sampleIdleBytesTransferred;
+    if (sampleElapsedTimeMs > 0 && sampleActiveBytesTransferred == 0) {
+      // Nothing was measured, and a sample of 0 bps would pull the estimate down.
+      resetSample(nowMs);
+    } else if (sampleElapsedTimeMs > 0) {
+      totalElapsedTimeMs += sampleElapsedTimeMs;
+      totalBytesTransferred += sampleActiveBytesTransferred;
+      float bitsPerSecond = (sampleActiveBytesTransferred * 8000f) / sampleElapsedTimeMs;
+      slidingPercentile.addSample((int) Math.sqrt(sampleActiveBytesTransferred), bitsPerSecond);
       if (totalElapsedTimeMs >= ELAPSED_MILLIS_FOR_ESTIMATE
           || totalBytesTransferred >= BYTES_TRANSFERRED_FOR_ESTIMATE) {
         bitrateEstimate = (long) slidingPercentile.getPercentile(0.5f);
       }
-      maybeNotifyBandwidthSample(sampleElapsedTimeMs, sampleBytesTransferred, bitrateEstimate);
-      sampleStartTimeMs = nowMs;
-      sampleBytesTransferred = 0;
+      maybeNotifyBandwidthSample(
+          sampleElapsedTimeMs, sampleActiveBytesTransferred, bitrateEstimate);
+      resetSample(nowMs);
     } // Else any sample bytes transferred will be carried forward into the next sample.
     streamCount--;
   }
@@ -420,17 +483,26 @@ public final class DefaultBandwidthMeter implements BandwidthMeter, TransferList
     // Reset the bitrate estimate and report it, along with any bytes transferred.
     this.bitrateEstimate = getInitialBitrateEstimateForNetworkType(networkType);
     long nowMs = clock.elapsedRealtime();
-    int sampleElapsedTimeMs = streamCount > 0 ? (int) (nowMs - sampleStartTimeMs) : 0;
-    maybeNotifyBandwidthSample(sampleElapsedTimeMs, sampleBytesTransferred, bitrateEstimate);
+    int sampleElapsedTimeMs =
+        streamCount > 0 ? (int) (nowMs - sampleStartTimeMs - sampleIdleTimeMs) : 0;
+    maybeNotifyBandwidthSample(
+        sampleElapsedTimeMs, sampleBytesTransferred - sampleIdleBytesTransferred, bitrateEstimate);
 
     // Reset the remainder of the state.
-    sampleStartTimeMs = nowMs;
-    sampleBytesTransferred = 0;
+    resetSample(nowMs);
+    lastTransferActivityMs = nowMs;
     totalBytesTransferred = 0;
     totalElapsedTimeMs = 0;
     slidingPercentile.reset();
   }
 
+  private void resetSample(long nowMs) {
+    sampleStartTimeMs = nowMs;
+    sampleBytesTransferred = 0;
+    sampleIdleTimeMs = 0;
+    sampleIdleBytesTransferred = 0;
+  }
+
   private void maybeNotifyBandwidthSample(
       int elapsedMs, long bytesTransferred, long bitrateEstimate) {
     if (elapsedMs == 0 && bytesTransferred == 0 && bitrateEstimate == lastReportedBitrateEstimate) {
@@ -23,12 +23,22 @@ import android.text.TextUtils;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Log;
 import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
-/** A {@link DataSource} for reading local files. */
+/**
+ * A {@link DataSource} for reading local files.
+ *
+ * <p>Files can optionally be read through memory mappings, which avoids a system call for each
+ * read. This is beneficial when reading a file in many small reads, as extractors do, but each
+ * mapping uses address space until it's garbage collected. See {@link
+ * Factory#setMemoryMappingEnabled(boolean)}.
+ */
 public final class FileDataSource extends BaseDataSource {
 
   /** Thrown when a {@link FileDataSource} encounters an error reading a file. */
@@ -47,6 +57,7 @@ public final class FileDataSource extends BaseDataSource {
   public static final class Factory implements DataSource.Factory {
 
     @Nullable private TransferListener listener;
+    private boolean memoryMappingEnabled;
 
     /**
      * Sets a {@link TransferListener} for {@link FileDataSource} instances created by this factory.
@@ -59,9 +70,22 @@ public final class FileDataSource extends BaseDataSource {
       return this;
     }
 
+    /**
+     * Sets whether {@link FileDataSource} instances created by this factory read files through
+     * memory mappings. If a file can't be mapped, it's read normally. The default value is {@code
+     * false}.
+     *
+     * @param memoryMappingEnabled Whether to read files through memory mappings.
+     * @return This factory.
+     */
+    public Factory setMemoryMappingEnabled(boolean memoryMappingEnabled) {
+      this.memoryMappingEnabled = memoryMappingEnabled;
+      return this;
+    }
+
     @Override
     public FileDataSource createDataSource() {
-      FileDataSource dataSource = new FileDataSource();
+      FileDataSource dataSource = new FileDataSource(memoryMappingEnabled);
       if (listener != null) {
         dataSource.addTransferListener(listener);
       }
@@ -69,13 +93,27 @@ public final class FileDataSource extends BaseDataSource {
     }
   }
 
+  private static final String TAG = "FileDataSource";
+
+  /** The maximum length of a memory mapped region of a file, in bytes. */
+  private static final int MAX_MAPPED_REGION_LENGTH = 64 * 1024 * 1024;
+
+  private final boolean memoryMappingEnabled;
+
   @Nullable private RandomAccessFile file;
   @Nullable private Uri uri;
+  @Nullable private MappedByteBuffer mappedRegion;
+  private long mappedRegionEndPosition;
   private long bytesRemaining;
   private boolean opened;
 
   public FileDataSource() {
+    this(/* memoryMappingEnabled= */ false);
+  }
+
+  private FileDataSource(boolean memoryMappingEnabled) {
     super(/* isNetwork= */ false);
+    this.memoryMappingEnabled = memoryMappingEnabled;
   }
 
   @Override
@@ -93,6 +131,10 @@ public final class FileDataSource extends BaseDataSource {
       if (bytesRemaining < 0) {
         throw new EOFException();
       }
+      if (memoryMappingEnabled) {
+        mappedRegionEndPosition = dataSpec.position;
+        maybeMapNextRegion();
+      }
     } catch (IOException e) {
       throw new FileDataSourceException(e);
     }
@@ -112,7 +154,18 @@ public final class FileDataSource extends BaseDataSource {
     } else {
       int bytesRead;
       try {
-        bytesRead = castNonNull(file).read(buffer, offset, (int) min(bytesRemaining, readLength));
+        if (mappedRegion != null && !mappedRegion.hasRemaining()) {
+          maybeMapNextRegion();
+        }
+        @Nullable MappedByteBuffer mappedRegion = this.mappedRegion;
+        if (mappedRegion != null) {
+          // The region is never longer than the bytes remaining.
+          bytesRead = min(mappedRegion.remaining(), readLength);
+          mappedRegion.get(buffer, offset, bytesRead);
+        } else {
+          bytesRead =
+              castNonNull(file).read(buffer, offset, (int) min(bytesRemaining, readLength));
+        }
       } catch (IOException e) {
         throw new FileDataSourceException(e);
       }
@@ -143,6 +196,8 @@ public final class FileDataSource extends BaseDataSource {
       throw new FileDataSourceException(e);
     } finally {
       file = null;
+      // The mapping is released when the buffer is garbage collected.
+      mappedRegion = null;
       if (opened) {
         opened = false;
         transferEnded();
@@ -150,6 +205,29 @@ public final class FileDataSource extends BaseDataSource {
     }
   }
 
+  /**
+   * Maps the region of the file that follows the current mapped region, or the start position if
+   * nothing has been mapped. If the region can't be mapped, the file is read normally from the same
+   * position instead.
+   */
+  private void maybeMapNextRegion() throws IOException {
+    mappedRegion = null;
+    long regionLength = min(bytesRemaining, MAX_MAPPED_REGION_LENGTH);
+    if (regionLength == 0) {
+      return;
+    }
+    RandomAccessFile file = castNonNull(this.file);
+    try {
+      mappedRegion =
+          file.getChannel()
+              .map(FileChannel.MapMode.READ_ONLY, mappedRegionEndPosition, regionLength);
+      mappedRegionEndPosition += regionLength;
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to map file, reading it instead", e);
+      file.seek(mappedRegionEndPosition);
+    }
+  }
+
   private static RandomAccessFile openLocalFile(Uri uri) throws FileDataSourceException {
     try {
       return new RandomAccessFile(Assertions.checkNotNull(uri.getPath()), "r");
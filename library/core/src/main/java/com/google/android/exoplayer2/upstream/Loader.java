@@ -29,10 +29,12 @@ import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Log;
 import com.google.android.exoplayer2.util.TraceUtil;
 import com.google.android.exoplayer2.util.Util;
+import com.google.common.util.concurrent.MoreExecutors;
 import java.io.IOException;
 import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -204,7 +206,8 @@ public final class Loader implements LoaderErrorThrower {
     }
   }
 
-  private final ExecutorService downloadExecutorService;
+  private final Executor downloadExecutor;
+  @Nullable private final ExecutorService ownedDownloadExecutorService;
 
   @Nullable private LoadTask<? extends Loadable> currentTask;
   @Nullable private IOException fatalError;
@@ -213,7 +216,26 @@ public final class Loader implements LoaderErrorThrower {
    * @param threadName A name for the loader's thread.
    */
   public Loader(String threadName) {
-    this.downloadExecutorService = Util.newSingleThreadExecutor(threadName);
+    ownedDownloadExecutorService = Util.newSingleThreadExecutor(threadName);
+    downloadExecutor = ownedDownloadExecutorService;
+  }
+
+  /**
+   * Creates an instance that loads on a shared {@link Executor}, rather than on a thread of its
+   * own.
+   *
+   * <p>The executor can be shared by many loaders, for example to bound the number of loading
+   * threads when many players are used at the same time. The tasks of a loader run one at a time
+   * and in order, even if the executor has several threads. A canceled load therefore returns
+   * before the next load or the {@link ReleaseCallback} runs, as it would on a thread of the
+   * loader's own. Loads block the thread they run on, so with a bounded executor loads are queued
+   * while all of its threads are busy. The executor is not shut down when the loader is released.
+   *
+   * @param downloadExecutor The {@link Executor} on which to load.
+   */
+  public Loader(Executor downloadExecutor) {
+    this.downloadExecutor = MoreExecutors.newSequentialExecutor(downloadExecutor);
+    ownedDownloadExecutorService = null;
   }
 
   /**
@@ -295,9 +317,11 @@ public final class Loader implements LoaderErrorThrower {
       currentTask.cancel(true);
     }
     if (callback != null) {
-      downloadExecutorService.execute(new ReleaseTask(callback));
+      downloadExecutor.execute(new ReleaseTask(callback));
+    }
+    if (ownedDownloadExecutorService != null) {
+      ownedDownloadExecutorService.shutdown();
     }
-    downloadExecutorService.shutdown();
   }
 
   // LoaderErrorThrower implementation.
@@ -510,7 +534,7 @@ public final class Loader implements LoaderErrorThrower {
 
     private void execute() {
       currentError = null;
-      downloadExecutorService.execute(Assertions.checkNotNull(currentTask));
+      downloadExecutor.execute(Assertions.checkNotNull(currentTask));
     }
 
     private void finish() {
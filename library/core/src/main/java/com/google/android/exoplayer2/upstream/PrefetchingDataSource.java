@@ -0,0 +1,476 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Clock;
+import com.google.android.exoplayer2.util.Util;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A {@link DataSource} that can load data ahead of it being read, so that multiple requests are in
+ * flight at the same time.
+ *
+ * <p>Data to prefetch is set with {@link #prefetch(List)}, in the order in which it will be read.
+ * Each prefetch is loaded into memory by a task on an {@link Executor}, using a {@link DataSource}
+ * created by the upstream factory. By default, the tasks of all instances run on a shared pool of
+ * daemon threads. When a prefetched {@link DataSpec} is opened, the data is read from memory as
+ * it arrives, so reading can start before the prefetch has completed. Other data is read directly
+ * from upstream.
+ *
+ * <p>Prefetched data is held in memory until it is read, so the number of concurrent prefetches
+ * should be kept small.
+ */
+public final class PrefetchingDataSource implements DataSource {
+
+  /** Listener of prefetch events. */
+  public interface Listener {
+
+    /**
+     * Called on a prefetching thread when a prefetch has finished loading, successfully or not,
+     * before the end of the prefetched data can be read. Not called for canceled prefetches.
+     *
+     * @param dataSpec The {@link DataSpec} that was prefetched.
+     * @param pipelineDepth The number of pending prefetches when the prefetch was started,
+     *     including the prefetch itself.
+     * @param timeToFirstByteMs The time from starting the request until the first byte was loaded,
+     *     in milliseconds, or {@link C#TIME_UNSET} if no data was loaded.
+     * @param loadDurationMs The time from starting the request until the prefetch finished loading,
+     *     in milliseconds.
+     * @param bytesLoaded The number of bytes that were loaded.
+     * @param error The error that occurred, or null if the prefetch completed successfully.
+     */
+    void onPrefetchFinished(
+        DataSpec dataSpec,
+        int pipelineDepth,
+        long timeToFirstByteMs,
+        long loadDurationMs,
+        long bytesLoaded,
+        @Nullable IOException error);
+  }
+
+  private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+  private static final int READ_BUFFER_SIZE = 32 * 1024;
+
+  @Nullable private static ExecutorService defaultExecutor;
+
+  /**
+   * Returns the default {@link Executor} for prefetches, which is shared by all instances that
+   * aren't given an executor. It runs each prefetch on a daemon thread, so that prefetches that
+   * aren't canceled don't keep the process alive.
+   */
+  public static synchronized Executor getDefaultExecutor() {
+    if (defaultExecutor == null) {
+      defaultExecutor =
+          Executors.newCachedThreadPool(
+              runnable -> {
+                Thread thread = new Thread(runnable, "ExoPlayer:PrefetchingDataSource");
+                thread.setDaemon(true);
+                return thread;
+              });
+    }
+    return defaultExecutor;
+  }
+
+  private final DataSource.Factory upstreamFactory;
+  private final DataSource upstream;
+  private final int maxPrefetchCount;
+  @Nullable private final Listener listener;
+  private final Clock clock;
+  private final Executor executor;
+  private final List<TransferListener> transferListeners;
+  private final ArrayList<Prefetch> pendingPrefetches;
+
+  @Nullable private Prefetch currentPrefetch;
+  private int currentPrefetchReadPosition;
+  private boolean released;
+
+  /**
+   * Creates an instance that prefetches on the {@link #getDefaultExecutor() default executor}.
+   *
+   * @param upstreamFactory A {@link DataSource.Factory} for the {@link DataSource DataSources} from
+   *     which data is read and prefetched.
+   * @param maxPrefetchCount The maximum number of pending prefetches.
+   * @param listener An optional {@link Listener} of prefetch events.
+   */
+  public PrefetchingDataSource(
+      DataSource.Factory upstreamFactory, int maxPrefetchCount, @Nullable Listener listener) {
+    this(upstreamFactory, maxPrefetchCount, listener, getDefaultExecutor());
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param upstreamFactory A {@link DataSource.Factory} for the {@link DataSource DataSources} from
+   *     which data is read and prefetched.
+   * @param maxPrefetchCount The maximum number of pending prefetches.
+   * @param listener An optional {@link Listener} of prefetch events.
+   * @param executor The {@link Executor} on which prefetches are loaded. It may be shared with
+   *     other instances. Prefetches run in parallel only if it has enough threads.
+   */
+  public PrefetchingDataSource(
+      DataSource.Factory upstreamFactory,
+      int maxPrefetchCount,
+      @Nullable Listener listener,
+      Executor executor) {
+    this(upstreamFactory, maxPrefetchCount, listener, executor, Clock.DEFAULT);
+  }
+
+  /* package */ PrefetchingDataSource(
+      DataSource.Factory upstreamFactory,
+      int maxPrefetchCount,
+      @Nullable Listener listener,
+      Executor executor,
+      Clock clock) {
+    Assertions.checkArgument(maxPrefetchCount > 0);
+    this.upstreamFactory = upstreamFactory;
+    this.maxPrefetchCount = maxPrefetchCount;
+    this.listener = listener;
+    this.executor = executor;
+    this.clock = clock;
+    upstream = upstreamFactory.createDataSource();
+    transferListeners = new CopyOnWriteArrayList<>();
+    pendingPrefetches = new ArrayList<>();
+  }
+
+  /** Returns the maximum number of pending prefetches. */
+  public int getMaxPrefetchCount() {
+    return maxPrefetchCount;
+  }
+
+  /** Returns the number of pending prefetches, which have not been opened yet. */
+  public synchronized int getPendingPrefetchCount() {
+    return pendingPrefetches.size();
+  }
+
+  /** Returns whether a prefetch of the data of a {@link DataSpec} is pending. */
+  public synchronized boolean isPrefetchPending(DataSpec dataSpec) {
+    return indexOfPrefetch(dataSpec) != C.INDEX_UNSET;
+  }
+
+  /**
+   * Sets the data to prefetch, in the order in which it will be read.
+   *
+   * <p>Pending prefetches of data that is not in the list are canceled. New prefetches are started
+   * for data in the list that isn't pending yet, up to the maximum number of pending prefetches.
+   *
+   * @param dataSpecs The {@link DataSpec DataSpecs} of the data to prefetch.
+   */
+  public synchronized void prefetch(List<DataSpec> dataSpecs) {
+    if (released) {
+      return;
+    }
+    for (int i = pendingPrefetches.size() - 1; i >= 0; i--) {
+      Prefetch prefetch = pendingPrefetches.get(i);
+      if (indexOf(dataSpecs, prefetch.dataSpec) == C.INDEX_UNSET) {
+        prefetch.cancel();
+        pendingPrefetches.remove(i);
+      }
+    }
+    for (int i = 0; i < dataSpecs.size() && pendingPrefetches.size() < maxPrefetchCount; i++) {
+      DataSpec dataSpec = dataSpecs.get(i);
+      if (indexOfPrefetch(dataSpec) == C.INDEX_UNSET) {
+        Prefetch prefetch =
+            new Prefetch(dataSpec, /* pipelineDepth= */ pendingPrefetches.size() + 1);
+        pendingPrefetches.add(prefetch);
+        executor.execute(prefetch);
+      }
+    }
+  }
+
+  /** Cancels all prefetches. */
+  public synchronized void release() {
+    released = true;
+    for (int i = 0; i < pendingPrefetches.size(); i++) {
+      pendingPrefetches.get(i).cancel();
+    }
+    pendingPrefetches.clear();
+  }
+
+  @Override
+  public void addTransferListener(TransferListener transferListener) {
+    Assertions.checkNotNull(transferListener);
+    upstream.addTransferListener(transferListener);
+    transferListeners.add(transferListener);
+  }
+
+  @Override
+  public long open(DataSpec dataSpec) throws IOException {
+    @Nullable Prefetch prefetch = removePrefetch(dataSpec);
+    if (prefetch == null) {
+      return upstream.open(dataSpec);
+    }
+    currentPrefetch = prefetch;
+    currentPrefetchReadPosition = 0;
+    // Block until the prefetch request is opened, so that errors opening it are thrown here.
+    return prefetch.blockUntilOpened();
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int readLength) throws IOException {
+    @Nullable Prefetch prefetch = currentPrefetch;
+    if (prefetch == null) {
+      return upstream.read(buffer, offset, readLength);
+    }
+    int bytesRead = prefetch.read(currentPrefetchReadPosition, buffer, offset, readLength);
+    if (bytesRead != C.RESULT_END_OF_INPUT) {
+      currentPrefetchReadPosition += bytesRead;
+    }
+    return bytesRead;
+  }
+
+  @Override
+  @Nullable
+  public Uri getUri() {
+    @Nullable Prefetch prefetch = currentPrefetch;
+    return prefetch != null ? prefetch.getUri() : upstream.getUri();
+  }
+
+  @Override
+  public Map<String, List<String>> getResponseHeaders() {
+    @Nullable Prefetch prefetch = currentPrefetch;
+    return prefetch != null ? prefetch.getResponseHeaders() : upstream.getResponseHeaders();
+  }
+
+  @Override
+  public void close() throws IOException {
+    @Nullable Prefetch prefetch = currentPrefetch;
+    if (prefetch != null) {
+      // Stops the prefetch if the data wasn't read to the end, and releases the loaded data.
+      prefetch.cancel();
+      currentPrefetch = null;
+    } else {
+      upstream.close();
+    }
+  }
+
+  @Nullable
+  private synchronized Prefetch removePrefetch(DataSpec dataSpec) {
+    int index = indexOfPrefetch(dataSpec);
+    return index != C.INDEX_UNSET ? pendingPrefetches.remove(index) : null;
+  }
+
+  private int indexOfPrefetch(DataSpec dataSpec) {
+    for (int i = 0; i < pendingPrefetches.size(); i++) {
+      if (isSameData(pendingPrefetches.get(i).dataSpec, dataSpec)) {
+        return i;
+      }
+    }
+    return C.INDEX_UNSET;
+  }
+
+  private static int indexOf(List<DataSpec> dataSpecs, DataSpec dataSpec) {
+    for (int i = 0; i < dataSpecs.size(); i++) {
+      if (isSameData(dataSpecs.get(i), dataSpec)) {
+        return i;
+      }
+    }
+    return C.INDEX_UNSET;
+  }
+
+  private static boolean isSameData(DataSpec dataSpec, DataSpec other) {
+    return dataSpec.position == other.position
+        && dataSpec.length == other.length
+        && dataSpec.httpMethod == other.httpMethod
+        && dataSpec.uri.equals(other.uri)
+        && Util.areEqual(dataSpec.key, other.key);
+  }
+
+  /** Loads the data of a {@link DataSpec} into memory. */
+  private final class Prefetch implements Runnable {
+
+    public final DataSpec dataSpec;
+
+    private final int pipelineDepth;
+
+    private byte[] data;
+    private int length;
+    private long resolvedLength;
+    private boolean opened;
+    private boolean finished;
+    private boolean canceled;
+    @Nullable private IOException error;
+    @Nullable private Uri uri;
+    private Map<String, List<String>> responseHeaders;
+
+    public Prefetch(DataSpec dataSpec, int pipelineDepth) {
+      this.dataSpec = dataSpec;
+      this.pipelineDepth = pipelineDepth;
+      data = Util.EMPTY_BYTE_ARRAY;
+      resolvedLength = C.LENGTH_UNSET;
+      responseHeaders = Collections.emptyMap();
+    }
+
+    public synchronized void cancel() {
+      canceled = true;
+      // Release the loaded data, which won't be read.
+      data = Util.EMPTY_BYTE_ARRAY;
+      length = 0;
+      notifyAll();
+    }
+
+    public synchronized long blockUntilOpened() throws IOException {
+      while (!opened && !finished) {
+        waitForProgress();
+      }
+      if (!opened) {
+        throw error != null ? error : new IOException("Prefetch failed: " + dataSpec.uri);
+      }
+      return resolvedLength;
+    }
+
+    public synchronized int read(int position, byte[] buffer, int offset, int readLength)
+        throws IOException {
+      if (readLength == 0) {
+        return 0;
+      }
+      while (position >= length && !finished && error == null) {
+        waitForProgress();
+      }
+      if (position < length) {
+        int bytesToRead = min(readLength, length - position);
+        System.arraycopy(data, position, buffer, offset, bytesToRead);
+        return bytesToRead;
+      }
+      if (error != null) {
+        throw error;
+      }
+      return C.RESULT_END_OF_INPUT;
+    }
+
+    @Nullable
+    public synchronized Uri getUri() {
+      return uri;
+    }
+
+    public synchronized Map<String, List<String>> getResponseHeaders() {
+      return responseHeaders;
+    }
+
+    @Override
+    public void run() {
+      long startTimeMs = C.TIME_UNSET;
+      long firstByteTimeMs = C.TIME_UNSET;
+      long bytesLoaded = 0;
+      @Nullable DataSource dataSource = null;
+      @Nullable IOException loadError = null;
+      try {
+        if (isCanceled()) {
+          return;
+        }
+        startTimeMs = clock.elapsedRealtime();
+        dataSource = upstreamFactory.createDataSource();
+        for (TransferListener transferListener : transferListeners) {
+          dataSource.addTransferListener(transferListener);
+        }
+        long openedLength = dataSource.open(dataSpec);
+        onOpened(openedLength, dataSource.getUri(), dataSource.getResponseHeaders());
+        byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+        int bytesRead;
+        while (!isCanceled()
+            && (bytesRead = dataSource.read(readBuffer, 0, readBuffer.length))
+                != C.RESULT_END_OF_INPUT) {
+          if (firstByteTimeMs == C.TIME_UNSET) {
+            firstByteTimeMs = clock.elapsedRealtime();
+          }
+          onLoaded(readBuffer, bytesRead);
+          bytesLoaded += bytesRead;
+        }
+      } catch (IOException e) {
+        loadError = e;
+      } finally {
+        Util.closeQuietly(dataSource);
+        // Notify the listener before finishing, so that it's notified before the data is read to
+        // the end.
+        if (listener != null && !isCanceled() && startTimeMs != C.TIME_UNSET) {
+          listener.onPrefetchFinished(
+              dataSpec,
+              pipelineDepth,
+              firstByteTimeMs == C.TIME_UNSET ? C.TIME_UNSET : firstByteTimeMs - startTimeMs,
+              /* loadDurationMs= */ clock.elapsedRealtime() - startTimeMs,
+              bytesLoaded,
+              loadError);
+        }
+        onFinished(loadError);
+      }
+    }
+
+    private synchronized boolean isCanceled() {
+      return canceled;
+    }
+
+    private synchronized void onOpened(
+        long resolvedLength, @Nullable Uri uri, Map<String, List<String>> responseHeaders) {
+      this.resolvedLength = resolvedLength;
+      this.uri = uri;
+      this.responseHeaders = responseHeaders;
+      if (!canceled && resolvedLength != C.LENGTH_UNSET && resolvedLength <= Integer.MAX_VALUE) {
+        data = new byte[(int) resolvedLength];
+      }
+      opened = true;
+      notifyAll();
+    }
+
+    private synchronized void onLoaded(byte[] buffer, int bytesLoaded) {
+      if (canceled) {
+        return;
+      }
+      if (length + bytesLoaded > data.length) {
+        data =
+            Arrays.copyOf(
+                data, max(length + bytesLoaded, max(INITIAL_BUFFER_SIZE, data.length * 2)));
+      }
+      System.arraycopy(buffer, 0, data, length, bytesLoaded);
+      length += bytesLoaded;
+      notifyAll();
+    }
+
+    private synchronized void onFinished(@Nullable IOException error) {
+      this.error = error;
+      finished = true;
+      notifyAll();
+    }
+
+    private void waitForProgress() throws InterruptedIOException {
+      if (canceled) {
+        // Only reachable if the prefetch is canceled while the reading thread is blocked on it.
+        throw new InterruptedIOException();
+      }
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+    }
+  }
+}
@@ -20,6 +20,7 @@ import androidx.annotation.WorkerThread;
 import com.google.android.exoplayer2.C;
 import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.NavigableSet;
 import java.util.Set;
 
@@ -208,6 +209,34 @@ public interface Cache {
   @Nullable
   CacheSpan startReadWriteNonBlocking(String key, long position, long length) throws CacheException;
 
+  /**
+   * Same as {@link #startReadWrite(String, long, long)}. However, if the cache entry is locked,
+   * then this method blocks for at most {@code timeoutMs} and returns null as the {@link CacheSpan}
+   * if the entry is still locked.
+   *
+   * <p>The default implementation doesn't block, and is equivalent to {@link
+   * #startReadWriteNonBlocking(String, long, long)}.
+   *
+   * <p>This method may be slow and shouldn't normally be called on the main thread.
+   *
+   * @param key The cache key of the resource.
+   * @param position The starting position in the resource from which data is required.
+   * @param length The length of the data being requested, or {@link C#LENGTH_UNSET} if unbounded.
+   *     The length is ignored if there is a cache entry that overlaps the position. Else, it
+   *     defines the range of data locked by the returned {@link CacheSpan}.
+   * @param timeoutMs The maximum time to wait for a locked cache entry, in milliseconds.
+   * @return The {@link CacheSpan}. Or null if the cache entry is still locked after {@code
+   *     timeoutMs}.
+   * @throws InterruptedException If the thread was interrupted.
+   * @throws CacheException If an error is encountered.
+   */
+  @WorkerThread
+  @Nullable
+  default CacheSpan startReadWrite(String key, long position, long length, long timeoutMs)
+      throws InterruptedException, CacheException {
+    return startReadWriteNonBlocking(key, position, length);
+  }
+
   /**
    * Obtains a cache file into which data can be written. Must only be called when holding a
    * corresponding hole {@link CacheSpan} obtained from {@link #startReadWrite(String, long, long)}.
@@ -314,6 +343,22 @@ public interface Cache {
   void applyContentMetadataMutations(String key, ContentMetadataMutations mutations)
       throws CacheException;
 
+  /**
+   * Applies {@code mutations} to the {@link ContentMetadata} for each of the given resources. This
+   * is equivalent to calling {@link #applyContentMetadataMutations(String,
+   * ContentMetadataMutations)} for each resource, but implementations may persist the changes
+   * once for all of the resources.
+   *
+   * <p>This method may be slow and shouldn't normally be called on the main thread.
+   *
+   * @param keys The cache keys of the resources.
+   * @param mutations Contains mutations to be applied to the metadata of each resource.
+   * @throws CacheException If an error is encountered.
+   */
+  @WorkerThread
+  void applyContentMetadataMutations(Collection<String> keys, ContentMetadataMutations mutations)
+      throws CacheException;
+
   /**
    * Returns a {@link ContentMetadata} for the given resource.
    *
@@ -17,6 +17,7 @@ package com.google.android.exoplayer2.upstream.cache;
 
 import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
 import static com.google.android.exoplayer2.util.Util.castNonNull;
+import static java.lang.Math.max;
 import static java.lang.Math.min;
 
 import android.net.Uri;
@@ -34,6 +35,7 @@ import com.google.android.exoplayer2.upstream.TeeDataSource;
 import com.google.android.exoplayer2.upstream.TransferListener;
 import com.google.android.exoplayer2.upstream.cache.Cache.CacheException;
 import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Log;
 import com.google.android.exoplayer2.util.PriorityTaskManager;
 import java.io.IOException;
 import java.io.InterruptedIOException;
@@ -64,6 +66,8 @@ public final class CacheDataSource implements DataSource {
     @Nullable private PriorityTaskManager upstreamPriorityTaskManager;
     private int upstreamPriority;
     @CacheDataSource.Flags private int flags;
+    private long upstreamReadAheadLength;
+    private long lockedDataTimeoutMs;
     @Nullable private CacheDataSource.EventListener eventListener;
 
     public Factory() {
@@ -219,6 +223,53 @@ public final class CacheDataSource implements DataSource {
       return this;
     }
 
+    /**
+     * Sets the number of bytes to read ahead from upstream into the cache when a request with a
+     * known length is not cached.
+     *
+     * <p>If set to a positive value, the upstream request made to fill a gap in the cache also
+     * covers up to this many bytes following the requested range, as long as they aren't cached
+     * and don't extend past the end of the content. The extra bytes are written into the cache
+     * once all of the requested data has been read, so that subsequent requests for the following
+     * data, such as the scattered small reads made by extractors, can be served from the cache
+     * rather than each requiring an upstream request. Read ahead is only performed if the length
+     * of the content is known.
+     *
+     * <p>The extra bytes are read by the {@link CacheDataSource#read} call that reaches the end of
+     * the requested data, so the length should be kept small. If the {@link CacheDataSource} is
+     * closed before reaching the end of the requested data, the read ahead is abandoned rather
+     * than delaying {@link CacheDataSource#close()}. The default is {@code 0}, which disables
+     * reading ahead.
+     *
+     * @param upstreamReadAheadLength The number of bytes to read ahead, or {@code 0}.
+     * @return This factory.
+     */
+    public Factory setUpstreamReadAheadLength(long upstreamReadAheadLength) {
+      Assertions.checkArgument(upstreamReadAheadLength >= 0);
+      this.upstreamReadAheadLength = upstreamReadAheadLength;
+      return this;
+    }
+
+    /**
+     * Sets how long to wait for data that's being written into the cache by another instance,
+     * before bypassing the cache and requesting the data from upstream.
+     *
+     * <p>Waiting avoids requesting the same data from upstream more than once when it's requested
+     * concurrently, for example by a prefetch and by playback. This setting has no effect if
+     * {@link CacheDataSource#FLAG_BLOCK_ON_CACHE} is set, in which case the instance waits
+     * indefinitely.
+     *
+     * <p>The default is {@code 0}, which bypasses the cache without waiting.
+     *
+     * @param lockedDataTimeoutMs The maximum time to wait, in milliseconds, or {@code 0}.
+     * @return This factory.
+     */
+    public Factory setLockedDataTimeoutMs(long lockedDataTimeoutMs) {
+      Assertions.checkArgument(lockedDataTimeoutMs >= 0);
+      this.lockedDataTimeoutMs = lockedDataTimeoutMs;
+      return this;
+    }
+
     /**
      * Sets the {link EventListener} to which events are delivered.
      *
@@ -237,7 +288,9 @@ public final class CacheDataSource implements DataSource {
       return createDataSourceInternal(
           upstreamDataSourceFactory != null ? upstreamDataSourceFactory.createDataSource() : null,
           flags,
-          upstreamPriority);
+          upstreamPriority,
+          upstreamReadAheadLength,
+          lockedDataTimeoutMs);
     }
 
     /**
@@ -247,6 +300,7 @@ public final class CacheDataSource implements DataSource {
      * <ul>
      *   <li>The {@link #FLAG_BLOCK_ON_CACHE} is always set.
      *   <li>The task priority is overridden to be {@link C#PRIORITY_DOWNLOAD}.
+     *   <li>Reading ahead is disabled, since downloads request exactly the data to be cached.
      * </ul>
      *
      * @return An instance suitable for downloading content.
@@ -255,7 +309,9 @@ public final class CacheDataSource implements DataSource {
       return createDataSourceInternal(
           upstreamDataSourceFactory != null ? upstreamDataSourceFactory.createDataSource() : null,
           flags | FLAG_BLOCK_ON_CACHE,
-          C.PRIORITY_DOWNLOAD);
+          C.PRIORITY_DOWNLOAD,
+          /* upstreamReadAheadLength= */ 0,
+          /* lockedDataTimeoutMs= */ 0);
     }
 
     /**
@@ -274,11 +330,19 @@ public final class CacheDataSource implements DataSource {
      */
     public CacheDataSource createDataSourceForRemovingDownload() {
       return createDataSourceInternal(
-          /* upstreamDataSource= */ null, flags | FLAG_BLOCK_ON_CACHE, C.PRIORITY_DOWNLOAD);
+          /* upstreamDataSource= */ null,
+          flags | FLAG_BLOCK_ON_CACHE,
+          C.PRIORITY_DOWNLOAD,
+          /* upstreamReadAheadLength= */ 0,
+          /* lockedDataTimeoutMs= */ 0);
     }
 
     private CacheDataSource createDataSourceInternal(
-        @Nullable DataSource upstreamDataSource, @Flags int flags, int upstreamPriority) {
+        @Nullable DataSource upstreamDataSource,
+        @Flags int flags,
+        int upstreamPriority,
+        long upstreamReadAheadLength,
+        long lockedDataTimeoutMs) {
       Cache cache = checkNotNull(this.cache);
       @Nullable DataSink cacheWriteDataSink;
       if (cacheIsReadOnly || upstreamDataSource == null) {
@@ -297,6 +361,8 @@ public final class CacheDataSource implements DataSource {
           flags,
           upstreamPriorityTaskManager,
           upstreamPriority,
+          upstreamReadAheadLength,
+          lockedDataTimeoutMs,
           eventListener);
     }
   }
@@ -318,6 +384,13 @@ public final class CacheDataSource implements DataSource {
      * @param reason Reason cache is bypassed.
      */
     void onCacheIgnored(@CacheIgnoredReason int reason);
+
+    /**
+     * Called when a request to upstream was avoided.
+     *
+     * @param reason Reason the request was avoided.
+     */
+    default void onUpstreamRequestAvoided(@UpstreamRequestAvoidedReason int reason) {}
   }
 
   /**
@@ -372,9 +445,33 @@ public final class CacheDataSource implements DataSource {
   /** Cache ignored due to a request with an unset length. */
   public static final int CACHE_IGNORED_REASON_UNSET_LENGTH = 1;
 
+  /**
+   * Reasons a request to upstream may be avoided. One of {@link
+   * #UPSTREAM_REQUEST_AVOIDED_REASON_READ_AHEAD} or {@link
+   * #UPSTREAM_REQUEST_AVOIDED_REASON_DEDUPLICATED}.
+   */
+  @Documented
+  @Retention(RetentionPolicy.SOURCE)
+  @IntDef({
+    UPSTREAM_REQUEST_AVOIDED_REASON_READ_AHEAD,
+    UPSTREAM_REQUEST_AVOIDED_REASON_DEDUPLICATED
+  })
+  public @interface UpstreamRequestAvoidedReason {}
+
+  /** Request avoided because the data was read ahead by a previous request. */
+  public static final int UPSTREAM_REQUEST_AVOIDED_REASON_READ_AHEAD = 0;
+
+  /** Request avoided because the data was written by another instance reading it concurrently. */
+  public static final int UPSTREAM_REQUEST_AVOIDED_REASON_DEDUPLICATED = 1;
+
+  private static final String TAG = "CacheDataSource";
+
   /** Minimum number of bytes to read before checking cache for availability. */
   private static final long MIN_READ_BEFORE_CHECKING_CACHE = 100 * 1024;
 
+  /** Size of the buffer used to read ahead into the cache. */
+  private static final int READ_AHEAD_BUFFER_SIZE = 16 * 1024;
+
   private final Cache cache;
   private final DataSource cacheReadDataSource;
   @Nullable private final DataSource cacheWriteDataSource;
@@ -385,6 +482,8 @@ public final class CacheDataSource implements DataSource {
   private final boolean blockOnCache;
   private final boolean ignoreCacheOnError;
   private final boolean ignoreCacheForUnsetLengthRequests;
+  private final long upstreamReadAheadLength;
+  private final long lockedDataTimeoutMs;
 
   @Nullable private Uri actualUri;
   @Nullable private DataSpec requestDataSpec;
@@ -397,6 +496,11 @@ public final class CacheDataSource implements DataSource {
   private boolean currentRequestIgnoresCache;
   private long totalCachedBytesRead;
   private long checkCachePosition;
+  private boolean currentSourceReadsAhead;
+  @Nullable private String readAheadKey;
+  private long readAheadPosition;
+  private long readAheadEndPosition;
+  private byte @MonotonicNonNull [] readAheadBuffer;
 
   /**
    * Constructs an instance with default {@link DataSource} and {@link DataSink} instances for
@@ -495,6 +599,8 @@ public final class CacheDataSource implements DataSource {
         flags,
         /* upstreamPriorityTaskManager= */ null,
         /* upstreamPriority= */ C.PRIORITY_PLAYBACK,
+        /* upstreamReadAheadLength= */ 0,
+        /* lockedDataTimeoutMs= */ 0,
         eventListener);
   }
 
@@ -507,6 +613,8 @@ public final class CacheDataSource implements DataSource {
       @Flags int flags,
       @Nullable PriorityTaskManager upstreamPriorityTaskManager,
       int upstreamPriority,
+      long upstreamReadAheadLength,
+      long lockedDataTimeoutMs,
       @Nullable EventListener eventListener) {
     this.cache = cache;
     this.cacheReadDataSource = cacheReadDataSource;
@@ -515,6 +623,8 @@ public final class CacheDataSource implements DataSource {
     this.ignoreCacheOnError = (flags & FLAG_IGNORE_CACHE_ON_ERROR) != 0;
     this.ignoreCacheForUnsetLengthRequests =
         (flags & FLAG_IGNORE_CACHE_FOR_UNSET_LENGTH_REQUESTS) != 0;
+    this.upstreamReadAheadLength = upstreamReadAheadLength;
+    this.lockedDataTimeoutMs = lockedDataTimeoutMs;
     if (upstreamDataSource != null) {
       if (upstreamPriorityTaskManager != null) {
         upstreamDataSource =
@@ -591,12 +701,19 @@ public final class CacheDataSource implements DataSource {
       return 0;
     }
     if (bytesRemaining == 0) {
+      if (currentSourceReadsAhead) {
+        finishReadAhead();
+      }
       return C.RESULT_END_OF_INPUT;
     }
     try {
       if (readPosition >= checkCachePosition) {
         openNextSource(requestDataSpec, true);
       }
+      if (bytesRemaining != C.LENGTH_UNSET) {
+        // The current source may also read ahead past the requested range.
+        readLength = (int) min(readLength, bytesRemaining);
+      }
       int bytesRead = checkNotNull(currentDataSource).read(buffer, offset, readLength);
       if (bytesRead != C.RESULT_END_OF_INPUT) {
         if (isReadingFromCache()) {
@@ -648,6 +765,8 @@ public final class CacheDataSource implements DataSource {
     readPosition = 0;
     notifyBytesRead();
     try {
+      // Any read ahead that wasn't finished is abandoned. The data already read has been written
+      // into the cache, and will be committed when the current source is closed.
       closeCurrentSource();
     } catch (Throwable e) {
       handleBeforeThrow(e);
@@ -671,19 +790,29 @@ public final class CacheDataSource implements DataSource {
    *     reading from {@link #upstreamDataSource}, which is the currently open source.
    */
   private void openNextSource(DataSpec requestDataSpec, boolean checkCache) throws IOException {
-    @Nullable CacheSpan nextSpan;
+    @Nullable CacheSpan nextSpan = null;
     String key = castNonNull(requestDataSpec.key);
-    if (currentRequestIgnoresCache) {
-      nextSpan = null;
-    } else if (blockOnCache) {
-      try {
-        nextSpan = cache.startReadWrite(key, readPosition, bytesRemaining);
-      } catch (InterruptedException e) {
-        Thread.currentThread().interrupt();
-        throw new InterruptedIOException();
+    long readAheadLength = currentRequestIgnoresCache ? 0 : getReadAheadLength(key);
+    if (readAheadLength > 0) {
+      // Don't block if the range read ahead is locked. Only the requested range is waited for.
+      nextSpan =
+          cache.startReadWriteNonBlocking(key, readPosition, bytesRemaining + readAheadLength);
+    }
+    if (nextSpan == null && !currentRequestIgnoresCache) {
+      readAheadLength = 0;
+      if (blockOnCache) {
+        nextSpan = startReadWriteBlocking(key);
+      } else {
+        nextSpan = cache.startReadWriteNonBlocking(key, readPosition, bytesRemaining);
+        if (nextSpan == null && lockedDataTimeoutMs > 0) {
+          // The data is being written by another instance. Wait a while for it rather than also
+          // requesting it from upstream, but bypass the cache if it's still locked afterwards.
+          nextSpan = startReadWriteWithTimeout(key, lockedDataTimeoutMs);
+          if (nextSpan != null && nextSpan.isCached) {
+            notifyUpstreamRequestAvoided(UPSTREAM_REQUEST_AVOIDED_REASON_DEDUPLICATED);
+          }
+        }
       }
-    } else {
-      nextSpan = cache.startReadWriteNonBlocking(key, readPosition, bytesRemaining);
     }
 
     DataSpec nextDataSpec;
@@ -712,6 +841,12 @@ public final class CacheDataSource implements DataSource {
               .setLength(length)
               .build();
       nextDataSource = cacheReadDataSource;
+      if (key.equals(readAheadKey)
+          && readPosition >= readAheadPosition
+          && readPosition < readAheadEndPosition) {
+        readAheadPosition = readPosition + length;
+        notifyUpstreamRequestAvoided(UPSTREAM_REQUEST_AVOIDED_REASON_READ_AHEAD);
+      }
     } else {
       // Data is not cached, and data is not locked, read from upstream with cache backing.
       long length;
@@ -720,7 +855,7 @@ public final class CacheDataSource implements DataSource {
       } else {
         length = nextSpan.length;
         if (bytesRemaining != C.LENGTH_UNSET) {
-          length = min(length, bytesRemaining);
+          length = min(length, bytesRemaining + readAheadLength);
         }
       }
       nextDataSpec =
@@ -761,7 +896,16 @@ public final class CacheDataSource implements DataSource {
     }
     currentDataSource = nextDataSource;
     currentDataSpecLengthUnset = nextDataSpec.length == C.LENGTH_UNSET;
+    currentSourceReadsAhead =
+        readAheadLength > 0
+            && nextDataSource == cacheWriteDataSource
+            && nextDataSpec.length > bytesRemaining;
     long resolvedLength = nextDataSource.open(nextDataSpec);
+    if (currentSourceReadsAhead) {
+      readAheadKey = key;
+      readAheadPosition = readPosition + bytesRemaining;
+      readAheadEndPosition = readPosition + nextDataSpec.length;
+    }
 
     // Update bytesRemaining, actualUri and (if writing to cache) the cache metadata.
     ContentMetadataMutations mutations = new ContentMetadataMutations();
@@ -779,6 +923,63 @@ public final class CacheDataSource implements DataSource {
     }
   }
 
+  /**
+   * Returns the number of bytes to read ahead past the requested range if it's not cached, or 0 if
+   * the data shouldn't be read ahead.
+   */
+  private long getReadAheadLength(String key) {
+    if (upstreamReadAheadLength == 0
+        || cacheWriteDataSource == null
+        || bytesRemaining == C.LENGTH_UNSET) {
+      return 0;
+    }
+    // Only read ahead if the content length is known, so that the request doesn't extend past the
+    // end of the content.
+    long contentLength = ContentMetadata.getContentLength(cache.getContentMetadata(key));
+    if (contentLength == C.LENGTH_UNSET) {
+      return 0;
+    }
+    return max(0, min(upstreamReadAheadLength, contentLength - readPosition - bytesRemaining));
+  }
+
+  private CacheSpan startReadWriteBlocking(String key) throws IOException {
+    try {
+      return cache.startReadWrite(key, readPosition, bytesRemaining);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+
+  @Nullable
+  private CacheSpan startReadWriteWithTimeout(String key, long timeoutMs) throws IOException {
+    try {
+      return cache.startReadWrite(key, readPosition, bytesRemaining, timeoutMs);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+
+  /**
+   * Reads the data remaining in the current source, which was read ahead past the requested range,
+   * so that it's written into the cache. Failures are not propagated, since all of the requested
+   * data has already been read.
+   */
+  private void finishReadAhead() {
+    currentSourceReadsAhead = false;
+    DataSource currentDataSource = checkNotNull(this.currentDataSource);
+    if (readAheadBuffer == null) {
+      readAheadBuffer = new byte[READ_AHEAD_BUFFER_SIZE];
+    }
+    try {
+      while (currentDataSource.read(readAheadBuffer, 0, readAheadBuffer.length)
+          != C.RESULT_END_OF_INPUT) {}
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to read ahead", e);
+    }
+  }
+
   private void setNoBytesRemainingAndMaybeStoreLength(String key) throws IOException {
     bytesRemaining = 0;
     if (isWritingToCache()) {
@@ -818,6 +1019,7 @@ public final class CacheDataSource implements DataSource {
     } finally {
       currentDataSource = null;
       currentDataSpecLengthUnset = false;
+      currentSourceReadsAhead = false;
       if (currentHoleSpan != null) {
         cache.releaseHoleSpan(currentHoleSpan);
         currentHoleSpan = null;
@@ -847,6 +1049,12 @@ public final class CacheDataSource implements DataSource {
     }
   }
 
+  private void notifyUpstreamRequestAvoided(@UpstreamRequestAvoidedReason int reason) {
+    if (eventListener != null) {
+      eventListener.onUpstreamRequestAvoided(reason);
+    }
+  }
+
   private void notifyBytesRead() {
     if (eventListener != null && totalCachedBytesRead > 0) {
       eventListener.onCachedBytesRead(cache.getCacheSpace(), totalCachedBytesRead);
@@ -16,6 +16,7 @@
 package com.google.android.exoplayer2.upstream.cache;
 
 import com.google.android.exoplayer2.C;
+import java.util.List;
 
 /**
  * Evicts data from a {@link Cache}. Implementations should call {@link Cache#removeSpan(CacheSpan)}
@@ -35,6 +36,20 @@ public interface CacheEvictor extends Cache.Listener {
    */
   void onCacheInitialized();
 
+  /**
+   * Called when the cache has loaded spans from disk while being initialized, instead of calling
+   * {@link #onSpanAdded(Cache, CacheSpan)} for each of them. The default implementation calls
+   * {@link #onSpanAdded(Cache, CacheSpan)} for each span.
+   *
+   * @param cache The source of the event.
+   * @param spans The loaded spans.
+   */
+  default void onSpansLoaded(Cache cache, List<CacheSpan> spans) {
+    for (int i = 0; i < spans.size(); i++) {
+      onSpanAdded(cache, spans.get(i));
+    }
+  }
+
   /**
    * Called when a writer starts writing to the cache.
    *
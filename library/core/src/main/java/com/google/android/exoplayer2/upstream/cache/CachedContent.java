@@ -28,7 +28,12 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.TreeSet;
 
-/** Defines the cached content for a single resource. */
+/**
+ * Defines the cached content for a single resource.
+ *
+ * <p>Not thread-safe. {@link SimpleCache} synchronizes on the instance when accessing its spans and
+ * locked ranges.
+ */
 /* package */ final class CachedContent {
 
   private static final String TAG = "CachedContent";
@@ -39,11 +44,17 @@ import java.util.TreeSet;
   public final String key;
   /** The cached spans of this content. */
   private final TreeSet<SimpleCacheSpan> cachedSpans;
+  /**
+   * Spans loaded when the cache was initialized that haven't been added to {@link #cachedSpans}
+   * yet. They're added when the spans are first accessed, so that the spans of resources that
+   * aren't accessed are never sorted.
+   */
+  @Nullable private ArrayList<SimpleCacheSpan> loadedSpans;
   /** Currently locked ranges. */
   private final ArrayList<Range> lockedRanges;
 
-  /** Metadata values. */
-  private DefaultContentMetadata metadata;
+  /** Metadata values. Volatile as metadata may be read without holding a lock. */
+  private volatile DefaultContentMetadata metadata;
 
   /**
    * Creates a CachedContent.
@@ -135,11 +146,25 @@ import java.util.TreeSet;
 
   /** Adds the given {@link SimpleCacheSpan} which contains a part of the content. */
   public void addSpan(SimpleCacheSpan span) {
+    addLoadedSpansToCachedSpans();
     cachedSpans.add(span);
   }
 
+  /**
+   * Adds the given {@link SimpleCacheSpan}, which was loaded from disk when the cache was
+   * initialized. The span is only added to the sorted set of spans when the spans are first
+   * accessed.
+   */
+  public void addLoadedSpan(SimpleCacheSpan span) {
+    if (loadedSpans == null) {
+      loadedSpans = new ArrayList<>();
+    }
+    loadedSpans.add(span);
+  }
+
   /** Returns a set of all {@link SimpleCacheSpan}s. */
   public TreeSet<SimpleCacheSpan> getSpans() {
+    addLoadedSpansToCachedSpans();
     return cachedSpans;
   }
 
@@ -152,6 +177,7 @@ import java.util.TreeSet;
    * @return The corresponding cache {@link SimpleCacheSpan}.
    */
   public SimpleCacheSpan getSpan(long position, long length) {
+    addLoadedSpansToCachedSpans();
     SimpleCacheSpan lookupSpan = SimpleCacheSpan.createLookup(key, position);
     SimpleCacheSpan floorSpan = cachedSpans.floor(lookupSpan);
     if (floorSpan != null && floorSpan.position + floorSpan.length > position) {
@@ -219,6 +245,7 @@ import java.util.TreeSet;
    */
   public SimpleCacheSpan setLastTouchTimestamp(
       SimpleCacheSpan cacheSpan, long lastTouchTimestamp, boolean updateFile) {
+    addLoadedSpansToCachedSpans();
     checkState(cachedSpans.remove(cacheSpan));
     File file = checkNotNull(cacheSpan.file);
     if (updateFile) {
@@ -239,11 +266,12 @@ import java.util.TreeSet;
 
   /** Returns whether there are any spans cached. */
   public boolean isEmpty() {
-    return cachedSpans.isEmpty();
+    return cachedSpans.isEmpty() && (loadedSpans == null || loadedSpans.isEmpty());
   }
 
   /** Removes the given span from cache. */
   public boolean removeSpan(CacheSpan span) {
+    addLoadedSpansToCachedSpans();
     if (cachedSpans.remove(span)) {
       if (span.file != null) {
         span.file.delete();
@@ -272,10 +300,30 @@ import java.util.TreeSet;
     CachedContent that = (CachedContent) o;
     return id == that.id
         && key.equals(that.key)
-        && cachedSpans.equals(that.cachedSpans)
+        && getSpansWithoutAddingLoadedSpans().equals(that.getSpansWithoutAddingLoadedSpans())
         && metadata.equals(that.metadata);
   }
 
+  /**
+   * Returns all of the spans without modifying {@link #cachedSpans}, so that comparing contents
+   * doesn't have the side effect of sorting their loaded spans.
+   */
+  private TreeSet<SimpleCacheSpan> getSpansWithoutAddingLoadedSpans() {
+    if (loadedSpans == null) {
+      return cachedSpans;
+    }
+    TreeSet<SimpleCacheSpan> spans = new TreeSet<>(cachedSpans);
+    spans.addAll(loadedSpans);
+    return spans;
+  }
+
+  private void addLoadedSpansToCachedSpans() {
+    if (loadedSpans != null) {
+      cachedSpans.addAll(loadedSpans);
+      loadedSpans = null;
+    }
+  }
+
   private static final class Range {
 
     /** The starting position of the range. */
@@ -31,6 +31,7 @@ import android.util.SparseBooleanArray;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.database.DatabaseIOException;
 import com.google.android.exoplayer2.database.DatabaseProvider;
 import com.google.android.exoplayer2.database.VersionTable;
@@ -45,19 +46,28 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
 import javax.crypto.CipherOutputStream;
@@ -71,10 +81,12 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 /* package */ class CachedContentIndex {
 
   /* package */ static final String FILE_NAME_ATOMIC = "cached_content_index.exi";
+  /* package */ static final String FILE_NAME_JOURNAL = FILE_NAME_ATOMIC + ".journal";
 
   private static final int INCREMENTAL_METADATA_READ_LENGTH = 10 * 1024 * 1024;
 
-  private final HashMap<String, CachedContent> keyToContent;
+  // Concurrent so that SimpleCache can look up content without holding the cache lock.
+  private final ConcurrentHashMap<String, CachedContent> keyToContent;
   /**
    * Maps assigned ids to their corresponding keys. Also contains (id -> null) entries for ids that
    * have been removed from the index since it was last stored. This prevents reuse of these ids,
@@ -101,15 +113,44 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   /** Tracks ids that are new since the index was last stored. */
   private final SparseBooleanArray newIds;
 
-  private Storage storage;
-  @Nullable private Storage previousStorage;
+  private final Storage storage;
+  private final List<Storage> previousStorages;
 
   /** Returns whether the file is an index file. */
   public static boolean isIndexFile(String fileName) {
-    // Atomic file backups add additional suffixes to the file name.
+    // Atomic file backups and journal files add additional suffixes to the file name.
     return fileName.startsWith(FILE_NAME_ATOMIC);
   }
 
+  /**
+   * Creates an instance that stores the index in an append-only journal file, migrating the index
+   * from database or legacy storage if the journal doesn't exist yet.
+   *
+   * <p>If a secret key is given, the records of the journal are encrypted with it, and an existing
+   * unencrypted journal is rewritten encrypted. An encrypted journal can't be read without the key,
+   * in which case it's discarded.
+   *
+   * @param storageDir The directory in which the journal, and any legacy storage, is stored.
+   * @param migrationDatabaseProvider Provides the database from which an index previously stored in
+   *     database storage is migrated, or {@code null} if there's no such index.
+   * @param secretKey A 16 byte AES key with which the journal is encrypted, and with which legacy
+   *     storage that was written encrypted is read, or {@code null}.
+   * @return The created instance.
+   */
+  public static CachedContentIndex createWithJournalStorage(
+      File storageDir,
+      @Nullable DatabaseProvider migrationDatabaseProvider,
+      @Nullable byte[] secretKey) {
+    List<Storage> previousStorages = new ArrayList<>();
+    if (migrationDatabaseProvider != null) {
+      previousStorages.add(new DatabaseStorage(migrationDatabaseProvider));
+    }
+    previousStorages.add(
+        new LegacyStorage(new File(storageDir, FILE_NAME_ATOMIC), secretKey, /* encrypt= */ false));
+    return new CachedContentIndex(
+        new JournalStorage(new File(storageDir, FILE_NAME_JOURNAL), secretKey), previousStorages);
+  }
+
   /**
    * Deletes index data for the specified cache.
    *
@@ -161,10 +202,11 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       boolean legacyStorageEncrypt,
       boolean preferLegacyStorage) {
     checkState(databaseProvider != null || legacyStorageDir != null);
-    keyToContent = new HashMap<>();
+    keyToContent = new ConcurrentHashMap<>();
     idToKey = new SparseArray<>();
     removedIds = new SparseBooleanArray();
     newIds = new SparseBooleanArray();
+    previousStorages = new ArrayList<>();
     @Nullable
     Storage databaseStorage =
         databaseProvider != null ? new DatabaseStorage(databaseProvider) : null;
@@ -176,6 +218,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
                 legacyStorageSecretKey,
                 legacyStorageEncrypt)
             : null;
+    @Nullable Storage previousStorage;
     if (databaseStorage == null || (legacyStorage != null && preferLegacyStorage)) {
       storage = castNonNull(legacyStorage);
       previousStorage = databaseStorage;
@@ -183,6 +226,18 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       storage = databaseStorage;
       previousStorage = legacyStorage;
     }
+    if (previousStorage != null) {
+      previousStorages.add(previousStorage);
+    }
+  }
+
+  private CachedContentIndex(Storage storage, List<Storage> previousStorages) {
+    keyToContent = new ConcurrentHashMap<>();
+    idToKey = new SparseArray<>();
+    removedIds = new SparseBooleanArray();
+    newIds = new SparseBooleanArray();
+    this.storage = storage;
+    this.previousStorages = previousStorages;
   }
 
   /**
@@ -196,21 +251,30 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   @WorkerThread
   public void initialize(long uid) throws IOException {
     storage.initialize(uid);
-    if (previousStorage != null) {
-      previousStorage.initialize(uid);
+    for (int i = 0; i < previousStorages.size(); i++) {
+      previousStorages.get(i).initialize(uid);
+    }
+    @Nullable Storage migrationStorage = null;
+    if (!storage.exists()) {
+      for (int i = 0; i < previousStorages.size(); i++) {
+        if (previousStorages.get(i).exists()) {
+          migrationStorage = previousStorages.get(i);
+          break;
+        }
+      }
     }
-    if (!storage.exists() && previousStorage != null && previousStorage.exists()) {
+    if (migrationStorage != null) {
       // Copy from previous storage into current storage.
-      previousStorage.load(keyToContent, idToKey);
+      migrationStorage.load(keyToContent, idToKey);
       storage.storeFully(keyToContent);
     } else {
       // Load from the current storage.
       storage.load(keyToContent, idToKey);
     }
-    if (previousStorage != null) {
-      previousStorage.delete();
-      previousStorage = null;
+    for (int i = 0; i < previousStorages.size(); i++) {
+      previousStorages.get(i).delete();
     }
+    previousStorages.clear();
   }
 
   /**
@@ -462,7 +526,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
      * @param idToKey The id to key map to populate with persisted data.
      * @throws IOException If an error occurs loading the index.
      */
-    void load(HashMap<String, CachedContent> content, SparseArray<@NullableType String> idToKey)
+    void load(Map<String, CachedContent> content, SparseArray<@NullableType String> idToKey)
         throws IOException;
 
     /**
@@ -472,17 +536,17 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
      * @param content The key to content map to persist.
      * @throws IOException If an error occurs persisting the index.
      */
-    void storeFully(HashMap<String, CachedContent> content) throws IOException;
+    void storeFully(Map<String, CachedContent> content) throws IOException;
 
     /**
      * Ensures incremental changes to the index since the initial {@link #initialize(long)} or last
-     * {@link #storeFully(HashMap)} are persisted. The storage will have been notified of all such
+     * {@link #storeFully(Map)} are persisted. The storage will have been notified of all such
      * changes via {@link #onUpdate(CachedContent)} and {@link #onRemove(CachedContent, boolean)}.
      *
      * @param content The key to content map to persist.
      * @throws IOException If an error occurs persisting the index.
      */
-    void storeIncremental(HashMap<String, CachedContent> content) throws IOException;
+    void storeIncremental(Map<String, CachedContent> content) throws IOException;
 
     /**
      * Called when a {@link CachedContent} is added or updated.
@@ -556,7 +620,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
     @Override
     public void load(
-        HashMap<String, CachedContent> content, SparseArray<@NullableType String> idToKey) {
+        Map<String, CachedContent> content, SparseArray<@NullableType String> idToKey) {
       checkState(!changed);
       if (!readFile(content, idToKey)) {
         content.clear();
@@ -566,13 +630,13 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     }
 
     @Override
-    public void storeFully(HashMap<String, CachedContent> content) throws IOException {
+    public void storeFully(Map<String, CachedContent> content) throws IOException {
       writeFile(content);
       changed = false;
     }
 
     @Override
-    public void storeIncremental(HashMap<String, CachedContent> content) throws IOException {
+    public void storeIncremental(Map<String, CachedContent> content) throws IOException {
       if (!changed) {
         return;
       }
@@ -590,7 +654,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     }
 
     private boolean readFile(
-        HashMap<String, CachedContent> content, SparseArray<@NullableType String> idToKey) {
+        Map<String, CachedContent> content, SparseArray<@NullableType String> idToKey) {
       if (!atomicFile.exists()) {
         return true;
       }
@@ -645,7 +709,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       return true;
     }
 
-    private void writeFile(HashMap<String, CachedContent> content) throws IOException {
+    private void writeFile(Map<String, CachedContent> content) throws IOException {
       @Nullable DataOutputStream output = null;
       try {
         OutputStream outputStream = atomicFile.startWrite();
@@ -809,7 +873,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
     @Override
     public void load(
-        HashMap<String, CachedContent> content, SparseArray<@NullableType String> idToKey)
+        Map<String, CachedContent> content, SparseArray<@NullableType String> idToKey)
         throws IOException {
       checkState(pendingUpdates.size() == 0);
       try {
@@ -852,7 +916,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     }
 
     @Override
-    public void storeFully(HashMap<String, CachedContent> content) throws IOException {
+    public void storeFully(Map<String, CachedContent> content) throws IOException {
       try {
         SQLiteDatabase writableDatabase = databaseProvider.getWritableDatabase();
         writableDatabase.beginTransactionNonExclusive();
@@ -872,7 +936,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     }
 
     @Override
-    public void storeIncremental(HashMap<String, CachedContent> content) throws IOException {
+    public void storeIncremental(Map<String, CachedContent> content) throws IOException {
       if (pendingUpdates.size() == 0) {
         return;
       }
@@ -980,4 +1044,353 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       return TABLE_PREFIX + hexUid;
     }
   }
+
+  /**
+   * {@link Storage} implementation that uses an append-only journal file.
+   *
+   * <p>Each change to the index is appended to the journal as a checksummed record, so that storing
+   * changes doesn't require the whole index to be rewritten. The journal is loaded by reading it
+   * sequentially from a memory mapped buffer. Reading stops at the first incomplete or corrupt
+   * record, which is what an append interrupted by the process being killed leaves behind, and the
+   * journal is truncated to the records read. The journal is compacted by rewriting it once it
+   * contains many more records than there are entries in the index.
+   *
+   * <p>If the journal is encrypted, the payload of each record is encrypted separately using
+   * AES/CBC, with a random initialization vector that precedes the encrypted payload.
+   */
+  private static final class JournalStorage implements Storage {
+
+    private static final int MAGIC = 0x45584A4C;
+    private static final int VERSION = 2;
+    private static final int VERSION_FLAGS_INTRODUCED = 2;
+    private static final int FLAG_ENCRYPTED_JOURNAL = 1;
+    private static final int INITIALIZATION_VECTOR_LENGTH = 16;
+
+    private static final byte RECORD_TYPE_UPDATE = 1;
+    private static final byte RECORD_TYPE_REMOVE = 2;
+    // Record type, payload length and the payload are followed by a CRC32 checksum of all three.
+    private static final int RECORD_PREFIX_LENGTH = 5;
+    private static final int RECORD_CHECKSUM_LENGTH = 4;
+
+    private static final int MIN_RECORD_COUNT_FOR_COMPACTION = 1024;
+
+    private final File file;
+    private final File tempFile;
+    private final SparseArray<@NullableType CachedContent> pendingUpdates;
+    private final CRC32 crc32;
+    @Nullable private final Cipher cipher;
+    @Nullable private final SecretKeySpec secretKeySpec;
+    @Nullable private final SecureRandom random;
+
+    private int recordCount;
+    private boolean journalEncrypted;
+
+    public JournalStorage(File file, @Nullable byte[] secretKey) {
+      this.file = file;
+      tempFile = new File(file.getPath() + ".tmp");
+      pendingUpdates = new SparseArray<>();
+      crc32 = new CRC32();
+      if (secretKey != null) {
+        Assertions.checkArgument(secretKey.length == 16);
+        try {
+          cipher = getCipher();
+          secretKeySpec = new SecretKeySpec(secretKey, "AES");
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+          throw new IllegalStateException(e); // Should never happen.
+        }
+        random = new SecureRandom();
+      } else {
+        cipher = null;
+        secretKeySpec = null;
+        random = null;
+      }
+    }
+
+    @Override
+    public void initialize(long uid) {
+      // Do nothing. Journal storage uses a separate file for each cache.
+    }
+
+    @Override
+    public boolean exists() {
+      return file.exists();
+    }
+
+    @Override
+    public void delete() {
+      file.delete();
+      tempFile.delete();
+    }
+
+    @Override
+    public void load(Map<String, CachedContent> content, SparseArray<@NullableType String> idToKey)
+        throws IOException {
+      checkState(pendingUpdates.size() == 0);
+      recordCount = 0;
+      tempFile.delete();
+      if (!file.exists()) {
+        return;
+      }
+      try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+        FileChannel channel = randomAccessFile.getChannel();
+        long fileLength = channel.size();
+        long validLength =
+            fileLength <= Integer.MAX_VALUE
+                ? readJournal(
+                    channel.map(FileChannel.MapMode.READ_ONLY, /* position= */ 0, fileLength),
+                    content,
+                    idToKey)
+                : C.LENGTH_UNSET;
+        if (validLength == C.LENGTH_UNSET) {
+          content.clear();
+          idToKey.clear();
+          channel.truncate(0);
+        } else if (validLength < fileLength) {
+          // Discard the incomplete or corrupt records at the end of the journal, so that records
+          // appended later are read.
+          channel.truncate(validLength);
+        }
+      }
+      if (recordCount == 0 || journalEncrypted != (cipher != null)) {
+        // The journal was empty or unreadable, or it needs to be encrypted. Rewrite it so that it
+        // has a valid header and the records are encrypted if there's a key.
+        storeFully(content);
+      }
+    }
+
+    @Override
+    public void storeFully(Map<String, CachedContent> content) throws IOException {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      DataOutputStream output = new DataOutputStream(outputStream);
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeInt(cipher != null ? FLAG_ENCRYPTED_JOURNAL : 0);
+      journalEncrypted = cipher != null;
+      for (CachedContent cachedContent : content.values()) {
+        writeUpdateRecord(cachedContent, outputStream);
+      }
+      try (FileOutputStream fileOutputStream = new FileOutputStream(tempFile)) {
+        outputStream.writeTo(fileOutputStream);
+        fileOutputStream.getFD().sync();
+      }
+      if (!tempFile.renameTo(file)) {
+        tempFile.delete();
+        throw new IOException("Failed to replace " + file);
+      }
+      recordCount = content.size();
+      pendingUpdates.clear();
+    }
+
+    @Override
+    public void storeIncremental(Map<String, CachedContent> content) throws IOException {
+      int pendingUpdateCount = pendingUpdates.size();
+      if (pendingUpdateCount == 0) {
+        return;
+      }
+      int newRecordCount = recordCount + pendingUpdateCount;
+      if (!file.exists()
+          || (newRecordCount >= MIN_RECORD_COUNT_FOR_COMPACTION
+              && newRecordCount > 2 * content.size())) {
+        storeFully(content);
+        return;
+      }
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      for (int i = 0; i < pendingUpdateCount; i++) {
+        @Nullable CachedContent cachedContent = pendingUpdates.valueAt(i);
+        if (cachedContent == null) {
+          writeRemoveRecord(pendingUpdates.keyAt(i), outputStream);
+        } else {
+          writeUpdateRecord(cachedContent, outputStream);
+        }
+      }
+      try (FileOutputStream fileOutputStream = new FileOutputStream(file, /* append= */ true)) {
+        outputStream.writeTo(fileOutputStream);
+        fileOutputStream.getFD().sync();
+      }
+      recordCount = newRecordCount;
+      pendingUpdates.clear();
+    }
+
+    @Override
+    public void onUpdate(CachedContent cachedContent) {
+      pendingUpdates.put(cachedContent.id, cachedContent);
+    }
+
+    @Override
+    public void onRemove(CachedContent cachedContent, boolean neverStored) {
+      if (neverStored) {
+        pendingUpdates.delete(cachedContent.id);
+      } else {
+        pendingUpdates.put(cachedContent.id, null);
+      }
+    }
+
+    /**
+     * Reads the records of the journal into {@code content} and {@code idToKey}.
+     *
+     * @return The length of the journal up to the end of the last valid record, or {@link
+     *     C#LENGTH_UNSET} if the journal header is invalid.
+     */
+    private long readJournal(
+        MappedByteBuffer buffer,
+        Map<String, CachedContent> content,
+        SparseArray<@NullableType String> idToKey) {
+      if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+        return C.LENGTH_UNSET;
+      }
+      int version = buffer.getInt();
+      if (version < 1 || version > VERSION) {
+        return C.LENGTH_UNSET;
+      }
+      int flags = 0;
+      if (version >= VERSION_FLAGS_INTRODUCED) {
+        if (buffer.remaining() < 4) {
+          return C.LENGTH_UNSET;
+        }
+        flags = buffer.getInt();
+      }
+      journalEncrypted = (flags & FLAG_ENCRYPTED_JOURNAL) != 0;
+      if (journalEncrypted && cipher == null) {
+        // The journal can't be read without the key.
+        return C.LENGTH_UNSET;
+      }
+      int validLength = buffer.position();
+      while (buffer.remaining() >= RECORD_PREFIX_LENGTH + RECORD_CHECKSUM_LENGTH) {
+        buffer.position(validLength + 1);
+        int payloadLength = buffer.getInt();
+        if (payloadLength < 0 || payloadLength > buffer.remaining() - RECORD_CHECKSUM_LENGTH) {
+          break;
+        }
+        byte[] record = new byte[RECORD_PREFIX_LENGTH + payloadLength];
+        buffer.position(validLength);
+        buffer.get(record);
+        int checksum = buffer.getInt();
+        crc32.reset();
+        crc32.update(record, 0, record.length);
+        if ((int) crc32.getValue() != checksum) {
+          break;
+        }
+        try {
+          applyRecord(record, content, idToKey);
+        } catch (IOException e) {
+          break;
+        }
+        recordCount++;
+        validLength = buffer.position();
+      }
+      return validLength;
+    }
+
+    private void writeUpdateRecord(CachedContent cachedContent, ByteArrayOutputStream outputStream)
+        throws IOException {
+      ByteArrayOutputStream payloadStream = new ByteArrayOutputStream();
+      DataOutputStream payload = new DataOutputStream(payloadStream);
+      payload.writeInt(cachedContent.id);
+      payload.writeUTF(cachedContent.key);
+      writeContentMetadata(cachedContent.getMetadata(), payload);
+      writeRecord(RECORD_TYPE_UPDATE, payloadStream.toByteArray(), outputStream);
+    }
+
+    private void writeRemoveRecord(int id, ByteArrayOutputStream outputStream) throws IOException {
+      ByteArrayOutputStream payloadStream = new ByteArrayOutputStream();
+      new DataOutputStream(payloadStream).writeInt(id);
+      writeRecord(RECORD_TYPE_REMOVE, payloadStream.toByteArray(), outputStream);
+    }
+
+    private void writeRecord(byte type, byte[] payload, ByteArrayOutputStream outputStream)
+        throws IOException {
+      if (cipher != null) {
+        payload = encrypt(payload);
+      }
+      byte[] prefix = new byte[RECORD_PREFIX_LENGTH];
+      prefix[0] = type;
+      prefix[1] = (byte) (payload.length >>> 24);
+      prefix[2] = (byte) (payload.length >>> 16);
+      prefix[3] = (byte) (payload.length >>> 8);
+      prefix[4] = (byte) payload.length;
+      crc32.reset();
+      crc32.update(prefix, 0, prefix.length);
+      crc32.update(payload, 0, payload.length);
+      DataOutputStream output = new DataOutputStream(outputStream);
+      output.write(prefix);
+      output.write(payload);
+      output.writeInt((int) crc32.getValue());
+    }
+
+    private void applyRecord(
+        byte[] record,
+        Map<String, CachedContent> content,
+        SparseArray<@NullableType String> idToKey)
+        throws IOException {
+      byte[] payload =
+          Arrays.copyOfRange(record, /* from= */ RECORD_PREFIX_LENGTH, /* to= */ record.length);
+      if (journalEncrypted) {
+        payload = decrypt(payload);
+      }
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+      int id = input.readInt();
+      switch (record[0]) {
+        case RECORD_TYPE_UPDATE:
+          String key = input.readUTF();
+          DefaultContentMetadata metadata = readContentMetadata(input);
+          content.put(key, new CachedContent(id, key, metadata));
+          idToKey.put(id, key);
+          break;
+        case RECORD_TYPE_REMOVE:
+          @Nullable String removedKey = idToKey.get(id);
+          if (removedKey != null) {
+            @Nullable CachedContent cachedContent = content.get(removedKey);
+            if (cachedContent != null && cachedContent.id == id) {
+              content.remove(removedKey);
+            }
+          }
+          idToKey.remove(id);
+          break;
+        default:
+          throw new IOException("Unexpected record type: " + record[0]);
+      }
+    }
+
+    private byte[] encrypt(byte[] payload) {
+      byte[] initializationVector = new byte[INITIALIZATION_VECTOR_LENGTH];
+      castNonNull(random).nextBytes(initializationVector);
+      byte[] encryptedPayload;
+      try {
+        Cipher cipher = castNonNull(this.cipher);
+        cipher.init(
+            Cipher.ENCRYPT_MODE,
+            castNonNull(secretKeySpec),
+            new IvParameterSpec(initializationVector));
+        encryptedPayload = cipher.doFinal(payload);
+      } catch (GeneralSecurityException e) {
+        throw new IllegalStateException(e); // Should never happen.
+      }
+      byte[] output =
+          Arrays.copyOf(
+              initializationVector, INITIALIZATION_VECTOR_LENGTH + encryptedPayload.length);
+      System.arraycopy(
+          encryptedPayload, 0, output, INITIALIZATION_VECTOR_LENGTH, encryptedPayload.length);
+      return output;
+    }
+
+    private byte[] decrypt(byte[] payload) throws IOException {
+      if (payload.length < INITIALIZATION_VECTOR_LENGTH) {
+        throw new IOException("Encrypted record too short");
+      }
+      try {
+        Cipher cipher = castNonNull(this.cipher);
+        cipher.init(
+            Cipher.DECRYPT_MODE,
+            castNonNull(secretKeySpec),
+            new IvParameterSpec(payload, /* offset= */ 0, INITIALIZATION_VECTOR_LENGTH));
+        return cipher.doFinal(
+            payload, INITIALIZATION_VECTOR_LENGTH, payload.length - INITIALIZATION_VECTOR_LENGTH);
+      } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+        throw new IllegalStateException(e); // Should never happen.
+      } catch (GeneralSecurityException e) {
+        // The record was written with a different key, or is corrupt.
+        throw new IOException(e);
+      }
+    }
+  }
 }
@@ -34,6 +34,11 @@ public interface ContentMetadata {
   String KEY_REDIRECTED_URI = "exo_redir";
   /** Key for content length in bytes (type: long). */
   String KEY_CONTENT_LENGTH = "exo_len";
+  /**
+   * Key for whether the content is pinned (type: long, 1 if pinned). Evictors that support pinning,
+   * such as {@link FrequencyAwareCacheEvictor}, don't evict pinned content.
+   */
+  String KEY_PINNED = "exo_pin";
 
   /**
    * Returns a metadata value.
@@ -75,6 +80,11 @@ public interface ContentMetadata {
     return contentMetadata.get(KEY_CONTENT_LENGTH, C.LENGTH_UNSET);
   }
 
+  /** Returns whether the content is pinned, as stored under {@link #KEY_PINNED}. */
+  static boolean isPinned(ContentMetadata contentMetadata) {
+    return contentMetadata.get(KEY_PINNED, /* defaultValue= */ 0) == 1;
+  }
+
   /**
    * Returns the value stored under {@link #KEY_REDIRECTED_URI} as a {@link Uri}, or {code null} if
    * not set.
@@ -46,6 +46,23 @@ public class ContentMetadataMutations {
     return mutations.set(ContentMetadata.KEY_CONTENT_LENGTH, length);
   }
 
+  /**
+   * Adds a mutation to set the {@link ContentMetadata#KEY_PINNED} value, or to remove any existing
+   * entry if {@code false} is passed.
+   *
+   * @param mutations The mutations to modify.
+   * @param pinned Whether the content is pinned.
+   * @return The mutations instance, for convenience.
+   */
+  public static ContentMetadataMutations setPinned(
+      ContentMetadataMutations mutations, boolean pinned) {
+    if (pinned) {
+      return mutations.set(ContentMetadata.KEY_PINNED, 1);
+    } else {
+      return mutations.remove(ContentMetadata.KEY_PINNED);
+    }
+  }
+
   /**
    * Adds a mutation to set the {@link ContentMetadata#KEY_REDIRECTED_URI} value, or to remove any
    * existing entry if {@code null} is passed.
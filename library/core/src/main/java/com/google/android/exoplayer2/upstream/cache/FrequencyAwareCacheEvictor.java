@@ -0,0 +1,437 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static java.lang.Math.min;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Evicts cache files using a frequency-aware policy based on W-TinyLFU, weighted by the size of
+ * the cached spans.
+ *
+ * <p>New spans enter an admission window that is ordered by recency. When the window is full, its
+ * least recently used span is only admitted to the main region of the cache if it has been
+ * requested more often than the spans it would replace. Request frequencies are estimated with a
+ * count-min sketch whose counts are periodically halved, so that they reflect recent requests.
+ * This stops a single long scan, such as watching a long video once, from flushing the spans that
+ * are requested again and again, such as initialization segments and popular content. The main
+ * region is a segmented LRU: spans that are requested again while on probation are promoted to a
+ * protected segment, from which they are only demoted when the protected segment is full.
+ *
+ * <p>Spans of content that is {@link ContentMetadata#isPinned(ContentMetadata) pinned} are never
+ * evicted. Downloaders pin the content they've downloaded if pinning is enabled on the {@link
+ * com.google.android.exoplayer2.offline.DefaultDownloaderFactory} that creates them.
+ */
+public final class FrequencyAwareCacheEvictor implements CacheEvictor {
+
+  /** The default fraction of the maximum cache size used for the admission window. */
+  public static final float DEFAULT_WINDOW_FRACTION = 0.1f;
+
+  /** The fraction of the main region used for the protected segment. */
+  private static final float PROTECTED_FRACTION = 0.8f;
+
+  private final long maxBytes;
+  private final long maxWindowBytes;
+  private final long maxProtectedBytes;
+  private final TreeMap<CacheSpan, Node> nodes;
+  private final SpanQueue window;
+  private final SpanQueue probation;
+  private final SpanQueue protectedSegment;
+  private final SpanQueue pinned;
+  private final FrequencySketch sketch;
+
+  /**
+   * Spans added while the cache is being initialized, ordered by last touch timestamp, or null once
+   * the cache has been initialized.
+   */
+  @Nullable private TreeSet<Node> initialSpans;
+
+  private long currentSize;
+
+  /**
+   * Creates an instance that uses {@link #DEFAULT_WINDOW_FRACTION}.
+   *
+   * @param maxBytes The maximum size of the cache, in bytes.
+   */
+  public FrequencyAwareCacheEvictor(long maxBytes) {
+    this(maxBytes, DEFAULT_WINDOW_FRACTION);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param maxBytes The maximum size of the cache, in bytes.
+   * @param windowFraction The fraction of {@code maxBytes} used for the admission window. Larger
+   *     windows favor recently written spans over frequently requested ones.
+   */
+  public FrequencyAwareCacheEvictor(long maxBytes, float windowFraction) {
+    checkArgument(windowFraction > 0 && windowFraction < 1);
+    this.maxBytes = maxBytes;
+    maxWindowBytes = (long) (maxBytes * windowFraction);
+    maxProtectedBytes = (long) ((maxBytes - maxWindowBytes) * PROTECTED_FRACTION);
+    nodes = new TreeMap<>();
+    window = new SpanQueue();
+    probation = new SpanQueue();
+    protectedSegment = new SpanQueue();
+    pinned = new SpanQueue();
+    sketch = new FrequencySketch();
+    initialSpans = new TreeSet<>(FrequencyAwareCacheEvictor::compareLastTouchTimestamps);
+  }
+
+  @Override
+  public boolean requiresCacheSpanTouches() {
+    return true;
+  }
+
+  @Override
+  public void onCacheInitialized() {
+    @Nullable TreeSet<Node> initialSpans = this.initialSpans;
+    if (initialSpans == null) {
+      return;
+    }
+    // Spans that were cached before the cache was initialized have already been admitted.
+    for (Node node : initialSpans) {
+      probation.addLast(node);
+    }
+    this.initialSpans = null;
+  }
+
+  @Override
+  public void onStartFile(Cache cache, String key, long position, long length) {
+    sketch.increment(key, position);
+    if (length != C.LENGTH_UNSET) {
+      evictCache(cache, length);
+    }
+  }
+
+  @Override
+  public void onSpanAdded(Cache cache, CacheSpan span) {
+    @Nullable Node existingNode = nodes.get(span);
+    if (existingNode != null) {
+      removeNode(existingNode);
+    }
+    Node node = new Node(span);
+    nodes.put(span, node);
+    currentSize += span.length;
+    sketch.ensureCapacity(nodes.size());
+    if (initialSpans != null) {
+      initialSpans.add(node);
+    } else {
+      window.addLast(node);
+    }
+    evictCache(cache, 0);
+  }
+
+  @Override
+  public void onSpanRemoved(Cache cache, CacheSpan span) {
+    @Nullable Node node = nodes.get(span);
+    if (node != null) {
+      removeNode(node);
+    }
+  }
+
+  @Override
+  public void onSpanTouched(Cache cache, CacheSpan oldSpan, CacheSpan newSpan) {
+    @Nullable Node node = nodes.remove(oldSpan);
+    if (node == null) {
+      onSpanAdded(cache, newSpan);
+      return;
+    }
+    sketch.increment(newSpan.key, newSpan.position);
+    @Nullable SpanQueue queue = node.queue;
+    if (queue == null) {
+      TreeSet<Node> initialSpans = checkNotNull(this.initialSpans);
+      initialSpans.remove(node);
+      node.span = newSpan;
+      nodes.put(newSpan, node);
+      initialSpans.add(node);
+      return;
+    }
+    node.span = newSpan;
+    nodes.put(newSpan, node);
+    queue.remove(node);
+    if (queue == window) {
+      window.addLast(node);
+    } else if (queue == pinned) {
+      // Check whether the content is still pinned when a victim is next needed.
+      probation.addLast(node);
+    } else {
+      protectedSegment.addLast(node);
+      while (protectedSegment.bytes > maxProtectedBytes) {
+        Node demotedNode = checkNotNull(protectedSegment.first());
+        protectedSegment.remove(demotedNode);
+        probation.addLast(demotedNode);
+      }
+    }
+  }
+
+  private void evictCache(Cache cache, long requiredSpace) {
+    while (currentSize + requiredSpace > maxBytes) {
+      @Nullable Node candidate = window.first();
+      @Nullable Node victim;
+      if (candidate != null && window.bytes + requiredSpace > maxWindowBytes) {
+        // The window is full, so its least recently used span either replaces spans in the main
+        // region or is evicted itself.
+        if (shouldAdmit(cache, candidate, currentSize + requiredSpace - maxBytes)) {
+          window.remove(candidate);
+          probation.addLast(candidate);
+          victim = findVictim(cache);
+        } else {
+          victim = candidate;
+        }
+      } else {
+        victim = findVictim(cache);
+      }
+      if (victim == null) {
+        break;
+      }
+      removeSpan(cache, victim);
+    }
+    // The cache has room for any spans overflowing the window, so move them to the main region.
+    while (window.bytes > maxWindowBytes) {
+      Node node = checkNotNull(window.first());
+      window.remove(node);
+      probation.addLast(node);
+    }
+  }
+
+  /**
+   * Returns whether a span leaving the admission window should replace the spans that would be
+   * evicted from the main region to free the given number of bytes.
+   */
+  private boolean shouldAdmit(Cache cache, Node candidate, long bytesToFree) {
+    if (isPinned(cache, candidate.span)) {
+      return true;
+    }
+    int candidateFrequency = sketch.frequency(candidate.span.key, candidate.span.position);
+    for (SpanQueue queue : new SpanQueue[] {probation, protectedSegment}) {
+      @Nullable Node victim = queue.first();
+      while (victim != null && bytesToFree > 0) {
+        if (!isPinned(cache, victim.span)) {
+          if (sketch.frequency(victim.span.key, victim.span.position) >= candidateFrequency) {
+            return false;
+          }
+          bytesToFree -= victim.span.length;
+        }
+        victim = victim.next;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the next span to evict, or null if all spans are pinned. Pinned spans that are found
+   * are moved to the pinned queue, so that they aren't checked again until they're touched.
+   */
+  @Nullable
+  private Node findVictim(Cache cache) {
+    @Nullable TreeSet<Node> initialSpans = this.initialSpans;
+    if (initialSpans != null) {
+      while (!initialSpans.isEmpty()) {
+        Node node = initialSpans.first();
+        if (!isPinned(cache, node.span)) {
+          return node;
+        }
+        initialSpans.remove(node);
+        pinned.addLast(node);
+      }
+    }
+    for (SpanQueue queue : new SpanQueue[] {probation, protectedSegment, window}) {
+      @Nullable Node node = queue.first();
+      while (node != null) {
+        @Nullable Node next = node.next;
+        if (!isPinned(cache, node.span)) {
+          return node;
+        }
+        queue.remove(node);
+        pinned.addLast(node);
+        node = next;
+      }
+    }
+    return null;
+  }
+
+  private void removeSpan(Cache cache, Node node) {
+    cache.removeSpan(node.span);
+    if (nodes.get(node.span) == node) {
+      // The cache didn't report the span as removed, for example because it was already removed.
+      removeNode(node);
+    }
+  }
+
+  private void removeNode(Node node) {
+    if (nodes.get(node.span) == node) {
+      nodes.remove(node.span);
+    }
+    @Nullable SpanQueue queue = node.queue;
+    if (queue != null) {
+      queue.remove(node);
+    } else if (initialSpans != null) {
+      initialSpans.remove(node);
+    }
+    currentSize -= node.span.length;
+  }
+
+  private static boolean isPinned(Cache cache, CacheSpan span) {
+    return ContentMetadata.isPinned(cache.getContentMetadata(span.key));
+  }
+
+  private static int compareLastTouchTimestamps(Node lhs, Node rhs) {
+    long lastTouchTimestampDelta = lhs.span.lastTouchTimestamp - rhs.span.lastTouchTimestamp;
+    if (lastTouchTimestampDelta == 0) {
+      // Use the standard compareTo method as a tie-break.
+      return lhs.span.compareTo(rhs.span);
+    }
+    return lastTouchTimestampDelta < 0 ? -1 : 1;
+  }
+
+  /** A tracked span and its position in a {@link SpanQueue}. */
+  private static final class Node {
+
+    public CacheSpan span;
+    @Nullable public SpanQueue queue;
+    @Nullable public Node previous;
+    @Nullable public Node next;
+
+    public Node(CacheSpan span) {
+      this.span = span;
+    }
+  }
+
+  /** A doubly linked queue of nodes, ordered from least to most recently used. */
+  private static final class SpanQueue {
+
+    public long bytes;
+
+    @Nullable private Node head;
+    @Nullable private Node tail;
+
+    @Nullable
+    public Node first() {
+      return head;
+    }
+
+    public void addLast(Node node) {
+      node.queue = this;
+      node.previous = tail;
+      node.next = null;
+      if (tail != null) {
+        tail.next = node;
+      } else {
+        head = node;
+      }
+      tail = node;
+      bytes += node.span.length;
+    }
+
+    public void remove(Node node) {
+      if (node.previous != null) {
+        node.previous.next = node.next;
+      } else {
+        head = node.next;
+      }
+      if (node.next != null) {
+        node.next.previous = node.previous;
+      } else {
+        tail = node.previous;
+      }
+      node.queue = null;
+      node.previous = null;
+      node.next = null;
+      bytes -= node.span.length;
+    }
+  }
+
+  /**
+   * A count-min sketch estimating how often spans have been requested recently. Counts saturate at
+   * {@link #MAX_COUNT} and are halved each time the number of recorded requests reaches ten times
+   * the width of the sketch.
+   */
+  private static final class FrequencySketch {
+
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+    private static final int MIN_WIDTH = 256;
+    private static final int MAX_WIDTH = 1 << 24;
+    private static final int MAX_COUNT = 15;
+
+    private byte[][] counts;
+    private int widthMask;
+    private int sampleSize;
+    private int requestCount;
+
+    public FrequencySketch() {
+      counts = new byte[SEEDS.length][MIN_WIDTH];
+      widthMask = MIN_WIDTH - 1;
+      sampleSize = 10 * MIN_WIDTH;
+    }
+
+    /** Grows the sketch if needed to track the given number of spans, resetting all counts. */
+    public void ensureCapacity(int spanCount) {
+      int width = widthMask + 1;
+      if (spanCount <= width || width == MAX_WIDTH) {
+        return;
+      }
+      width = min(Integer.highestOneBit(spanCount - 1) << 1, MAX_WIDTH);
+      counts = new byte[SEEDS.length][width];
+      widthMask = width - 1;
+      sampleSize = 10 * width;
+      requestCount = 0;
+    }
+
+    /** Returns the estimated number of recent requests for the given span. */
+    public int frequency(String key, long position) {
+      int hash = hash(key, position);
+      int frequency = MAX_COUNT;
+      for (int i = 0; i < SEEDS.length; i++) {
+        frequency = min(frequency, counts[i][index(hash, i)]);
+      }
+      return frequency;
+    }
+
+    /** Records a request for the given span. */
+    public void increment(String key, long position) {
+      int hash = hash(key, position);
+      for (int i = 0; i < SEEDS.length; i++) {
+        int index = index(hash, i);
+        counts[i][index] = (byte) min(counts[i][index] + 1, MAX_COUNT);
+      }
+      if (++requestCount >= sampleSize) {
+        for (byte[] row : counts) {
+          for (int i = 0; i < row.length; i++) {
+            row[i] = (byte) (row[i] >> 1);
+          }
+        }
+        requestCount /= 2;
+      }
+    }
+
+    private int index(int hash, int row) {
+      int index = hash * SEEDS[row];
+      index ^= index >>> 16;
+      return index & widthMask;
+    }
+
+    private static int hash(String key, long position) {
+      return 31 * key.hashCode() + (int) (position ^ (position >>> 32));
+    }
+  }
+}
@@ -15,7 +15,10 @@
  */
 package com.google.android.exoplayer2.upstream.cache;
 
+import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.TreeSet;
 
 /** Evicts least recently used cache files first. */
@@ -23,6 +26,12 @@ public final class LeastRecentlyUsedCacheEvictor implements CacheEvictor {
 
   private final long maxBytes;
   private final TreeSet<CacheSpan> leastRecentlyUsed;
+  /**
+   * Spans loaded when the cache was initialized that haven't been added to {@link
+   * #leastRecentlyUsed} yet. They're added when a span first needs to be evicted, removed or
+   * touched, so that initializing the cache doesn't sort them.
+   */
+  @Nullable private ArrayList<CacheSpan> loadedSpans;
 
   private long currentSize;
 
@@ -55,8 +64,24 @@ public final class LeastRecentlyUsedCacheEvictor implements CacheEvictor {
     evictCache(cache, 0);
   }
 
+  @Override
+  public void onSpansLoaded(Cache cache, List<CacheSpan> spans) {
+    @Nullable ArrayList<CacheSpan> loadedSpans = this.loadedSpans;
+    if (loadedSpans == null) {
+      loadedSpans = new ArrayList<>(spans.size());
+      this.loadedSpans = loadedSpans;
+    }
+    for (int i = 0; i < spans.size(); i++) {
+      CacheSpan span = spans.get(i);
+      loadedSpans.add(span);
+      currentSize += span.length;
+    }
+    evictCache(cache, 0);
+  }
+
   @Override
   public void onSpanRemoved(Cache cache, CacheSpan span) {
+    addLoadedSpansToLeastRecentlyUsed();
     leastRecentlyUsed.remove(span);
     currentSize -= span.length;
   }
@@ -68,11 +93,21 @@ public final class LeastRecentlyUsedCacheEvictor implements CacheEvictor {
   }
 
   private void evictCache(Cache cache, long requiredSpace) {
+    if (currentSize + requiredSpace > maxBytes) {
+      addLoadedSpansToLeastRecentlyUsed();
+    }
     while (currentSize + requiredSpace > maxBytes && !leastRecentlyUsed.isEmpty()) {
       cache.removeSpan(leastRecentlyUsed.first());
     }
   }
 
+  private void addLoadedSpansToLeastRecentlyUsed() {
+    if (loadedSpans != null) {
+      leastRecentlyUsed.addAll(loadedSpans);
+      loadedSpans = null;
+    }
+  }
+
   private static int compare(CacheSpan lhs, CacheSpan rhs) {
     long lastTouchTimestampDelta = lhs.lastTouchTimestamp - rhs.lastTouchTimestamp;
     if (lastTouchTimestampDelta == 0) {
@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Assertions;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A bounded in-memory cache of recently loaded data, keyed by cache key and byte range. Lookups
+ * are served by any cached data containing the requested range.
+ *
+ * <p>Entries are evicted in least recently used order when the total size of the cached data
+ * exceeds the maximum cache size. The cache is intended to be placed in front of a disk cache such
+ * as {@link SimpleCache} using a {@link MemoryCacheDataSource}, so that data that was loaded
+ * recently, for example segments around the live edge or initialization segments that are
+ * requested again after a track switch, can be read without accessing the disk cache.
+ *
+ * <p>This class is thread-safe. Its lock is only held while looking up or storing an entry and is
+ * independent from the lock of any disk cache.
+ */
+public final class MemoryCache {
+
+  /** Data of a range of a resource held by a {@link MemoryCache}. */
+  public static final class CachedData {
+
+    /** The position of the data in the resource. */
+    public final long position;
+    /** The data. Must not be modified. */
+    public final byte[] data;
+    /** Whether the data extends to the end of the resource. */
+    public final boolean isEndOfResource;
+
+    private CachedData(long position, byte[] data, boolean isEndOfResource) {
+      this.position = position;
+      this.data = data;
+      this.isEndOfResource = isEndOfResource;
+    }
+
+    /**
+     * Returns whether the data contains the given range.
+     *
+     * @param position The position of the range in the resource.
+     * @param length The length of the range, or {@link C#LENGTH_UNSET} if the range extends to the
+     *     end of the resource.
+     * @return Whether the data contains the range.
+     */
+    public boolean contains(long position, long length) {
+      long endPosition = this.position + data.length;
+      if (position < this.position || position >= endPosition) {
+        return false;
+      }
+      return length == C.LENGTH_UNSET ? isEndOfResource : position + length <= endPosition;
+    }
+  }
+
+  private final long maxBytes;
+  private final LinkedHashMap<Range, CachedData> entries;
+  private final HashMap<String, TreeMap<Long, CachedData>> entriesByPosition;
+
+  private long cacheSpace;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  /**
+   * Creates an instance.
+   *
+   * @param maxBytes The maximum total size of the cached data, in bytes.
+   */
+  public MemoryCache(long maxBytes) {
+    Assertions.checkArgument(maxBytes > 0);
+    this.maxBytes = maxBytes;
+    entries =
+        new LinkedHashMap<>(
+            /* initialCapacity= */ 16, /* loadFactor= */ 0.75f, /* accessOrder= */ true);
+    entriesByPosition = new HashMap<>();
+  }
+
+  /** Returns the maximum total size of the cached data, in bytes. */
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * Returns cached data containing the given range, or null if the range is not cached. The range
+   * may be a sub-range of the returned data, starting at {@code position - }{@link
+   * CachedData#position} in {@link CachedData#data}.
+   *
+   * @param key The cache key of the resource.
+   * @param position The position of the range in the resource.
+   * @param length The length of the range, or {@link C#LENGTH_UNSET} if the range extends to the
+   *     end of the resource.
+   * @return The cached data containing the range, or null if the range is not cached.
+   */
+  @Nullable
+  public synchronized CachedData get(String key, long position, long length) {
+    @Nullable TreeMap<Long, CachedData> resourceEntries = entriesByPosition.get(key);
+    if (resourceEntries != null) {
+      // Entries may overlap, so check all of those starting at or before the position.
+      for (CachedData cachedData :
+          resourceEntries.headMap(position, /* inclusive= */ true).descendingMap().values()) {
+        if (cachedData.contains(position, length)) {
+          // Mark the entry as recently used.
+          entries.get(new Range(key, cachedData.position));
+          hitCount++;
+          return cachedData;
+        }
+      }
+    }
+    missCount++;
+    return null;
+  }
+
+  /**
+   * Adds the data of a range to the cache, replacing any data previously cached at the same
+   * position. Data larger than {@link #getMaxBytes()} is not cached. The array must not be
+   * modified after this method is called.
+   *
+   * @param key The cache key of the resource.
+   * @param position The position of the range in the resource.
+   * @param length The length of the range as requested, or {@link C#LENGTH_UNSET} if the range
+   *     extends to the end of the resource.
+   * @param data The data of the range.
+   */
+  public synchronized void put(String key, long position, long length, byte[] data) {
+    if (data.length > maxBytes) {
+      return;
+    }
+    CachedData cachedData =
+        new CachedData(position, data, /* isEndOfResource= */ length == C.LENGTH_UNSET);
+    @Nullable CachedData previousData = entries.put(new Range(key, position), cachedData);
+    if (previousData != null) {
+      cacheSpace -= previousData.data.length;
+    }
+    cacheSpace += data.length;
+    @Nullable TreeMap<Long, CachedData> resourceEntries = entriesByPosition.get(key);
+    if (resourceEntries == null) {
+      resourceEntries = new TreeMap<>();
+      entriesByPosition.put(key, resourceEntries);
+    }
+    resourceEntries.put(position, cachedData);
+    Iterator<Map.Entry<Range, CachedData>> iterator = entries.entrySet().iterator();
+    while (cacheSpace > maxBytes && iterator.hasNext()) {
+      Map.Entry<Range, CachedData> entry = iterator.next();
+      cacheSpace -= entry.getValue().data.length;
+      iterator.remove();
+      removeFromIndex(entry.getKey());
+      evictionCount++;
+    }
+  }
+
+  /**
+   * Removes all cached data of a resource.
+   *
+   * @param key The cache key of the resource.
+   */
+  public synchronized void removeResource(String key) {
+    if (entriesByPosition.remove(key) == null) {
+      return;
+    }
+    Iterator<Map.Entry<Range, CachedData>> iterator = entries.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Range, CachedData> entry = iterator.next();
+      if (entry.getKey().key.equals(key)) {
+        cacheSpace -= entry.getValue().data.length;
+        iterator.remove();
+      }
+    }
+  }
+
+  /** Removes all cached data. */
+  public synchronized void clear() {
+    entries.clear();
+    entriesByPosition.clear();
+    cacheSpace = 0;
+  }
+
+  /** Returns the total size of the cached data, in bytes. */
+  public synchronized long getCacheSpace() {
+    return cacheSpace;
+  }
+
+  /** Returns the number of lookups for which the data was cached. */
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /** Returns the number of lookups for which the data was not cached. */
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /** Returns the number of entries evicted to stay within {@link #getMaxBytes()}. */
+  public synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+
+  private void removeFromIndex(Range range) {
+    @Nullable TreeMap<Long, CachedData> resourceEntries = entriesByPosition.get(range.key);
+    if (resourceEntries != null) {
+      resourceEntries.remove(range.position);
+      if (resourceEntries.isEmpty()) {
+        entriesByPosition.remove(range.key);
+      }
+    }
+  }
+
+  private static final class Range {
+
+    public final String key;
+    public final long position;
+
+    public Range(String key, long position) {
+      this.key = key;
+      this.position = position;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      Range other = (Range) obj;
+      return position == other.position && key.equals(other.key);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = key.hashCode();
+      result = 31 * result + (int) (position ^ (position >>> 32));
+      return result;
+    }
+  }
+}
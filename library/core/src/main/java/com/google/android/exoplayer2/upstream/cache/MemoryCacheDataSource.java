@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link DataSource} that reads data from a {@link MemoryCache} if it's cached, and otherwise
+ * reads it from an upstream {@link DataSource}, typically a {@link CacheDataSource}, adding it to
+ * the {@link MemoryCache} once it has been read to the end.
+ *
+ * <p>Data is cached per requested range: a request is served from memory if a range of the same
+ * resource containing it was read completely before. Ranges longer than a maximum entry length are
+ * not cached. Reads from memory don't notify the {@link TransferListener TransferListeners}.
+ */
+public final class MemoryCacheDataSource implements DataSource {
+
+  /** {@link DataSource.Factory} for {@link MemoryCacheDataSource} instances. */
+  public static final class Factory implements DataSource.Factory {
+
+    private final MemoryCache memoryCache;
+    private final DataSource.Factory upstreamFactory;
+
+    private CacheKeyFactory cacheKeyFactory;
+    private int maxEntryLength;
+
+    /**
+     * Creates an instance.
+     *
+     * @param memoryCache The {@link MemoryCache} to read data from and add data to.
+     * @param upstreamFactory A {@link DataSource.Factory} for the upstream {@link DataSource
+     *     DataSources} from which data that isn't cached in memory is read.
+     */
+    public Factory(MemoryCache memoryCache, DataSource.Factory upstreamFactory) {
+      this.memoryCache = memoryCache;
+      this.upstreamFactory = upstreamFactory;
+      cacheKeyFactory = CacheKeyFactory.DEFAULT;
+      maxEntryLength = DEFAULT_MAX_ENTRY_LENGTH;
+    }
+
+    /**
+     * Sets the {@link CacheKeyFactory}. It should be the same as the one used by an upstream
+     * {@link CacheDataSource}, if any.
+     *
+     * <p>The default is {@link CacheKeyFactory#DEFAULT}.
+     *
+     * @param cacheKeyFactory The {@link CacheKeyFactory}.
+     * @return This factory.
+     */
+    public Factory setCacheKeyFactory(CacheKeyFactory cacheKeyFactory) {
+      this.cacheKeyFactory = cacheKeyFactory;
+      return this;
+    }
+
+    /**
+     * Sets the maximum length of a range to add to the {@link MemoryCache}. Longer ranges are
+     * read from upstream without being buffered.
+     *
+     * <p>The default is {@link #DEFAULT_MAX_ENTRY_LENGTH}.
+     *
+     * @param maxEntryLength The maximum length of a range to cache, in bytes.
+     * @return This factory.
+     */
+    public Factory setMaxEntryLength(int maxEntryLength) {
+      Assertions.checkArgument(maxEntryLength > 0);
+      this.maxEntryLength = maxEntryLength;
+      return this;
+    }
+
+    @Override
+    public MemoryCacheDataSource createDataSource() {
+      return new MemoryCacheDataSource(
+          memoryCache, upstreamFactory.createDataSource(), cacheKeyFactory, maxEntryLength);
+    }
+  }
+
+  /** The default maximum length of a range to add to the {@link MemoryCache}, in bytes. */
+  public static final int DEFAULT_MAX_ENTRY_LENGTH = 4 * 1024 * 1024;
+
+  private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+  private final MemoryCache memoryCache;
+  private final DataSource upstream;
+  private final CacheKeyFactory cacheKeyFactory;
+  private final int maxWriteLength;
+
+  @Nullable private DataSpec currentDataSpec;
+  @Nullable private String currentKey;
+  @Nullable private byte[] cachedData;
+  private int cachedDataReadPosition;
+  private int cachedDataEndPosition;
+  private byte[] writeBuffer;
+  private int writeLength;
+  private boolean writeToMemoryCache;
+  private long upstreamLength;
+
+  /**
+   * Creates an instance that uses {@link CacheKeyFactory#DEFAULT}.
+   *
+   * @param memoryCache The {@link MemoryCache} to read data from and add data to.
+   * @param upstream The upstream {@link DataSource} from which data that isn't cached in memory is
+   *     read.
+   */
+  public MemoryCacheDataSource(MemoryCache memoryCache, DataSource upstream) {
+    this(memoryCache, upstream, CacheKeyFactory.DEFAULT);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param memoryCache The {@link MemoryCache} to read data from and add data to.
+   * @param upstream The upstream {@link DataSource} from which data that isn't cached in memory is
+   *     read.
+   * @param cacheKeyFactory The {@link CacheKeyFactory} used to build the keys of cached data.
+   */
+  public MemoryCacheDataSource(
+      MemoryCache memoryCache, DataSource upstream, CacheKeyFactory cacheKeyFactory) {
+    this(memoryCache, upstream, cacheKeyFactory, DEFAULT_MAX_ENTRY_LENGTH);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param memoryCache The {@link MemoryCache} to read data from and add data to.
+   * @param upstream The upstream {@link DataSource} from which data that isn't cached in memory is
+   *     read.
+   * @param cacheKeyFactory The {@link CacheKeyFactory} used to build the keys of cached data.
+   * @param maxEntryLength The maximum length of a range to add to the {@link MemoryCache}, in
+   *     bytes.
+   */
+  public MemoryCacheDataSource(
+      MemoryCache memoryCache,
+      DataSource upstream,
+      CacheKeyFactory cacheKeyFactory,
+      int maxEntryLength) {
+    this.memoryCache = memoryCache;
+    this.upstream = upstream;
+    this.cacheKeyFactory = cacheKeyFactory;
+    maxWriteLength = (int) min(memoryCache.getMaxBytes(), maxEntryLength);
+    writeBuffer = Util.EMPTY_BYTE_ARRAY;
+  }
+
+  @Override
+  public void addTransferListener(TransferListener transferListener) {
+    Assertions.checkNotNull(transferListener);
+    upstream.addTransferListener(transferListener);
+  }
+
+  @Override
+  public long open(DataSpec dataSpec) throws IOException {
+    String key = cacheKeyFactory.buildCacheKey(dataSpec);
+    currentDataSpec = dataSpec;
+    currentKey = key;
+    @Nullable
+    MemoryCache.CachedData data = memoryCache.get(key, dataSpec.position, dataSpec.length);
+    if (data != null) {
+      cachedData = data.data;
+      cachedDataReadPosition = (int) (dataSpec.position - data.position);
+      cachedDataEndPosition =
+          dataSpec.length == C.LENGTH_UNSET
+              ? data.data.length
+              : cachedDataReadPosition + (int) dataSpec.length;
+      return cachedDataEndPosition - cachedDataReadPosition;
+    }
+    upstreamLength = upstream.open(dataSpec);
+    writeLength = 0;
+    if (upstreamLength != C.LENGTH_UNSET) {
+      writeToMemoryCache = upstreamLength <= maxWriteLength;
+      if (writeToMemoryCache) {
+        // The buffer grows as data is read, so that requests that are closed early don't
+        // allocate the full length.
+        writeBuffer = new byte[(int) min(upstreamLength, INITIAL_BUFFER_SIZE)];
+      }
+    } else {
+      writeToMemoryCache = !dataSpec.isFlagSet(DataSpec.FLAG_DONT_CACHE_IF_LENGTH_UNKNOWN);
+      if (writeToMemoryCache) {
+        writeBuffer = new byte[min(INITIAL_BUFFER_SIZE, maxWriteLength)];
+      }
+    }
+    return upstreamLength;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int readLength) throws IOException {
+    if (readLength == 0) {
+      return 0;
+    }
+    @Nullable byte[] data = cachedData;
+    if (data != null) {
+      if (cachedDataReadPosition == cachedDataEndPosition) {
+        return C.RESULT_END_OF_INPUT;
+      }
+      int bytesToRead = min(readLength, cachedDataEndPosition - cachedDataReadPosition);
+      System.arraycopy(data, cachedDataReadPosition, buffer, offset, bytesToRead);
+      cachedDataReadPosition += bytesToRead;
+      return bytesToRead;
+    }
+    int bytesRead = upstream.read(buffer, offset, readLength);
+    if (!writeToMemoryCache) {
+      return bytesRead;
+    }
+    if (bytesRead == C.RESULT_END_OF_INPUT) {
+      if (upstreamLength == C.LENGTH_UNSET || writeLength == upstreamLength) {
+        addToMemoryCache();
+      }
+      writeToMemoryCache = false;
+    } else {
+      write(buffer, offset, bytesRead);
+      if (writeLength == upstreamLength) {
+        addToMemoryCache();
+        writeToMemoryCache = false;
+      }
+    }
+    return bytesRead;
+  }
+
+  @Override
+  @Nullable
+  public Uri getUri() {
+    if (cachedData != null) {
+      return Assertions.checkNotNull(currentDataSpec).uri;
+    }
+    return upstream.getUri();
+  }
+
+  @Override
+  public Map<String, List<String>> getResponseHeaders() {
+    return cachedData != null ? Collections.emptyMap() : upstream.getResponseHeaders();
+  }
+
+  @Override
+  public void close() throws IOException {
+    currentDataSpec = null;
+    currentKey = null;
+    writeBuffer = Util.EMPTY_BYTE_ARRAY;
+    writeToMemoryCache = false;
+    if (cachedData != null) {
+      cachedData = null;
+    } else {
+      upstream.close();
+    }
+  }
+
+  private void write(byte[] buffer, int offset, int length) {
+    long requiredLength = (long) writeLength + length;
+    if (requiredLength > writeBuffer.length) {
+      if (requiredLength > maxWriteLength) {
+        // The data is too large to be cached.
+        writeToMemoryCache = false;
+        writeBuffer = Util.EMPTY_BYTE_ARRAY;
+        return;
+      }
+      long newLength = min(max(2L * writeBuffer.length, requiredLength), maxWriteLength);
+      if (upstreamLength != C.LENGTH_UNSET) {
+        newLength = min(newLength, upstreamLength);
+      }
+      writeBuffer = Arrays.copyOf(writeBuffer, (int) newLength);
+    }
+    System.arraycopy(buffer, offset, writeBuffer, writeLength, length);
+    writeLength += length;
+  }
+
+  private void addToMemoryCache() {
+    DataSpec dataSpec = Assertions.checkNotNull(currentDataSpec);
+    byte[] data =
+        writeLength == writeBuffer.length ? writeBuffer : Arrays.copyOf(writeBuffer, writeLength);
+    memoryCache.put(
+        Assertions.checkNotNull(currentKey), dataSpec.position, dataSpec.length, data);
+    writeBuffer = Util.EMPTY_BYTE_ARRAY;
+  }
+}
@@ -15,6 +15,8 @@
  */
 package com.google.android.exoplayer2.upstream.cache;
 
+import static java.lang.Math.min;
+
 import android.os.ConditionVariable;
 import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
@@ -26,15 +28,24 @@ import com.google.android.exoplayer2.util.Log;
 import com.google.android.exoplayer2.util.Util;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
 /**
@@ -42,6 +53,12 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
  *
  * <p>Only one instance of SimpleCache is allowed for a given directory at a given time.
  *
+ * <p>Operations that affect the whole cache, such as committing files, removing spans and storing
+ * the index, synchronize on the cache instance. Operations on a single resource, such as querying
+ * cached lengths and locking ranges for reading or writing, only synchronize on the resource's
+ * {@link CachedContent}, so that they don't contend with operations on other resources. When both
+ * locks are needed, the cache lock is always acquired first.
+ *
  * <p>To delete a SimpleCache, use {@link #delete(File, DatabaseProvider)} rather than deleting the
  * directory and its contents directly. This is necessary to ensure that associated index data is
  * also removed.
@@ -68,11 +85,20 @@ public final class SimpleCache implements Cache {
   private final HashMap<String, ArrayList<Listener>> listeners;
   private final Random random;
   private final boolean touchCacheSpans;
+  private final boolean parallelDirectoryScan;
+
+  private final ConditionVariable initializationCondition;
 
   private long uid;
   private long totalSpace;
-  private boolean released;
-  private @MonotonicNonNull CacheException initializationException;
+  /**
+   * The spans loaded by {@link #initialize()}, whose addition the evictor is notified of in a
+   * single batch, or null if the cache isn't loading spans.
+   */
+  @Nullable private ArrayList<CacheSpan> loadedSpans;
+  private volatile boolean initialized;
+  private volatile boolean released;
+  private volatile @MonotonicNonNull CacheException initializationException;
 
   /**
    * Returns whether {@code cacheFolder} is locked by a {@link SimpleCache} instance. To unlock the
@@ -124,6 +150,43 @@ public final class SimpleCache implements Cache {
     Util.recursiveDelete(cacheDir);
   }
 
+  /**
+   * Creates a cache whose index is stored in an append-only journal file in the cache directory.
+   * The cache will delete any unrecognized files from the directory. Hence the directory cannot be
+   * used to store other files.
+   *
+   * <p>Storing the index only appends the changes made since it was last stored, and loading it
+   * doesn't require a database. An index previously stored in a database or in a legacy index file
+   * is migrated when the cache is first initialized. Span lengths and last touch timestamps are not
+   * persisted, and are instead derived from the cache files when the cache is initialized.
+   *
+   * <p>If a secret key is given, cache keys are stored encrypted in the journal, including those
+   * migrated from an encrypted legacy index. An encrypted journal can't be read without the key, so
+   * the index is lost if the cache is later created without it.
+   *
+   * @param cacheDir A dedicated cache directory.
+   * @param evictor The evictor to be used. For download use cases where cache eviction should not
+   *     occur, use {@link NoOpCacheEvictor}.
+   * @param migrationDatabaseProvider Provides the database in which the cache index was stored, if
+   *     the cache previously used a database index, or {@code null}.
+   * @param secretKey If not null, cache keys are stored encrypted in the journal using AES/CBC, and
+   *     an encrypted legacy index is read with this key when it's migrated. The key must be 16
+   *     bytes long.
+   * @return The created cache.
+   */
+  public static SimpleCache createWithJournalIndex(
+      File cacheDir,
+      CacheEvictor evictor,
+      @Nullable DatabaseProvider migrationDatabaseProvider,
+      @Nullable byte[] secretKey) {
+    return new SimpleCache(
+        cacheDir,
+        evictor,
+        CachedContentIndex.createWithJournalStorage(
+            cacheDir, migrationDatabaseProvider, secretKey),
+        /* fileIndex= */ null);
+  }
+
   /**
    * Constructs the cache. The cache will delete any unrecognized files from the directory. Hence
    * the directory cannot be used to store other files.
@@ -226,6 +289,46 @@ public final class SimpleCache implements Cache {
       @Nullable byte[] legacyIndexSecretKey,
       boolean legacyIndexEncrypt,
       boolean preferLegacyIndex) {
+    this(
+        cacheDir,
+        evictor,
+        databaseProvider,
+        legacyIndexSecretKey,
+        legacyIndexEncrypt,
+        preferLegacyIndex,
+        /* parallelDirectoryScan= */ false);
+  }
+
+  /**
+   * Constructs the cache. The cache will delete any unrecognized files from the cache directory.
+   * Hence the directory cannot be used to store other files.
+   *
+   * @param cacheDir A dedicated cache directory.
+   * @param evictor The evictor to be used. For download use cases where cache eviction should not
+   *     occur, use {@link NoOpCacheEvictor}.
+   * @param databaseProvider Provides the database in which the cache index is stored, or {@code
+   *     null} to use a legacy index. Using a database index is highly recommended for performance
+   *     reasons.
+   * @param legacyIndexSecretKey A 16 byte AES key for reading, and optionally writing, the legacy
+   *     index. Not used by the database index, however should still be provided when using the
+   *     database index in cases where upgrading from the legacy index may be necessary.
+   * @param legacyIndexEncrypt Whether to encrypt when writing to the legacy index. Must be {@code
+   *     false} if {@code legacyIndexSecretKey} is {@code null}. Not used by the database index.
+   * @param preferLegacyIndex Whether to use the legacy index even if a {@code databaseProvider} is
+   *     provided. Should be {@code false} in nearly all cases. Setting this to {@code true} is only
+   *     useful for downgrading from the database index back to the legacy index.
+   * @param parallelDirectoryScan Whether the subdirectories of the cache directory are scanned in
+   *     parallel when the cache is initialized. This reduces the initialization time of caches
+   *     containing many files, at the cost of using additional short-lived threads.
+   */
+  public SimpleCache(
+      File cacheDir,
+      CacheEvictor evictor,
+      @Nullable DatabaseProvider databaseProvider,
+      @Nullable byte[] legacyIndexSecretKey,
+      boolean legacyIndexEncrypt,
+      boolean preferLegacyIndex,
+      boolean parallelDirectoryScan) {
     this(
         cacheDir,
         evictor,
@@ -237,7 +340,8 @@ public final class SimpleCache implements Cache {
             preferLegacyIndex),
         databaseProvider != null && !preferLegacyIndex
             ? new CacheFileMetadataIndex(databaseProvider)
-            : null);
+            : null,
+        parallelDirectoryScan);
   }
 
   /* package */ SimpleCache(
@@ -245,6 +349,15 @@ public final class SimpleCache implements Cache {
       CacheEvictor evictor,
       CachedContentIndex contentIndex,
       @Nullable CacheFileMetadataIndex fileIndex) {
+    this(cacheDir, evictor, contentIndex, fileIndex, /* parallelDirectoryScan= */ false);
+  }
+
+  /* package */ SimpleCache(
+      File cacheDir,
+      CacheEvictor evictor,
+      CachedContentIndex contentIndex,
+      @Nullable CacheFileMetadataIndex fileIndex,
+      boolean parallelDirectoryScan) {
     if (!lockFolder(cacheDir)) {
       throw new IllegalStateException("Another SimpleCache instance uses the folder: " + cacheDir);
     }
@@ -253,10 +366,12 @@ public final class SimpleCache implements Cache {
     this.evictor = evictor;
     this.contentIndex = contentIndex;
     this.fileIndex = fileIndex;
+    this.parallelDirectoryScan = parallelDirectoryScan;
     listeners = new HashMap<>();
     random = new Random();
     touchCacheSpans = evictor.requiresCacheSpanTouches();
     uid = UID_UNSET;
+    initializationCondition = new ConditionVariable();
 
     // Start cache initialization.
     final ConditionVariable conditionVariable = new ConditionVariable();
@@ -265,8 +380,13 @@ public final class SimpleCache implements Cache {
       public void run() {
         synchronized (SimpleCache.this) {
           conditionVariable.open();
-          initialize();
-          SimpleCache.this.evictor.onCacheInitialized();
+          try {
+            initialize();
+            SimpleCache.this.evictor.onCacheInitialized();
+          } finally {
+            initialized = true;
+            initializationCondition.open();
+          }
         }
       }
     }.start();
@@ -278,7 +398,8 @@ public final class SimpleCache implements Cache {
    *
    * @throws CacheException If an error occurred during initialization.
    */
-  public synchronized void checkInitialization() throws CacheException {
+  public void checkInitialization() throws CacheException {
+    blockUntilInitialized();
     if (initializationException != null) {
       throw initializationException;
     }
@@ -335,12 +456,16 @@ public final class SimpleCache implements Cache {
   }
 
   @Override
-  public synchronized NavigableSet<CacheSpan> getCachedSpans(String key) {
+  public NavigableSet<CacheSpan> getCachedSpans(String key) {
     Assertions.checkState(!released);
-    CachedContent cachedContent = contentIndex.get(key);
-    return cachedContent == null || cachedContent.isEmpty()
-        ? new TreeSet<>()
-        : new TreeSet<CacheSpan>(cachedContent.getSpans());
+    blockUntilInitialized();
+    @Nullable CachedContent cachedContent = contentIndex.get(key);
+    if (cachedContent == null) {
+      return new TreeSet<>();
+    }
+    synchronized (cachedContent) {
+      return new TreeSet<CacheSpan>(cachedContent.getSpans());
+    }
   }
 
   @Override
@@ -356,48 +481,36 @@ public final class SimpleCache implements Cache {
   }
 
   @Override
-  public synchronized CacheSpan startReadWrite(String key, long position, long length)
+  public CacheSpan startReadWrite(String key, long position, long length)
       throws InterruptedException, CacheException {
     Assertions.checkState(!released);
     checkInitialization();
-
-    while (true) {
-      CacheSpan span = startReadWriteNonBlocking(key, position, length);
-      if (span != null) {
-        return span;
-      } else {
-        // Lock not available. We'll be woken up when a span is added, or when a locked span is
-        // released. We'll be able to make progress when either:
-        // 1. A span is added for the requested key that covers the requested position, in which
-        //    case a read can be started.
-        // 2. The lock for the requested key is released, in which case a write can be started.
-        wait();
-      }
-    }
+    return Assertions.checkNotNull(
+        startReadWriteInternal(key, position, length, /* timeoutMs= */ C.TIME_UNSET));
   }
 
   @Override
   @Nullable
-  public synchronized CacheSpan startReadWriteNonBlocking(String key, long position, long length)
+  public CacheSpan startReadWriteNonBlocking(String key, long position, long length)
       throws CacheException {
     Assertions.checkState(!released);
     checkInitialization();
-
-    SimpleCacheSpan span = getSpan(key, position, length);
-
-    if (span.isCached) {
-      // Read case.
-      return touchSpan(key, span);
-    }
-
-    CachedContent cachedContent = contentIndex.getOrAdd(key);
-    if (cachedContent.lockRange(position, span.length)) {
-      // Write case.
-      return span;
+    try {
+      return startReadWriteInternal(key, position, length, /* timeoutMs= */ 0);
+    } catch (InterruptedException e) {
+      // Never thrown when not blocking.
+      throw new IllegalStateException(e);
     }
+  }
 
-    // Lock not available.
-    return null;
+  @Override
+  @Nullable
+  public CacheSpan startReadWrite(String key, long position, long length, long timeoutMs)
+      throws InterruptedException, CacheException {
+    Assertions.checkArgument(timeoutMs >= 0);
+    Assertions.checkState(!released);
+    checkInitialization();
+    return startReadWriteInternal(key, position, length, timeoutMs);
   }
 
   @Override
@@ -405,9 +518,10 @@ public final class SimpleCache implements Cache {
     Assertions.checkState(!released);
     checkInitialization();
 
-    CachedContent cachedContent = contentIndex.get(key);
-    Assertions.checkNotNull(cachedContent);
-    Assertions.checkState(cachedContent.isFullyLocked(position, length));
+    CachedContent cachedContent = Assertions.checkNotNull(contentIndex.get(key));
+    synchronized (cachedContent) {
+      Assertions.checkState(cachedContent.isFullyLocked(position, length));
+    }
     if (!cacheDir.exists()) {
       // The cache directory has been deleted from underneath us. Recreate it, and remove in-memory
       // spans corresponding to cache files that no longer exist.
@@ -439,7 +553,9 @@ public final class SimpleCache implements Cache {
     SimpleCacheSpan span =
         Assertions.checkNotNull(SimpleCacheSpan.createCacheEntry(file, length, contentIndex));
     CachedContent cachedContent = Assertions.checkNotNull(contentIndex.get(span.key));
-    Assertions.checkState(cachedContent.isFullyLocked(span.position, span.length));
+    synchronized (cachedContent) {
+      Assertions.checkState(cachedContent.isFullyLocked(span.position, span.length));
+    }
 
     // Check if the span conflicts with the set content length
     long contentLength = ContentMetadata.getContentLength(cachedContent.getMetadata());
@@ -461,16 +577,24 @@ public final class SimpleCache implements Cache {
     } catch (IOException e) {
       throw new CacheException(e);
     }
-    notifyAll();
+    synchronized (cachedContent) {
+      // Wake up readers blocked in startReadWrite, which can now read the added span.
+      cachedContent.notifyAll();
+    }
   }
 
   @Override
-  public synchronized void releaseHoleSpan(CacheSpan holeSpan) {
+  public void releaseHoleSpan(CacheSpan holeSpan) {
     Assertions.checkState(!released);
     CachedContent cachedContent = Assertions.checkNotNull(contentIndex.get(holeSpan.key));
-    cachedContent.unlockRange(holeSpan.position);
-    contentIndex.maybeRemove(cachedContent.key);
-    notifyAll();
+    synchronized (cachedContent) {
+      cachedContent.unlockRange(holeSpan.position);
+      // Wake up writers blocked in startReadWrite, which may now be able to lock the range.
+      cachedContent.notifyAll();
+    }
+    synchronized (this) {
+      maybeRemoveContent(holeSpan.key);
+    }
   }
 
   @Override
@@ -479,6 +603,9 @@ public final class SimpleCache implements Cache {
     for (CacheSpan span : getCachedSpans(key)) {
       removeSpanInternal(span);
     }
+    // Also remove content that has metadata but no spans, for example content that was pinned for
+    // a download that didn't write any data.
+    maybeRemoveContent(key);
   }
 
   @Override
@@ -488,24 +615,36 @@ public final class SimpleCache implements Cache {
   }
 
   @Override
-  public synchronized boolean isCached(String key, long position, long length) {
+  public boolean isCached(String key, long position, long length) {
     Assertions.checkState(!released);
+    blockUntilInitialized();
     @Nullable CachedContent cachedContent = contentIndex.get(key);
-    return cachedContent != null && cachedContent.getCachedBytesLength(position, length) >= length;
+    if (cachedContent == null) {
+      return false;
+    }
+    synchronized (cachedContent) {
+      return cachedContent.getCachedBytesLength(position, length) >= length;
+    }
   }
 
   @Override
-  public synchronized long getCachedLength(String key, long position, long length) {
+  public long getCachedLength(String key, long position, long length) {
     Assertions.checkState(!released);
+    blockUntilInitialized();
     if (length == C.LENGTH_UNSET) {
       length = Long.MAX_VALUE;
     }
     @Nullable CachedContent cachedContent = contentIndex.get(key);
-    return cachedContent != null ? cachedContent.getCachedBytesLength(position, length) : -length;
+    if (cachedContent == null) {
+      return -length;
+    }
+    synchronized (cachedContent) {
+      return cachedContent.getCachedBytesLength(position, length);
+    }
   }
 
   @Override
-  public synchronized long getCachedBytes(String key, long position, long length) {
+  public long getCachedBytes(String key, long position, long length) {
     long endPosition = length == C.LENGTH_UNSET ? Long.MAX_VALUE : position + length;
     if (endPosition < 0) {
       // The calculation rolled over (length is probably Long.MAX_VALUE).
@@ -542,11 +681,112 @@ public final class SimpleCache implements Cache {
   }
 
   @Override
-  public synchronized ContentMetadata getContentMetadata(String key) {
+  public synchronized void applyContentMetadataMutations(
+      Collection<String> keys, ContentMetadataMutations mutations) throws CacheException {
+    Assertions.checkState(!released);
+    checkInitialization();
+
+    for (String key : keys) {
+      contentIndex.applyContentMetadataMutations(key, mutations);
+    }
+    try {
+      contentIndex.store();
+    } catch (IOException e) {
+      throw new CacheException(e);
+    }
+  }
+
+  @Override
+  public ContentMetadata getContentMetadata(String key) {
     Assertions.checkState(!released);
+    blockUntilInitialized();
     return contentIndex.getContentMetadata(key);
   }
 
+  /**
+   * Blocks until the initialization thread has finished loading the in-memory representation.
+   * Needed by methods that don't synchronize on the cache, since the initialization thread holds
+   * the cache lock while loading. Doesn't block if called from the initialization thread, for
+   * example from {@link CacheEvictor#onCacheInitialized()}.
+   */
+  private void blockUntilInitialized() {
+    if (!initialized && !Thread.holdsLock(this)) {
+      initializationCondition.block();
+    }
+  }
+
+  /**
+   * Starts a read or write, waiting for a locked range to be released for at most {@code
+   * timeoutMs}, or indefinitely if {@code timeoutMs} is {@link C#TIME_UNSET}. Returns null if the
+   * range is still locked once the wait has timed out.
+   */
+  @Nullable
+  private CacheSpan startReadWriteInternal(String key, long position, long length, long timeoutMs)
+      throws InterruptedException, CacheException {
+    long timeoutEndTimeNs = timeoutMs > 0 ? System.nanoTime() + timeoutMs * 1_000_000 : 0;
+    while (true) {
+      @Nullable CachedContent cachedContent = contentIndex.get(key);
+      if (cachedContent == null) {
+        synchronized (this) {
+          cachedContent = contentIndex.getOrAdd(key);
+        }
+      }
+      SimpleCacheSpan span;
+      synchronized (cachedContent) {
+        if (contentIndex.get(key) != cachedContent) {
+          // The content was removed from the index after we looked it up. Look it up again.
+          continue;
+        }
+        span = cachedContent.getSpan(position, length);
+        if (!span.isCached) {
+          if (cachedContent.lockRange(position, span.length)) {
+            // Write case.
+            return span;
+          } else if (timeoutMs == 0) {
+            // Lock not available.
+            return null;
+          }
+          // Lock not available. We'll be woken up when a span is added, or when a locked span is
+          // released. We'll be able to make progress when either:
+          // 1. A span is added for the requested key that covers the requested position, in which
+          //    case a read can be started.
+          // 2. The lock for the requested key is released, in which case a write can be started.
+          if (timeoutMs == C.TIME_UNSET) {
+            cachedContent.wait();
+          } else {
+            long remainingTimeNs = timeoutEndTimeNs - System.nanoTime();
+            if (remainingTimeNs <= 0) {
+              // Lock still not available.
+              return null;
+            }
+            cachedContent.wait(
+                remainingTimeNs / 1_000_000, (int) (remainingTimeNs % 1_000_000));
+          }
+          continue;
+        }
+        if (!touchCacheSpans && span.file.length() == span.length) {
+          // Read case.
+          return span;
+        }
+      }
+      // Touching the span and removing stale spans affect the whole cache.
+      synchronized (this) {
+        if (span.file.length() != span.length) {
+          // The file has been modified or deleted underneath us. It's likely that other files will
+          // have been modified too, so scan the whole in-memory representation.
+          removeStaleSpans();
+          continue;
+        }
+        @Nullable SimpleCacheSpan touchedSpan = touchSpan(cachedContent, span);
+        if (touchedSpan != null) {
+          // Read case.
+          return touchedSpan;
+        }
+        // The span was removed after we looked it up. Look it up again.
+      }
+    }
+  }
+
   /** Ensures that the cache's in-memory representation has been initialized. */
   private void initialize() {
     if (!cacheDir.exists()) {
@@ -578,21 +818,33 @@ public final class SimpleCache implements Cache {
       }
     }
 
+    ArrayList<CacheSpan> loadedSpans = new ArrayList<>();
+    this.loadedSpans = loadedSpans;
     try {
       contentIndex.initialize(uid);
       if (fileIndex != null) {
         fileIndex.initialize(uid);
         Map<String, CacheFileMetadata> fileMetadata = fileIndex.getAll();
-        loadDirectory(cacheDir, /* isRoot= */ true, files, fileMetadata);
+        if (parallelDirectoryScan) {
+          fileMetadata = new ConcurrentHashMap<>(fileMetadata);
+          loadRootDirectoryInParallel(files, fileMetadata);
+        } else {
+          loadDirectory(cacheDir, /* isRoot= */ true, files, fileMetadata);
+        }
         fileIndex.removeAll(fileMetadata.keySet());
+      } else if (parallelDirectoryScan) {
+        loadRootDirectoryInParallel(files, /* fileMetadata= */ null);
       } else {
         loadDirectory(cacheDir, /* isRoot= */ true, files, /* fileMetadata= */ null);
       }
+      notifySpansLoaded(loadedSpans);
     } catch (IOException e) {
       String message = "Failed to initialize cache indices: " + cacheDir;
       Log.e(TAG, message, e);
       initializationException = new CacheException(message, e);
       return;
+    } finally {
+      this.loadedSpans = null;
     }
 
     contentIndex.removeEmpty();
@@ -645,27 +897,138 @@ public final class SimpleCache implements Cache {
           length = metadata.length;
           lastTouchTimestamp = metadata.lastTouchTimestamp;
         }
-        @Nullable
-        SimpleCacheSpan span =
-            SimpleCacheSpan.createCacheEntry(file, length, lastTouchTimestamp, contentIndex);
-        if (span != null) {
-          addSpan(span);
-        } else {
-          file.delete();
+        loadFile(file, length, lastTouchTimestamp);
+      }
+    }
+  }
+
+  /**
+   * Loads the root cache directory, listing the files of its subdirectories and querying their
+   * lengths in parallel. Spans are added on the calling thread once all subdirectories have been
+   * scanned, followed by any files in the root directory itself.
+   *
+   * @param files The files belonging to the root directory.
+   * @param fileMetadata A mutable map containing cache file metadata, keyed by file name, that
+   *     supports concurrent modification. The map is modified by removing entries for all loaded
+   *     files. May be null if no file metadata is available.
+   * @throws IOException If scanning a subdirectory fails or is interrupted.
+   */
+  private void loadRootDirectoryInParallel(
+      File[] files, @Nullable Map<String, CacheFileMetadata> fileMetadata) throws IOException {
+    ArrayList<File> subdirectories = new ArrayList<>();
+    ArrayList<File> rootFiles = new ArrayList<>();
+    for (File file : files) {
+      if (file.getName().indexOf('.') == -1) {
+        subdirectories.add(file);
+      } else {
+        rootFiles.add(file);
+      }
+    }
+    int threadCount = min(subdirectories.size(), Runtime.getRuntime().availableProcessors());
+    if (threadCount > 1) {
+      ExecutorService executorService =
+          Executors.newFixedThreadPool(
+              threadCount, runnable -> new Thread(runnable, "ExoPlayer:SimpleCacheScan"));
+      try {
+        ArrayList<Future<List<ScannedFile>>> scanResults = new ArrayList<>();
+        for (File subdirectory : subdirectories) {
+          scanResults.add(executorService.submit(() -> scanDirectory(subdirectory, fileMetadata)));
         }
+        for (Future<List<ScannedFile>> scanResult : scanResults) {
+          List<ScannedFile> scannedFiles = scanResult.get();
+          for (int i = 0; i < scannedFiles.size(); i++) {
+            ScannedFile scannedFile = scannedFiles.get(i);
+            loadFile(scannedFile.file, scannedFile.length, scannedFile.lastTouchTimestamp);
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      } catch (ExecutionException e) {
+        throw new IOException(e.getCause());
+      } finally {
+        executorService.shutdownNow();
+      }
+    } else {
+      for (File subdirectory : subdirectories) {
+        loadDirectory(subdirectory, /* isRoot= */ false, subdirectory.listFiles(), fileMetadata);
+      }
+    }
+    loadDirectory(cacheDir, /* isRoot= */ true, rootFiles.toArray(new File[0]), fileMetadata);
+  }
+
+  /**
+   * Lists the files of a cache subdirectory and determines their lengths and last touch
+   * timestamps, deleting the subdirectory if it's empty. May be called on any thread.
+   *
+   * @param directory The subdirectory.
+   * @param fileMetadata A mutable map containing cache file metadata, keyed by file name, that
+   *     supports concurrent modification. The map is modified by removing entries for all scanned
+   *     files. May be null if no file metadata is available.
+   * @return The scanned files.
+   */
+  private static List<ScannedFile> scanDirectory(
+      File directory, @Nullable Map<String, CacheFileMetadata> fileMetadata) {
+    @Nullable File[] files = directory.listFiles();
+    if (files == null || files.length == 0) {
+      // See loadDirectory for why deletion is safe in all cases.
+      directory.delete();
+      return Collections.emptyList();
+    }
+    ArrayList<ScannedFile> scannedFiles = new ArrayList<>(files.length);
+    for (File file : files) {
+      @Nullable
+      CacheFileMetadata metadata =
+          fileMetadata != null ? fileMetadata.remove(file.getName()) : null;
+      if (metadata != null) {
+        scannedFiles.add(new ScannedFile(file, metadata.length, metadata.lastTouchTimestamp));
+      } else {
+        scannedFiles.add(new ScannedFile(file, file.length(), C.TIME_UNSET));
       }
     }
+    return scannedFiles;
+  }
+
+  /**
+   * Loads a cache file found when initializing the cache, deleting it if it's not a valid cache
+   * file.
+   *
+   * @param file The cache file.
+   * @param length The length of the file, or {@link C#LENGTH_UNSET} to query the file system.
+   * @param lastTouchTimestamp The last touch timestamp, or {@link C#TIME_UNSET} to use the file
+   *     timestamp.
+   */
+  private void loadFile(File file, long length, long lastTouchTimestamp) {
+    @Nullable
+    SimpleCacheSpan span =
+        SimpleCacheSpan.createCacheEntry(file, length, lastTouchTimestamp, contentIndex);
+    if (span != null) {
+      CachedContent cachedContent = contentIndex.getOrAdd(span.key);
+      synchronized (cachedContent) {
+        cachedContent.addLoadedSpan(span);
+      }
+      totalSpace += span.length;
+      Assertions.checkNotNull(loadedSpans).add(span);
+    } else {
+      file.delete();
+    }
   }
 
   /**
    * Touches a cache span, returning the updated result. If the evictor does not require cache spans
    * to be touched, then this method does nothing and the span is returned without modification.
    *
-   * @param key The key of the span being touched.
+   * @param cachedContent The {@link CachedContent} of the span being touched.
    * @param span The span being touched.
-   * @return The updated span.
+   * @return The updated span, or null if the span is no longer in the cache.
    */
-  private SimpleCacheSpan touchSpan(String key, SimpleCacheSpan span) {
+  @Nullable
+  private SimpleCacheSpan touchSpan(CachedContent cachedContent, SimpleCacheSpan span) {
+    synchronized (cachedContent) {
+      if (contentIndex.get(span.key) != cachedContent || !cachedContent.getSpans().contains(span)) {
+        return null;
+      }
+    }
     if (!touchCacheSpans) {
       return span;
     }
@@ -684,54 +1047,38 @@ public final class SimpleCache implements Cache {
       // updating the file index. Hence we only update the file if we don't have a file index.
       updateFile = true;
     }
-    SimpleCacheSpan newSpan =
-        contentIndex.get(key).setLastTouchTimestamp(span, lastTouchTimestamp, updateFile);
+    SimpleCacheSpan newSpan;
+    synchronized (cachedContent) {
+      newSpan = cachedContent.setLastTouchTimestamp(span, lastTouchTimestamp, updateFile);
+    }
     notifySpanTouched(span, newSpan);
     return newSpan;
   }
 
-  /**
-   * Returns the cache span corresponding to the provided key and range. See {@link
-   * Cache#startReadWrite(String, long, long)} for detailed descriptions of the returned spans.
-   *
-   * @param key The key of the span being requested.
-   * @param position The position of the span being requested.
-   * @param length The length of the span, or {@link C#LENGTH_UNSET} if unbounded.
-   * @return The corresponding cache {@link SimpleCacheSpan}.
-   */
-  private SimpleCacheSpan getSpan(String key, long position, long length) {
-    @Nullable CachedContent cachedContent = contentIndex.get(key);
-    if (cachedContent == null) {
-      return SimpleCacheSpan.createHole(key, position, length);
-    }
-    while (true) {
-      SimpleCacheSpan span = cachedContent.getSpan(position, length);
-      if (span.isCached && span.file.length() != span.length) {
-        // The file has been modified or deleted underneath us. It's likely that other files will
-        // have been modified too, so scan the whole in-memory representation.
-        removeStaleSpans();
-        continue;
-      }
-      return span;
-    }
-  }
-
   /**
    * Adds a cached span to the in-memory representation.
    *
    * @param span The span to be added.
    */
   private void addSpan(SimpleCacheSpan span) {
-    contentIndex.getOrAdd(span.key).addSpan(span);
+    CachedContent cachedContent = contentIndex.getOrAdd(span.key);
+    synchronized (cachedContent) {
+      cachedContent.addSpan(span);
+    }
     totalSpace += span.length;
     notifySpanAdded(span);
   }
 
   private void removeSpanInternal(CacheSpan span) {
     @Nullable CachedContent cachedContent = contentIndex.get(span.key);
-    if (cachedContent == null || !cachedContent.removeSpan(span)) {
+    if (cachedContent == null) {
       return;
     }
+    synchronized (cachedContent) {
+      if (!cachedContent.removeSpan(span)) {
+        return;
+      }
+    }
     totalSpace -= span.length;
     if (fileIndex != null) {
       String fileName = span.file.getName();
@@ -743,10 +1090,24 @@ public final class SimpleCache implements Cache {
         Log.w(TAG, "Failed to remove file index entry for: " + fileName);
       }
     }
-    contentIndex.maybeRemove(cachedContent.key);
+    maybeRemoveContent(cachedContent.key);
     notifySpanRemoved(span);
   }
 
+  /**
+   * Removes a resource from the index if its {@link CachedContent} is both empty and unlocked. Must
+   * be called while holding the cache lock.
+   */
+  private void maybeRemoveContent(String key) {
+    @Nullable CachedContent cachedContent = contentIndex.get(key);
+    if (cachedContent != null) {
+      // Holding the content lock ensures no range is locked concurrently by startReadWrite.
+      synchronized (cachedContent) {
+        contentIndex.maybeRemove(key);
+      }
+    }
+  }
+
   /**
    * Scans all of the cached spans in the in-memory representation, removing any for which the
    * underlying file lengths no longer match.
@@ -754,9 +1115,11 @@ public final class SimpleCache implements Cache {
   private void removeStaleSpans() {
     ArrayList<CacheSpan> spansToBeRemoved = new ArrayList<>();
     for (CachedContent cachedContent : contentIndex.getAll()) {
-      for (CacheSpan span : cachedContent.getSpans()) {
-        if (span.file.length() != span.length) {
-          spansToBeRemoved.add(span);
+      synchronized (cachedContent) {
+        for (CacheSpan span : cachedContent.getSpans()) {
+          if (span.file.length() != span.length) {
+            spansToBeRemoved.add(span);
+          }
         }
       }
     }
@@ -785,6 +1148,19 @@ public final class SimpleCache implements Cache {
     evictor.onSpanAdded(this, span);
   }
 
+  private void notifySpansLoaded(List<CacheSpan> spans) {
+    for (int i = 0; i < spans.size(); i++) {
+      CacheSpan span = spans.get(i);
+      @Nullable ArrayList<Listener> keyListeners = listeners.get(span.key);
+      if (keyListeners != null) {
+        for (int j = keyListeners.size() - 1; j >= 0; j--) {
+          keyListeners.get(j).onSpanAdded(this, span);
+        }
+      }
+    }
+    evictor.onSpansLoaded(this, spans);
+  }
+
   private void notifySpanTouched(SimpleCacheSpan oldSpan, CacheSpan newSpan) {
     @Nullable ArrayList<Listener> keyListeners = listeners.get(oldSpan.key);
     if (keyListeners != null) {
@@ -852,4 +1228,18 @@ public final class SimpleCache implements Cache {
   private static synchronized void unlockFolder(File cacheDir) {
     lockedCacheDirs.remove(cacheDir.getAbsoluteFile());
   }
+
+  /** A file found by {@link #scanDirectory(File, Map)}. */
+  private static final class ScannedFile {
+
+    public final File file;
+    public final long length;
+    public final long lastTouchTimestamp;
+
+    public ScannedFile(File file, long length, long lastTouchTimestamp) {
+      this.file = file;
+      this.length = length;
+      this.lastTouchTimestamp = lastTouchTimestamp;
+    }
+  }
 }
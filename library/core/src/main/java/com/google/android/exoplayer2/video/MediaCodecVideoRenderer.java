@@ -137,6 +137,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
   private int buffersInCodecCount;
   private long lastBufferPresentationTimeUs;
   private long lastRenderRealtimeUs;
+  private long nextOutputBufferProcessRealtimeUs;
   private long totalVideoFrameProcessingOffsetUs;
   private int videoFrameProcessingOffsetCount;
 
@@ -281,6 +282,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     eventDispatcher = new EventDispatcher(eventHandler, eventListener);
     deviceNeedsNoPostProcessWorkaround = deviceNeedsNoPostProcessWorkaround();
     joiningDeadlineMs = C.TIME_UNSET;
+    nextOutputBufferProcessRealtimeUs = C.TIME_UNSET;
     currentWidth = Format.NO_VALUE;
     currentHeight = Format.NO_VALUE;
     currentPixelWidthHeightRatio = Format.NO_VALUE;
@@ -420,6 +422,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     frameReleaseHelper.onPositionReset();
     lastBufferPresentationTimeUs = C.TIME_UNSET;
     initialPositionUs = C.TIME_UNSET;
+    nextOutputBufferProcessRealtimeUs = C.TIME_UNSET;
     consecutiveDroppedFrameCount = 0;
     if (joining) {
       setJoiningDeadlineMs();
@@ -451,6 +454,15 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     }
   }
 
+  @Override
+  public long getDurationToProgressUs(long positionUs, long elapsedRealtimeUs) {
+    if (getState() != STATE_STARTED || nextOutputBufferProcessRealtimeUs == C.TIME_UNSET) {
+      return DEFAULT_DURATION_TO_PROGRESS_US;
+    }
+    // The pending output buffer can't be released before it's close enough to its release time.
+    return max(0, nextOutputBufferProcessRealtimeUs - SystemClock.elapsedRealtime() * 1000);
+  }
+
   @Override
   protected void onStarted() {
     super.onStarted();
@@ -476,6 +488,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     clearReportedVideoSize();
     clearRenderedFirstFrame();
     haveReportedFirstFrameRenderedForCurrentSurface = false;
+    nextOutputBufferProcessRealtimeUs = C.TIME_UNSET;
     frameReleaseHelper.onDisabled();
     tunnelingOnFrameRenderedListener = null;
     try {
@@ -809,6 +822,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
       Format format)
       throws ExoPlaybackException {
     Assertions.checkNotNull(codec); // Can not render video without codec
+    nextOutputBufferProcessRealtimeUs = C.TIME_UNSET;
 
     if (initialPositionUs == C.TIME_UNSET) {
       initialPositionUs = positionUs;
@@ -900,9 +914,10 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
       return true;
     }
 
+    long maxEarlyUsToRender = Util.SDK_INT >= 21 ? 50000 : 30000;
     if (Util.SDK_INT >= 21) {
       // Let the underlying framework time the release.
-      if (earlyUs < 50000) {
+      if (earlyUs < maxEarlyUsToRender) {
         notifyFrameMetadataListener(presentationTimeUs, adjustedReleaseTimeNs, format);
         renderOutputBufferV21(codec, bufferIndex, presentationTimeUs, adjustedReleaseTimeNs);
         updateVideoFrameProcessingOffsetCounters(earlyUs);
@@ -910,7 +925,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
       }
     } else {
       // We need to time the release ourselves.
-      if (earlyUs < 30000) {
+      if (earlyUs < maxEarlyUsToRender) {
         if (earlyUs > 11000) {
           // We're a little too early to render the frame. Sleep until the frame can be rendered.
           // Note: The 11ms threshold was chosen fairly arbitrarily.
@@ -929,7 +944,9 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
       }
     }
 
-    // We're either not playing, or it's not time to render the frame yet.
+    // It's not time to render the frame yet. Record when it will be, so that the player doesn't
+    // have to call render before then.
+    nextOutputBufferProcessRealtimeUs = elapsedRealtimeNowUs + earlyUs - maxEarlyUsToRender;
     return false;
   }
 
@@ -8328,6 +8328,69 @@ public final class ExoPlayerTest {
     assertThat(runUntilReceiveOffloadSchedulingEnabledNewState(player)).isFalse();
   }
 
+  @Test
+  public void dynamicSchedulingEnabled_rendersWhenRenderersNeedToProgress() throws Exception {
+    AtomicInteger renderCountWhilePlaying = new AtomicInteger();
+    FakeRenderer renderer =
+        new FakeRenderer(C.TRACK_TYPE_VIDEO) {
+          @Override
+          public void render(long positionUs, long elapsedRealtimeUs) throws ExoPlaybackException {
+            super.render(positionUs, elapsedRealtimeUs);
+            if (getState() == STATE_STARTED) {
+              renderCountWhilePlaying.incrementAndGet();
+            }
+          }
+
+          @Override
+          public long getDurationToProgressUs(long positionUs, long elapsedRealtimeUs) {
+            return 100_000;
+          }
+        };
+    SimpleExoPlayer player =
+        new TestExoPlayerBuilder(context)
+            .setRenderers(renderer)
+            .experimentalSetDynamicSchedulingEnabled(true)
+            .build();
+    player.setMediaSource(
+        new FakeMediaSource(new FakeTimeline(), ExoPlayerTestRunner.VIDEO_FORMAT));
+    player.prepare();
+    player.play();
+    runUntilPlaybackState(player, Player.STATE_ENDED);
+    player.release();
+
+    // The 10 second window is rendered roughly every 100ms, rather than every 10ms.
+    assertThat(renderCountWhilePlaying.get()).isLessThan(150);
+  }
+
+  @Test
+  public void playersSharingPlaybackThreadPool_playToEndAndReleaseThread() throws Exception {
+    PlaybackThreadPool playbackThreadPool = new PlaybackThreadPool(/* maxThreadCount= */ 1);
+    SimpleExoPlayer player1 =
+        new TestExoPlayerBuilder(context).setPlaybackThreadPool(playbackThreadPool).build();
+    SimpleExoPlayer player2 =
+        new TestExoPlayerBuilder(context).setPlaybackThreadPool(playbackThreadPool).build();
+    player1.setMediaSource(
+        new FakeMediaSource(new FakeTimeline(), ExoPlayerTestRunner.VIDEO_FORMAT));
+    player2.setMediaSource(
+        new FakeMediaSource(new FakeTimeline(), ExoPlayerTestRunner.VIDEO_FORMAT));
+    player1.prepare();
+    player2.prepare();
+    player1.play();
+    player2.play();
+
+    runUntilPlaybackState(player1, Player.STATE_ENDED);
+    runUntilPlaybackState(player2, Player.STATE_ENDED);
+    Looper playbackLooper1 = player1.getPlaybackLooper();
+    Looper playbackLooper2 = player2.getPlaybackLooper();
+    player1.release();
+    int threadCountAfterFirstRelease = playbackThreadPool.getThreadCount();
+    player2.release();
+
+    assertThat(playbackLooper2).isSameInstanceAs(playbackLooper1);
+    assertThat(threadCountAfterFirstRelease).isEqualTo(1);
+    assertThat(playbackThreadPool.getThreadCount()).isEqualTo(0);
+  }
+
   @Ignore // See [internal: b/170387438]
   @Test
   public void enableOffloadScheduling_isEnable_playerSleeps() throws Exception {
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import android.os.Looper;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link PlaybackThreadPool}. */
+@RunWith(AndroidJUnit4.class)
+public final class PlaybackThreadPoolTest {
+
+  @Test
+  public void obtainLooper_spreadsPlayersOverThreadsUpToMaximum() {
+    PlaybackThreadPool pool = new PlaybackThreadPool(/* maxThreadCount= */ 2);
+
+    Looper looper1 = pool.obtainLooper();
+    Looper looper2 = pool.obtainLooper();
+    Looper looper3 = pool.obtainLooper();
+
+    assertThat(pool.getThreadCount()).isEqualTo(2);
+    assertThat(looper2).isNotSameInstanceAs(looper1);
+    assertThat(looper3).isSameInstanceAs(looper1);
+  }
+
+  @Test
+  public void obtainLooper_assignsThreadWithFewestPlayers() {
+    PlaybackThreadPool pool = new PlaybackThreadPool(/* maxThreadCount= */ 2);
+    Looper looper1 = pool.obtainLooper();
+    Looper looper2 = pool.obtainLooper();
+    pool.obtainLooper();
+
+    pool.releaseLooper(looper2);
+    Looper looper4 = pool.obtainLooper();
+
+    assertThat(looper4).isNotSameInstanceAs(looper1);
+  }
+
+  @Test
+  public void releaseLooper_stopsThreadWhenNoLongerUsed() {
+    PlaybackThreadPool pool = new PlaybackThreadPool(/* maxThreadCount= */ 2);
+    Looper looper1 = pool.obtainLooper();
+    Looper looper2 = pool.obtainLooper();
+    Looper looper3 = pool.obtainLooper();
+
+    pool.releaseLooper(looper2);
+    assertThat(pool.getThreadCount()).isEqualTo(1);
+    pool.releaseLooper(looper1);
+    assertThat(pool.getThreadCount()).isEqualTo(1);
+    pool.releaseLooper(looper3);
+    assertThat(pool.getThreadCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void releaseLooper_withUnknownLooper_throws() {
+    PlaybackThreadPool pool = new PlaybackThreadPool(/* maxThreadCount= */ 1);
+    pool.obtainLooper();
+
+    assertThrows(IllegalStateException.class, () -> pool.releaseLooper(Looper.getMainLooper()));
+  }
+}
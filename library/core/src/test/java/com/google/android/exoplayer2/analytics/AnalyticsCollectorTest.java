@@ -57,6 +57,7 @@ import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 
@@ -1915,6 +1916,25 @@ public final class AnalyticsCollectorTest {
     inOrder.verify(listener3).onSurfaceSizeChanged(any(), eq(0), eq(0));
   }
 
+  @Test
+  public void listenerWithConsumedEvents_onlyReceivesConsumedEvents() {
+    AnalyticsCollector analyticsCollector = new AnalyticsCollector(Clock.DEFAULT);
+    analyticsCollector.setPlayer(
+        new SimpleExoPlayer.Builder(ApplicationProvider.getApplicationContext()).build(),
+        Looper.myLooper());
+    AnalyticsListener listener = mock(AnalyticsListener.class);
+    analyticsCollector.addListener(listener, EVENT_DROPPED_VIDEO_FRAMES);
+
+    analyticsCollector.onDroppedFrames(/* count= */ 2, /* elapsedMs= */ 100);
+    analyticsCollector.onBandwidthSample(
+        /* elapsedMs= */ 100, /* bytes= */ 1000, /* bitrate= */ 80_000);
+    analyticsCollector.onSurfaceSizeChanged(/* width= */ 0, /* height= */ 0);
+
+    verify(listener).onDroppedVideoFrames(any(), eq(2), eq(100L));
+    verify(listener, never()).onBandwidthEstimate(any(), anyInt(), anyLong(), anyLong());
+    verify(listener, never()).onSurfaceSizeChanged(any(), anyInt(), anyInt());
+  }
+
   private static TestAnalyticsListener runAnalyticsTest(MediaSource mediaSource) throws Exception {
     return runAnalyticsTest(mediaSource, /* actionSchedule= */ null);
   }
@@ -0,0 +1,537 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.harmoniclowlatency;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.source.chunk.MediaChunk;
+import com.google.android.exoplayer2.source.chunk.MediaChunkIterator;
+import com.google.android.exoplayer2.testutil.FakeClock;
+import com.google.android.exoplayer2.testutil.FakeMediaChunk;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.upstream.ByteArrayDataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+
+/** Unit test for {@link LowLatencyAdaptiveTrackSelection}. */
+@RunWith(AndroidJUnit4.class)
+public final class LowLatencyAdaptiveTrackSelectionTest {
+
+    private static final MediaChunkIterator[] EMPTY_MEDIA_CHUNK_ITERATORS =
+            new MediaChunkIterator[] {
+                MediaChunkIterator.EMPTY,
+                MediaChunkIterator.EMPTY,
+                MediaChunkIterator.EMPTY,
+                MediaChunkIterator.EMPTY
+            };
+    private static final long TARGET_LIVE_OFFSET_MS = 3_000;
+
+    private static final Format FORMAT_400K = videoFormat(400_000, 480, 270);
+    private static final Format FORMAT_1M = videoFormat(1_000_000, 640, 360);
+    private static final Format FORMAT_2M = videoFormat(2_000_000, 960, 540);
+    private static final Format FORMAT_4M = videoFormat(4_000_000, 1280, 720);
+
+    @Mock private BandwidthMeter mockBandwidthMeter;
+    private FakeClock fakeClock;
+    private List<Decision> decisions;
+
+    @Before
+    public void setUp() {
+        initMocks(this);
+        fakeClock = new FakeClock(0);
+        decisions = new ArrayList<>();
+    }
+
+    @Test
+    public void initialSelection_usesBandwidthMeterEstimate() {
+        when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(2_500_000L);
+        LowLatencyAdaptiveTrackSelection selection = prepareTrackSelection();
+
+        assertThat(selection.getSelectedFormat()).isEqualTo(FORMAT_2M);
+        assertThat(selection.getSelectionReason()).isEqualTo(C.SELECTION_REASON_INITIAL);
+        assertThat(decisions)
+                .containsExactly(
+                        new Decision(
+                                /* previousFormat= */ null,
+                                FORMAT_2M,
+                                LowLatencyAdaptiveTrackSelection.DECISION_REASON_INITIAL));
+    }
+
+    @Test
+    public void rebuffer_reducesAvailableBandwidthUntilItExpires() {
+        when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(5_000_000L);
+        LowLatencyAdaptiveTrackSelection selection = prepareTrackSelection();
+        List<FakeMediaChunk> queue =
+                ImmutableList.of(
+                        new FakeMediaChunk(
+                                FORMAT_4M, /* startTimeUs= */ 0, /* endTimeUs= */ 1_000_000));
+
+        selection.onRebuffer();
+        updateSelectedTrack(selection, /* bufferedDurationMs= */ 2_000, queue);
+
+        assertThat(selection.getSelectedFormat()).isEqualTo(FORMAT_2M);
+        assertThat(selection.getSelectionReason()).isEqualTo(C.SELECTION_REASON_ADAPTIVE);
+        assertThat(Iterables.getLast(decisions))
+                .isEqualTo(
+                        new Decision(
+                                FORMAT_4M,
+                                FORMAT_2M,
+                                LowLatencyAdaptiveTrackSelection.DECISION_REASON_REBUFFER));
+
+        fakeClock.advanceTime(LowLatencyAdaptiveTrackSelection.DEFAULT_REBUFFER_HISTORY_MS);
+        updateSelectedTrack(selection, /* bufferedDurationMs= */ 2_000, queue);
+
+        assertThat(selection.getSelectedFormat()).isEqualTo(FORMAT_4M);
+    }
+
+    @Test
+    public void lowBuffer_stepsDownOneQualityLevel() {
+        when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(5_000_000L);
+        LowLatencyAdaptiveTrackSelection selection = prepareTrackSelection();
+        List<FakeMediaChunk> queue =
+                ImmutableList.of(
+                        new FakeMediaChunk(
+                                FORMAT_4M, /* startTimeUs= */ 0, /* endTimeUs= */ 1_000_000));
+
+        updateSelectedTrack(selection, /* bufferedDurationMs= */ 500, queue);
+
+        assertThat(selection.getSelectedFormat()).isEqualTo(FORMAT_2M);
+        assertThat(Iterables.getLast(decisions))
+                .isEqualTo(
+                        new Decision(
+                                FORMAT_4M,
+                                FORMAT_2M,
+                                LowLatencyAdaptiveTrackSelection.DECISION_REASON_LOW_BUFFER));
+    }
+
+    @Test
+    public void lowBuffer_withEmptyQueue_keepsSelection() {
+        when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(5_000_000L);
+        LowLatencyAdaptiveTrackSelection selection = prepareTrackSelection();
+
+        updateSelectedTrack(
+                selection, /* bufferedDurationMs= */ 0, /* queue= */ Collections.emptyList());
+
+        assertThat(selection.getSelectedFormat()).isEqualTo(FORMAT_4M);
+    }
+
+    @Test
+    public void throughputSample_excludesTimeBetweenLoadAndNextUpdate() throws IOException {
+        when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(1_000_000L);
+        LowLatencyAdaptiveTrackSelection selection = prepareTrackSelection();
+        assertThat(selection.getSelectedFormat()).isEqualTo(FORMAT_400K);
+
+        // Load one second of media at 400 kbps in 100 ms, which measures as 4 Mbps.
+        fakeClock.advanceTime(100);
+        TraceMediaChunk chunk =
+                new TraceMediaChunk(
+                        FORMAT_400K,
+                        selection.getSelectionReason(),
+                        /* startTimeUs= */ 0,
+                        /* endTimeUs= */ 1_000_000,
+                        /* size= */ 50_000);
+        chunk.load();
+        selection.onChunkLoadCompleted(chunk);
+        // Loading is paused until the next update, for example because the buffer is full.
+        fakeClock.advanceTime(900);
+        updateSelectedTrack(selection, /* bufferedDurationMs= */ 2_000, ImmutableList.of(chunk));
+
+        assertThat(selection.getBitrateEstimate()).isEqualTo(4_000_000);
+        assertThat(selection.getSelectedFormat()).isEqualTo(FORMAT_2M);
+    }
+
+    @Test
+    public void throughputSample_fromChunkLoadedAlmostInstantly_isIgnored() throws IOException {
+        when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(1_000_000L);
+        LowLatencyAdaptiveTrackSelection selection = prepareTrackSelection();
+
+        // Load one second of media at 400 kbps in 1 ms, as when it's read from a cache, which would
+        // measure as 400 Mbps.
+        fakeClock.advanceTime(1);
+        TraceMediaChunk chunk =
+                new TraceMediaChunk(
+                        FORMAT_400K,
+                        selection.getSelectionReason(),
+                        /* startTimeUs= */ 0,
+                        /* endTimeUs= */ 1_000_000,
+                        /* size= */ 50_000);
+        chunk.load();
+        selection.onChunkLoadCompleted(chunk);
+        updateSelectedTrack(selection, /* bufferedDurationMs= */ 2_000, ImmutableList.of(chunk));
+
+        assertThat(selection.getBitrateEstimate()).isEqualTo(1_000_000);
+        assertThat(selection.getSelectedFormat()).isEqualTo(FORMAT_400K);
+    }
+
+    @Test
+    public void throughputSample_fromPrefetchedChunk_isIgnored() throws IOException {
+        when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(1_000_000L);
+        LowLatencyAdaptiveTrackSelection.PrefetchHistory prefetchHistory =
+                new LowLatencyAdaptiveTrackSelection.PrefetchHistory();
+        LowLatencyAdaptiveTrackSelection selection = prepareTrackSelection(prefetchHistory);
+
+        // The chunk is read from memory while the next chunk is being prefetched, which measures
+        // as 4 Mbps.
+        prefetchHistory.add(new DataSpec(Uri.EMPTY));
+        fakeClock.advanceTime(100);
+        TraceMediaChunk chunk =
+                new TraceMediaChunk(
+                        FORMAT_400K,
+                        selection.getSelectionReason(),
+                        /* startTimeUs= */ 0,
+                        /* endTimeUs= */ 1_000_000,
+                        /* size= */ 50_000);
+        chunk.load();
+        selection.onChunkLoadCompleted(chunk);
+        updateSelectedTrack(selection, /* bufferedDurationMs= */ 2_000, ImmutableList.of(chunk));
+
+        assertThat(selection.getBitrateEstimate()).isEqualTo(1_000_000);
+        assertThat(selection.getSelectedFormat()).isEqualTo(FORMAT_400K);
+    }
+
+    @Test
+    public void replayHighBandwidthTrace_switchesUpOnceBufferAllows() throws IOException {
+        when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(1_000_000L);
+        LowLatencyAdaptiveTrackSelection selection = prepareTrackSelection();
+        TraceSimulator simulator = new TraceSimulator(selection, /* paced= */ false);
+
+        simulator.replay(constantTrace(/* bitrate= */ 20_000_000, /* segmentCount= */ 10));
+
+        // The first chunk is loaded before any throughput sample is available, and the second
+        // before the buffer allows switching up.
+        assertThat(simulator.loadedBitrates)
+                .containsExactly(
+                        400_000, 400_000, 4_000_000, 4_000_000, 4_000_000, 4_000_000, 4_000_000,
+                        4_000_000, 4_000_000, 4_000_000)
+                .inOrder();
+        assertThat(simulator.rebufferCount).isEqualTo(0);
+    }
+
+    @Test
+    public void replayTraceWithThroughputDrop_switchesDownAfterOneChunk() throws IOException {
+        when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(1_000_000L);
+        LowLatencyAdaptiveTrackSelection selection = prepareTrackSelection();
+        TraceSimulator simulator = new TraceSimulator(selection, /* paced= */ false);
+
+        simulator.replay(
+                concat(
+                        constantTrace(/* bitrate= */ 20_000_000, /* segmentCount= */ 10),
+                        constantTrace(/* bitrate= */ 1_500_000, /* segmentCount= */ 10)));
+
+        assertThat(simulator.loadedBitrates.subList(10, 12))
+                .containsExactly(4_000_000, 400_000)
+                .inOrder();
+        assertThat(simulator.rebufferCount).isEqualTo(1);
+        assertThat(selection.getSelectedFormat()).isEqualTo(FORMAT_400K);
+    }
+
+    @Test
+    public void replayPacedTrace_keepsSelection() throws IOException {
+        when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(5_000_000L);
+        LowLatencyAdaptiveTrackSelection selection = prepareTrackSelection();
+        TraceSimulator simulator = new TraceSimulator(selection, /* paced= */ true);
+
+        simulator.replay(constantTrace(/* bitrate= */ 20_000_000, /* segmentCount= */ 20));
+
+        // Every chunk takes its playout duration to load, which would measure as 4 Mbps.
+        assertThat(simulator.loadedBitrates)
+                .containsExactlyElementsIn(Collections.nCopies(20, 4_000_000));
+        assertThat(decisions).hasSize(1);
+    }
+
+    @Test
+    public void replayTraceWithTemporaryDrop_recoversWithoutRebuffering() throws IOException {
+        when(mockBandwidthMeter.getBitrateEstimate()).thenReturn(1_000_000L);
+        LowLatencyAdaptiveTrackSelection selection = prepareTrackSelection();
+        TraceSimulator simulator = new TraceSimulator(selection, /* paced= */ false);
+
+        simulator.replay(
+                concat(
+                        constantTrace(/* bitrate= */ 6_000_000, /* segmentCount= */ 10),
+                        constantTrace(/* bitrate= */ 2_500_000, /* segmentCount= */ 10),
+                        constantTrace(/* bitrate= */ 6_000_000, /* segmentCount= */ 20)));
+
+        assertThat(simulator.rebufferCount).isEqualTo(0);
+        assertThat(simulator.loadedBitrates.get(19)).isEqualTo(1_000_000);
+        assertThat(selection.getSelectedFormat()).isEqualTo(FORMAT_4M);
+    }
+
+    private LowLatencyAdaptiveTrackSelection prepareTrackSelection() {
+        return prepareTrackSelection(/* prefetchHistory= */ null);
+    }
+
+    private LowLatencyAdaptiveTrackSelection prepareTrackSelection(
+            @Nullable LowLatencyAdaptiveTrackSelection.PrefetchHistory prefetchHistory) {
+        LowLatencyAdaptiveTrackSelection selection =
+                new LowLatencyAdaptiveTrackSelection(
+                        new TrackGroup(FORMAT_400K, FORMAT_1M, FORMAT_2M, FORMAT_4M),
+                        /* tracks= */ new int[] {0, 1, 2, 3},
+                        mockBandwidthMeter,
+                        C.msToUs(TARGET_LIVE_OFFSET_MS),
+                        LowLatencyAdaptiveTrackSelection.DEFAULT_BANDWIDTH_FRACTION,
+                        LowLatencyAdaptiveTrackSelection
+                                .DEFAULT_MIN_BUFFER_FRACTION_FOR_QUALITY_INCREASE,
+                        LowLatencyAdaptiveTrackSelection.DEFAULT_LOW_BUFFER_FRACTION,
+                        LowLatencyAdaptiveTrackSelection.DEFAULT_REBUFFER_HISTORY_MS,
+                        new LowLatencyAdaptiveTrackSelection.EventListener() {
+                            @Override
+                            public void onSelectionDecision(
+                                    @Nullable Format previousFormat,
+                                    Format selectedFormat,
+                                    int decisionReason,
+                                    long bitrateEstimate,
+                                    long bufferedDurationUs,
+                                    long targetLiveOffsetUs,
+                                    int recentRebufferCount) {
+                                decisions.add(
+                                        new Decision(
+                                                previousFormat, selectedFormat, decisionReason));
+                            }
+                        },
+                        fakeClock,
+                        prefetchHistory);
+        selection.enable();
+        updateSelectedTrack(
+                selection, /* bufferedDurationMs= */ 0, /* queue= */ Collections.emptyList());
+        return selection;
+    }
+
+    private static void updateSelectedTrack(
+            LowLatencyAdaptiveTrackSelection selection,
+            long bufferedDurationMs,
+            List<? extends MediaChunk> queue) {
+        selection.updateSelectedTrack(
+                /* playbackPositionUs= */ 0,
+                C.msToUs(bufferedDurationMs),
+                /* availableDurationUs= */ C.TIME_UNSET,
+                queue,
+                EMPTY_MEDIA_CHUNK_ITERATORS);
+    }
+
+    private static int[] constantTrace(int bitrate, int segmentCount) {
+        int[] trace = new int[segmentCount];
+        Arrays.fill(trace, bitrate);
+        return trace;
+    }
+
+    private static int[] concat(int[]... traces) {
+        int[] trace = new int[0];
+        for (int[] part : traces) {
+            int length = trace.length;
+            trace = Arrays.copyOf(trace, length + part.length);
+            System.arraycopy(part, 0, trace, length, part.length);
+        }
+        return trace;
+    }
+
+    private static Format videoFormat(int bitrate, int width, int height) {
+        return new Format.Builder()
+                .setSampleMimeType(MimeTypes.VIDEO_H264)
+                .setAverageBitrate(bitrate)
+                .setWidth(width)
+                .setHeight(height)
+                .build();
+    }
+
+    /**
+     * Plays a live stream at a constant target live offset while loading one segment per entry of
+     * a bandwidth trace.
+     */
+    private final class TraceSimulator {
+
+        private static final long SEGMENT_DURATION_MS = 1_000;
+        private static final long TIME_TO_FIRST_BYTE_MS = 50;
+
+        private final LowLatencyAdaptiveTrackSelection selection;
+        private final boolean paced;
+        private final List<Integer> loadedBitrates;
+
+        private List<MediaChunk> queue;
+        private long bufferedDurationMs;
+        private long nextSegmentStartTimeUs;
+        private boolean playing;
+        private boolean rebuffering;
+        private int rebufferCount;
+
+        /**
+         * @param selection The selection to drive.
+         * @param paced Whether segments are delivered with chunked transfer encoding at the live
+         *     edge, so that no segment loads faster than its duration.
+         */
+        public TraceSimulator(LowLatencyAdaptiveTrackSelection selection, boolean paced) {
+            this.selection = selection;
+            this.paced = paced;
+            loadedBitrates = new ArrayList<>();
+            queue = Collections.emptyList();
+        }
+
+        /** Loads one segment per entry of the trace of available bandwidths, in bits per second. */
+        public void replay(int[] bandwidthTrace) throws IOException {
+            for (int bandwidth : bandwidthTrace) {
+                update();
+                if (bufferedDurationMs + SEGMENT_DURATION_MS > TARGET_LIVE_OFFSET_MS) {
+                    // Wait for the next segment to become available at the live edge.
+                    advanceTime(bufferedDurationMs + SEGMENT_DURATION_MS - TARGET_LIVE_OFFSET_MS);
+                    update();
+                }
+                loadSegment(bandwidth);
+            }
+            update();
+        }
+
+        private void loadSegment(int bandwidth) throws IOException {
+            Format format = selection.getSelectedFormat();
+            int segmentSize = (int) ((long) format.bitrate * SEGMENT_DURATION_MS / 8000);
+            long loadDurationMs = TIME_TO_FIRST_BYTE_MS + segmentSize * 8000L / bandwidth;
+            if (paced) {
+                loadDurationMs = Math.max(loadDurationMs, SEGMENT_DURATION_MS);
+            }
+            advanceTime(loadDurationMs);
+            TraceMediaChunk chunk =
+                    new TraceMediaChunk(
+                            format,
+                            selection.getSelectionReason(),
+                            nextSegmentStartTimeUs,
+                            nextSegmentStartTimeUs + C.msToUs(SEGMENT_DURATION_MS),
+                            segmentSize);
+            chunk.load();
+            selection.onChunkLoadCompleted(chunk);
+            queue = ImmutableList.of(chunk);
+            loadedBitrates.add(format.bitrate);
+            nextSegmentStartTimeUs = chunk.endTimeUs;
+            bufferedDurationMs += SEGMENT_DURATION_MS;
+            playing = true;
+            rebuffering = false;
+        }
+
+        private void update() {
+            updateSelectedTrack(selection, bufferedDurationMs, queue);
+        }
+
+        private void advanceTime(long durationMs) {
+            if (playing && bufferedDurationMs < durationMs) {
+                fakeClock.advanceTime(bufferedDurationMs);
+                durationMs -= bufferedDurationMs;
+                bufferedDurationMs = 0;
+                if (!rebuffering) {
+                    rebuffering = true;
+                    rebufferCount++;
+                    selection.onRebuffer();
+                }
+            } else if (playing) {
+                bufferedDurationMs -= durationMs;
+            }
+            fakeClock.advanceTime(durationMs);
+        }
+    }
+
+    /** A {@link MediaChunk} that loads a given number of bytes from memory. */
+    private static final class TraceMediaChunk extends MediaChunk {
+
+        private boolean loadCompleted;
+
+        public TraceMediaChunk(
+                Format format, int selectionReason, long startTimeUs, long endTimeUs, int size) {
+            super(
+                    new ByteArrayDataSource(new byte[size]),
+                    new DataSpec(Uri.EMPTY),
+                    format,
+                    selectionReason,
+                    /* trackSelectionData= */ null,
+                    startTimeUs,
+                    endTimeUs,
+                    /* chunkIndex= */ 0);
+        }
+
+        @Override
+        public void cancelLoad() {
+            // Do nothing.
+        }
+
+        @Override
+        public void load() throws IOException {
+            try {
+                dataSource.open(dataSpec);
+                Util.readToEnd(dataSource);
+            } finally {
+                Util.closeQuietly(dataSource);
+            }
+            loadCompleted = true;
+        }
+
+        @Override
+        public boolean isLoadCompleted() {
+            return loadCompleted;
+        }
+    }
+
+    private static final class Decision {
+
+        @Nullable private final Format previousFormat;
+        private final Format selectedFormat;
+        private final int decisionReason;
+
+        public Decision(@Nullable Format previousFormat, Format selectedFormat, int decisionReason) {
+            this.previousFormat = previousFormat;
+            this.selectedFormat = selectedFormat;
+            this.decisionReason = decisionReason;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Decision)) {
+                return false;
+            }
+            Decision that = (Decision) o;
+            return Util.areEqual(previousFormat, that.previousFormat)
+                    && selectedFormat.equals(that.selectedFormat)
+                    && decisionReason == that.decisionReason;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * selectedFormat.hashCode() + decisionReason;
+        }
+
+        @Override
+        public String toString() {
+            return previousFormat + " -> " + selectedFormat + " (" + decisionReason + ")";
+        }
+    }
+}
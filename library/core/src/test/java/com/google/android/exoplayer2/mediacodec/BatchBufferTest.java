@@ -21,6 +21,7 @@ import static com.google.android.exoplayer2.mediacodec.BatchBuffer.DEFAULT_MAX_S
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertThrows;
 
+import androidx.annotation.Nullable;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.decoder.DecoderInputBuffer;
@@ -217,6 +218,27 @@ public final class BatchBufferTest {
     assertThat(batchBuffer.data).isEqualTo(expected);
   }
 
+  @Test
+  public void appendSamples_replacesDataBufferLogarithmically() {
+    int replacementCount = 0;
+    @Nullable ByteBuffer previousData = null;
+    for (int i = 0; i < DEFAULT_MAX_SAMPLE_COUNT; i++) {
+      initSampleBuffer(/* timeUs= */ i);
+      batchBuffer.append(sampleBuffer);
+      if (batchBuffer.data != previousData) {
+        replacementCount++;
+        previousData = batchBuffer.data;
+      }
+    }
+    batchBuffer.flip();
+
+    // The capacity grows from 8 bytes (a single sample) to 256 bytes by doubling.
+    assertThat(replacementCount).isEqualTo(6);
+    for (int i = 0; i < DEFAULT_MAX_SAMPLE_COUNT; i++) {
+      assertThat(batchBuffer.data.getLong()).isEqualTo(i);
+    }
+  }
+
   @Test
   public void appendFirstSample_exceedingMaxSize_succeeds() {
     sampleBuffer.ensureSpaceForWrite(BatchBuffer.MAX_SIZE_BYTES + 1);
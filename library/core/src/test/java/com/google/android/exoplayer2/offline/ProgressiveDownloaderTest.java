@@ -29,6 +29,7 @@ import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.cache.Cache;
 import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.ContentMetadata;
 import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
 import com.google.android.exoplayer2.upstream.cache.SimpleCache;
 import com.google.android.exoplayer2.util.Util;
@@ -92,6 +93,29 @@ public class ProgressiveDownloaderTest {
     assertThat(progressListener.bytesDownloaded).isEqualTo(30);
   }
 
+  @Test
+  public void download_withPinDownloadedContent_pinsContentOnceDownloaded() throws Exception {
+    Uri uri = Uri.parse("test:///test.mp4");
+    FakeDataSet data = new FakeDataSet();
+    data.newData(uri).appendReadData(10).appendReadError(new IOException()).appendReadData(20);
+    DataSource.Factory upstreamDataSource = new FakeDataSource.Factory().setFakeDataSet(data);
+    CacheDataSource.Factory cacheDataSourceFactory =
+        new CacheDataSource.Factory()
+            .setCache(downloadCache)
+            .setUpstreamDataSourceFactory(upstreamDataSource);
+    ProgressiveDownloader downloader =
+        new ProgressiveDownloader(MediaItem.fromUri(uri), cacheDataSourceFactory);
+    downloader.setPinDownloadedContent(true);
+
+    assertThrows(IOException.class, () -> downloader.download(/* progressListener= */ null));
+    assertThat(ContentMetadata.isPinned(downloadCache.getContentMetadata(uri.toString())))
+        .isFalse();
+
+    downloader.download(/* progressListener= */ null);
+    assertThat(ContentMetadata.isPinned(downloadCache.getContentMetadata(uri.toString())))
+        .isTrue();
+  }
+
   private static final class TestProgressListener implements Downloader.ProgressListener {
 
     public long bytesDownloaded;
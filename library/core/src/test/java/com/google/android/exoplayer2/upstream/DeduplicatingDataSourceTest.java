@@ -0,0 +1,325 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.testutil.FakeDataSet;
+import com.google.android.exoplayer2.testutil.FakeDataSource;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.ConditionVariable;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Bytes;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link DeduplicatingDataSource}. */
+@RunWith(AndroidJUnit4.class)
+public final class DeduplicatingDataSourceTest {
+
+  private static final Uri URI = Uri.parse("segment");
+  private static final byte[] DATA_1 = TestUtil.buildTestData(/* length= */ 100, /* seed= */ 1);
+  private static final byte[] DATA_2 = TestUtil.buildTestData(/* length= */ 100, /* seed= */ 2);
+  private static final byte[] DATA = Bytes.concat(DATA_1, DATA_2);
+
+  private List<FakeDataSource> createdDataSources;
+  private ConditionVariable firstReadStarted;
+  private ConditionVariable allowFirstReadToFinish;
+
+  @Before
+  public void setUp() {
+    firstReadStarted = new ConditionVariable();
+    allowFirstReadToFinish = new ConditionVariable();
+    createdDataSources = new CopyOnWriteArrayList<>();
+  }
+
+  @Test
+  public void concurrentReads_shareUpstreamRequest() throws Exception {
+    DeduplicatingDataSource.Factory factory =
+        new DeduplicatingDataSource.Factory(this::createFakeDataSource);
+    DataSpec dataSpec = new DataSpec(URI);
+
+    AtomicReference<byte[]> firstReadData = new AtomicReference<>();
+    Thread firstReadThread = startReadThread(factory.createDataSource(), dataSpec, firstReadData);
+    firstReadStarted.block();
+    DataSource dataSource = factory.createDataSource();
+    dataSource.open(dataSpec);
+    allowFirstReadToFinish.open();
+    byte[] secondReadData = Util.readToEnd(dataSource);
+    dataSource.close();
+    firstReadThread.join();
+
+    assertThat(firstReadData.get()).isEqualTo(DATA);
+    assertThat(secondReadData).isEqualTo(DATA);
+    assertThat(getOpenedUpstreamDataSpecCount()).isEqualTo(1);
+    assertThat(factory.getSharedRequestCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void concurrentReads_withReaderCanceled_otherReaderReopensUpstreamAndContinuesReading()
+      throws Exception {
+    DeduplicatingDataSource.Factory factory =
+        new DeduplicatingDataSource.Factory(this::createInterruptibleFakeDataSource);
+    DataSpec dataSpec = new DataSpec(URI);
+
+    AtomicReference<IOException> firstReadError = new AtomicReference<>();
+    DataSource firstDataSource = factory.createDataSource();
+    Thread firstReadThread =
+        new Thread(
+            () -> {
+              try {
+                readFully(firstDataSource, dataSpec);
+              } catch (IOException e) {
+                firstReadError.set(e);
+              }
+            });
+    firstReadThread.start();
+    firstReadStarted.block();
+    DataSource dataSource = factory.createDataSource();
+    dataSource.open(dataSpec);
+    // Cancel the first read while it's reading from upstream.
+    firstReadThread.interrupt();
+    allowFirstReadToFinish.open();
+    byte[] secondReadData = Util.readToEnd(dataSource);
+    dataSource.close();
+    firstReadThread.join();
+
+    assertThat(firstReadError.get()).isInstanceOf(InterruptedIOException.class);
+    assertThat(secondReadData).isEqualTo(DATA);
+    // The canceled read left the upstream at an unknown position, so it was reopened at the end of
+    // the data that had been read.
+    assertThat(createdDataSources).hasSize(1);
+    DataSpec[] openedDataSpecs = createdDataSources.get(0).getAndClearOpenedDataSpecs();
+    assertThat(openedDataSpecs).hasLength(2);
+    assertThat(openedDataSpecs[0].position).isEqualTo(0);
+    assertThat(openedDataSpecs[1].position).isEqualTo(DATA_1.length);
+    assertThat(factory.getSharedRequestCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void concurrentReadsWithDifferentRequestHeaders_makeSeparateUpstreamRequests()
+      throws Exception {
+    DeduplicatingDataSource.Factory factory =
+        new DeduplicatingDataSource.Factory(this::createFakeDataSource);
+    DataSpec dataSpec = new DataSpec(URI);
+
+    AtomicReference<byte[]> firstReadData = new AtomicReference<>();
+    Thread firstReadThread = startReadThread(factory.createDataSource(), dataSpec, firstReadData);
+    firstReadStarted.block();
+    byte[] secondReadData =
+        readFully(
+            factory.createDataSource(),
+            dataSpec
+                .buildUpon()
+                .setHttpRequestHeaders(ImmutableMap.of("Authorization", "token"))
+                .build());
+    allowFirstReadToFinish.open();
+    firstReadThread.join();
+
+    assertThat(firstReadData.get()).isEqualTo(DATA);
+    assertThat(secondReadData).isEqualTo(DATA);
+    assertThat(getOpenedUpstreamDataSpecCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void createDataSource_doesNotCreateUpstreamUntilNeeded() {
+    DeduplicatingDataSource.Factory factory =
+        new DeduplicatingDataSource.Factory(this::createFakeDataSource);
+
+    factory.createDataSource();
+    factory.createDataSource();
+
+    assertThat(createdDataSources).isEmpty();
+  }
+
+  @Test
+  public void sequentialReads_makeSeparateUpstreamRequests() throws Exception {
+    allowFirstReadToFinish.open();
+    DeduplicatingDataSource.Factory factory =
+        new DeduplicatingDataSource.Factory(this::createFakeDataSource);
+    DataSpec dataSpec = new DataSpec(URI);
+
+    assertThat(readFully(factory.createDataSource(), dataSpec)).isEqualTo(DATA);
+    assertThat(readFully(factory.createDataSource(), dataSpec)).isEqualTo(DATA);
+
+    assertThat(getOpenedUpstreamDataSpecCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void concurrentReadsOfDifferentRanges_makeSeparateUpstreamRequests() throws Exception {
+    DeduplicatingDataSource.Factory factory =
+        new DeduplicatingDataSource.Factory(this::createFakeDataSource);
+
+    AtomicReference<byte[]> firstReadData = new AtomicReference<>();
+    Thread firstReadThread =
+        startReadThread(factory.createDataSource(), new DataSpec(URI), firstReadData);
+    firstReadStarted.block();
+    byte[] secondReadData =
+        readFully(
+            factory.createDataSource(),
+            new DataSpec(URI, /* position= */ 0, /* length= */ DATA_1.length));
+    allowFirstReadToFinish.open();
+    firstReadThread.join();
+
+    assertThat(firstReadData.get()).isEqualTo(DATA);
+    assertThat(secondReadData).isEqualTo(DATA_1);
+    assertThat(getOpenedUpstreamDataSpecCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void concurrentReadsOfDataLongerThanMaxSharedLength_makeSeparateUpstreamRequests()
+      throws Exception {
+    DeduplicatingDataSource.Factory factory =
+        new DeduplicatingDataSource.Factory(
+            this::createFakeDataSource, /* maxSharedLength= */ DATA.length - 1);
+    DataSpec dataSpec = new DataSpec(URI);
+
+    AtomicReference<byte[]> firstReadData = new AtomicReference<>();
+    Thread firstReadThread = startReadThread(factory.createDataSource(), dataSpec, firstReadData);
+    firstReadStarted.block();
+    byte[] secondReadData = readFully(factory.createDataSource(), dataSpec);
+    allowFirstReadToFinish.open();
+    firstReadThread.join();
+
+    assertThat(firstReadData.get()).isEqualTo(DATA);
+    assertThat(secondReadData).isEqualTo(DATA);
+    assertThat(getOpenedUpstreamDataSpecCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void concurrentReadsThroughCache_shareUpstreamRequest() throws Exception {
+    File cacheDir =
+        Util.createTempDirectory(ApplicationProvider.getApplicationContext(), "ExoPlayerTest");
+    SimpleCache cache =
+        new SimpleCache(cacheDir, new NoOpCacheEvictor(), TestUtil.getInMemoryDatabaseProvider());
+    try {
+      CacheDataSource.Factory factory =
+          new CacheDataSource.Factory()
+              .setCache(cache)
+              .setUpstreamDataSourceFactory(
+                  new DeduplicatingDataSource.Factory(this::createFakeDataSource));
+      DataSpec dataSpec = new DataSpec(URI, /* position= */ 0, /* length= */ DATA.length);
+
+      // The first read writes to the cache. The second read bypasses the cache, since the data is
+      // locked by the first read, but it shares the upstream request of the first read.
+      AtomicReference<byte[]> firstReadData = new AtomicReference<>();
+      Thread firstReadThread =
+          startReadThread(factory.createDataSource(), dataSpec, firstReadData);
+      firstReadStarted.block();
+      DataSource dataSource = factory.createDataSource();
+      dataSource.open(dataSpec);
+      allowFirstReadToFinish.open();
+      byte[] secondReadData = Util.readToEnd(dataSource);
+      dataSource.close();
+      firstReadThread.join();
+
+      assertThat(firstReadData.get()).isEqualTo(DATA);
+      assertThat(secondReadData).isEqualTo(DATA);
+      assertThat(getOpenedUpstreamDataSpecCount()).isEqualTo(1);
+      assertThat(cache.isCached(URI.toString(), /* position= */ 0, DATA.length)).isTrue();
+    } finally {
+      cache.release();
+      Util.recursiveDelete(cacheDir);
+    }
+  }
+
+  private FakeDataSource createFakeDataSource() {
+    // Each data source needs its own FakeDataSet, since the read state is held in its FakeData.
+    FakeDataSet fakeDataSet = new FakeDataSet();
+    fakeDataSet
+        .newData(URI)
+        .appendReadData(DATA_1)
+        .appendReadAction(this::blockFirstRead)
+        .appendReadData(DATA_2);
+    FakeDataSource fakeDataSource = new FakeDataSource(fakeDataSet);
+    createdDataSources.add(fakeDataSource);
+    return fakeDataSource;
+  }
+
+  /** Creates a data source whose reads fail if the reading thread has been interrupted. */
+  private FakeDataSource createInterruptibleFakeDataSource() {
+    FakeDataSet fakeDataSet = new FakeDataSet();
+    fakeDataSet
+        .newData(URI)
+        .appendReadData(DATA_1)
+        .appendReadAction(this::blockFirstRead)
+        .appendReadData(DATA_2);
+    FakeDataSource fakeDataSource =
+        new FakeDataSource(fakeDataSet) {
+          @Override
+          protected void onDataRead(int bytesRead) throws IOException {
+            if (Thread.interrupted()) {
+              throw new InterruptedIOException();
+            }
+          }
+        };
+    createdDataSources.add(fakeDataSource);
+    return fakeDataSource;
+  }
+
+  /** Blocks the first upstream read that reaches the end of the first half of the data. */
+  private void blockFirstRead() {
+    if (firstReadStarted.open()) {
+      allowFirstReadToFinish.blockUninterruptible();
+    }
+  }
+
+  private int getOpenedUpstreamDataSpecCount() {
+    int count = 0;
+    for (FakeDataSource dataSource : createdDataSources) {
+      count += dataSource.getAndClearOpenedDataSpecs().length;
+    }
+    return count;
+  }
+
+  private static Thread startReadThread(
+      DataSource dataSource, DataSpec dataSpec, AtomicReference<byte[]> readData) {
+    Thread thread =
+        new Thread(
+            () -> {
+              try {
+                readData.set(readFully(dataSource, dataSpec));
+              } catch (IOException e) {
+                throw new IllegalStateException(e);
+              }
+            });
+    thread.start();
+    return thread;
+  }
+
+  private static byte[] readFully(DataSource dataSource, DataSpec dataSpec) throws IOException {
+    try {
+      dataSource.open(dataSpec);
+      return Util.readToEnd(dataSource);
+    } finally {
+      dataSource.close();
+    }
+  }
+}
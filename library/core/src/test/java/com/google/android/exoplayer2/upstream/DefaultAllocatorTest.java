@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link DefaultAllocator}. */
+@RunWith(AndroidJUnit4.class)
+public final class DefaultAllocatorTest {
+
+  private static final int ALLOCATION_SIZE = 16;
+
+  @Test
+  public void getTotalBytesAllocated_countsAllocationsUntilReleased() {
+    DefaultAllocator allocator =
+        new DefaultAllocator(/* trimOnReset= */ true, ALLOCATION_SIZE);
+
+    Allocation allocation1 = allocator.allocate();
+    Allocation allocation2 = allocator.allocate();
+    Allocation allocation3 = allocator.allocate();
+    assertThat(allocator.getTotalBytesAllocated()).isEqualTo(3 * ALLOCATION_SIZE);
+
+    allocator.release(allocation1);
+    assertThat(allocator.getTotalBytesAllocated()).isEqualTo(2 * ALLOCATION_SIZE);
+    allocator.release(new Allocation[] {allocation2, allocation3});
+    assertThat(allocator.getTotalBytesAllocated()).isEqualTo(0);
+  }
+
+  @Test
+  public void allocate_afterRelease_reusesReleasedAllocations() {
+    DefaultAllocator allocator =
+        new DefaultAllocator(/* trimOnReset= */ true, ALLOCATION_SIZE);
+    Allocation allocation1 = allocator.allocate();
+    Allocation allocation2 = allocator.allocate();
+    allocator.release(new Allocation[] {allocation1, allocation2});
+
+    Set<Allocation> allocations = new HashSet<>();
+    allocations.add(allocator.allocate());
+    allocations.add(allocator.allocate());
+
+    assertThat(allocations).containsExactly(allocation1, allocation2);
+  }
+
+  @Test
+  public void trim_discardsAvailableAllocationsBeyondTarget() {
+    DefaultAllocator allocator =
+        new DefaultAllocator(/* trimOnReset= */ true, ALLOCATION_SIZE);
+    allocator.setTargetBufferSize(2 * ALLOCATION_SIZE);
+    Allocation[] allocations = new Allocation[4];
+    for (int i = 0; i < allocations.length; i++) {
+      allocations[i] = allocator.allocate();
+    }
+    allocator.release(allocations);
+
+    allocator.trim();
+
+    assertThat(countReusedAllocations(allocator, allocations)).isEqualTo(2);
+  }
+
+  @Test
+  public void reset_keepsInitialAllocations() {
+    DefaultAllocator allocator =
+        new DefaultAllocator(
+            /* trimOnReset= */ true, ALLOCATION_SIZE, /* initialAllocationCount= */ 2);
+    allocator.setTargetBufferSize(4 * ALLOCATION_SIZE);
+    Allocation[] allocations = new Allocation[4];
+    for (int i = 0; i < allocations.length; i++) {
+      allocations[i] = allocator.allocate();
+    }
+    allocator.release(allocations);
+
+    allocator.reset();
+
+    assertThat(countReusedAllocations(allocator, allocations)).isEqualTo(2);
+  }
+
+  @Test
+  public void allocateAndRelease_onDifferentThreads_keepsAccounting() throws Exception {
+    DefaultAllocator allocator =
+        new DefaultAllocator(/* trimOnReset= */ true, ALLOCATION_SIZE);
+    LinkedBlockingQueue<Allocation> queue = new LinkedBlockingQueue<>();
+    int allocationCount = 10_000;
+    CountDownLatch finished = new CountDownLatch(2);
+    Thread allocatingThread =
+        new Thread(
+            () -> {
+              for (int i = 0; i < allocationCount; i++) {
+                queue.add(allocator.allocate());
+              }
+              finished.countDown();
+            });
+    Thread releasingThread =
+        new Thread(
+            () -> {
+              try {
+                for (int i = 0; i < allocationCount; i++) {
+                  allocator.release(queue.take());
+                }
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              finished.countDown();
+            });
+
+    allocatingThread.start();
+    releasingThread.start();
+
+    assertThat(finished.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(allocator.getTotalBytesAllocated()).isEqualTo(0);
+  }
+
+  @Test
+  public void allocateAndRelease_onConcurrentThreads_neverHandsOutAllocationTwice()
+      throws Exception {
+    DefaultAllocator allocator =
+        new DefaultAllocator(/* trimOnReset= */ true, ALLOCATION_SIZE);
+    Set<Allocation> heldAllocations = ConcurrentHashMap.newKeySet();
+    AtomicBoolean handedOutTwice = new AtomicBoolean();
+    int threadCount = 4;
+    CountDownLatch finished = new CountDownLatch(threadCount);
+    for (int i = 0; i < threadCount; i++) {
+      new Thread(
+              () -> {
+                Allocation[] allocations = new Allocation[3];
+                for (int j = 0; j < 10_000; j++) {
+                  for (int k = 0; k < allocations.length; k++) {
+                    allocations[k] = allocator.allocate();
+                    if (!heldAllocations.add(allocations[k])) {
+                      handedOutTwice.set(true);
+                    }
+                  }
+                  for (Allocation allocation : allocations) {
+                    heldAllocations.remove(allocation);
+                  }
+                  if (j % 2 == 0) {
+                    allocator.release(allocations);
+                  } else {
+                    for (Allocation allocation : allocations) {
+                      allocator.release(allocation);
+                    }
+                  }
+                }
+                finished.countDown();
+              })
+          .start();
+    }
+
+    assertThat(finished.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(handedOutTwice.get()).isFalse();
+    assertThat(allocator.getTotalBytesAllocated()).isEqualTo(0);
+  }
+
+  private static int countReusedAllocations(
+      DefaultAllocator allocator, Allocation[] previousAllocations) {
+    List<Allocation> previousAllocationList = new ArrayList<>();
+    for (Allocation allocation : previousAllocations) {
+      previousAllocationList.add(allocation);
+    }
+    int reusedCount = 0;
+    for (int i = 0; i < previousAllocations.length; i++) {
+      if (previousAllocationList.contains(allocator.allocate())) {
+        reusedCount++;
+      }
+    }
+    return reusedCount;
+  }
+}
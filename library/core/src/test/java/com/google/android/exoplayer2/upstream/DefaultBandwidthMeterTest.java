@@ -559,6 +559,166 @@ public final class DefaultBandwidthMeterTest {
     assertThat(initialEstimateWithoutBuilder).isLessThan(50_000_000L);
   }
 
+  @Test
+  public void chunkedTransfer_withoutIdleTransferGapThreshold_measuresMediaBitrate() {
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    DefaultBandwidthMeter bandwidthMeter =
+        new DefaultBandwidthMeter.Builder(/* context= */ null).setClock(clock).build();
+
+    // 1 second segments of 2 Mbps media, sent as 4 chunks that each take 20 ms at 25 Mbps.
+    simulateChunkedTransfers(
+        bandwidthMeter,
+        clock,
+        /* transferCount= */ 10,
+        /* idleTimeMs= */ 230,
+        /* readDurationMs= */ 4);
+
+    assertThat(bandwidthMeter.getBitrateEstimate()).isEqualTo(2_000_000L);
+  }
+
+  @Test
+  public void chunkedTransfer_withIdleTransferGapThreshold_measuresBurstBandwidth() {
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    DefaultBandwidthMeter bandwidthMeter =
+        new DefaultBandwidthMeter.Builder(/* context= */ null)
+            .setClock(clock)
+            .setIdleTransferGapThresholdMs(50)
+            .build();
+
+    simulateChunkedTransfers(
+        bandwidthMeter,
+        clock,
+        /* transferCount= */ 10,
+        /* idleTimeMs= */ 230,
+        /* readDurationMs= */ 4);
+
+    assertThat(bandwidthMeter.getBitrateEstimate()).isEqualTo(25_000_000L);
+  }
+
+  @Test
+  public void chunkedTransfer_withIdleTransferGapThreshold_followsBandwidthDrop() {
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    DefaultBandwidthMeter bandwidthMeter =
+        new DefaultBandwidthMeter.Builder(/* context= */ null)
+            .setClock(clock)
+            .setIdleTransferGapThresholdMs(50)
+            .build();
+
+    simulateChunkedTransfers(
+        bandwidthMeter,
+        clock,
+        /* transferCount= */ 5,
+        /* idleTimeMs= */ 230,
+        /* readDurationMs= */ 4);
+    // The same segments, with chunks that each take 100 ms at 5 Mbps.
+    simulateChunkedTransfers(
+        bandwidthMeter,
+        clock,
+        /* transferCount= */ 10,
+        /* idleTimeMs= */ 150,
+        /* readDurationMs= */ 20);
+
+    assertThat(bandwidthMeter.getBitrateEstimate()).isEqualTo(5_000_000L);
+  }
+
+  @Test
+  public void continuousTransfer_withIdleTransferGapThreshold_isUnchanged() {
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    DefaultBandwidthMeter bandwidthMeter =
+        new DefaultBandwidthMeter.Builder(/* context= */ null)
+            .setClock(clock)
+            .setIdleTransferGapThresholdMs(50)
+            .build();
+
+    simulateChunkedTransfers(
+        bandwidthMeter,
+        clock,
+        /* transferCount= */ 10,
+        /* idleTimeMs= */ 0,
+        /* readDurationMs= */ 4);
+
+    assertThat(bandwidthMeter.getBitrateEstimate()).isEqualTo(25_000_000L);
+  }
+
+  @Test
+  public void transferEndingRightAfterIdleGap_doesNotAffectFollowingSamples() {
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    DefaultBandwidthMeter bandwidthMeter =
+        new DefaultBandwidthMeter.Builder(/* context= */ null)
+            .setClock(clock)
+            .setIdleTransferGapThresholdMs(50)
+            .build();
+    DataSource dataSource = new FakeDataSource();
+    DataSpec dataSpec = new DataSpec(Uri.parse("https://test.com"));
+
+    // The whole transfer is idle, so it has no elapsed time and is carried forward.
+    bandwidthMeter.onTransferStart(dataSource, dataSpec, /* isNetwork= */ true);
+    clock.advanceTime(100);
+    bandwidthMeter.onBytesTransferred(dataSource, dataSpec, /* isNetwork= */ true, 1_000);
+    bandwidthMeter.onTransferEnd(dataSource, dataSpec, /* isNetwork= */ true);
+    // Transfers of 62500 bytes that each take 50 ms at 10 Mbps.
+    for (int i = 0; i < 10; i++) {
+      bandwidthMeter.onTransferStart(dataSource, dataSpec, /* isNetwork= */ true);
+      for (int read = 0; read < 5; read++) {
+        clock.advanceTime(10);
+        bandwidthMeter.onBytesTransferred(
+            dataSource, dataSpec, /* isNetwork= */ true, /* bytes= */ 12_500);
+      }
+      bandwidthMeter.onTransferEnd(dataSource, dataSpec, /* isNetwork= */ true);
+    }
+
+    assertThat(bandwidthMeter.getBitrateEstimate()).isEqualTo(10_000_000L);
+  }
+
+  @Test
+  public void transferWithoutBytes_doesNotChangeEstimate() {
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    DefaultBandwidthMeter bandwidthMeter =
+        new DefaultBandwidthMeter.Builder(/* context= */ null).setClock(clock).build();
+    long initialEstimate = bandwidthMeter.getBitrateEstimate();
+    DataSource dataSource = new FakeDataSource();
+    DataSpec dataSpec = new DataSpec(Uri.parse("https://test.com"));
+
+    // Long enough for the estimate to be updated if the transfer produced a sample.
+    bandwidthMeter.onTransferStart(dataSource, dataSpec, /* isNetwork= */ true);
+    clock.advanceTime(3000);
+    bandwidthMeter.onBytesTransferred(dataSource, dataSpec, /* isNetwork= */ true, /* bytes= */ 0);
+    bandwidthMeter.onTransferEnd(dataSource, dataSpec, /* isNetwork= */ true);
+
+    assertThat(bandwidthMeter.getBitrateEstimate()).isEqualTo(initialEstimate);
+  }
+
+  @Test
+  public void concurrentTransfers_withIdleTransferGapThreshold_onlyExcludePausesOfAllTransfers() {
+    FakeClock clock = new FakeClock(/* initialTimeMs= */ 0);
+    DefaultBandwidthMeter bandwidthMeter =
+        new DefaultBandwidthMeter.Builder(/* context= */ null)
+            .setClock(clock)
+            .setIdleTransferGapThresholdMs(50)
+            .build();
+    DataSource waitingDataSource = new FakeDataSource();
+    DataSource readingDataSource = new FakeDataSource();
+    DataSpec dataSpec = new DataSpec(Uri.parse("https://test.com"));
+
+    // One transfer reads 62500 bytes in 50 ms while the other waits 50 ms before reading 62500
+    // bytes at once. The link isn't idle while the second one waits, so both count at 20 Mbps.
+    for (int i = 0; i < 5; i++) {
+      bandwidthMeter.onTransferStart(waitingDataSource, dataSpec, /* isNetwork= */ true);
+      bandwidthMeter.onTransferStart(readingDataSource, dataSpec, /* isNetwork= */ true);
+      for (int read = 0; read < 5; read++) {
+        clock.advanceTime(10);
+        bandwidthMeter.onBytesTransferred(
+            readingDataSource, dataSpec, /* isNetwork= */ true, /* bytes= */ 12_500);
+      }
+      bandwidthMeter.onBytesTransferred(
+          waitingDataSource, dataSpec, /* isNetwork= */ true, /* bytes= */ 62_500);
+      bandwidthMeter.onTransferEnd(waitingDataSource, dataSpec, /* isNetwork= */ true);
+      bandwidthMeter.onTransferEnd(readingDataSource, dataSpec, /* isNetwork= */ true);
+    }
+
+    assertThat(bandwidthMeter.getBitrateEstimate()).isEqualTo(20_000_000L);
+  }
+
   private void setActiveNetworkInfo(NetworkInfo networkInfo) {
     Shadows.shadowOf(connectivityManager).setActiveNetworkInfo(networkInfo);
   }
@@ -585,4 +745,30 @@ public final class DefaultBandwidthMeterTest {
     }
     return bitrateEstimates;
   }
+
+  /**
+   * Simulates transfers of 4 chunks each, as delivered by chunked transfer encoding. Before each
+   * chunk the transfer is idle, then the chunk is read in 5 reads of 12500 bytes.
+   */
+  private static void simulateChunkedTransfers(
+      DefaultBandwidthMeter bandwidthMeter,
+      FakeClock clock,
+      int transferCount,
+      long idleTimeMs,
+      long readDurationMs) {
+    DataSource dataSource = new FakeDataSource();
+    DataSpec dataSpec = new DataSpec(Uri.parse("https://test.com"));
+    for (int i = 0; i < transferCount; i++) {
+      bandwidthMeter.onTransferStart(dataSource, dataSpec, /* isNetwork= */ true);
+      for (int chunk = 0; chunk < 4; chunk++) {
+        clock.advanceTime(idleTimeMs);
+        for (int read = 0; read < 5; read++) {
+          clock.advanceTime(readDurationMs);
+          bandwidthMeter.onBytesTransferred(
+              dataSource, dataSpec, /* isNetwork= */ true, /* bytes= */ 12_500);
+        }
+      }
+      bandwidthMeter.onTransferEnd(dataSource, dataSpec, /* isNetwork= */ true);
+    }
+  }
 }
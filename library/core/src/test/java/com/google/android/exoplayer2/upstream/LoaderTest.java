@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.upstream.Loader.LoadErrorAction;
+import com.google.android.exoplayer2.upstream.Loader.Loadable;
+import com.google.android.exoplayer2.util.ConditionVariable;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link Loader}. */
+@RunWith(AndroidJUnit4.class)
+public final class LoaderTest {
+
+  private ExecutorService sharedExecutor;
+
+  @Before
+  public void setUp() {
+    sharedExecutor = Executors.newFixedThreadPool(/* nThreads= */ 2);
+  }
+
+  @After
+  public void tearDown() {
+    sharedExecutor.shutdownNow();
+  }
+
+  @Test
+  public void release_withSharedExecutor_callsReleaseCallbackAfterCanceledLoadReturns()
+      throws Exception {
+    Loader loader = new Loader(sharedExecutor);
+    BlockingLoadable loadable = new BlockingLoadable();
+    AtomicBoolean loadReturnedBeforeReleaseCallback = new AtomicBoolean();
+    CountDownLatch releaseCallbackCalled = new CountDownLatch(1);
+    loader.startLoading(loadable, new NoOpCallback(), /* defaultMinRetryCount= */ 0);
+    assertThat(loadable.loadStarted.await(10, TimeUnit.SECONDS)).isTrue();
+
+    loader.release(
+        () -> {
+          loadReturnedBeforeReleaseCallback.set(loadable.loadReturned.get());
+          releaseCallbackCalled.countDown();
+        });
+
+    // The other thread of the executor is idle, but must not run the callback while the canceled
+    // load is still running.
+    assertThat(releaseCallbackCalled.await(100, TimeUnit.MILLISECONDS)).isFalse();
+    loadable.allowReturn.open();
+    assertThat(releaseCallbackCalled.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(loadReturnedBeforeReleaseCallback.get()).isTrue();
+  }
+
+  @Test
+  public void release_withSharedExecutor_doesNotBlockOtherLoaders() throws Exception {
+    Loader loader = new Loader(sharedExecutor);
+    Loader otherLoader = new Loader(sharedExecutor);
+    BlockingLoadable loadable = new BlockingLoadable();
+    BlockingLoadable otherLoadable = new BlockingLoadable();
+    otherLoadable.allowReturn.open();
+    loader.startLoading(loadable, new NoOpCallback(), /* defaultMinRetryCount= */ 0);
+    assertThat(loadable.loadStarted.await(10, TimeUnit.SECONDS)).isTrue();
+    loader.release(() -> {});
+
+    otherLoader.startLoading(otherLoadable, new NoOpCallback(), /* defaultMinRetryCount= */ 0);
+
+    assertThat(otherLoadable.loadStarted.await(10, TimeUnit.SECONDS)).isTrue();
+    loadable.allowReturn.open();
+    otherLoader.release();
+  }
+
+  @Test
+  public void startLoading_withMoreLoadersThanSharedExecutorThreads_runsQueuedLoadsInTurn()
+      throws Exception {
+    Loader[] loaders = new Loader[3];
+    BlockingLoadable[] loadables = new BlockingLoadable[3];
+    for (int i = 0; i < loaders.length; i++) {
+      loaders[i] = new Loader(sharedExecutor);
+      loadables[i] = new BlockingLoadable();
+      loaders[i].startLoading(loadables[i], new NoOpCallback(), /* defaultMinRetryCount= */ 0);
+    }
+    assertThat(loadables[0].loadStarted.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(loadables[1].loadStarted.await(10, TimeUnit.SECONDS)).isTrue();
+
+    // Both threads of the executor are busy, so the third load is queued.
+    assertThat(loadables[2].loadStarted.await(100, TimeUnit.MILLISECONDS)).isFalse();
+    loadables[0].allowReturn.open();
+
+    assertThat(loadables[2].loadStarted.await(10, TimeUnit.SECONDS)).isTrue();
+    loadables[1].allowReturn.open();
+    loadables[2].allowReturn.open();
+    for (Loader loader : loaders) {
+      loader.release();
+    }
+  }
+
+  /**
+   * A {@link Loadable} whose load ignores cancelation and interrupts until it's allowed to return,
+   * as a load that is still writing its output does.
+   */
+  private static final class BlockingLoadable implements Loadable {
+
+    public final CountDownLatch loadStarted;
+    public final ConditionVariable allowReturn;
+    public final AtomicBoolean loadReturned;
+
+    public BlockingLoadable() {
+      loadStarted = new CountDownLatch(1);
+      allowReturn = new ConditionVariable();
+      loadReturned = new AtomicBoolean();
+    }
+
+    @Override
+    public void cancelLoad() {
+      // Do nothing.
+    }
+
+    @Override
+    public void load() {
+      loadStarted.countDown();
+      allowReturn.blockUninterruptible();
+      loadReturned.set(true);
+    }
+  }
+
+  private static final class NoOpCallback implements Loader.Callback<BlockingLoadable> {
+
+    @Override
+    public void onLoadCompleted(
+        BlockingLoadable loadable, long elapsedRealtimeMs, long loadDurationMs) {}
+
+    @Override
+    public void onLoadCanceled(
+        BlockingLoadable loadable,
+        long elapsedRealtimeMs,
+        long loadDurationMs,
+        boolean released) {}
+
+    @Override
+    public LoadErrorAction onLoadError(
+        BlockingLoadable loadable,
+        long elapsedRealtimeMs,
+        long loadDurationMs,
+        IOException error,
+        int errorCount) {
+      return Loader.DONT_RETRY;
+    }
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import android.net.Uri;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.testutil.FakeClock;
+import com.google.android.exoplayer2.testutil.FakeDataSet;
+import com.google.android.exoplayer2.testutil.FakeDataSource;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link PrefetchingDataSource}. */
+@RunWith(AndroidJUnit4.class)
+public final class PrefetchingDataSourceTest {
+
+  private static final DataSpec DATA_SPEC_1 = new DataSpec(Uri.parse("segment1"));
+  private static final DataSpec DATA_SPEC_2 = new DataSpec(Uri.parse("segment2"));
+  private static final DataSpec DATA_SPEC_3 = new DataSpec(Uri.parse("segment3"));
+
+  private FakeDataSet fakeDataSet;
+  private List<FakeDataSource> createdDataSources;
+  private List<DataSpec> finishedPrefetches;
+  private ExecutorService executor;
+  private PrefetchingDataSource dataSource;
+
+  @Before
+  public void setUp() {
+    fakeDataSet =
+        new FakeDataSet()
+            .setData(DATA_SPEC_1.uri, TestUtil.buildTestData(/* length= */ 100, /* seed= */ 1))
+            .setData(DATA_SPEC_2.uri, TestUtil.buildTestData(/* length= */ 100_000, /* seed= */ 2))
+            .setData(DATA_SPEC_3.uri, TestUtil.buildTestData(/* length= */ 10, /* seed= */ 3));
+    createdDataSources = new CopyOnWriteArrayList<>();
+    finishedPrefetches = new CopyOnWriteArrayList<>();
+    executor = Executors.newCachedThreadPool();
+    dataSource = createPrefetchingDataSource(executor);
+  }
+
+  @After
+  public void tearDown() {
+    dataSource.release();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void read_prefetchedData_readsFromPrefetch() throws IOException {
+    dataSource.prefetch(ImmutableList.of(DATA_SPEC_1, DATA_SPEC_2));
+
+    byte[] data1 = readFully(DATA_SPEC_1);
+    byte[] data2 = readFully(DATA_SPEC_2);
+
+    assertThat(data1).isEqualTo(fakeDataSet.getData(DATA_SPEC_1.uri).getData());
+    assertThat(data2).isEqualTo(fakeDataSet.getData(DATA_SPEC_2.uri).getData());
+    // The data source created for direct reads wasn't used.
+    assertThat(createdDataSources.get(0).getAndClearOpenedDataSpecs()).isEmpty();
+    assertThat(createdDataSources).hasSize(3);
+    assertThat(dataSource.getPendingPrefetchCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void read_dataNotPrefetched_readsFromUpstream() throws IOException {
+    dataSource.prefetch(ImmutableList.of(DATA_SPEC_1));
+
+    byte[] data = readFully(DATA_SPEC_3);
+
+    assertThat(data).isEqualTo(fakeDataSet.getData(DATA_SPEC_3.uri).getData());
+    assertThat(createdDataSources.get(0).getAndClearOpenedDataSpecs()).hasLength(1);
+    assertThat(dataSource.getPendingPrefetchCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void prefetch_limitsPendingPrefetchesAndCancelsRemovedData() throws IOException {
+    dataSource.prefetch(ImmutableList.of(DATA_SPEC_1, DATA_SPEC_2, DATA_SPEC_3));
+    assertThat(dataSource.getPendingPrefetchCount()).isEqualTo(2);
+
+    dataSource.prefetch(ImmutableList.of(DATA_SPEC_2, DATA_SPEC_3));
+    assertThat(dataSource.getPendingPrefetchCount()).isEqualTo(2);
+
+    // The prefetch of the first segment was canceled, so it's read from upstream.
+    assertThat(readFully(DATA_SPEC_1))
+        .isEqualTo(fakeDataSet.getData(DATA_SPEC_1.uri).getData());
+    assertThat(createdDataSources.get(0).getAndClearOpenedDataSpecs()).hasLength(1);
+    assertThat(readFully(DATA_SPEC_3))
+        .isEqualTo(fakeDataSet.getData(DATA_SPEC_3.uri).getData());
+    assertThat(createdDataSources.get(0).getAndClearOpenedDataSpecs()).isEmpty();
+  }
+
+  @Test
+  public void open_prefetchFailed_throwsError() throws IOException {
+    DataSpec missingDataSpec = new DataSpec(Uri.parse("missing"));
+    dataSource.prefetch(ImmutableList.of(missingDataSpec));
+
+    assertThrows(IOException.class, () -> dataSource.open(missingDataSpec));
+    dataSource.close();
+    // A retry isn't served by the failed prefetch.
+    assertThat(dataSource.getPendingPrefetchCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void listener_isNotifiedOfFinishedPrefetches() throws IOException {
+    dataSource.prefetch(ImmutableList.of(DATA_SPEC_1, DATA_SPEC_2));
+
+    readFully(DATA_SPEC_1);
+    readFully(DATA_SPEC_2);
+
+    // The listener is notified before the end of the data can be read.
+    List<Uri> finishedUris = new ArrayList<>();
+    for (DataSpec dataSpec : finishedPrefetches) {
+      finishedUris.add(dataSpec.uri);
+    }
+    assertThat(finishedUris).containsExactly(DATA_SPEC_1.uri, DATA_SPEC_2.uri);
+  }
+
+  @Test
+  public void prefetch_withExecutorSharedByReleasedInstance_readsFromPrefetch()
+      throws IOException {
+    ExecutorService sharedExecutor = Executors.newSingleThreadExecutor();
+    try {
+      createPrefetchingDataSource(sharedExecutor).release();
+      dataSource.release();
+      createdDataSources.clear();
+      dataSource = createPrefetchingDataSource(sharedExecutor);
+
+      dataSource.prefetch(ImmutableList.of(DATA_SPEC_1, DATA_SPEC_2));
+      byte[] data1 = readFully(DATA_SPEC_1);
+      byte[] data2 = readFully(DATA_SPEC_2);
+
+      // Releasing an instance doesn't shut down the shared executor, and the prefetches of an
+      // instance complete even if they can't run in parallel.
+      assertThat(data1).isEqualTo(fakeDataSet.getData(DATA_SPEC_1.uri).getData());
+      assertThat(data2).isEqualTo(fakeDataSet.getData(DATA_SPEC_2.uri).getData());
+      assertThat(createdDataSources.get(0).getAndClearOpenedDataSpecs()).isEmpty();
+      assertThat(dataSource.getPendingPrefetchCount()).isEqualTo(0);
+    } finally {
+      sharedExecutor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void isPrefetchPending_returnsWhetherPrefetchIsPending() throws IOException {
+    dataSource.prefetch(ImmutableList.of(DATA_SPEC_1));
+
+    assertThat(dataSource.isPrefetchPending(DATA_SPEC_1)).isTrue();
+    assertThat(dataSource.isPrefetchPending(DATA_SPEC_2)).isFalse();
+    readFully(DATA_SPEC_1);
+    assertThat(dataSource.isPrefetchPending(DATA_SPEC_1)).isFalse();
+  }
+
+  private PrefetchingDataSource createPrefetchingDataSource(Executor executor) {
+    return new PrefetchingDataSource(
+        () -> {
+          FakeDataSource fakeDataSource = new FakeDataSource(fakeDataSet);
+          createdDataSources.add(fakeDataSource);
+          return fakeDataSource;
+        },
+        /* maxPrefetchCount= */ 2,
+        (dataSpec, pipelineDepth, timeToFirstByteMs, loadDurationMs, bytesLoaded, error) ->
+            finishedPrefetches.add(dataSpec),
+        executor,
+        new FakeClock(/* initialTimeMs= */ 0));
+  }
+
+  private byte[] readFully(DataSpec dataSpec) throws IOException {
+    try {
+      dataSource.open(dataSpec);
+      return Util.readToEnd(dataSource);
+    } finally {
+      dataSource.close();
+    }
+  }
+}
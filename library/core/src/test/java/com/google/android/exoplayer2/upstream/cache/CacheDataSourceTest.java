@@ -33,11 +33,15 @@ import com.google.android.exoplayer2.upstream.DataSpec;
 import com.google.android.exoplayer2.upstream.FileDataSource;
 import com.google.android.exoplayer2.util.Util;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -502,6 +506,167 @@ public final class CacheDataSourceTest {
     cacheDataSource.close();
   }
 
+  @Test
+  public void readAhead_readsFollowingDataIntoCache() throws Exception {
+    cache.applyContentMetadataMutations(
+        defaultCacheKey,
+        ContentMetadataMutations.setContentLength(
+            new ContentMetadataMutations(), TEST_DATA.length));
+    FakeDataSource upstream = new FakeDataSource();
+    upstream.getDataSet().setData(testDataUri, TEST_DATA);
+    RecordingEventListener eventListener = new RecordingEventListener();
+    CacheDataSource cacheDataSource =
+        createReadAheadCacheDataSource(upstream, /* readAheadLength= */ 5, eventListener);
+
+    CacheAsserts.assertReadData(
+        cacheDataSource,
+        buildDataSpec(/* position= */ 0, /* length= */ 3),
+        Arrays.copyOf(TEST_DATA, 3));
+    CacheAsserts.assertReadData(
+        cacheDataSource,
+        buildDataSpec(/* position= */ 3, /* length= */ 5),
+        Arrays.copyOfRange(TEST_DATA, 3, 8));
+
+    DataSpec[] upstreamDataSpecs = upstream.getAndClearOpenedDataSpecs();
+    assertThat(upstreamDataSpecs).hasLength(1);
+    assertThat(upstreamDataSpecs[0].length).isEqualTo(8);
+    assertThat(cache.isCached(defaultCacheKey, /* position= */ 0, /* length= */ 8)).isTrue();
+    assertThat(eventListener.upstreamRequestAvoidedReasons)
+        .containsExactly(CacheDataSource.UPSTREAM_REQUEST_AVOIDED_REASON_READ_AHEAD);
+  }
+
+  @Test
+  public void readAhead_withUnknownContentLength_doesNotReadAhead() throws Exception {
+    FakeDataSource upstream = new FakeDataSource();
+    upstream.getDataSet().setData(testDataUri, TEST_DATA);
+    CacheDataSource cacheDataSource =
+        createReadAheadCacheDataSource(
+            upstream, /* readAheadLength= */ 5, new RecordingEventListener());
+
+    CacheAsserts.assertReadData(
+        cacheDataSource,
+        buildDataSpec(/* position= */ 0, /* length= */ 3),
+        Arrays.copyOf(TEST_DATA, 3));
+
+    DataSpec[] upstreamDataSpecs = upstream.getAndClearOpenedDataSpecs();
+    assertThat(upstreamDataSpecs).hasLength(1);
+    assertThat(upstreamDataSpecs[0].length).isEqualTo(3);
+    assertThat(cache.getCachedBytes(defaultCacheKey, /* position= */ 0, TEST_DATA.length))
+        .isEqualTo(3);
+  }
+
+  @Test
+  public void readAhead_withRequestedDataNotReadToEnd_abandonsReadAheadOnClose()
+      throws Exception {
+    cache.applyContentMetadataMutations(
+        defaultCacheKey,
+        ContentMetadataMutations.setContentLength(
+            new ContentMetadataMutations(), TEST_DATA.length));
+    FakeDataSource upstream = new FakeDataSource();
+    upstream.getDataSet().setData(testDataUri, TEST_DATA);
+    CacheDataSource cacheDataSource =
+        createReadAheadCacheDataSource(
+            upstream, /* readAheadLength= */ 5, new RecordingEventListener());
+    byte[] readData = new byte[3];
+
+    cacheDataSource.open(buildDataSpec(/* position= */ 0, /* length= */ 3));
+    int bytesRead = 0;
+    while (bytesRead < readData.length) {
+      bytesRead += cacheDataSource.read(readData, bytesRead, readData.length - bytesRead);
+    }
+    cacheDataSource.close();
+
+    assertThat(readData).isEqualTo(Arrays.copyOf(TEST_DATA, 3));
+    DataSpec[] upstreamDataSpecs = upstream.getAndClearOpenedDataSpecs();
+    assertThat(upstreamDataSpecs).hasLength(1);
+    assertThat(upstreamDataSpecs[0].length).isEqualTo(8);
+    assertThat(cache.getCachedBytes(defaultCacheKey, /* position= */ 0, TEST_DATA.length))
+        .isEqualTo(3);
+  }
+
+  @Test
+  public void readAhead_withDataLockedByOtherInstance_bypassesCacheWithoutWaiting()
+      throws Exception {
+    FakeDataSource upstream = new FakeDataSource();
+    upstream.getDataSet().setData(testDataUri, TEST_DATA);
+    RecordingEventListener eventListener = new RecordingEventListener();
+    CacheDataSource cacheDataSource =
+        createReadAheadCacheDataSource(upstream, /* readAheadLength= */ 5, eventListener);
+    CacheSpan holeSpan = cache.startReadWrite(defaultCacheKey, /* position= */ 0, TEST_DATA.length);
+
+    cacheDataSource.open(boundedDataSpec);
+    byte[] readData = Util.readToEnd(cacheDataSource);
+    cacheDataSource.close();
+    cache.releaseHoleSpan(holeSpan);
+
+    assertThat(readData).isEqualTo(TEST_DATA);
+    assertThat(upstream.getAndClearOpenedDataSpecs()).hasLength(1);
+    assertThat(eventListener.upstreamRequestAvoidedReasons).isEmpty();
+  }
+
+  @Test
+  public void lockedDataTimeout_waitsForDataBeingWrittenByOtherInstance() throws Exception {
+    FakeDataSource upstream = new FakeDataSource();
+    upstream.getDataSet().setData(testDataUri, TEST_DATA);
+    RecordingEventListener eventListener = new RecordingEventListener();
+    CacheDataSource cacheDataSource =
+        createLockedDataTimeoutCacheDataSource(
+            upstream, /* lockedDataTimeoutMs= */ 10_000, eventListener);
+    CacheSpan holeSpan = cache.startReadWrite(defaultCacheKey, /* position= */ 0, TEST_DATA.length);
+
+    AtomicReference<byte[]> readData = new AtomicReference<>();
+    Thread readThread =
+        new Thread(
+            () -> {
+              try {
+                cacheDataSource.open(boundedDataSpec);
+                readData.set(Util.readToEnd(cacheDataSource));
+                cacheDataSource.close();
+              } catch (IOException e) {
+                throw new IllegalStateException(e);
+              }
+            });
+    readThread.start();
+    while (readThread.getState() != Thread.State.TIMED_WAITING) {
+      Thread.sleep(/* millis= */ 1);
+    }
+    File file = cache.startFile(defaultCacheKey, /* position= */ 0, TEST_DATA.length);
+    try (FileOutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(TEST_DATA);
+    }
+    cache.commitFile(file, TEST_DATA.length);
+    cache.releaseHoleSpan(holeSpan);
+    readThread.join();
+
+    assertThat(readData.get()).isEqualTo(TEST_DATA);
+    assertThat(upstream.getAndClearOpenedDataSpecs()).isEmpty();
+    assertThat(eventListener.upstreamRequestAvoidedReasons)
+        .containsExactly(CacheDataSource.UPSTREAM_REQUEST_AVOIDED_REASON_DEDUPLICATED);
+  }
+
+  @Test
+  public void lockedDataTimeout_withDataLockedByOtherInstance_bypassesCacheAfterTimeout()
+      throws Exception {
+    FakeDataSource upstream = new FakeDataSource();
+    upstream.getDataSet().setData(testDataUri, TEST_DATA);
+    RecordingEventListener eventListener = new RecordingEventListener();
+    CacheDataSource cacheDataSource =
+        createLockedDataTimeoutCacheDataSource(
+            upstream, /* lockedDataTimeoutMs= */ 10, eventListener);
+    CacheSpan holeSpan = cache.startReadWrite(defaultCacheKey, /* position= */ 0, TEST_DATA.length);
+
+    cacheDataSource.open(boundedDataSpec);
+    byte[] readData = Util.readToEnd(cacheDataSource);
+    cacheDataSource.close();
+    cache.releaseHoleSpan(holeSpan);
+
+    assertThat(readData).isEqualTo(TEST_DATA);
+    assertThat(upstream.getAndClearOpenedDataSpecs()).hasLength(1);
+    assertThat(cache.getCachedBytes(defaultCacheKey, /* position= */ 0, TEST_DATA.length))
+        .isEqualTo(0);
+    assertThat(eventListener.upstreamRequestAvoidedReasons).isEmpty();
+  }
+
   private void assertCacheAndRead(DataSpec dataSpec, boolean unknownLength) throws IOException {
     assertCacheAndRead(dataSpec, unknownLength, /* cacheKeyFactory= */ null);
   }
@@ -616,6 +781,28 @@ public final class CacheDataSourceTest {
         cacheKeyFactory);
   }
 
+  private CacheDataSource createReadAheadCacheDataSource(
+      FakeDataSource upstream, long readAheadLength, CacheDataSource.EventListener eventListener) {
+    return new CacheDataSource.Factory()
+        .setCache(cache)
+        .setUpstreamDataSourceFactory(() -> upstream)
+        .setUpstreamReadAheadLength(readAheadLength)
+        .setEventListener(eventListener)
+        .createDataSource();
+  }
+
+  private CacheDataSource createLockedDataTimeoutCacheDataSource(
+      FakeDataSource upstream,
+      long lockedDataTimeoutMs,
+      CacheDataSource.EventListener eventListener) {
+    return new CacheDataSource.Factory()
+        .setCache(cache)
+        .setUpstreamDataSourceFactory(() -> upstream)
+        .setLockedDataTimeoutMs(lockedDataTimeoutMs)
+        .setEventListener(eventListener)
+        .createDataSource();
+  }
+
   private DataSpec buildDataSpec(boolean unbounded, @Nullable String key) {
     return buildDataSpec(/* position= */ 0, unbounded ? C.LENGTH_UNSET : TEST_DATA.length, key);
   }
@@ -634,4 +821,20 @@ public final class CacheDataSourceTest {
         .setHttpRequestHeaders(httpRequestHeaders)
         .build();
   }
+
+  private static final class RecordingEventListener implements CacheDataSource.EventListener {
+
+    public final List<Integer> upstreamRequestAvoidedReasons = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void onCachedBytesRead(long cacheSizeBytes, long cachedBytesRead) {}
+
+    @Override
+    public void onCacheIgnored(int reason) {}
+
+    @Override
+    public void onUpstreamRequestAvoided(int reason) {
+      upstreamRequestAvoidedReasons.add(reason);
+    }
+  }
 }
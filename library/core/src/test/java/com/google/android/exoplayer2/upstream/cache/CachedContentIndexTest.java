@@ -24,6 +24,7 @@ import android.util.SparseArray;
 import androidx.annotation.Nullable;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.database.DatabaseProvider;
 import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.util.Util;
 import java.io.File;
@@ -297,6 +298,25 @@ public class CachedContentIndexTest {
     assertThat(index.get(cachedContent.key)).isNotNull();
   }
 
+  @Test
+  public void cachedContentEquals_withLoadedSpan_equalsContentWithAddedSpan() throws Exception {
+    CachedContentIndex index = newInstance();
+    CachedContent cachedContent = index.getOrAdd("key1");
+    long cacheFileLength = 20;
+    File cacheFile =
+        SimpleCacheSpan.getCacheFile(
+            cacheDir, cachedContent.id, /* position= */ 10, /* timestamp= */ 30);
+    createTestFile(cacheFile, cacheFileLength);
+    SimpleCacheSpan span = SimpleCacheSpan.createCacheEntry(cacheFile, cacheFileLength, index);
+    CachedContent loadedCachedContent = new CachedContent(cachedContent.id, cachedContent.key);
+    loadedCachedContent.addLoadedSpan(span);
+    cachedContent.addSpan(span);
+
+    assertThat(loadedCachedContent).isEqualTo(cachedContent);
+    assertThat(cachedContent).isEqualTo(loadedCachedContent);
+    assertThat(loadedCachedContent.getSpans()).containsExactly(span);
+  }
+
   @Test
   public void cantRemoveLockedCachedContent() {
     CachedContentIndex index = newInstance();
@@ -308,6 +328,164 @@ public class CachedContentIndexTest {
     assertThat(index.get(cachedContent.key)).isNotNull();
   }
 
+  @Test
+  public void journalStoreAndLoad() throws Exception {
+    assertStoredAndLoadedEqual(newJournalInstance(), newJournalInstance());
+  }
+
+  @Test
+  public void journalStoreAfterRemove_removalIsLoaded() throws Exception {
+    CachedContentIndex index = newJournalInstance();
+    index.initialize(/* uid= */ 0);
+    index.getOrAdd("key1");
+    index.getOrAdd("key2");
+    index.store();
+
+    index.maybeRemove("key1");
+    index.store();
+    CachedContentIndex index2 = newJournalInstance();
+    index2.initialize(/* uid= */ 0);
+
+    assertThat(index2.getKeys()).containsExactly("key2");
+    assertThat(index2.assignIdForKey("key2")).isEqualTo(index.assignIdForKey("key2"));
+  }
+
+  @Test
+  public void journalLoad_withCorruptTail_loadsValidRecordsAndAcceptsNewRecords()
+      throws Exception {
+    CachedContentIndex index = newJournalInstance();
+    index.initialize(/* uid= */ 0);
+    index.getOrAdd("key1");
+    index.store();
+    try (FileOutputStream outputStream =
+        new FileOutputStream(
+            new File(cacheDir, CachedContentIndex.FILE_NAME_JOURNAL), /* append= */ true)) {
+      outputStream.write(new byte[] {1, 0, 0, 0, 8, 0, 0});
+    }
+
+    CachedContentIndex index2 = newJournalInstance();
+    index2.initialize(/* uid= */ 0);
+    index2.getOrAdd("key2");
+    index2.store();
+    CachedContentIndex index3 = newJournalInstance();
+    index3.initialize(/* uid= */ 0);
+
+    assertThat(index2.getKeys()).containsExactly("key1", "key2");
+    assertThat(index3.getKeys()).containsExactly("key1", "key2");
+  }
+
+  @Test
+  public void journalInitialize_migratesFromLegacyStorage() throws Exception {
+    File legacyFile = new File(cacheDir, CachedContentIndex.FILE_NAME_ATOMIC);
+    FileOutputStream fos = new FileOutputStream(legacyFile);
+    fos.write(testIndexV2File);
+    fos.close();
+
+    newJournalInstance().initialize(/* uid= */ 0);
+    CachedContentIndex index = newJournalInstance();
+    index.initialize(/* uid= */ 0);
+
+    assertThat(legacyFile.exists()).isFalse();
+    assertThat(index.getAll()).hasSize(2);
+    assertThat(index.assignIdForKey("ABCDE")).isEqualTo(5);
+    ContentMetadata metadata = index.get("ABCDE").getMetadata();
+    assertThat(ContentMetadata.getContentLength(metadata)).isEqualTo(10);
+    assertThat(ContentMetadata.getRedirectedUri(metadata)).isEqualTo(Uri.parse("abcde"));
+    assertThat(index.assignIdForKey("KLMNO")).isEqualTo(2);
+  }
+
+  @Test
+  public void journalInitialize_migratesFromDatabaseStorage() throws Exception {
+    DatabaseProvider databaseProvider = TestUtil.getInMemoryDatabaseProvider();
+    CachedContentIndex databaseIndex = new CachedContentIndex(databaseProvider);
+    databaseIndex.initialize(/* uid= */ 0);
+    int id = databaseIndex.assignIdForKey("key1");
+    databaseIndex.store();
+
+    CachedContentIndex index =
+        CachedContentIndex.createWithJournalStorage(
+            cacheDir, databaseProvider, /* secretKey= */ null);
+    index.initialize(/* uid= */ 0);
+    CachedContentIndex databaseIndex2 = new CachedContentIndex(databaseProvider);
+    databaseIndex2.initialize(/* uid= */ 0);
+
+    assertThat(index.getKeys()).containsExactly("key1");
+    assertThat(index.assignIdForKey("key1")).isEqualTo(id);
+    assertThat(databaseIndex2.getAll()).isEmpty();
+  }
+
+  @Test
+  public void journalInitialize_withKey_migratesEncryptedLegacyStorageToEncryptedJournal()
+      throws Exception {
+    byte[] key = Util.getUtf8Bytes("Bar12345Bar12345"); // 128 bit key
+    CachedContentIndex legacyIndex = newLegacyInstance(key);
+    legacyIndex.initialize(/* uid= */ 0);
+    int id = legacyIndex.assignIdForKey("secret-key");
+    legacyIndex.store();
+
+    newJournalInstance(key).initialize(/* uid= */ 0);
+    CachedContentIndex index = newJournalInstance(key);
+    index.initialize(/* uid= */ 0);
+
+    assertThat(new File(cacheDir, CachedContentIndex.FILE_NAME_ATOMIC).exists()).isFalse();
+    assertThat(index.getKeys()).containsExactly("secret-key");
+    assertThat(index.assignIdForKey("secret-key")).isEqualTo(id);
+    assertThat(readJournal()).doesNotContain("secret-key");
+  }
+
+  @Test
+  public void journalInitialize_withKey_rewritesUnencryptedJournalEncrypted() throws Exception {
+    byte[] key = Util.getUtf8Bytes("Bar12345Bar12345"); // 128 bit key
+    CachedContentIndex unencryptedIndex = newJournalInstance();
+    unencryptedIndex.initialize(/* uid= */ 0);
+    unencryptedIndex.getOrAdd("secret-key");
+    unencryptedIndex.store();
+    assertThat(readJournal()).contains("secret-key");
+
+    newJournalInstance(key).initialize(/* uid= */ 0);
+    CachedContentIndex index = newJournalInstance(key);
+    index.initialize(/* uid= */ 0);
+
+    assertThat(readJournal()).doesNotContain("secret-key");
+    assertThat(index.getKeys()).containsExactly("secret-key");
+  }
+
+  @Test
+  public void journalInitialize_encryptedJournalWithoutOrWithWrongKey_discardsIndex()
+      throws Exception {
+    byte[] key = Util.getUtf8Bytes("Bar12345Bar12345"); // 128 bit key
+    byte[] key2 = Util.getUtf8Bytes("Foo12345Foo12345"); // 128 bit key
+    CachedContentIndex encryptedIndex = newJournalInstance(key);
+    encryptedIndex.initialize(/* uid= */ 0);
+    encryptedIndex.getOrAdd("key1");
+    encryptedIndex.store();
+
+    CachedContentIndex indexWithWrongKey = newJournalInstance(key2);
+    indexWithWrongKey.initialize(/* uid= */ 0);
+    assertThat(indexWithWrongKey.getKeys()).isEmpty();
+
+    encryptedIndex = newJournalInstance(key);
+    encryptedIndex.initialize(/* uid= */ 0);
+    encryptedIndex.getOrAdd("key1");
+    encryptedIndex.store();
+    CachedContentIndex indexWithoutKey = newJournalInstance();
+    indexWithoutKey.initialize(/* uid= */ 0);
+    assertThat(indexWithoutKey.getKeys()).isEmpty();
+  }
+
+  @Test
+  public void journalStoreAndLoad_withKey() throws Exception {
+    byte[] key = Util.getUtf8Bytes("Bar12345Bar12345"); // 128 bit key
+    assertStoredAndLoadedEqual(newJournalInstance(key), newJournalInstance(key));
+  }
+
+  private String readJournal() throws IOException {
+    try (FileInputStream inputStream =
+        new FileInputStream(new File(cacheDir, CachedContentIndex.FILE_NAME_JOURNAL))) {
+      return Util.fromUtf8Bytes(Util.toByteArray(inputStream));
+    }
+  }
+
   private void assertStoredAndLoadedEqual(CachedContentIndex index, CachedContentIndex index2)
       throws IOException {
     ContentMetadataMutations mutations1 = new ContentMetadataMutations();
@@ -332,6 +510,15 @@ public class CachedContentIndexTest {
     return new CachedContentIndex(TestUtil.getInMemoryDatabaseProvider());
   }
 
+  private CachedContentIndex newJournalInstance() {
+    return newJournalInstance(/* key= */ null);
+  }
+
+  private CachedContentIndex newJournalInstance(@Nullable byte[] key) {
+    return CachedContentIndex.createWithJournalStorage(
+        cacheDir, /* migrationDatabaseProvider= */ null, /* secretKey= */ key);
+  }
+
   private CachedContentIndex newLegacyInstance() {
     return newLegacyInstance(null);
   }
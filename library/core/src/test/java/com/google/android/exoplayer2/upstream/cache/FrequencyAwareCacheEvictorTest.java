@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import static com.google.android.exoplayer2.C.LENGTH_UNSET;
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+
+/** Unit tests for {@link FrequencyAwareCacheEvictor}. */
+@RunWith(AndroidJUnit4.class)
+public final class FrequencyAwareCacheEvictorTest {
+
+  private static final int SPAN_LENGTH = 10;
+
+  private File cacheDir;
+  private SimpleCache simpleCache;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheDir =
+        Util.createTempDirectory(ApplicationProvider.getApplicationContext(), "ExoPlayerTest");
+    simpleCache =
+        new SimpleCache(
+            cacheDir,
+            new FrequencyAwareCacheEvictor(/* maxBytes= */ 10 * SPAN_LENGTH),
+            TestUtil.getInMemoryDatabaseProvider());
+  }
+
+  @After
+  public void tearDown() {
+    simpleCache.release();
+    Util.recursiveDelete(cacheDir);
+  }
+
+  @Test
+  public void contentBiggerThanMaxSizeDoesNotThrowException() {
+    int maxBytes = 100;
+    FrequencyAwareCacheEvictor evictor = new FrequencyAwareCacheEvictor(maxBytes);
+    evictor.onCacheInitialized();
+    evictor.onStartFile(Mockito.mock(Cache.class), "key", 0, maxBytes + 1);
+  }
+
+  @Test
+  public void scan_doesNotEvictFrequentlyRequestedSpan() throws Exception {
+    addCache("hot");
+    for (int i = 0; i < 3; i++) {
+      assertThat(simpleCache.startReadWrite("hot", 0, LENGTH_UNSET).isCached).isTrue();
+    }
+
+    for (int i = 0; i < 30; i++) {
+      addCache("scan" + i);
+    }
+
+    assertThat(simpleCache.isCached("hot", 0, SPAN_LENGTH)).isTrue();
+    assertThat(simpleCache.getCacheSpace()).isAtMost(10 * SPAN_LENGTH);
+  }
+
+  @Test
+  public void pinnedContent_isNotEvicted() throws Exception {
+    simpleCache.applyContentMetadataMutations(
+        "pinned", ContentMetadataMutations.setPinned(new ContentMetadataMutations(), true));
+    addCache("pinned");
+
+    for (int i = 0; i < 30; i++) {
+      addCache("other" + i);
+    }
+
+    assertThat(simpleCache.isCached("pinned", 0, SPAN_LENGTH)).isTrue();
+    assertThat(simpleCache.getCacheSpace()).isAtMost(10 * SPAN_LENGTH);
+  }
+
+  private void addCache(String key) throws IOException, InterruptedException {
+    CacheSpan holeSpan = simpleCache.startReadWrite(key, 0, LENGTH_UNSET);
+    File file = simpleCache.startFile(key, 0, SPAN_LENGTH);
+    try (FileOutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(new byte[SPAN_LENGTH]);
+    }
+    simpleCache.commitFile(file, SPAN_LENGTH);
+    simpleCache.releaseHoleSpan(holeSpan);
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.testutil.FakeDataSet;
+import com.google.android.exoplayer2.testutil.FakeDataSource;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.util.Util;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link MemoryCacheDataSource}. */
+@RunWith(AndroidJUnit4.class)
+public final class MemoryCacheDataSourceTest {
+
+  private static final Uri URI_1 = Uri.parse("segment1");
+  private static final Uri URI_2 = Uri.parse("segment2");
+
+  private FakeDataSet fakeDataSet;
+  private FakeDataSource upstream;
+  private MemoryCache memoryCache;
+  private MemoryCacheDataSource dataSource;
+
+  @Before
+  public void setUp() {
+    fakeDataSet =
+        new FakeDataSet()
+            .setData(URI_1, TestUtil.buildTestData(/* length= */ 100, /* seed= */ 1))
+            .setData(URI_2, TestUtil.buildTestData(/* length= */ 2000, /* seed= */ 2));
+    upstream = new FakeDataSource(fakeDataSet);
+    memoryCache = new MemoryCache(/* maxBytes= */ 1000);
+    dataSource = new MemoryCacheDataSource(memoryCache, upstream);
+  }
+
+  @Test
+  public void read_sameRangeTwice_readsSecondTimeFromMemory() throws IOException {
+    DataSpec dataSpec = new DataSpec(URI_1);
+
+    byte[] data1 = readFully(dataSpec);
+    byte[] data2 = readFully(dataSpec);
+
+    assertThat(data1).isEqualTo(fakeDataSet.getData(URI_1).getData());
+    assertThat(data2).isEqualTo(data1);
+    assertThat(upstream.getAndClearOpenedDataSpecs()).hasLength(1);
+    assertThat(memoryCache.getHitCount()).isEqualTo(1);
+    assertThat(memoryCache.getMissCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void read_subRangeOfCachedRange_readsFromMemory() throws IOException {
+    readFully(new DataSpec(URI_1));
+    upstream.getAndClearOpenedDataSpecs();
+
+    byte[] data1 =
+        readFully(new DataSpec.Builder().setUri(URI_1).setPosition(10).setLength(20).build());
+    byte[] data2 = readFully(new DataSpec.Builder().setUri(URI_1).setPosition(90).build());
+
+    byte[] expectedData = fakeDataSet.getData(URI_1).getData();
+    assertThat(data1).isEqualTo(Arrays.copyOfRange(expectedData, 10, 30));
+    assertThat(data2).isEqualTo(Arrays.copyOfRange(expectedData, 90, 100));
+    assertThat(upstream.getAndClearOpenedDataSpecs()).isEmpty();
+  }
+
+  @Test
+  public void read_rangeNotContainedInCachedRange_readsFromUpstream() throws IOException {
+    readFully(new DataSpec.Builder().setUri(URI_1).setPosition(10).setLength(20).build());
+
+    byte[] data =
+        readFully(new DataSpec.Builder().setUri(URI_1).setPosition(20).setLength(20).build());
+
+    assertThat(data)
+        .isEqualTo(Arrays.copyOfRange(fakeDataSet.getData(URI_1).getData(), 20, 40));
+    assertThat(upstream.getAndClearOpenedDataSpecs()).hasLength(2);
+  }
+
+  @Test
+  public void read_dataLargerThanMaxEntryLength_isNotCached() throws IOException {
+    dataSource =
+        new MemoryCacheDataSource(
+            memoryCache, upstream, CacheKeyFactory.DEFAULT, /* maxEntryLength= */ 50);
+    DataSpec dataSpec = new DataSpec(URI_1);
+
+    readFully(dataSpec);
+    readFully(dataSpec);
+
+    assertThat(upstream.getAndClearOpenedDataSpecs()).hasLength(2);
+    assertThat(memoryCache.getCacheSpace()).isEqualTo(0);
+  }
+
+  @Test
+  public void read_dataLargerThanMemoryCache_isNotCached() throws IOException {
+    DataSpec dataSpec = new DataSpec(URI_2);
+
+    readFully(dataSpec);
+    readFully(dataSpec);
+
+    assertThat(upstream.getAndClearOpenedDataSpecs()).hasLength(2);
+    assertThat(memoryCache.getCacheSpace()).isEqualTo(0);
+  }
+
+  @Test
+  public void read_partiallyReadData_isNotCached() throws IOException {
+    DataSpec dataSpec = new DataSpec(URI_1);
+    dataSource.open(dataSpec);
+    dataSource.read(new byte[10], /* offset= */ 0, /* readLength= */ 10);
+    dataSource.close();
+
+    readFully(dataSpec);
+
+    assertThat(upstream.getAndClearOpenedDataSpecs()).hasLength(2);
+  }
+
+  private byte[] readFully(DataSpec dataSpec) throws IOException {
+    try {
+      dataSource.open(dataSpec);
+      return Util.readToEnd(dataSource);
+    } finally {
+      dataSource.close();
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.upstream.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link MemoryCache}. */
+@RunWith(AndroidJUnit4.class)
+public final class MemoryCacheTest {
+
+  @Test
+  public void get_returnsDataContainingRange() {
+    MemoryCache memoryCache = new MemoryCache(/* maxBytes= */ 100);
+    byte[] data = new byte[10];
+    memoryCache.put("key", /* position= */ 10, /* length= */ 10, data);
+
+    MemoryCache.CachedData cachedData =
+        memoryCache.get("key", /* position= */ 10, /* length= */ 10);
+    assertThat(cachedData.data).isSameInstanceAs(data);
+    assertThat(cachedData.position).isEqualTo(10);
+    assertThat(memoryCache.get("key", /* position= */ 12, /* length= */ 5).data)
+        .isSameInstanceAs(data);
+    assertThat(memoryCache.get("key", /* position= */ 10, C.LENGTH_UNSET)).isNull();
+    assertThat(memoryCache.get("key", /* position= */ 5, /* length= */ 10)).isNull();
+    assertThat(memoryCache.get("key", /* position= */ 15, /* length= */ 10)).isNull();
+    assertThat(memoryCache.get("other", /* position= */ 10, /* length= */ 10)).isNull();
+    assertThat(memoryCache.getHitCount()).isEqualTo(2);
+    assertThat(memoryCache.getMissCount()).isEqualTo(4);
+  }
+
+  @Test
+  public void get_withUnsetLength_returnsDataExtendingToEndOfResource() {
+    MemoryCache memoryCache = new MemoryCache(/* maxBytes= */ 100);
+    byte[] data = new byte[10];
+    memoryCache.put("key", /* position= */ 0, C.LENGTH_UNSET, data);
+
+    assertThat(memoryCache.get("key", /* position= */ 5, C.LENGTH_UNSET).data)
+        .isSameInstanceAs(data);
+    assertThat(memoryCache.get("key", /* position= */ 5, /* length= */ 5).data)
+        .isSameInstanceAs(data);
+    assertThat(memoryCache.get("key", /* position= */ 10, C.LENGTH_UNSET)).isNull();
+  }
+
+  @Test
+  public void get_withOverlappingEntries_returnsEntryContainingRange() {
+    MemoryCache memoryCache = new MemoryCache(/* maxBytes= */ 100);
+    byte[] data1 = new byte[30];
+    byte[] data2 = new byte[5];
+    memoryCache.put("key", /* position= */ 0, /* length= */ 30, data1);
+    memoryCache.put("key", /* position= */ 10, /* length= */ 5, data2);
+
+    assertThat(memoryCache.get("key", /* position= */ 10, /* length= */ 5).data)
+        .isSameInstanceAs(data2);
+    assertThat(memoryCache.get("key", /* position= */ 12, /* length= */ 10).data)
+        .isSameInstanceAs(data1);
+  }
+
+  @Test
+  public void put_exceedingMaxBytes_evictsLeastRecentlyUsedEntries() {
+    MemoryCache memoryCache = new MemoryCache(/* maxBytes= */ 100);
+    memoryCache.put("key1", /* position= */ 0, /* length= */ 40, new byte[40]);
+    memoryCache.put("key2", /* position= */ 0, /* length= */ 40, new byte[40]);
+    memoryCache.get("key1", /* position= */ 0, /* length= */ 40);
+
+    memoryCache.put("key3", /* position= */ 0, /* length= */ 40, new byte[40]);
+
+    assertThat(memoryCache.get("key1", /* position= */ 0, /* length= */ 40)).isNotNull();
+    assertThat(memoryCache.get("key2", /* position= */ 0, /* length= */ 40)).isNull();
+    assertThat(memoryCache.get("key3", /* position= */ 0, /* length= */ 40)).isNotNull();
+    assertThat(memoryCache.get("key2", /* position= */ 10, /* length= */ 10)).isNull();
+    assertThat(memoryCache.getCacheSpace()).isEqualTo(80);
+    assertThat(memoryCache.getEvictionCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void put_dataLargerThanMaxBytes_isNotCached() {
+    MemoryCache memoryCache = new MemoryCache(/* maxBytes= */ 100);
+    memoryCache.put("key1", /* position= */ 0, /* length= */ 40, new byte[40]);
+
+    memoryCache.put("key2", /* position= */ 0, C.LENGTH_UNSET, new byte[101]);
+
+    assertThat(memoryCache.get("key1", /* position= */ 0, /* length= */ 40)).isNotNull();
+    assertThat(memoryCache.get("key2", /* position= */ 0, C.LENGTH_UNSET)).isNull();
+    assertThat(memoryCache.getCacheSpace()).isEqualTo(40);
+  }
+
+  @Test
+  public void removeResource_removesAllRangesOfResource() {
+    MemoryCache memoryCache = new MemoryCache(/* maxBytes= */ 100);
+    memoryCache.put("key1", /* position= */ 0, /* length= */ 10, new byte[10]);
+    memoryCache.put("key1", /* position= */ 10, /* length= */ 10, new byte[10]);
+    memoryCache.put("key2", /* position= */ 0, /* length= */ 10, new byte[10]);
+
+    memoryCache.removeResource("key1");
+
+    assertThat(memoryCache.get("key1", /* position= */ 0, /* length= */ 10)).isNull();
+    assertThat(memoryCache.get("key1", /* position= */ 10, /* length= */ 10)).isNull();
+    assertThat(memoryCache.get("key2", /* position= */ 0, /* length= */ 10)).isNotNull();
+    assertThat(memoryCache.getCacheSpace()).isEqualTo(10);
+  }
+}
@@ -32,8 +32,10 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.NavigableSet;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -149,6 +151,70 @@ public class SimpleCacheTest {
         .isEqualTo(Uri.parse("https://redirect.google.com"));
   }
 
+  @Test
+  public void newInstance_withParallelDirectoryScan_loadsCachedData() throws Exception {
+    SimpleCache simpleCache = getSimpleCache();
+    for (int i = 0; i < 20; i++) {
+      CacheSpan holeSpan = simpleCache.startReadWrite(KEY_1, i * 15, LENGTH_UNSET);
+      addCache(simpleCache, KEY_1, i * 15, 15);
+      simpleCache.releaseHoleSpan(holeSpan);
+    }
+    CacheSpan holeSpan = simpleCache.startReadWrite(KEY_2, 0, LENGTH_UNSET);
+    addCache(simpleCache, KEY_2, 0, 15);
+    simpleCache.releaseHoleSpan(holeSpan);
+    simpleCache.release();
+
+    simpleCache =
+        new SimpleCache(
+            cacheDir,
+            new NoOpCacheEvictor(),
+            databaseProvider,
+            /* legacyIndexSecretKey= */ null,
+            /* legacyIndexEncrypt= */ false,
+            /* preferLegacyIndex= */ false,
+            /* parallelDirectoryScan= */ true);
+
+    assertThat(simpleCache.getCacheSpace()).isEqualTo(21 * 15);
+    assertThat(simpleCache.getCachedSpans(KEY_1)).hasSize(20);
+    assertThat(simpleCache.getCachedLength(KEY_1, 0, LENGTH_UNSET)).isEqualTo(20 * 15);
+    assertCachedDataReadCorrect(simpleCache.startReadWrite(KEY_2, 0, LENGTH_UNSET));
+  }
+
+  @Test
+  public void startReadWriteWithTimeout_withLockedRange_returnsNullAfterTimeout()
+      throws Exception {
+    SimpleCache simpleCache = getSimpleCache();
+    CacheSpan holeSpan = simpleCache.startReadWrite(KEY_1, 0, LENGTH_UNSET);
+
+    assertThat(simpleCache.startReadWrite(KEY_1, 0, LENGTH_UNSET, /* timeoutMs= */ 10)).isNull();
+
+    simpleCache.releaseHoleSpan(holeSpan);
+    CacheSpan span = simpleCache.startReadWrite(KEY_1, 0, LENGTH_UNSET, /* timeoutMs= */ 10);
+    assertThat(span).isNotNull();
+    assertThat(span.isCached).isFalse();
+  }
+
+  @Test
+  public void newInstance_withLeastRecentlyUsedEvictor_evictsLeastRecentlyUsedLoadedSpans()
+      throws Exception {
+    SimpleCache simpleCache = getSimpleCache();
+    for (int i = 0; i < 4; i++) {
+      CacheSpan holeSpan = simpleCache.startReadWrite(KEY_1, i * 15, LENGTH_UNSET);
+      addCache(simpleCache, KEY_1, i * 15, 15);
+      simpleCache.releaseHoleSpan(holeSpan);
+    }
+    simpleCache.release();
+
+    simpleCache =
+        new SimpleCache(
+            cacheDir, new LeastRecentlyUsedCacheEvictor(/* maxBytes= */ 30), databaseProvider);
+
+    // The first spans were written first, or at the same time and are ordered by position.
+    assertThat(simpleCache.getCacheSpace()).isEqualTo(30);
+    assertThat(simpleCache.getCachedSpans(KEY_1)).hasSize(2);
+    assertThat(simpleCache.getCachedLength(KEY_1, 30, LENGTH_UNSET)).isEqualTo(30);
+  }
+
   @Test
   public void newInstance_withExistingCacheInstance_fails() {
     getSimpleCache();
@@ -341,6 +407,58 @@ public class SimpleCacheTest {
     simpleCache.releaseHoleSpan(holeSpan2);
   }
 
+  @Test
+  public void startReadWrite_rangeLocked_blocksUntilLockIsReleased() throws Exception {
+    SimpleCache simpleCache = getSimpleCache();
+    CacheSpan holeSpan = simpleCache.startReadWrite(KEY_1, 0, LENGTH_UNSET);
+    AtomicReference<CacheSpan> blockedSpan = new AtomicReference<>();
+    Thread thread =
+        new Thread(
+            () -> {
+              try {
+                blockedSpan.set(simpleCache.startReadWrite(KEY_1, 0, LENGTH_UNSET));
+              } catch (Exception e) {
+                throw new IllegalStateException(e);
+              }
+            });
+    thread.start();
+
+    // Operations on other keys aren't blocked by the waiting thread.
+    addCache(simpleCache, KEY_2, 0, 15);
+    assertThat(simpleCache.getCachedLength(KEY_2, 0, LENGTH_UNSET)).isEqualTo(15);
+    thread.join(/* millis= */ 100);
+    assertThat(thread.isAlive()).isTrue();
+
+    simpleCache.releaseHoleSpan(holeSpan);
+    thread.join();
+
+    assertThat(blockedSpan.get().isCached).isFalse();
+    simpleCache.releaseHoleSpan(blockedSpan.get());
+  }
+
+  @Test
+  public void startReadWrite_rangeLocked_returnsCachedSpanOnceCommitted() throws Exception {
+    SimpleCache simpleCache = getSimpleCache();
+    CacheSpan holeSpan = simpleCache.startReadWrite(KEY_1, 0, LENGTH_UNSET);
+    AtomicReference<CacheSpan> blockedSpan = new AtomicReference<>();
+    Thread thread =
+        new Thread(
+            () -> {
+              try {
+                blockedSpan.set(simpleCache.startReadWrite(KEY_1, 0, LENGTH_UNSET));
+              } catch (Exception e) {
+                throw new IllegalStateException(e);
+              }
+            });
+    thread.start();
+
+    addCache(simpleCache, KEY_1, 0, 15);
+    thread.join();
+
+    assertCachedDataReadCorrect(blockedSpan.get());
+    simpleCache.releaseHoleSpan(holeSpan);
+  }
+
   @Test
   public void write_oneLock_fileExceedsLock_fails() throws Exception {
     SimpleCache simpleCache = getSimpleCache();
@@ -451,6 +569,21 @@ public class SimpleCacheTest {
         .isEqualTo(15);
   }
 
+  @Test
+  public void applyContentMetadataMutations_withMultipleKeys_appliesMutationsToEachResource()
+      throws Exception {
+    SimpleCache simpleCache = getSimpleCache();
+
+    simpleCache.applyContentMetadataMutations(
+        Arrays.asList(KEY_1, KEY_2),
+        ContentMetadataMutations.setPinned(new ContentMetadataMutations(), true));
+    simpleCache.release();
+    simpleCache = getSimpleCache();
+
+    assertThat(ContentMetadata.isPinned(simpleCache.getContentMetadata(KEY_1))).isTrue();
+    assertThat(ContentMetadata.isPinned(simpleCache.getContentMetadata(KEY_2))).isTrue();
+  }
+
   @Test
   public void removeSpans_removesSpansWithSameKey() throws Exception {
     SimpleCache simpleCache = getSimpleCache();
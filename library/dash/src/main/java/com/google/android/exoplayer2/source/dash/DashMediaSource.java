@@ -87,6 +87,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.concurrent.Executor;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -113,6 +114,7 @@ public final class DashMediaSource extends BaseMediaSource {
     @Nullable private ParsingLoadable.Parser<? extends DashManifest> manifestParser;
     private List<StreamKey> streamKeys;
     @Nullable private Object tag;
+    @Nullable private Executor loadExecutor;
 
     /**
      * Creates a new factory for {@link DashMediaSource}s.
@@ -284,6 +286,23 @@ public final class DashMediaSource extends BaseMediaSource {
       return this;
     }
 
+    /**
+     * Sets a shared {@link Executor} on which manifests and chunks are loaded. The default is null,
+     * in which case each loader of a created media source loads on a thread of its own.
+     *
+     * <p>Sharing a bounded executor between the media sources of many players limits the number
+     * of loading threads. Loads are queued while all of the executor's threads are busy, so it
+     * should have enough threads for the loads that are expected to run at the same time. The
+     * executor is not shut down when media sources are released.
+     *
+     * @param loadExecutor A shared {@link Executor}, or null to use a thread per loader.
+     * @return This factory, for convenience.
+     */
+    public Factory setLoadExecutor(@Nullable Executor loadExecutor) {
+      this.loadExecutor = loadExecutor;
+      return this;
+    }
+
     /**
      * Returns a new {@link DashMediaSource} using the current parameters and the specified
      * sideloaded manifest.
@@ -347,7 +366,8 @@ public final class DashMediaSource extends BaseMediaSource {
           compositeSequenceableLoaderFactory,
           drmSessionManagerProvider.get(mediaItem),
           loadErrorHandlingPolicy,
-          fallbackTargetLiveOffsetMs);
+          fallbackTargetLiveOffsetMs,
+          loadExecutor);
     }
 
     /** @deprecated Use {@link #createMediaSource(MediaItem)} instead. */
@@ -417,7 +437,8 @@ public final class DashMediaSource extends BaseMediaSource {
           compositeSequenceableLoaderFactory,
           drmSessionManagerProvider.get(mediaItem),
           loadErrorHandlingPolicy,
-          fallbackTargetLiveOffsetMs);
+          fallbackTargetLiveOffsetMs,
+          loadExecutor);
     }
 
     @Override
@@ -468,6 +489,7 @@ public final class DashMediaSource extends BaseMediaSource {
   private final Runnable simulateManifestRefreshRunnable;
   private final PlayerEmsgCallback playerEmsgCallback;
   private final LoaderErrorThrower manifestLoadErrorThrower;
+  @Nullable private final Executor loadExecutor;
 
   private DataSource dataSource;
   private Loader loader;
@@ -500,7 +522,8 @@ public final class DashMediaSource extends BaseMediaSource {
       CompositeSequenceableLoaderFactory compositeSequenceableLoaderFactory,
       DrmSessionManager drmSessionManager,
       LoadErrorHandlingPolicy loadErrorHandlingPolicy,
-      long fallbackTargetLiveOffsetMs) {
+      long fallbackTargetLiveOffsetMs,
+      @Nullable Executor loadExecutor) {
     this.mediaItem = mediaItem;
     this.liveConfiguration = mediaItem.liveConfiguration;
     this.manifestUri = checkNotNull(mediaItem.playbackProperties).uri;
@@ -514,6 +537,7 @@ public final class DashMediaSource extends BaseMediaSource {
     this.loadErrorHandlingPolicy = loadErrorHandlingPolicy;
     this.fallbackTargetLiveOffsetMs = fallbackTargetLiveOffsetMs;
     this.compositeSequenceableLoaderFactory = compositeSequenceableLoaderFactory;
+    this.loadExecutor = loadExecutor;
     sideloadedManifest = manifest != null;
     manifestEventDispatcher = createEventDispatcher(/* mediaPeriodId= */ null);
     manifestUriLock = new Object();
@@ -575,7 +599,8 @@ public final class DashMediaSource extends BaseMediaSource {
       processManifest(false);
     } else {
       dataSource = manifestDataSourceFactory.createDataSource();
-      loader = new Loader("Loader:DashMediaSource");
+      loader =
+          loadExecutor != null ? new Loader(loadExecutor) : new Loader("Loader:DashMediaSource");
       handler = Util.createHandlerForCurrentLooper();
       startLoadingManifest();
     }
@@ -608,7 +633,8 @@ public final class DashMediaSource extends BaseMediaSource {
             manifestLoadErrorThrower,
             allocator,
             compositeSequenceableLoaderFactory,
-            playerEmsgCallback);
+            playerEmsgCallback,
+            loadExecutor);
     periodsById.put(mediaPeriod.id, mediaPeriod);
     return mediaPeriod;
   }
@@ -1105,7 +1131,7 @@ public final class DashMediaSource extends BaseMediaSource {
         DashManifestPatchMerger patchMerger = (DashManifestPatchMerger) manifestPatchMerger;
         DashManifestParser parser = (DashManifestParser)manifestParser;
         try {
-          patchMerger.setManifestString(parser.getManifestString());
+          patchMerger.setManifest(manifest, parser);
           startLoading(
                   new ParsingLoadable<>(dataSource, Uri.parse(manifest.patchLocation.url),
                                         C.DATA_TYPE_MANIFEST, manifestPatchMerger),
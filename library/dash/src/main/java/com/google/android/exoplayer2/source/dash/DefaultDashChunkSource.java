@@ -52,12 +52,15 @@ import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.upstream.DataSpec;
 import com.google.android.exoplayer2.upstream.HttpDataSource.InvalidResponseCodeException;
 import com.google.android.exoplayer2.upstream.LoaderErrorThrower;
+import com.google.android.exoplayer2.upstream.PrefetchingDataSource;
 import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.Util;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * A default {@link DashChunkSource} implementation.
@@ -68,14 +71,70 @@ public class DefaultDashChunkSource implements DashChunkSource {
 
     private final DataSource.Factory dataSourceFactory;
     private final int maxSegmentsPerLoad;
+    private final int maxParallelSegmentLoads;
+    @Nullable private final PrefetchingDataSource.Listener prefetchListener;
+    @Nullable private final Executor prefetchExecutor;
 
     public Factory(DataSource.Factory dataSourceFactory) {
       this(dataSourceFactory, /* maxSegmentsPerLoad= */ 1);
     }
 
     public Factory(DataSource.Factory dataSourceFactory, int maxSegmentsPerLoad) {
+      this(
+          dataSourceFactory,
+          maxSegmentsPerLoad,
+          /* maxParallelSegmentLoads= */ 1,
+          /* prefetchListener= */ null);
+    }
+
+    /**
+     * Creates an instance.
+     *
+     * @param dataSourceFactory Creates the {@link DataSource DataSources} for loading media data.
+     * @param maxSegmentsPerLoad The maximum number of segments to combine into a single request.
+     * @param maxParallelSegmentLoads The maximum number of requests for media segments of a track
+     *     that can be in flight at the same time. If greater than one, upcoming segments are loaded
+     *     into memory by a {@link PrefetchingDataSource} while earlier segments are extracted.
+     * @param prefetchListener An optional listener of the prefetches, for example to monitor the
+     *     pipeline depth and the time to first byte of requests.
+     */
+    public Factory(
+        DataSource.Factory dataSourceFactory,
+        int maxSegmentsPerLoad,
+        int maxParallelSegmentLoads,
+        @Nullable PrefetchingDataSource.Listener prefetchListener) {
+      this(
+          dataSourceFactory,
+          maxSegmentsPerLoad,
+          maxParallelSegmentLoads,
+          prefetchListener,
+          /* prefetchExecutor= */ null);
+    }
+
+    /**
+     * Creates an instance.
+     *
+     * @param dataSourceFactory Creates the {@link DataSource DataSources} for loading media data.
+     * @param maxSegmentsPerLoad The maximum number of segments to combine into a single request.
+     * @param maxParallelSegmentLoads The maximum number of requests for media segments of a track
+     *     that can be in flight at the same time. If greater than one, upcoming segments are loaded
+     *     into memory by a {@link PrefetchingDataSource} while earlier segments are extracted.
+     * @param prefetchListener An optional listener of the prefetches, for example to monitor the
+     *     pipeline depth and the time to first byte of requests.
+     * @param prefetchExecutor The {@link Executor} on which the prefetches of all the created chunk
+     *     sources are loaded, or null to use {@link PrefetchingDataSource#getDefaultExecutor()}.
+     */
+    public Factory(
+        DataSource.Factory dataSourceFactory,
+        int maxSegmentsPerLoad,
+        int maxParallelSegmentLoads,
+        @Nullable PrefetchingDataSource.Listener prefetchListener,
+        @Nullable Executor prefetchExecutor) {
       this.dataSourceFactory = dataSourceFactory;
       this.maxSegmentsPerLoad = maxSegmentsPerLoad;
+      this.maxParallelSegmentLoads = maxParallelSegmentLoads;
+      this.prefetchListener = prefetchListener;
+      this.prefetchExecutor = prefetchExecutor;
     }
 
     @Override
@@ -91,7 +150,19 @@ public class DefaultDashChunkSource implements DashChunkSource {
         List<Format> closedCaptionFormats,
         @Nullable PlayerTrackEmsgHandler playerEmsgHandler,
         @Nullable TransferListener transferListener) {
-      DataSource dataSource = dataSourceFactory.createDataSource();
+      DataSource dataSource;
+      if (maxParallelSegmentLoads > 1) {
+        dataSource =
+            new PrefetchingDataSource(
+                dataSourceFactory,
+                maxParallelSegmentLoads,
+                prefetchListener,
+                prefetchExecutor != null
+                    ? prefetchExecutor
+                    : PrefetchingDataSource.getDefaultExecutor());
+      } else {
+        dataSource = dataSourceFactory.createDataSource();
+      }
       if (transferListener != null) {
         dataSource.addTransferListener(transferListener);
       }
@@ -119,6 +190,7 @@ public class DefaultDashChunkSource implements DashChunkSource {
   private final long elapsedRealtimeOffsetMs;
   private final int maxSegmentsPerLoad;
   @Nullable private final PlayerTrackEmsgHandler playerTrackEmsgHandler;
+  @Nullable private final PrefetchingDataSource prefetchingDataSource;
 
   protected final RepresentationHolder[] representationHolders;
 
@@ -135,7 +207,9 @@ public class DefaultDashChunkSource implements DashChunkSource {
    * @param adaptationSetIndices The indices of the adaptation sets in the period.
    * @param trackSelection The track selection.
    * @param trackType The type of the tracks in the selection.
-   * @param dataSource A {@link DataSource} suitable for loading the media data.
+   * @param dataSource A {@link DataSource} suitable for loading the media data. If it is a {@link
+   *     PrefetchingDataSource}, the media segments after the one being loaded are prefetched
+   *     through it.
    * @param elapsedRealtimeOffsetMs If known, an estimate of the instantaneous difference between
    *     server-side unix time and {@link SystemClock#elapsedRealtime()} in milliseconds, specified
    *     as the server's unix time minus the local elapsed time. Or {@link C#TIME_UNSET} if unknown.
@@ -170,6 +244,8 @@ public class DefaultDashChunkSource implements DashChunkSource {
     this.elapsedRealtimeOffsetMs = elapsedRealtimeOffsetMs;
     this.maxSegmentsPerLoad = maxSegmentsPerLoad;
     this.playerTrackEmsgHandler = playerTrackEmsgHandler;
+    prefetchingDataSource =
+        dataSource instanceof PrefetchingDataSource ? (PrefetchingDataSource) dataSource : null;
 
     long periodDurationUs = manifest.getPeriodDurationUs(periodIndex);
 
@@ -373,19 +449,10 @@ public class DefaultDashChunkSource implements DashChunkSource {
       return;
     }
 
-    int maxSegmentCount = (int) min(maxSegmentsPerLoad, lastAvailableSegmentNum - segmentNum + 1);
-    if (periodDurationUs != C.TIME_UNSET) {
-      while (maxSegmentCount > 1
-          && representationHolder.getSegmentStartTimeUs(segmentNum + maxSegmentCount - 1)
-              >= periodDurationUs) {
-        // The period duration clips the period to a position before the last segment in the range
-        // [segmentNum, segmentNum + maxSegmentCount - 1]. Reduce maxSegmentCount.
-        maxSegmentCount--;
-      }
-    }
-
+    int maxSegmentCount =
+        getMaxSegmentCount(representationHolder, segmentNum, lastAvailableSegmentNum);
     long seekTimeUs = queue.isEmpty() ? loadPositionUs : C.TIME_UNSET;
-    out.chunk =
+    Chunk mediaChunk =
         newMediaChunk(
             representationHolder,
             dataSource,
@@ -397,6 +464,17 @@ public class DefaultDashChunkSource implements DashChunkSource {
             maxSegmentCount,
             seekTimeUs,
             nowPeriodTimeUs);
+    if (prefetchingDataSource != null && mediaChunk instanceof MediaChunk) {
+      prefetchingDataSource.prefetch(
+          getPrefetchDataSpecs(
+              prefetchingDataSource,
+              representationHolder,
+              (MediaChunk) mediaChunk,
+              lastAvailableSegmentNum,
+              nowPeriodTimeUs,
+              prefetchingDataSource.getMaxPrefetchCount()));
+    }
+    out.chunk = mediaChunk;
   }
 
   @Override
@@ -421,6 +499,7 @@ public class DefaultDashChunkSource implements DashChunkSource {
     if (playerTrackEmsgHandler != null) {
       playerTrackEmsgHandler.onChunkLoadCompleted(chunk);
     }
+    trackSelection.onChunkLoadCompleted(chunk);
   }
 
   @Override
@@ -453,6 +532,9 @@ public class DefaultDashChunkSource implements DashChunkSource {
 
   @Override
   public void release() {
+    if (prefetchingDataSource != null) {
+      prefetchingDataSource.release();
+    }
     for (RepresentationHolder representationHolder : representationHolders) {
       @Nullable ChunkExtractor chunkExtractor = representationHolder.chunkExtractor;
       if (chunkExtractor != null) {
@@ -477,6 +559,115 @@ public class DefaultDashChunkSource implements DashChunkSource {
             lastAvailableSegmentNum);
   }
 
+  private int getMaxSegmentCount(
+      RepresentationHolder representationHolder, long segmentNum, long lastAvailableSegmentNum) {
+    int maxSegmentCount = (int) min(maxSegmentsPerLoad, lastAvailableSegmentNum - segmentNum + 1);
+    long periodDurationUs = representationHolder.periodDurationUs;
+    if (periodDurationUs != C.TIME_UNSET) {
+      while (maxSegmentCount > 1
+          && representationHolder.getSegmentStartTimeUs(segmentNum + maxSegmentCount - 1)
+              >= periodDurationUs) {
+        // The period duration clips the period to a position before the last segment in the range
+        // [segmentNum, segmentNum + maxSegmentCount - 1]. Reduce maxSegmentCount.
+        maxSegmentCount--;
+      }
+    }
+    return maxSegmentCount;
+  }
+
+  /**
+   * Returns the {@link DataSpec DataSpecs} to prefetch when the given media chunk is loaded, which
+   * are those of the chunks that are expected to be loaded after it, up to {@code maxCount} chunks
+   * including the given one. The given chunk is loaded directly, so it's only included if it's
+   * already being prefetched. Only segments that are fully available are included, so that
+   * prefetches don't wait for segments that are still being produced.
+   */
+  private List<DataSpec> getPrefetchDataSpecs(
+      PrefetchingDataSource prefetchingDataSource,
+      RepresentationHolder representationHolder,
+      MediaChunk mediaChunk,
+      long lastAvailableSegmentNum,
+      long nowPeriodTimeUs,
+      int maxCount) {
+    List<DataSpec> dataSpecs = new ArrayList<>();
+    if (prefetchingDataSource.isPrefetchPending(mediaChunk.dataSpec)) {
+      // Keep the pending prefetch, which is further along than a new request would be.
+      dataSpecs.add(mediaChunk.dataSpec);
+    }
+    int chunkCount = 1;
+    long periodDurationUs = representationHolder.periodDurationUs;
+    long segmentNum = mediaChunk.getNextChunkIndex();
+    while (chunkCount < maxCount
+        && segmentNum <= lastAvailableSegmentNum
+        && (periodDurationUs == C.TIME_UNSET
+            || representationHolder.getSegmentStartTimeUs(segmentNum) < periodDurationUs)
+        && representationHolder.isSegmentAvailableAtFullNetworkSpeed(
+            segmentNum, nowPeriodTimeUs)) {
+      // Build the DataSpec in the same way as the chunk will when it's loaded, so that they match.
+      int segmentCount =
+          getMediaChunkSegmentCount(
+              representationHolder,
+              segmentNum,
+              getMaxSegmentCount(representationHolder, segmentNum, lastAvailableSegmentNum));
+      dataSpecs.add(
+          buildMediaChunkDataSpec(representationHolder, segmentNum, segmentCount, nowPeriodTimeUs));
+      chunkCount++;
+      segmentNum += segmentCount;
+    }
+    return dataSpecs;
+  }
+
+  /**
+   * Returns the number of segments from {@code firstSegmentNum} that are loaded by a single media
+   * chunk, which is at most {@code maxSegmentCount}. Segments are only combined if their data
+   * ranges can be merged into a single request.
+   */
+  private static int getMediaChunkSegmentCount(
+      RepresentationHolder representationHolder, long firstSegmentNum, int maxSegmentCount) {
+    if (representationHolder.chunkExtractor == null) {
+      return 1;
+    }
+    String baseUrl = representationHolder.representation.baseUrl;
+    RangedUri segmentUri = representationHolder.getSegmentUrl(firstSegmentNum);
+    int segmentCount = 1;
+    for (int i = 1; i < maxSegmentCount; i++) {
+      RangedUri nextSegmentUri = representationHolder.getSegmentUrl(firstSegmentNum + i);
+      @Nullable RangedUri mergedSegmentUri = segmentUri.attemptMerge(nextSegmentUri, baseUrl);
+      if (mergedSegmentUri == null) {
+        // Unable to merge segment fetches because the URIs do not merge.
+        break;
+      }
+      segmentUri = mergedSegmentUri;
+      segmentCount++;
+    }
+    return segmentCount;
+  }
+
+  /**
+   * Returns the {@link DataSpec} of a media chunk that loads {@code segmentCount} segments from
+   * {@code firstSegmentNum}, as returned by {@link #getMediaChunkSegmentCount}.
+   */
+  private static DataSpec buildMediaChunkDataSpec(
+      RepresentationHolder representationHolder,
+      long firstSegmentNum,
+      int segmentCount,
+      long nowPeriodTimeUs) {
+    Representation representation = representationHolder.representation;
+    RangedUri segmentUri = representationHolder.getSegmentUrl(firstSegmentNum);
+    for (int i = 1; i < segmentCount; i++) {
+      segmentUri =
+          Assertions.checkNotNull(
+              segmentUri.attemptMerge(
+                  representationHolder.getSegmentUrl(firstSegmentNum + i), representation.baseUrl));
+    }
+    long lastSegmentNum = firstSegmentNum + segmentCount - 1;
+    int flags =
+        representationHolder.isSegmentAvailableAtFullNetworkSpeed(lastSegmentNum, nowPeriodTimeUs)
+            ? 0
+            : DataSpec.FLAG_MIGHT_NOT_USE_FULL_NETWORK_SPEED;
+    return DashUtil.buildDataSpec(representation, segmentUri, flags);
+  }
+
   private ArrayList<Representation> getRepresentations() {
     List<AdaptationSet> manifestAdaptationSets = manifest.getPeriod(periodIndex).adaptationSets;
     ArrayList<Representation> representations = new ArrayList<>();
@@ -547,30 +738,16 @@ public class DefaultDashChunkSource implements DashChunkSource {
       long nowPeriodTimeUs) {
     Representation representation = representationHolder.representation;
     long startTimeUs = representationHolder.getSegmentStartTimeUs(firstSegmentNum);
-    RangedUri segmentUri = representationHolder.getSegmentUrl(firstSegmentNum);
-    String baseUrl = representation.baseUrl;
     if (representationHolder.chunkExtractor == null) {
       long endTimeUs = representationHolder.getSegmentEndTimeUs(firstSegmentNum);
-      int flags =
-          representationHolder.isSegmentAvailableAtFullNetworkSpeed(
-                  firstSegmentNum, nowPeriodTimeUs)
-              ? 0
-              : DataSpec.FLAG_MIGHT_NOT_USE_FULL_NETWORK_SPEED;
-      DataSpec dataSpec = DashUtil.buildDataSpec(representation, segmentUri, flags);
+      DataSpec dataSpec =
+          buildMediaChunkDataSpec(
+              representationHolder, firstSegmentNum, /* segmentCount= */ 1, nowPeriodTimeUs);
       return new SingleSampleMediaChunk(dataSource, dataSpec, trackFormat, trackSelectionReason,
           trackSelectionData, startTimeUs, endTimeUs, firstSegmentNum, trackType, trackFormat);
     } else {
-      int segmentCount = 1;
-      for (int i = 1; i < maxSegmentCount; i++) {
-        RangedUri nextSegmentUri = representationHolder.getSegmentUrl(firstSegmentNum + i);
-        @Nullable RangedUri mergedSegmentUri = segmentUri.attemptMerge(nextSegmentUri, baseUrl);
-        if (mergedSegmentUri == null) {
-          // Unable to merge segment fetches because the URIs do not merge.
-          break;
-        }
-        segmentUri = mergedSegmentUri;
-        segmentCount++;
-      }
+      int segmentCount =
+          getMediaChunkSegmentCount(representationHolder, firstSegmentNum, maxSegmentCount);
       long segmentNum = firstSegmentNum + segmentCount - 1;
       long endTimeUs = representationHolder.getSegmentEndTimeUs(segmentNum);
       long periodDurationUs = representationHolder.periodDurationUs;
@@ -578,11 +755,9 @@ public class DefaultDashChunkSource implements DashChunkSource {
           periodDurationUs != C.TIME_UNSET && periodDurationUs <= endTimeUs
               ? periodDurationUs
               : C.TIME_UNSET;
-      int flags =
-          representationHolder.isSegmentAvailableAtFullNetworkSpeed(segmentNum, nowPeriodTimeUs)
-              ? 0
-              : DataSpec.FLAG_MIGHT_NOT_USE_FULL_NETWORK_SPEED;
-      DataSpec dataSpec = DashUtil.buildDataSpec(representation, segmentUri, flags);
+      DataSpec dataSpec =
+          buildMediaChunkDataSpec(
+              representationHolder, firstSegmentNum, segmentCount, nowPeriodTimeUs);
       long sampleOffsetUs = -representation.presentationTimeOffsetUs;
       return new ContainerMediaChunk(
           dataSource,
@@ -47,6 +47,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.UUID;
 import java.util.regex.Matcher;
@@ -84,6 +85,14 @@ public class DashManifestParser extends DefaultHandler
 
   private final XmlPullParserFactory xmlParserFactory;
   private String manifestString;
+  private String manifestBaseUrl;
+  private long manifestBaseUrlAvailabilityTimeOffsetUs;
+  // Segment timelines of the previous and the current manifest, keyed by period and position in
+  // the period. Used to reuse the unchanged part of a timeline when a live manifest is refreshed.
+  private HashMap<String, SegmentTimelineList> previousSegmentTimelines;
+  private HashMap<String, SegmentTimelineList> segmentTimelines;
+  @Nullable private String segmentTimelineKeyPrefix;
+  private int segmentTimelineCount;
 
   public DashManifestParser() {
     try {
@@ -91,6 +100,8 @@ public class DashManifestParser extends DefaultHandler
     } catch (XmlPullParserException e) {
       throw new RuntimeException("Couldn't create XmlPullParserFactory instance", e);
     }
+    previousSegmentTimelines = new HashMap<>();
+    segmentTimelines = new HashMap<>();
   }
 
   // MPD parsing.
@@ -108,6 +119,8 @@ public class DashManifestParser extends DefaultHandler
         throw new ParserException(
             "inputStream does not contain a valid media presentation description");
       }
+      previousSegmentTimelines = segmentTimelines;
+      segmentTimelines = new HashMap<>();
       return parseMediaPresentationDescription(xpp, uri.toString());
     } catch (XmlPullParserException e) {
       throw new ParserException(e);
@@ -201,6 +214,8 @@ public class DashManifestParser extends DefaultHandler
     if (periods.isEmpty()) {
       throw new ParserException("No periods found.");
     }
+    manifestBaseUrl = baseUrl;
+    manifestBaseUrlAvailabilityTimeOffsetUs = baseUrlAvailabilityTimeOffsetUs;
       DashManifest manifest = buildMediaPresentationDescription(
         availabilityStartTime,
         durationMs,
@@ -294,6 +309,8 @@ public class DashManifestParser extends DefaultHandler
       throws XmlPullParserException, IOException {
     @Nullable String id = xpp.getAttributeValue(null, "id");
     long startMs = parseDuration(xpp, "start", defaultStartMs);
+    segmentTimelineKeyPrefix = id + "@" + startMs + "#";
+    segmentTimelineCount = 0;
     long periodStartUnixTimeMs =
         availabilityStartTimeMs != C.TIME_UNSET ? availabilityStartTimeMs + startMs : C.TIME_UNSET;
     long durationMs = parseDuration(xpp, "duration", C.TIME_UNSET);
@@ -549,6 +566,22 @@ public class DashManifestParser extends DefaultHandler
     return manifestString;
   }
 
+  /**
+   * Returns the base URL of the last parsed manifest, resolved against the manifest {@code
+   * BaseURL} element if present.
+   */
+  public String getManifestBaseUrl() {
+    return manifestBaseUrl;
+  }
+
+  /**
+   * Returns the availability time offset of the manifest level {@code BaseURL} of the last parsed
+   * manifest, in microseconds.
+   */
+  public long getManifestBaseUrlAvailabilityTimeOffsetUs() {
+    return manifestBaseUrlAvailabilityTimeOffsetUs;
+  }
+
   /**
    * Parses a ContentProtection element.
    *
@@ -1201,7 +1234,13 @@ public class DashManifestParser extends DefaultHandler
   protected List<SegmentTimelineElement> parseSegmentTimeline(
       XmlPullParser xpp, long timescale, long periodDurationMs)
       throws XmlPullParserException, IOException {
-    List<SegmentTimelineElement> segmentTimeline = new ArrayList<>();
+    // Timelines are identified by their period and their position in it. Reusing the segments of
+    // a different timeline is harmless, as only the segments that are equal are reused.
+    @Nullable
+    String key =
+        segmentTimelineKeyPrefix != null ? segmentTimelineKeyPrefix + segmentTimelineCount++ : null;
+    SegmentTimelineList.Builder segmentTimeline =
+        SegmentTimelineList.Builder.reusing(key != null ? previousSegmentTimelines.get(key) : null);
     long startTime = 0;
     long elementDuration = C.TIME_UNSET;
     int elementRepeatCount = 0;
@@ -1238,7 +1277,11 @@ public class DashManifestParser extends DefaultHandler
           elementRepeatCount,
           /* endTime= */ periodDuration);
     }
-    return segmentTimeline;
+    SegmentTimelineList segmentTimelineList = segmentTimeline.build();
+    if (key != null) {
+      segmentTimelines.put(key, segmentTimelineList);
+    }
+    return segmentTimelineList;
   }
 
   /**
@@ -1253,7 +1296,7 @@ public class DashManifestParser extends DefaultHandler
    * @return Calculated next start time.
    */
   private long addSegmentTimelineElementsToList(
-      List<SegmentTimelineElement> segmentTimeline,
+      SegmentTimelineList.Builder segmentTimeline,
       long startTime,
       long elementDuration,
       int elementRepeatCount,
@@ -1262,11 +1305,8 @@ public class DashManifestParser extends DefaultHandler
         elementRepeatCount >= 0
             ? 1 + elementRepeatCount
             : (int) Util.ceilDivide(endTime - startTime, elementDuration);
-    for (int i = 0; i < count; i++) {
-      segmentTimeline.add(buildSegmentTimelineElement(startTime, elementDuration));
-      startTime += elementDuration;
-    }
-    return startTime;
+    segmentTimeline.addElement(startTime, elementDuration, count);
+    return startTime + count * elementDuration;
   }
 
   protected SegmentTimelineElement buildSegmentTimelineElement(long startTime, long duration) {
@@ -0,0 +1,1114 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.dash.manifest;
+
+import android.net.Uri;
+import android.util.Pair;
+
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ParserException;
+import com.google.android.exoplayer2.metadata.emsg.EventMessage;
+import com.google.android.exoplayer2.source.dash.manifest.Representation.MultiSegmentRepresentation;
+import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.MultiSegmentBase;
+import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.SegmentTemplate;
+import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.SegmentTimelineElement;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.UriUtil;
+import com.google.android.exoplayer2.util.Util;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Applies a {@link DashManifestPatch} directly to an immutable {@link DashManifest}.
+ *
+ * <p>Patch operations are mapped onto structural edits of the manifest model: only the periods,
+ * adaptation sets and representations touched by an operation are rebuilt, everything else is
+ * shared with the original manifest. Newly added elements are parsed on their own, so the cost of
+ * a patch is proportional to its size rather than to the size of the manifest.
+ *
+ * <p>The supported operations are:
+ *
+ * <ul>
+ *   <li>Add, replace or remove of {@code MPD} attributes that don't change the timing model.
+ *   <li>Add, replace or remove of the {@code PatchLocation}.
+ *   <li>Add of a {@code Period} at the end of the manifest, replace or remove of a {@code Period}.
+ *   <li>Remove of an {@code AdaptationSet}.
+ *   <li>Add of {@code Event}s to, or remove of, an {@code EventStream}.
+ *   <li>Add of {@code S} elements to, or replace of, a {@code SegmentTimeline} of a {@code
+ *       SegmentTemplate} defined on an {@code AdaptationSet} or a {@code Representation}.
+ *   <li>Remove of the first {@code S} element of such a {@code SegmentTimeline}.
+ *   <li>Add, replace or remove of the {@code r} attribute of its last {@code S} element, and add or
+ *       replace of the {@code t} attribute of an {@code S} element with its current start time.
+ * </ul>
+ *
+ * <p>{@code S} elements are selected by position, or by a {@code t} attribute predicate.
+ *
+ * <p>If a patch contains any other operation, {@link #apply} returns null and the caller is
+ * expected to apply the patch to the document of the manifest instead.
+ */
+public class DashManifestPatchApplier {
+
+    private static final String TAG = "MpdPatchApplier";
+
+    /* package */ final DashManifestParser manifestParser;
+    private final XmlPullParserFactory xmlParserFactory;
+    private final StringBuilder serializationBuilder;
+    private final ByteArrayOutputStream scratchOutputStream;
+
+    /**
+     * @param manifestParser The parser of the manifest to which patches are applied. It is used to
+     *     parse the elements added by patches, and provides the manifest level base URL.
+     */
+    public DashManifestPatchApplier(DashManifestParser manifestParser) {
+        this.manifestParser = manifestParser;
+        try {
+            xmlParserFactory = XmlPullParserFactory.newInstance();
+        } catch (XmlPullParserException e) {
+            throw new RuntimeException("Couldn't create XmlPullParserFactory instance", e);
+        }
+        serializationBuilder = new StringBuilder();
+        scratchOutputStream = new ByteArrayOutputStream(512);
+    }
+
+    /**
+     * Applies a patch to a manifest.
+     *
+     * @param manifest The manifest to patch. It is not modified.
+     * @param patch The patch to apply.
+     * @return The patched manifest, or null if the patch contains operations that can't be applied
+     *     to the manifest model.
+     */
+    @Nullable
+    public DashManifest apply(DashManifest manifest, DashManifestPatch patch) {
+        ManifestBuilder builder = new ManifestBuilder(manifest);
+        for (DashManifestPatch.Operation operation : patch.operations) {
+            boolean applied;
+            try {
+                applied = applyOperation(builder, operation);
+            } catch (IOException | XmlPullParserException | RuntimeException e) {
+                Log.w(TAG, "Failed to apply operation, xpath: " + operation.getXPath(), e);
+                applied = false;
+            }
+            if (!applied) {
+                Log.d(TAG, "Operation not applicable to manifest, xpath: " + operation.getXPath());
+                return null;
+            }
+        }
+        return builder.build(manifestParser);
+    }
+
+    private boolean applyOperation(ManifestBuilder builder, DashManifestPatch.Operation operation)
+            throws IOException, XmlPullParserException {
+        @Nullable List<Step> steps = parseSelector(operation.getXPath());
+        if (steps == null) {
+            return false;
+        }
+        if (operation instanceof DashManifestPatch.ReplaceOperation) {
+            DashManifestPatch.ReplaceOperation replaceOperation =
+                    (DashManifestPatch.ReplaceOperation) operation;
+            if (replaceOperation.isAttribute) {
+                return setAttribute(builder, steps, replaceOperation.content);
+            }
+            @Nullable Element replacement = replaceOperation.element != null
+                    ? getFirstChildElement(replaceOperation.element) : null;
+            return replacement != null && replaceElement(builder, steps, replacement);
+        } else if (operation instanceof DashManifestPatch.AddOperation) {
+            DashManifestPatch.AddOperation addOperation = (DashManifestPatch.AddOperation) operation;
+            if (addOperation.type != null) {
+                if (!addOperation.type.startsWith("@")) {
+                    return false;
+                }
+                steps.add(new Step(addOperation.type, null, null, 0));
+                return setAttribute(builder, steps, addOperation.content);
+            }
+            return addOperation.pos == null
+                    && addOperation.element != null
+                    && addElements(builder, steps, addOperation.element);
+        } else if (operation instanceof DashManifestPatch.RemoveOperation) {
+            return ((DashManifestPatch.RemoveOperation) operation).isAttribute
+                    ? removeAttribute(builder, steps)
+                    : removeElement(builder, steps);
+        }
+        return false;
+    }
+
+    // Attributes.
+
+    private boolean setAttribute(ManifestBuilder builder, List<Step> steps, @Nullable String value)
+            throws ParserException {
+        if (value == null) {
+            return false;
+        }
+        if (isSegmentAttributeSelector(steps)) {
+            return updateSegmentAttribute(builder, steps, value);
+        }
+        if (steps.size() != 2 || !isMpdStep(steps.get(0))) {
+            return false;
+        }
+        switch (steps.get(1).name) {
+            case "@publishTime":
+                builder.publishTimeMs = Util.parseXsDateTime(value);
+                return true;
+            case "@minBufferTime":
+                builder.minBufferTimeMs = Util.parseXsDuration(value);
+                return true;
+            case "@mediaPresentationDuration":
+                builder.durationMs = Util.parseXsDuration(value);
+                return true;
+            case "@minimumUpdatePeriod":
+                builder.minUpdatePeriodMs =
+                        builder.dynamic ? Util.parseXsDuration(value) : C.TIME_UNSET;
+                return true;
+            case "@suggestedPresentationDelay":
+                builder.suggestedPresentationDelayMs =
+                        builder.dynamic ? Util.parseXsDuration(value) : C.TIME_UNSET;
+                return true;
+            case "@timeShiftBufferDepth":
+                if (!builder.dynamic || hasImplicitSegmentTemplate(builder.periods)) {
+                    // Implicit segment templates bake the depth into their segment index.
+                    return false;
+                }
+                builder.timeShiftBufferDepthMs = Util.parseXsDuration(value);
+                return true;
+            default:
+                return steps.get(1).name.startsWith("@") && !isModelAttribute(steps.get(1).name);
+        }
+    }
+
+    private boolean removeAttribute(ManifestBuilder builder, List<Step> steps) {
+        if (isSegmentAttributeSelector(steps)) {
+            return updateSegmentAttribute(builder, steps, /* value= */ null);
+        }
+        return steps.size() == 2
+                && isMpdStep(steps.get(0))
+                && steps.get(1).name.startsWith("@")
+                && !isModelAttribute(steps.get(1).name);
+    }
+
+    /** Returns whether the given MPD attribute is reflected in the manifest model. */
+    private static boolean isModelAttribute(String attribute) {
+        switch (attribute) {
+            case "@availabilityStartTime":
+            case "@type":
+            case "@publishTime":
+            case "@minBufferTime":
+            case "@mediaPresentationDuration":
+            case "@minimumUpdatePeriod":
+            case "@suggestedPresentationDelay":
+            case "@timeShiftBufferDepth":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Elements.
+
+    private boolean replaceElement(ManifestBuilder builder, List<Step> steps, Element replacement)
+            throws IOException, XmlPullParserException {
+        if (!isMpdStep(steps.get(0)) || steps.size() < 2) {
+            return false;
+        }
+        String name = steps.get(1).name;
+        if (steps.size() == 2 && "PatchLocation".equals(name)
+                && "PatchLocation".equals(replacement.getTagName())) {
+            builder.patchLocation = parsePatchLocation(replacement);
+            return builder.patchLocation != null;
+        } else if (steps.size() == 2 && "Period".equals(name)
+                && "Period".equals(replacement.getTagName())) {
+            int periodIndex = findPeriodIndex(builder.periods, steps.get(1));
+            if (periodIndex == C.INDEX_UNSET || !canChangePeriods(builder)) {
+                return false;
+            }
+            Pair<Period, Long> periodWithDurationMs = parsePeriod(builder, replacement);
+            Period period = periodWithDurationMs.first;
+            if (period.startMs == C.TIME_UNSET) {
+                return false;
+            }
+            builder.periods.set(periodIndex, period);
+            if (periodIndex == builder.periods.size() - 1) {
+                builder.durationMs = getEndTimeMs(period, periodWithDurationMs.second);
+            }
+            return true;
+        } else if (isSegmentTimelineSelector(steps)
+                && "SegmentTimeline".equals(replacement.getTagName())) {
+            return updateSegmentTimeline(builder, steps, replacement, /* replace= */ true);
+        }
+        return false;
+    }
+
+    private boolean addElements(ManifestBuilder builder, List<Step> steps, Element container)
+            throws IOException, XmlPullParserException {
+        if (!isMpdStep(steps.get(0))) {
+            return false;
+        }
+        if (steps.size() == 1) {
+            for (Node node = container.getFirstChild(); node != null; node = node.getNextSibling()) {
+                if (node.getNodeType() != Node.ELEMENT_NODE) {
+                    continue;
+                }
+                Element element = (Element) node;
+                if ("PatchLocation".equals(element.getTagName())) {
+                    builder.patchLocation = parsePatchLocation(element);
+                    if (builder.patchLocation == null) {
+                        return false;
+                    }
+                } else if ("Period".equals(element.getTagName())) {
+                    if (!appendPeriod(builder, element)) {
+                        return false;
+                    }
+                } else {
+                    return false;
+                }
+            }
+            return true;
+        } else if (steps.size() == 3 && "Period".equals(steps.get(1).name)
+                && "EventStream".equals(steps.get(2).name)) {
+            return appendEvents(builder, steps, container);
+        } else if (isSegmentTimelineSelector(steps)) {
+            return updateSegmentTimeline(builder, steps, container, /* replace= */ false);
+        }
+        return false;
+    }
+
+    private boolean removeElement(ManifestBuilder builder, List<Step> steps) {
+        if (!isMpdStep(steps.get(0)) || steps.size() < 2) {
+            return false;
+        }
+        if (isSegmentSelector(steps)) {
+            return removeSegmentElement(builder, steps);
+        }
+        String name = steps.get(1).name;
+        if (steps.size() == 2 && "PatchLocation".equals(name)) {
+            builder.patchLocation = null;
+            return true;
+        }
+        if (!"Period".equals(name)) {
+            return false;
+        }
+        int periodIndex = findPeriodIndex(builder.periods, steps.get(1));
+        if (periodIndex == C.INDEX_UNSET) {
+            return false;
+        }
+        Period period = builder.periods.get(periodIndex);
+        if (steps.size() == 2) {
+            // Removing the last period may change the duration of the manifest.
+            if (periodIndex == builder.periods.size() - 1 || !canChangePeriods(builder)) {
+                return false;
+            }
+            builder.periods.remove(periodIndex);
+            return true;
+        } else if (steps.size() == 3 && "AdaptationSet".equals(steps.get(2).name)) {
+            int adaptationSetIndex = findAdaptationSetIndex(period.adaptationSets, steps.get(2));
+            if (adaptationSetIndex == C.INDEX_UNSET) {
+                return false;
+            }
+            List<AdaptationSet> adaptationSets = new ArrayList<>(period.adaptationSets);
+            adaptationSets.remove(adaptationSetIndex);
+            builder.periods.set(periodIndex, copyPeriod(period, adaptationSets, period.eventStreams));
+            return true;
+        } else if (steps.size() == 3 && "EventStream".equals(steps.get(2).name)) {
+            int eventStreamIndex = findEventStreamIndex(period.eventStreams, steps.get(2));
+            if (eventStreamIndex == C.INDEX_UNSET) {
+                return false;
+            }
+            List<EventStream> eventStreams = new ArrayList<>(period.eventStreams);
+            eventStreams.remove(eventStreamIndex);
+            builder.periods.set(periodIndex, copyPeriod(period, period.adaptationSets, eventStreams));
+            return true;
+        }
+        return false;
+    }
+
+    // Periods and event streams.
+
+    private boolean appendPeriod(ManifestBuilder builder, Element element)
+            throws IOException, XmlPullParserException {
+        if (!canChangePeriods(builder)) {
+            return false;
+        }
+        Pair<Period, Long> periodWithDurationMs = parsePeriod(builder, element);
+        Period period = periodWithDurationMs.first;
+        Period lastPeriod = builder.periods.get(builder.periods.size() - 1);
+        if (period.startMs == C.TIME_UNSET || period.startMs <= lastPeriod.startMs) {
+            // Early access or out of order periods need the full manifest to be resolved.
+            return false;
+        }
+        builder.periods.add(period);
+        builder.durationMs = getEndTimeMs(period, periodWithDurationMs.second);
+        return true;
+    }
+
+    private boolean appendEvents(ManifestBuilder builder, List<Step> steps, Element container)
+            throws IOException, XmlPullParserException {
+        int periodIndex = findPeriodIndex(builder.periods, steps.get(1));
+        if (periodIndex == C.INDEX_UNSET) {
+            return false;
+        }
+        Period period = builder.periods.get(periodIndex);
+        int eventStreamIndex = findEventStreamIndex(period.eventStreams, steps.get(2));
+        if (eventStreamIndex == C.INDEX_UNSET) {
+            return false;
+        }
+        EventStream eventStream = period.eventStreams.get(eventStreamIndex);
+        long[] presentationTimesUs = eventStream.presentationTimesUs;
+        EventMessage[] events = eventStream.events;
+        for (Node node = container.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+            if (!"Event".equals(((Element) node).getTagName())) {
+                return false;
+            }
+            Pair<Long, EventMessage> event =
+                    manifestParser.parseEvent(
+                            newPullParser((Element) node),
+                            eventStream.schemeIdUri,
+                            eventStream.value,
+                            eventStream.timescale,
+                            scratchOutputStream);
+            presentationTimesUs = Arrays.copyOf(presentationTimesUs, presentationTimesUs.length + 1);
+            presentationTimesUs[presentationTimesUs.length - 1] = event.first;
+            events = Arrays.copyOf(events, events.length + 1);
+            events[events.length - 1] = event.second;
+        }
+        List<EventStream> eventStreams = new ArrayList<>(period.eventStreams);
+        eventStreams.set(
+                eventStreamIndex,
+                manifestParser.buildEventStream(
+                        eventStream.schemeIdUri,
+                        eventStream.value,
+                        eventStream.timescale,
+                        presentationTimesUs,
+                        events));
+        builder.periods.set(periodIndex, copyPeriod(period, period.adaptationSets, eventStreams));
+        return true;
+    }
+
+    private Pair<Period, Long> parsePeriod(ManifestBuilder builder, Element element)
+            throws IOException, XmlPullParserException {
+        @Nullable String baseUrl = manifestParser.getManifestBaseUrl();
+        if (baseUrl == null) {
+            throw new ParserException("Manifest base URL unknown");
+        }
+        return manifestParser.parsePeriod(
+                newPullParser(element),
+                baseUrl,
+                /* defaultStartMs= */ C.TIME_UNSET,
+                manifestParser.getManifestBaseUrlAvailabilityTimeOffsetUs(),
+                builder.availabilityStartTimeMs,
+                builder.timeShiftBufferDepthMs);
+    }
+
+    @Nullable
+    private PatchLocation parsePatchLocation(Element element) {
+        @Nullable String baseUrl = manifestParser.getManifestBaseUrl();
+        String url = element.getTextContent();
+        if (baseUrl == null || url == null) {
+            return null;
+        }
+        String ttl = element.getAttribute("ttl");
+        return new PatchLocation(
+                ttl.isEmpty() ? 0 : Long.parseLong(ttl), UriUtil.resolve(baseUrl, url.trim()));
+    }
+
+    private Period copyPeriod(
+            Period period, List<AdaptationSet> adaptationSets, List<EventStream> eventStreams) {
+        return manifestParser.buildPeriod(
+                period.id, period.startMs, adaptationSets, eventStreams, period.assetIdentifier);
+    }
+
+    /**
+     * Returns whether periods can be added or removed without changing how the duration of the
+     * manifest is derived.
+     */
+    private static boolean canChangePeriods(ManifestBuilder builder) {
+        return builder.dynamic
+                && builder.durationMs == C.TIME_UNSET
+                && builder.earlyAccessPeriods.isEmpty();
+    }
+
+    private static long getEndTimeMs(Period period, long periodDurationMs) {
+        return periodDurationMs == C.TIME_UNSET ? C.TIME_UNSET : period.startMs + periodDurationMs;
+    }
+
+    // Segment timelines.
+
+    /**
+     * Returns the number of steps of the selector up to the {@code SegmentTimeline} step, if the
+     * selector starts with the steps of a {@code SegmentTimeline} of a {@code SegmentTemplate}, or
+     * 0 otherwise.
+     */
+    private static int getSegmentTimelineStepCount(List<Step> steps) {
+        int count = steps.size() > 3 && "Representation".equals(steps.get(3).name) ? 6 : 5;
+        return steps.size() >= count
+                        && "Period".equals(steps.get(1).name)
+                        && "AdaptationSet".equals(steps.get(2).name)
+                        && "SegmentTemplate".equals(steps.get(count - 2).name)
+                        && "SegmentTimeline".equals(steps.get(count - 1).name)
+                ? count
+                : 0;
+    }
+
+    private static boolean isSegmentTimelineSelector(List<Step> steps) {
+        int count = getSegmentTimelineStepCount(steps);
+        return count != 0 && steps.size() == count;
+    }
+
+    private static boolean isSegmentSelector(List<Step> steps) {
+        int count = getSegmentTimelineStepCount(steps);
+        return count != 0 && steps.size() == count + 1 && "S".equals(steps.get(count).name);
+    }
+
+    private static boolean isSegmentAttributeSelector(List<Step> steps) {
+        int count = getSegmentTimelineStepCount(steps);
+        return count != 0
+                && steps.size() == count + 2
+                && "S".equals(steps.get(count).name)
+                && steps.get(count + 1).name.startsWith("@");
+    }
+
+    private boolean updateSegmentTimeline(
+            ManifestBuilder builder, List<Step> steps, Element element, boolean replace) {
+        @Nullable SegmentTimelineSelection selection = selectSegmentTimeline(builder, steps);
+        if (selection == null) {
+            return false;
+        }
+        // Segments that are already in the timeline are shared rather than copied.
+        SegmentTimelineList segmentTimelineList = selection.segmentTimelineList;
+        @Nullable List<SegmentTimelineElement> newTimeline =
+                replace
+                        ? appendSegmentTimelineElements(
+                                SegmentTimelineList.Builder.reusing(segmentTimelineList),
+                                /* startTime= */ 0,
+                                element)
+                        : appendSegmentTimelineElements(
+                                SegmentTimelineList.Builder.buildUpon(segmentTimelineList),
+                                getEndTime(segmentTimelineList),
+                                element);
+        if (newTimeline == null) {
+            return false;
+        }
+        setSegmentTimeline(builder, selection, newTimeline);
+        return true;
+    }
+
+    private boolean removeSegmentElement(ManifestBuilder builder, List<Step> steps) {
+        @Nullable SegmentTimelineSelection selection = selectSegmentTimeline(builder, steps);
+        if (selection == null) {
+            return false;
+        }
+        SegmentTimelineList timeline = selection.segmentTimelineList;
+        // Removing any other element would move the elements after it that don't define their start
+        // time, which can't be told from the timeline. The element that becomes the first one must
+        // define its start time, so the remaining segments keep their start times.
+        if (findSegmentElementIndex(timeline, steps.get(steps.size() - 1)) != 0) {
+            return false;
+        }
+        setSegmentTimeline(
+                builder,
+                selection,
+                timeline.subList(timeline.getElementSegmentCount(0), timeline.size()));
+        return true;
+    }
+
+    /**
+     * Sets or removes an attribute of an {@code S} element.
+     *
+     * @param builder The builder of the manifest.
+     * @param steps The steps of the selector of the attribute.
+     * @param value The value of the attribute, or null to remove the attribute.
+     * @return Whether the attribute was updated.
+     */
+    private boolean updateSegmentAttribute(
+            ManifestBuilder builder, List<Step> steps, @Nullable String value) {
+        @Nullable SegmentTimelineSelection selection = selectSegmentTimeline(builder, steps);
+        if (selection == null) {
+            return false;
+        }
+        SegmentTimelineList timeline = selection.segmentTimelineList;
+        int elementIndex = findSegmentElementIndex(timeline, steps.get(steps.size() - 2));
+        if (elementIndex == C.INDEX_UNSET) {
+            return false;
+        }
+        int elementFirstIndex = timeline.getElementFirstIndex(elementIndex);
+        switch (steps.get(steps.size() - 1).name) {
+            case "@r":
+                long repeatCount = value == null ? 0 : Long.parseLong(value);
+                // Changing the repeat count of any other element would move the elements after it
+                // that don't define their start time. Open ended repeats depend on the duration of
+                // the period.
+                if (elementIndex != timeline.getElementCount() - 1
+                        || repeatCount < 0
+                        || repeatCount >= Integer.MAX_VALUE - elementFirstIndex) {
+                    return false;
+                }
+                setSegmentTimeline(
+                        builder,
+                        selection,
+                        setLastElementSegmentCount(
+                                timeline, elementFirstIndex, (int) repeatCount + 1));
+                return true;
+            case "@t":
+                // Patches give the element that becomes the first one its start time after the
+                // elements before it are removed. Moving an element isn't supported.
+                return value != null
+                        && Long.parseLong(value) == timeline.getStartTime(elementFirstIndex);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the {@code SegmentTimeline} selected by the steps of a selector up to the {@code
+     * SegmentTimeline} step, or null if the selected timeline can't be updated on its own.
+     */
+    @Nullable
+    private static SegmentTimelineSelection selectSegmentTimeline(
+            ManifestBuilder builder, List<Step> steps) {
+        int periodIndex = findPeriodIndex(builder.periods, steps.get(1));
+        if (periodIndex == C.INDEX_UNSET) {
+            return null;
+        }
+        Period period = builder.periods.get(periodIndex);
+        int adaptationSetIndex = findAdaptationSetIndex(period.adaptationSets, steps.get(2));
+        if (adaptationSetIndex == C.INDEX_UNSET) {
+            return null;
+        }
+        AdaptationSet adaptationSet = period.adaptationSets.get(adaptationSetIndex);
+        List<Representation> representations = adaptationSet.representations;
+        @Nullable Representation targetRepresentation = null;
+        if ("Representation".equals(steps.get(3).name)) {
+            int representationIndex = findRepresentationIndex(representations, steps.get(3));
+            if (representationIndex == C.INDEX_UNSET) {
+                return null;
+            }
+            targetRepresentation = representations.get(representationIndex);
+        }
+
+        // Representations inheriting a timeline share the parsed list, so the timeline of the
+        // selected element is identified by the list instance.
+        @Nullable List<SegmentTimelineElement> timeline = null;
+        if (targetRepresentation != null) {
+            @Nullable SegmentTemplate segmentTemplate = getSegmentTemplate(targetRepresentation);
+            if (segmentTemplate == null) {
+                return null;
+            }
+            timeline = segmentTemplate.segmentTimeline;
+            // The timeline must be defined on the representation itself rather than inherited.
+            for (int i = 0; i < representations.size(); i++) {
+                Representation representation = representations.get(i);
+                @Nullable SegmentTemplate otherSegmentTemplate = getSegmentTemplate(representation);
+                if (representation != targetRepresentation && otherSegmentTemplate != null
+                        && otherSegmentTemplate.segmentTimeline == timeline) {
+                    return null;
+                }
+            }
+        } else {
+            for (int i = 0; i < representations.size(); i++) {
+                @Nullable SegmentTemplate segmentTemplate =
+                        getSegmentTemplate(representations.get(i));
+                if (segmentTemplate == null
+                        || (timeline != null && segmentTemplate.segmentTimeline != timeline)) {
+                    return null;
+                }
+                timeline = segmentTemplate.segmentTimeline;
+            }
+        }
+        return timeline == null
+                ? null
+                : new SegmentTimelineSelection(periodIndex, adaptationSetIndex, timeline);
+    }
+
+    /** Replaces a selected timeline in the representations that use it. */
+    private void setSegmentTimeline(
+            ManifestBuilder builder,
+            SegmentTimelineSelection selection,
+            List<SegmentTimelineElement> newTimeline) {
+        Period period = builder.periods.get(selection.periodIndex);
+        AdaptationSet adaptationSet = period.adaptationSets.get(selection.adaptationSetIndex);
+        List<Representation> representations = adaptationSet.representations;
+        IdentityHashMap<SegmentTemplate, SegmentTemplate> newSegmentTemplates =
+                new IdentityHashMap<>();
+        List<Representation> newRepresentations = new ArrayList<>(representations.size());
+        for (int i = 0; i < representations.size(); i++) {
+            Representation representation = representations.get(i);
+            @Nullable SegmentTemplate segmentTemplate = getSegmentTemplate(representation);
+            if (segmentTemplate == null || segmentTemplate.segmentTimeline != selection.timeline) {
+                newRepresentations.add(representation);
+                continue;
+            }
+            @Nullable SegmentTemplate newSegmentTemplate = newSegmentTemplates.get(segmentTemplate);
+            if (newSegmentTemplate == null) {
+                newSegmentTemplate = segmentTemplate.copyWithSegmentTimeline(newTimeline);
+                newSegmentTemplates.put(segmentTemplate, newSegmentTemplate);
+            }
+            newRepresentations.add(
+                    Representation.newInstance(
+                            representation.revisionId,
+                            representation.format,
+                            representation.baseUrl,
+                            newSegmentTemplate,
+                            representation.inbandEventStreams));
+        }
+
+        List<AdaptationSet> adaptationSets = new ArrayList<>(period.adaptationSets);
+        adaptationSets.set(
+                selection.adaptationSetIndex,
+                manifestParser.buildAdaptationSet(
+                        adaptationSet.id,
+                        adaptationSet.type,
+                        newRepresentations,
+                        adaptationSet.accessibilityDescriptors,
+                        adaptationSet.essentialProperties,
+                        adaptationSet.supplementalProperties));
+        builder.periods.set(
+                selection.periodIndex, copyPeriod(period, adaptationSets, period.eventStreams));
+    }
+
+    /**
+     * Appends the segments defined by the {@code S} children of an element to a timeline, following
+     * the rules of {@link DashManifestParser#parseSegmentTimeline}.
+     *
+     * @param timeline The builder of the timeline.
+     * @param startTime The start time of the first segment, if it doesn't define one.
+     * @param element The element.
+     * @return The timeline, or null if the element contains children that can't be resolved without
+     *     the enclosing period.
+     */
+    @Nullable
+    private static SegmentTimelineList appendSegmentTimelineElements(
+            SegmentTimelineList.Builder timeline, long startTime, Element element) {
+        for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+            Element segment = (Element) node;
+            if (!"S".equals(segment.getTagName())) {
+                return null;
+            }
+            startTime = parseLongAttribute(segment, "t", startTime);
+            long duration = parseLongAttribute(segment, "d", C.TIME_UNSET);
+            long repeatCount = parseLongAttribute(segment, "r", 0);
+            if (duration == C.TIME_UNSET || repeatCount < 0) {
+                // Open ended repeats depend on the duration of the period.
+                return null;
+            }
+            if (repeatCount >= Integer.MAX_VALUE - timeline.size()) {
+                return null;
+            }
+            timeline.addElement(startTime, duration, (int) repeatCount + 1);
+            startTime += (repeatCount + 1) * duration;
+        }
+        return timeline.build();
+    }
+
+    private static long getEndTime(SegmentTimelineList timeline) {
+        int lastIndex = timeline.size() - 1;
+        return lastIndex < 0 ? 0 : timeline.getStartTime(lastIndex) + timeline.getDuration(lastIndex);
+    }
+
+    /** Returns a timeline whose last element, starting at the given index, has the given size. */
+    private static SegmentTimelineList setLastElementSegmentCount(
+            SegmentTimelineList timeline, int elementFirstIndex, int segmentCount) {
+        int size = elementFirstIndex + segmentCount;
+        if (size <= timeline.size()) {
+            return timeline.subList(0, size);
+        }
+        SegmentTimelineList.Builder builder = SegmentTimelineList.Builder.buildUpon(timeline);
+        long duration = timeline.getDuration(elementFirstIndex);
+        long startTime = getEndTime(timeline);
+        for (int i = timeline.size(); i < size; i++) {
+            builder.add(startTime, duration);
+            startTime += duration;
+        }
+        return builder.build();
+    }
+
+    private static int findSegmentElementIndex(SegmentTimelineList timeline, Step step) {
+        if (step.attributeName == null) {
+            return getPositionalIndex(timeline.getElementCount(), step);
+        }
+        if (!"t".equals(step.attributeName) || step.attributeValue == null) {
+            return C.INDEX_UNSET;
+        }
+        long startTime = Long.parseLong(step.attributeValue);
+        for (int i = 0; i < timeline.getElementCount(); i++) {
+            if (timeline.getStartTime(timeline.getElementFirstIndex(i)) == startTime) {
+                return i;
+            }
+        }
+        return C.INDEX_UNSET;
+    }
+
+    @Nullable
+    private static SegmentTemplate getSegmentTemplate(Representation representation) {
+        if (!(representation instanceof MultiSegmentRepresentation)) {
+            return null;
+        }
+        MultiSegmentBase segmentBase = ((MultiSegmentRepresentation) representation).segmentBase;
+        return segmentBase instanceof SegmentTemplate ? (SegmentTemplate) segmentBase : null;
+    }
+
+    private static boolean hasImplicitSegmentTemplate(List<Period> periods) {
+        for (int i = 0; i < periods.size(); i++) {
+            List<AdaptationSet> adaptationSets = periods.get(i).adaptationSets;
+            for (int j = 0; j < adaptationSets.size(); j++) {
+                List<Representation> representations = adaptationSets.get(j).representations;
+                for (int k = 0; k < representations.size(); k++) {
+                    @Nullable SegmentTemplate segmentTemplate =
+                            getSegmentTemplate(representations.get(k));
+                    if (segmentTemplate != null && segmentTemplate.segmentTimeline == null) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // Selectors.
+
+    /** A location step of a patch selector, e.g. {@code Period[@id='1']} or {@code @publishTime}. */
+    private static final class Step {
+
+        public final String name;
+        @Nullable public final String attributeName;
+        @Nullable public final String attributeValue;
+        /** The 1-based position given by the predicate, or 0 if there's no positional predicate. */
+        public final int position;
+
+        public Step(
+                String name,
+                @Nullable String attributeName,
+                @Nullable String attributeValue,
+                int position) {
+            this.name = name;
+            this.attributeName = attributeName;
+            this.attributeValue = attributeValue;
+            this.position = position;
+        }
+    }
+
+    /**
+     * Parses an absolute selector consisting of named steps with at most one {@code [n]} or {@code
+     * [@name='value']} predicate each, optionally followed by an attribute step.
+     *
+     * @return The steps of the selector, or null if the selector uses other XPath features.
+     */
+    @Nullable
+    private static List<Step> parseSelector(String selector) {
+        if (!selector.startsWith("/")) {
+            return null;
+        }
+        List<Step> steps = new ArrayList<>();
+        int position = 1;
+        while (position <= selector.length()) {
+            int end = selector.indexOf('/', position);
+            if (end == -1) {
+                end = selector.length();
+            }
+            // Slashes inside predicate values are not supported.
+            String step = selector.substring(position, end);
+            int predicateStart = step.indexOf('[');
+            if (predicateStart == -1) {
+                if (step.isEmpty() || (step.startsWith("@") && end != selector.length())) {
+                    return null;
+                }
+                steps.add(new Step(step, null, null, 0));
+            } else {
+                if (!step.endsWith("]") || step.indexOf('[', predicateStart + 1) != -1) {
+                    return null;
+                }
+                String name = step.substring(0, predicateStart);
+                String predicate = step.substring(predicateStart + 1, step.length() - 1).trim();
+                if (predicate.startsWith("@")) {
+                    int equalsIndex = predicate.indexOf('=');
+                    if (equalsIndex == -1) {
+                        return null;
+                    }
+                    String attributeName = predicate.substring(1, equalsIndex).trim();
+                    String attributeValue = predicate.substring(equalsIndex + 1).trim();
+                    if (attributeValue.length() < 2
+                            || (attributeValue.charAt(0) != '\''
+                                    && attributeValue.charAt(0) != '"')
+                            || attributeValue.charAt(attributeValue.length() - 1)
+                                    != attributeValue.charAt(0)) {
+                        return null;
+                    }
+                    steps.add(
+                            new Step(
+                                    name,
+                                    attributeName,
+                                    attributeValue.substring(1, attributeValue.length() - 1),
+                                    0));
+                } else {
+                    int index;
+                    try {
+                        index = Integer.parseInt(predicate);
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                    if (index < 1) {
+                        return null;
+                    }
+                    steps.add(new Step(name, null, null, index));
+                }
+            }
+            position = end + 1;
+        }
+        return steps.isEmpty() ? null : steps;
+    }
+
+    private static boolean isMpdStep(Step step) {
+        return "MPD".equals(step.name) && step.attributeName == null && step.position == 0;
+    }
+
+    private static int findPeriodIndex(List<Period> periods, Step step) {
+        if (step.attributeName == null) {
+            return getPositionalIndex(periods.size(), step);
+        }
+        if (!"id".equals(step.attributeName)) {
+            return C.INDEX_UNSET;
+        }
+        for (int i = 0; i < periods.size(); i++) {
+            if (Util.areEqual(periods.get(i).id, step.attributeValue)) {
+                return i;
+            }
+        }
+        return C.INDEX_UNSET;
+    }
+
+    private static int findAdaptationSetIndex(List<AdaptationSet> adaptationSets, Step step) {
+        if (step.attributeName == null) {
+            return getPositionalIndex(adaptationSets.size(), step);
+        }
+        if (!"id".equals(step.attributeName)) {
+            return C.INDEX_UNSET;
+        }
+        for (int i = 0; i < adaptationSets.size(); i++) {
+            if (String.valueOf(adaptationSets.get(i).id).equals(step.attributeValue)) {
+                return i;
+            }
+        }
+        return C.INDEX_UNSET;
+    }
+
+    private static int findRepresentationIndex(List<Representation> representations, Step step) {
+        if (step.attributeName == null) {
+            return getPositionalIndex(representations.size(), step);
+        }
+        if (!"id".equals(step.attributeName)) {
+            return C.INDEX_UNSET;
+        }
+        for (int i = 0; i < representations.size(); i++) {
+            if (Util.areEqual(representations.get(i).format.id, step.attributeValue)) {
+                return i;
+            }
+        }
+        return C.INDEX_UNSET;
+    }
+
+    private static int findEventStreamIndex(List<EventStream> eventStreams, Step step) {
+        if (step.attributeName == null) {
+            return getPositionalIndex(eventStreams.size(), step);
+        }
+        for (int i = 0; i < eventStreams.size(); i++) {
+            EventStream eventStream = eventStreams.get(i);
+            if (("schemeIdUri".equals(step.attributeName)
+                    && eventStream.schemeIdUri.equals(step.attributeValue))
+                    || ("value".equals(step.attributeName)
+                    && eventStream.value.equals(step.attributeValue))) {
+                return i;
+            }
+        }
+        return C.INDEX_UNSET;
+    }
+
+    private static int getPositionalIndex(int count, Step step) {
+        int index = step.position == 0 ? 0 : step.position - 1;
+        return index < count ? index : C.INDEX_UNSET;
+    }
+
+    // DOM helpers.
+
+    @Nullable
+    private static Element getFirstChildElement(Element element) {
+        for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                return (Element) node;
+            }
+        }
+        return null;
+    }
+
+    private static long parseLongAttribute(Element element, String name, long defaultValue) {
+        String value = element.getAttribute(name);
+        return value.isEmpty() ? defaultValue : Long.parseLong(value);
+    }
+
+    /** Returns a parser positioned on the start tag of a serialized copy of the element. */
+    private XmlPullParser newPullParser(Element element) throws XmlPullParserException, IOException {
+        serializationBuilder.setLength(0);
+        serialize(element, serializationBuilder);
+        XmlPullParser xpp = xmlParserFactory.newPullParser();
+        xpp.setInput(new StringReader(serializationBuilder.toString()));
+        xpp.next();
+        return xpp;
+    }
+
+    private static void serialize(Element element, StringBuilder output) {
+        output.append('<').append(element.getTagName());
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node attribute = attributes.item(i);
+            output.append(' ').append(attribute.getNodeName()).append("=\"");
+            appendEscaped(attribute.getNodeValue(), output);
+            output.append('"');
+        }
+        output.append('>');
+        NodeList children = element.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node child = children.item(i);
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                serialize((Element) child, output);
+            } else if (child.getNodeType() == Node.TEXT_NODE
+                    || child.getNodeType() == Node.CDATA_SECTION_NODE) {
+                appendEscaped(child.getNodeValue(), output);
+            }
+        }
+        output.append("</").append(element.getTagName()).append('>');
+    }
+
+    private static void appendEscaped(String value, StringBuilder output) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&':
+                    output.append("&amp;");
+                    break;
+                case '<':
+                    output.append("&lt;");
+                    break;
+                case '>':
+                    output.append("&gt;");
+                    break;
+                case '"':
+                    output.append("&quot;");
+                    break;
+                default:
+                    output.append(c);
+            }
+        }
+    }
+
+    /** A {@code SegmentTimeline} selected by a patch selector. */
+    private static final class SegmentTimelineSelection {
+
+        public final int periodIndex;
+        public final int adaptationSetIndex;
+        /** The timeline, which identifies the representations that use it. */
+        public final List<SegmentTimelineElement> timeline;
+        public final SegmentTimelineList segmentTimelineList;
+
+        public SegmentTimelineSelection(
+                int periodIndex, int adaptationSetIndex, List<SegmentTimelineElement> timeline) {
+            this.periodIndex = periodIndex;
+            this.adaptationSetIndex = adaptationSetIndex;
+            this.timeline = timeline;
+            segmentTimelineList = SegmentTimelineList.copyOf(timeline);
+        }
+    }
+
+    /** Mutable copy of the top level fields of a {@link DashManifest}. */
+    private static final class ManifestBuilder {
+
+        public final long availabilityStartTimeMs;
+        public final boolean dynamic;
+        @Nullable public final ProgramInformation programInformation;
+        @Nullable public final UtcTimingElement utcTiming;
+        @Nullable public final ServiceDescriptionElement serviceDescription;
+        @Nullable public final Uri location;
+        public final List<Period> periods;
+        public final List<Period> earlyAccessPeriods;
+
+        public long durationMs;
+        public long minBufferTimeMs;
+        public long minUpdatePeriodMs;
+        public long timeShiftBufferDepthMs;
+        public long suggestedPresentationDelayMs;
+        public long publishTimeMs;
+        @Nullable public PatchLocation patchLocation;
+
+        public ManifestBuilder(DashManifest manifest) {
+            availabilityStartTimeMs = manifest.availabilityStartTimeMs;
+            dynamic = manifest.dynamic;
+            programInformation = manifest.programInformation;
+            utcTiming = manifest.utcTiming;
+            serviceDescription = manifest.serviceDescription;
+            location = manifest.location;
+            periods = new ArrayList<>(manifest.getPeriodCount());
+            for (int i = 0; i < manifest.getPeriodCount(); i++) {
+                periods.add(manifest.getPeriod(i));
+            }
+            earlyAccessPeriods = manifest.getEarlyAccessPeriods();
+            durationMs = manifest.durationMs;
+            minBufferTimeMs = manifest.minBufferTimeMs;
+            minUpdatePeriodMs = manifest.minUpdatePeriodMs;
+            timeShiftBufferDepthMs = manifest.timeShiftBufferDepthMs;
+            suggestedPresentationDelayMs = manifest.suggestedPresentationDelayMs;
+            publishTimeMs = manifest.publishTimeMs;
+            patchLocation = manifest.patchLocation;
+        }
+
+        public DashManifest build(DashManifestParser manifestParser) {
+            DashManifest manifest =
+                    manifestParser.buildMediaPresentationDescription(
+                            availabilityStartTimeMs,
+                            durationMs,
+                            minBufferTimeMs,
+                            dynamic,
+                            minUpdatePeriodMs,
+                            timeShiftBufferDepthMs,
+                            suggestedPresentationDelayMs,
+                            publishTimeMs,
+                            programInformation,
+                            utcTiming,
+                            serviceDescription,
+                            location,
+                            patchLocation,
+                            periods);
+            manifest.earlyAccessPeriods = earlyAccessPeriods;
+            return manifest;
+        }
+    }
+}
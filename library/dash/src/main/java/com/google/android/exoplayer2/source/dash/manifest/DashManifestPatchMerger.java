@@ -16,19 +16,36 @@ import org.xml.sax.helpers.DefaultHandler;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
+/**
+ * Parses manifest patches and merges them into the last loaded manifest.
+ *
+ * <p>Patches are applied to the in-memory {@link DashManifest} by a {@link
+ * DashManifestPatchApplier} whenever possible. The document of the manifest is only brought up to
+ * date and converted back into a manifest for patches the applier doesn't support.
+ */
 public class DashManifestPatchMerger extends DefaultHandler
         implements ParsingLoadable.Parser<DashManifest> {
 
     private static final String TAG = "MpdPatchMerger";
+    /**
+     * The maximum number of patches that are applied to the manifest but not yet to the document.
+     */
+    private static final int MAX_PENDING_PATCH_COUNT = 32;
+
     private final DashManifestPatchParser parser;
     private final DocumentBuilder documentBuilder;
+    private final List<DashManifestPatch> pendingPatches;
+    @Nullable private DashManifestPatchApplier patchApplier;
     @Nullable private Document document;
     @Nullable private String manifestString;
+    @Nullable private DashManifest manifest;
 
     public DashManifestPatchMerger() {
         this(new DashManifestPatchParser());
@@ -36,6 +53,7 @@ public class DashManifestPatchMerger extends DefaultHandler
 
     public DashManifestPatchMerger(DashManifestPatchParser parser) {
         this.parser = parser;
+        pendingPatches = new ArrayList<>();
         try {
             DocumentBuilderFactory builder = DocumentBuilderFactory.newInstance();
             documentBuilder = builder.newDocumentBuilder();
@@ -44,7 +62,9 @@ public class DashManifestPatchMerger extends DefaultHandler
         }
     }
 
+    @Nullable
     public Document getDocument() {
+        applyPendingPatches();
         return document;
     }
 
@@ -53,23 +73,82 @@ public class DashManifestPatchMerger extends DefaultHandler
             return;
         }
         this.manifestString = manifestString;
+        manifest = null;
+        pendingPatches.clear();
         InputStream stream = new ByteArrayInputStream(manifestString.getBytes());
         document = documentBuilder.parse(stream);
     }
 
+    /**
+     * Sets the manifest to which subsequent patches are applied.
+     *
+     * <p>The manifest is only taken into account if the manifest string of {@code manifestParser}
+     * changed since the last call, i.e. if a full manifest was loaded. Otherwise patches continue to
+     * be applied to the result of the previous patch.
+     *
+     * @param manifest The manifest parsed by {@code manifestParser}.
+     * @param manifestParser The parser of the full manifest.
+     */
+    public void setManifest(DashManifest manifest, DashManifestParser manifestParser)
+            throws IOException, SAXException {
+        setManifestString(manifestParser.getManifestString());
+        if (this.manifest == null) {
+            this.manifest = manifest;
+        }
+        if (patchApplier == null || patchApplier.manifestParser != manifestParser) {
+            patchApplier = new DashManifestPatchApplier(manifestParser);
+        }
+    }
+
     @Override
     public DashManifest parse(Uri uri, InputStream inputStream) throws IOException {
         String manifestPatchString = DashUtil.inputStreamToString(inputStream, "UTF-8");
 
         DashManifestPatch patch = parser.parse(manifestPatchString);
 
-        if (!patch.applyPatch(document)) {
+        if (manifest != null && patchApplier != null) {
+            @Nullable DashManifest patchedManifest = patchApplier.apply(manifest, patch);
+            if (patchedManifest != null) {
+                Log.d(TAG, "Patch applied to manifest, operation count: " + patch.operations.size());
+                manifest = patchedManifest;
+                pendingPatches.add(patch);
+                if (pendingPatches.size() >= MAX_PENDING_PATCH_COUNT) {
+                    applyPendingPatches();
+                }
+                return patchedManifest;
+            }
+        }
+
+        if (!applyPendingPatches() || !patch.applyPatch(document)) {
             Log.d(TAG, "Failed to apply manifest patch: " + manifestPatchString);
             throw new ParserException("Failed to apply manifest patch");
         }
 
         Log.d(TAG, "Patch success, operation count: " + patch.operations.size());
-        return DocumentToManifestConverter.convert(document, uri.toString());
+        manifest = DocumentToManifestConverter.convert(document, uri.toString());
+        return manifest;
+    }
+
+    /**
+     * Applies the patches that were only applied to the manifest to the document.
+     *
+     * @return Whether the document is up to date. If false, the document is discarded and patches
+     *     can only be applied to the manifest until a new manifest string is set.
+     */
+    private boolean applyPendingPatches() {
+        if (document == null) {
+            return false;
+        }
+        for (int i = 0; i < pendingPatches.size(); i++) {
+            if (!pendingPatches.get(i).applyPatch(document)) {
+                Log.w(TAG, "Failed to apply pending manifest patch to document");
+                document = null;
+                pendingPatches.clear();
+                return false;
+            }
+        }
+        pendingPatches.clear();
+        return true;
     }
 
 }
@@ -143,8 +143,9 @@ public class DashManifestPatchParser {
     }
 
     public boolean isAttributeOperation(String path) {
+        // Only the last step selects an attribute, predicates like [@id='1'] don't.
         int index = path.lastIndexOf('/');
-        return path.indexOf('@', index + 1) > 0;
+        return path.startsWith("@", index + 1);
     }
 
     private DashManifestPatch.Operation parseReplaceOperation(XmlPullParser xpp) {
@@ -121,9 +121,9 @@ public abstract class SegmentBase {
 
     /* package */ final long startNumber;
     /* package */ final long duration;
-    @Nullable /* package */ final List<SegmentTimelineElement> segmentTimeline;
-    private final long timeShiftBufferDepthUs;
-    private final long periodStartUnixTimeUs;
+    @Nullable /* package */ final SegmentTimelineList segmentTimeline;
+    /* package */ final long timeShiftBufferDepthUs;
+    /* package */ final long periodStartUnixTimeUs;
 
     /**
      * Offset to the current realtime at which segments become available, in microseconds, or {@link
@@ -166,7 +166,8 @@ public abstract class SegmentBase {
       super(initialization, timescale, presentationTimeOffset);
       this.startNumber = startNumber;
       this.duration = duration;
-      this.segmentTimeline = segmentTimeline;
+      this.segmentTimeline =
+          segmentTimeline != null ? SegmentTimelineList.copyOf(segmentTimeline) : null;
       this.availabilityTimeOffsetUs = availabilityTimeOffsetUs;
       this.timeShiftBufferDepthUs = timeShiftBufferDepthUs;
       this.periodStartUnixTimeUs = periodStartUnixTimeUs;
@@ -193,28 +194,27 @@ public abstract class SegmentBase {
                 ? segmentNum
                 : min(segmentNum, firstSegmentNum + segmentCount - 1);
       } else {
-        // The index cannot be unbounded. Identify the segment using binary search.
-        long lowIndex = firstSegmentNum;
-        long highIndex = firstSegmentNum + segmentCount - 1;
-        while (lowIndex <= highIndex) {
-          long midIndex = lowIndex + (highIndex - lowIndex) / 2;
-          long midTimeUs = getSegmentTimeUs(midIndex);
-          if (midTimeUs < timeUs) {
-            lowIndex = midIndex + 1;
-          } else if (midTimeUs > timeUs) {
-            highIndex = midIndex - 1;
-          } else {
-            return midIndex;
-          }
+        // The index cannot be unbounded. Identify the segment using binary search on the timeline,
+        // then correct for rounding when converting between the timescale and microseconds.
+        long time =
+            Util.scaleLargeTimestamp(timeUs, timescale, C.MICROS_PER_SECOND)
+                + presentationTimeOffset;
+        long lastSegmentNum = firstSegmentNum + segmentCount - 1;
+        long segmentNum = min(startNumber + segmentTimeline.getFloorIndex(time), lastSegmentNum);
+        while (segmentNum < lastSegmentNum && getSegmentTimeUs(segmentNum + 1) <= timeUs) {
+          segmentNum++;
         }
-        return lowIndex == firstSegmentNum ? lowIndex : highIndex;
+        while (segmentNum >= firstSegmentNum && getSegmentTimeUs(segmentNum) > timeUs) {
+          segmentNum--;
+        }
+        return max(segmentNum, firstSegmentNum);
       }
     }
 
     /** See {@link DashSegmentIndex#getDurationUs(long, long)}. */
     public final long getSegmentDurationUs(long sequenceNumber, long periodDurationUs) {
       if (segmentTimeline != null) {
-        long duration = segmentTimeline.get((int) (sequenceNumber - startNumber)).duration;
+        long duration = segmentTimeline.getDuration((int) (sequenceNumber - startNumber));
         return (duration * C.MICROS_PER_SECOND) / timescale;
       } else {
         int segmentCount = getSegmentCount(periodDurationUs);
@@ -230,7 +230,7 @@ public abstract class SegmentBase {
       long unscaledSegmentTime;
       if (segmentTimeline != null) {
         unscaledSegmentTime =
-            segmentTimeline.get((int) (sequenceNumber - startNumber)).startTime
+            segmentTimeline.getStartTime((int) (sequenceNumber - startNumber))
                 - presentationTimeOffset;
       } else {
         unscaledSegmentTime = (sequenceNumber - startNumber) * duration;
@@ -448,7 +448,7 @@ public abstract class SegmentBase {
     public RangedUri getSegmentUrl(Representation representation, long sequenceNumber) {
       long time;
       if (segmentTimeline != null) {
-        time = segmentTimeline.get((int) (sequenceNumber - startNumber)).startTime;
+        time = segmentTimeline.getStartTime((int) (sequenceNumber - startNumber));
       } else {
         time = (sequenceNumber - startNumber) * duration;
       }
@@ -457,6 +457,29 @@ public abstract class SegmentBase {
       return new RangedUri(uriString, 0, C.LENGTH_UNSET);
     }
 
+    /**
+     * Returns a copy of this template that uses the given segment timeline, sharing all other
+     * fields.
+     *
+     * @param segmentTimeline The segment timeline of the copy.
+     */
+    /* package */ SegmentTemplate copyWithSegmentTimeline(
+        List<SegmentTimelineElement> segmentTimeline) {
+      return new SegmentTemplate(
+          initialization,
+          timescale,
+          presentationTimeOffset,
+          startNumber,
+          endNumber,
+          duration,
+          segmentTimeline,
+          availabilityTimeOffsetUs,
+          initializationTemplate,
+          mediaTemplate,
+          timeShiftBufferDepthUs,
+          periodStartUnixTimeUs);
+    }
+
     @Override
     public int getSegmentCount(long periodDurationUs) {
       if (segmentTimeline != null) {
@@ -0,0 +1,485 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.dash.manifest;
+
+import static java.lang.Math.min;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.SegmentTimelineElement;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list of {@link SegmentTimelineElement}s that stores the segments as runs of
+ * contiguous segments with equal duration, in primitive arrays.
+ *
+ * <p>Lists are created by a {@link Builder}. Lists built upon each other share their storage, so a
+ * timeline that only grew at its end since the last manifest refresh costs O(delta) to build rather
+ * than O(window). Appends never write to storage that's visible to an existing list.
+ *
+ * <p>Segments are looked up by index or by time with a binary search over the runs, without
+ * allocating.
+ *
+ * <p>The list also records which segments start an {@code S} element of the timeline, so that
+ * patches selecting {@code S} elements can be applied to it. Each segment added through {@link
+ * List} methods such as {@link #copyOf} is treated as an element of its own.
+ */
+/* package */ final class SegmentTimelineList extends AbstractList<SegmentTimelineElement>
+    implements RandomAccess {
+
+  private final Storage storage;
+  // Snapshots of the storage arrays. Appends may replace the arrays of the storage, but they never
+  // write to the part of an array that's visible to a list.
+  private final long[] runStartTimes;
+  private final long[] runDurations;
+  private final int[] runFirstIndices;
+  private final int[] elementFirstIndices;
+  /** The storage index of the first segment. */
+  private final int fromIndex;
+  /** The storage index after the last segment. */
+  private final int toIndex;
+  /** The index of the run containing the first segment. */
+  private final int firstRunIndex;
+  /** The index of the run containing the last segment, or {@link #firstRunIndex} if empty. */
+  private final int lastRunIndex;
+  /**
+   * The index in {@link #elementFirstIndices} of the first element that starts after the first
+   * segment. The first segment always starts an element.
+   */
+  private final int fromElementIndex;
+  /** The index in {@link #elementFirstIndices} of the first element that starts after the list. */
+  private final int toElementIndex;
+
+  private SegmentTimelineList(Storage storage, int fromIndex, int toIndex) {
+    this.storage = storage;
+    this.fromIndex = fromIndex;
+    this.toIndex = toIndex;
+    runStartTimes = storage.runStartTimes;
+    runDurations = storage.runDurations;
+    runFirstIndices = storage.runFirstIndices;
+    firstRunIndex = storage.findRunIndex(fromIndex);
+    lastRunIndex = toIndex > fromIndex ? storage.findRunIndex(toIndex - 1) : firstRunIndex;
+    elementFirstIndices = storage.elementFirstIndices;
+    fromElementIndex = storage.findElementIndexAfter(fromIndex);
+    toElementIndex = storage.findElementIndexAfter(toIndex - 1);
+  }
+
+  /**
+   * Returns a {@link SegmentTimelineList} with the same elements as the given list. Returns the list
+   * itself if it's already a {@link SegmentTimelineList}.
+   */
+  public static SegmentTimelineList copyOf(List<SegmentTimelineElement> segmentTimeline) {
+    if (segmentTimeline instanceof SegmentTimelineList) {
+      return (SegmentTimelineList) segmentTimeline;
+    }
+    Builder builder = new Builder();
+    for (int i = 0; i < segmentTimeline.size(); i++) {
+      SegmentTimelineElement element = segmentTimeline.get(i);
+      builder.addElement(element.startTime, element.duration, /* segmentCount= */ 1);
+    }
+    return builder.build();
+  }
+
+  @Override
+  public SegmentTimelineElement get(int index) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+    }
+    return new SegmentTimelineElement(getStartTime(index), getDuration(index));
+  }
+
+  @Override
+  public int size() {
+    return toIndex - fromIndex;
+  }
+
+  @Override
+  public SegmentTimelineList subList(int fromIndex, int toIndex) {
+    if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+      throw new IndexOutOfBoundsException();
+    }
+    synchronized (storage) {
+      return new SegmentTimelineList(storage, this.fromIndex + fromIndex, this.fromIndex + toIndex);
+    }
+  }
+
+  /**
+   * Returns the start time of the segment at the given index, in the timescale of the enclosing
+   * element.
+   */
+  public long getStartTime(int index) {
+    int storageIndex = fromIndex + index;
+    int runIndex = findRunIndex(storageIndex);
+    return runStartTimes[runIndex]
+        + (storageIndex - runFirstIndices[runIndex]) * runDurations[runIndex];
+  }
+
+  /**
+   * Returns the duration of the segment at the given index, in the timescale of the enclosing
+   * element.
+   */
+  public long getDuration(int index) {
+    return runDurations[findRunIndex(fromIndex + index)];
+  }
+
+  /** Returns the number of {@code S} elements of the timeline. */
+  public int getElementCount() {
+    return size() == 0 ? 0 : 1 + toElementIndex - fromElementIndex;
+  }
+
+  /** Returns the index of the first segment of the {@code S} element at the given index. */
+  public int getElementFirstIndex(int elementIndex) {
+    if (elementIndex < 0 || elementIndex >= getElementCount()) {
+      throw new IndexOutOfBoundsException(
+          "Element index: " + elementIndex + ", element count: " + getElementCount());
+    }
+    return elementIndex == 0
+        ? 0
+        : elementFirstIndices[fromElementIndex + elementIndex - 1] - fromIndex;
+  }
+
+  /** Returns the number of segments of the {@code S} element at the given index. */
+  public int getElementSegmentCount(int elementIndex) {
+    int nextElementFirstIndex =
+        elementIndex + 1 < getElementCount() ? getElementFirstIndex(elementIndex + 1) : size();
+    return nextElementFirstIndex - getElementFirstIndex(elementIndex);
+  }
+
+  /** Returns whether this list shares the storage of its segments with the given list. */
+  @VisibleForTesting
+  /* package */ boolean sharesStorageWith(SegmentTimelineList segmentTimeline) {
+    return storage == segmentTimeline.storage;
+  }
+
+  /**
+   * Returns the index of the last segment that starts at or before the given time, or -1 if the
+   * list is empty or the first segment starts after the given time.
+   *
+   * @param time The time, in the timescale of the enclosing element.
+   */
+  public int getFloorIndex(long time) {
+    if (size() == 0) {
+      return -1;
+    }
+    // Find the last run that starts at or before the given time.
+    int lowRunIndex = firstRunIndex;
+    int highRunIndex = lastRunIndex;
+    while (lowRunIndex < highRunIndex) {
+      int midRunIndex = (lowRunIndex + highRunIndex + 1) >>> 1;
+      if (runStartTimes[midRunIndex] <= time) {
+        lowRunIndex = midRunIndex;
+      } else {
+        highRunIndex = midRunIndex - 1;
+      }
+    }
+    long runStartTime = runStartTimes[lowRunIndex];
+    if (time < runStartTime) {
+      return -1;
+    }
+    int runEndIndex = lowRunIndex < lastRunIndex ? runFirstIndices[lowRunIndex + 1] : toIndex;
+    long storageIndex =
+        min(
+            runFirstIndices[lowRunIndex] + (time - runStartTime) / runDurations[lowRunIndex],
+            runEndIndex - 1);
+    return storageIndex < fromIndex ? -1 : (int) (storageIndex - fromIndex);
+  }
+
+  /**
+   * Returns the index of the segment with the given start time and duration, or -1 if the list
+   * doesn't contain such a segment.
+   */
+  /* package */ int indexOf(long startTime, long duration) {
+    int index = getFloorIndex(startTime);
+    return index != -1 && getStartTime(index) == startTime && getDuration(index) == duration
+        ? index
+        : -1;
+  }
+
+  /** Returns the index of the run containing the segment at the given storage index. */
+  private int findRunIndex(int storageIndex) {
+    int lowRunIndex = firstRunIndex;
+    int highRunIndex = lastRunIndex;
+    while (lowRunIndex < highRunIndex) {
+      int midRunIndex = (lowRunIndex + highRunIndex + 1) >>> 1;
+      if (runFirstIndices[midRunIndex] <= storageIndex) {
+        lowRunIndex = midRunIndex;
+      } else {
+        highRunIndex = midRunIndex - 1;
+      }
+    }
+    return lowRunIndex;
+  }
+
+  /** Builds {@link SegmentTimelineList}s by appending segments. */
+  public static final class Builder {
+
+    private static final int INITIAL_RUN_CAPACITY = 16;
+
+    @Nullable private SegmentTimelineList reusableSegmentTimeline;
+    private Storage storage;
+    private int fromIndex;
+    private int toIndex;
+
+    /** Creates a builder for a new list. */
+    public Builder() {
+      storage = new Storage(INITIAL_RUN_CAPACITY);
+    }
+
+    /**
+     * Creates a builder for a list that starts with the segments of {@code segmentTimeline}.
+     * Appending to the returned builder doesn't modify {@code segmentTimeline}.
+     */
+    public static Builder buildUpon(SegmentTimelineList segmentTimeline) {
+      Builder builder = new Builder(segmentTimeline.storage);
+      builder.fromIndex = segmentTimeline.fromIndex;
+      builder.toIndex = segmentTimeline.toIndex;
+      return builder;
+    }
+
+    /**
+     * Creates a builder for a new list that shares the segments it has in common with {@code
+     * segmentTimeline}, if non-null.
+     *
+     * <p>If the first added segment is contained in {@code segmentTimeline}, the segments from this
+     * segment onwards are reused as long as they're equal to the added ones, and only the segments
+     * that follow are stored. Otherwise the segments are stored as if the builder was created with
+     * {@link #Builder()}.
+     */
+    public static Builder reusing(@Nullable SegmentTimelineList segmentTimeline) {
+      Builder builder = new Builder();
+      builder.reusableSegmentTimeline = segmentTimeline;
+      return builder;
+    }
+
+    private Builder(Storage storage) {
+      this.storage = storage;
+    }
+
+    /**
+     * Appends an {@code S} element.
+     *
+     * @param startTime The start time of the first segment of the element, in the timescale of the
+     *     enclosing element.
+     * @param duration The duration of each segment, in the timescale of the enclosing element.
+     * @param segmentCount The number of segments of the element, which is the repeat count plus one.
+     * @return This builder.
+     */
+    public Builder addElement(long startTime, long duration, int segmentCount) {
+      for (int i = 0; i < segmentCount; i++) {
+        add(startTime + i * duration, duration, /* startsElement= */ i == 0);
+      }
+      return this;
+    }
+
+    /**
+     * Appends a segment to the last {@code S} element, or starts the first element if the builder
+     * is empty.
+     *
+     * @param startTime The start time of the segment, in the timescale of the enclosing element.
+     * @param duration The duration of the segment, in the timescale of the enclosing element.
+     * @return This builder.
+     */
+    public Builder add(long startTime, long duration) {
+      return add(startTime, duration, /* startsElement= */ false);
+    }
+
+    private Builder add(long startTime, long duration, boolean startsElement) {
+      if (reusableSegmentTimeline != null) {
+        SegmentTimelineList segmentTimeline = reusableSegmentTimeline;
+        reusableSegmentTimeline = null;
+        int index = segmentTimeline.indexOf(startTime, duration);
+        if (index != -1) {
+          storage = segmentTimeline.storage;
+          fromIndex = segmentTimeline.fromIndex + index;
+          toIndex = fromIndex + 1;
+          return this;
+        }
+      }
+      synchronized (storage) {
+        // The first segment of a list always starts an element.
+        startsElement &= toIndex > fromIndex;
+        if (toIndex < storage.segmentCount) {
+          if (storage.getStartTime(toIndex) == startTime
+              && storage.getDuration(toIndex) == duration
+              && (toIndex == fromIndex || storage.isElementFirstIndex(toIndex) == startsElement)) {
+            // The storage already contains the segment.
+            toIndex++;
+            return this;
+          }
+          copyStorage();
+        } else if (storage.isFull() && fromIndex > toIndex - fromIndex) {
+          // Drop the segments that are no longer visible rather than growing the storage.
+          copyStorage();
+        }
+        if (startsElement) {
+          storage.appendElementFirstIndex(toIndex);
+        }
+        storage.appendRun(startTime, duration, /* count= */ 1);
+        toIndex++;
+      }
+      return this;
+    }
+
+    /** Returns the number of segments. */
+    public int size() {
+      return toIndex - fromIndex;
+    }
+
+    /** Builds the list. */
+    public SegmentTimelineList build() {
+      synchronized (storage) {
+        return new SegmentTimelineList(storage, fromIndex, toIndex);
+      }
+    }
+
+    /** Moves the current segments to a new storage. Must be called with the storage locked. */
+    private void copyStorage() {
+      Storage newStorage = new Storage(INITIAL_RUN_CAPACITY);
+      if (toIndex > fromIndex) {
+        int runIndex = storage.findRunIndex(fromIndex);
+        int index = fromIndex;
+        while (index < toIndex) {
+          int runEndIndex =
+              runIndex + 1 < storage.runCount ? storage.runFirstIndices[runIndex + 1] : toIndex;
+          int count = min(runEndIndex, toIndex) - index;
+          newStorage.appendRun(storage.getStartTime(index), storage.runDurations[runIndex], count);
+          index += count;
+          runIndex++;
+        }
+        for (int i = storage.findElementIndexAfter(fromIndex);
+            i < storage.elementCount && storage.elementFirstIndices[i] < toIndex;
+            i++) {
+          newStorage.appendElementFirstIndex(storage.elementFirstIndices[i] - fromIndex);
+        }
+      }
+      storage = newStorage;
+      toIndex -= fromIndex;
+      fromIndex = 0;
+    }
+  }
+
+  /** Growable run arrays shared by lists built upon each other. */
+  private static final class Storage {
+
+    public long[] runStartTimes;
+    public long[] runDurations;
+    /** The index of the first segment of each run. */
+    public int[] runFirstIndices;
+    /** The index of the first segment of each element, other than the first segment overall. */
+    public int[] elementFirstIndices;
+    public int runCount;
+    public int segmentCount;
+    public int elementCount;
+
+    public Storage(int runCapacity) {
+      runStartTimes = new long[runCapacity];
+      runDurations = new long[runCapacity];
+      runFirstIndices = new int[runCapacity];
+      elementFirstIndices = new int[runCapacity];
+    }
+
+    public boolean isFull() {
+      return runCount == runStartTimes.length;
+    }
+
+    public long getStartTime(int index) {
+      int runIndex = findRunIndex(index);
+      return runStartTimes[runIndex] + (index - runFirstIndices[runIndex]) * runDurations[runIndex];
+    }
+
+    public long getDuration(int index) {
+      return runDurations[findRunIndex(index)];
+    }
+
+    public void appendRun(long startTime, long duration, int count) {
+      int lastRunIndex = runCount - 1;
+      if (lastRunIndex >= 0
+          && runDurations[lastRunIndex] == duration
+          && runStartTimes[lastRunIndex]
+                  + (segmentCount - runFirstIndices[lastRunIndex]) * duration
+              == startTime) {
+        segmentCount += count;
+        return;
+      }
+      if (isFull()) {
+        int newRunCapacity = runStartTimes.length * 2;
+        runStartTimes = Arrays.copyOf(runStartTimes, newRunCapacity);
+        runDurations = Arrays.copyOf(runDurations, newRunCapacity);
+        runFirstIndices = Arrays.copyOf(runFirstIndices, newRunCapacity);
+      }
+      runStartTimes[runCount] = startTime;
+      runDurations[runCount] = duration;
+      runFirstIndices[runCount] = segmentCount;
+      runCount++;
+      segmentCount += count;
+    }
+
+    public void appendElementFirstIndex(int index) {
+      if (elementCount == elementFirstIndices.length) {
+        elementFirstIndices = Arrays.copyOf(elementFirstIndices, elementCount * 2);
+      }
+      elementFirstIndices[elementCount++] = index;
+    }
+
+    public boolean isElementFirstIndex(int index) {
+      int elementIndex = findElementIndexAfter(index - 1);
+      return elementIndex < elementCount && elementFirstIndices[elementIndex] == index;
+    }
+
+    /** Returns the index of the first element that starts after the given segment index. */
+    public int findElementIndexAfter(int index) {
+      // Elements are mostly looked up at the end, so check the last element first.
+      if (elementCount == 0 || elementFirstIndices[elementCount - 1] <= index) {
+        return elementCount;
+      }
+      int lowElementIndex = 0;
+      int highElementIndex = elementCount - 1;
+      while (lowElementIndex < highElementIndex) {
+        int midElementIndex = (lowElementIndex + highElementIndex) >>> 1;
+        if (elementFirstIndices[midElementIndex] <= index) {
+          lowElementIndex = midElementIndex + 1;
+        } else {
+          highElementIndex = midElementIndex;
+        }
+      }
+      return lowElementIndex;
+    }
+
+    public int findRunIndex(int index) {
+      if (runCount == 0) {
+        return 0;
+      }
+      // Segments are mostly looked up at the end, so check the last run first.
+      if (runFirstIndices[runCount - 1] <= index) {
+        return runCount - 1;
+      }
+      int lowRunIndex = 0;
+      int highRunIndex = runCount - 1;
+      while (lowRunIndex < highRunIndex) {
+        int midRunIndex = (lowRunIndex + highRunIndex + 1) >>> 1;
+        if (runFirstIndices[midRunIndex] <= index) {
+          lowRunIndex = midRunIndex;
+        } else {
+          highRunIndex = midRunIndex - 1;
+        }
+      }
+      return lowRunIndex;
+    }
+  }
+}
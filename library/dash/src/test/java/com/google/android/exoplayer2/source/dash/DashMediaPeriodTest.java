@@ -211,7 +211,8 @@ public final class DashMediaPeriodTest {
         mock(LoaderErrorThrower.class),
         mock(Allocator.class),
         mock(CompositeSequenceableLoaderFactory.class),
-        mock(PlayerEmsgCallback.class));
+        mock(PlayerEmsgCallback.class),
+        /* loadExecutor= */ null);
   }
 
   private static DashManifest parseManifest(String fileName) throws IOException {
@@ -25,6 +25,7 @@ import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.source.TrackGroup;
 import com.google.android.exoplayer2.source.chunk.ChunkHolder;
+import com.google.android.exoplayer2.source.chunk.MediaChunk;
 import com.google.android.exoplayer2.source.dash.manifest.DashManifest;
 import com.google.android.exoplayer2.source.dash.manifest.DashManifestParser;
 import com.google.android.exoplayer2.testutil.FakeDataSource;
@@ -32,6 +33,7 @@ import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.trackselection.FixedTrackSelection;
 import com.google.android.exoplayer2.upstream.DataSpec;
 import com.google.android.exoplayer2.upstream.LoaderErrorThrower;
+import com.google.android.exoplayer2.upstream.PrefetchingDataSource;
 import com.google.common.collect.ImmutableList;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -127,4 +129,61 @@ public class DefaultDashChunkSourceTest {
     assertThat(output.chunk.dataSpec.flags & DataSpec.FLAG_MIGHT_NOT_USE_FULL_NETWORK_SPEED)
         .isEqualTo(0);
   }
+
+  @Test
+  public void getNextChunk_withPrefetchingDataSource_prefetchesFollowingSegmentsOnly()
+      throws Exception {
+    DashManifest manifest =
+        new DashManifestParser()
+            .parse(
+                Uri.parse("https://example.com/test.mpd"),
+                TestUtil.getInputStream(
+                    ApplicationProvider.getApplicationContext(), SAMPLE_MPD_VOD));
+    // Prefetches are never run, so that they stay pending.
+    PrefetchingDataSource prefetchingDataSource =
+        new PrefetchingDataSource(
+            FakeDataSource::new,
+            /* maxPrefetchCount= */ 3,
+            /* listener= */ null,
+            /* executor= */ runnable -> {});
+    DefaultDashChunkSource chunkSource =
+        new DefaultDashChunkSource(
+            new LoaderErrorThrower.Dummy(),
+            manifest,
+            /* periodIndex= */ 0,
+            /* adaptationSetIndices= */ new int[] {0},
+            new FixedTrackSelection(new TrackGroup(new Format.Builder().build()), /* track= */ 0),
+            C.TRACK_TYPE_VIDEO,
+            prefetchingDataSource,
+            /* elapsedRealtimeOffsetMs= */ 0,
+            /* maxSegmentsPerLoad= */ 1,
+            /* enableEventMessageTrack= */ false,
+            /* closedCaptionFormats */ ImmutableList.of(),
+            /* playerTrackEmsgHandler= */ null);
+
+    ChunkHolder output = new ChunkHolder();
+    chunkSource.getNextChunk(
+        /* playbackPositionUs= */ 0,
+        /* loadPositionUs= */ 0,
+        /* queue= */ ImmutableList.of(),
+        output);
+    MediaChunk firstChunk = (MediaChunk) output.chunk;
+
+    // The chunk that is about to be loaded is loaded directly.
+    assertThat(prefetchingDataSource.isPrefetchPending(firstChunk.dataSpec)).isFalse();
+    assertThat(prefetchingDataSource.getPendingPrefetchCount()).isEqualTo(2);
+
+    output.clear();
+    chunkSource.getNextChunk(
+        /* playbackPositionUs= */ 0,
+        /* loadPositionUs= */ firstChunk.endTimeUs,
+        /* queue= */ ImmutableList.of(firstChunk),
+        output);
+    MediaChunk secondChunk = (MediaChunk) output.chunk;
+
+    // The prefetch of the next chunk matches its DataSpec, and is kept.
+    assertThat(prefetchingDataSource.isPrefetchPending(secondChunk.dataSpec)).isTrue();
+    assertThat(prefetchingDataSource.getPendingPrefetchCount()).isEqualTo(3);
+    prefetchingDataSource.release();
+  }
 }
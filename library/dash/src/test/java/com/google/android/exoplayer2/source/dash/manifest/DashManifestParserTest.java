@@ -29,6 +29,7 @@ import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.Util;
 import com.google.common.base.Charsets;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.Collections;
@@ -350,6 +351,72 @@ public class DashManifestParserTest {
     assertNextTag(xpp);
   }
 
+  @Test
+  public void parse_refreshedLiveManifest_parsesShiftedSegmentTimeline() throws Exception {
+    DashManifestParser parser = new DashManifestParser();
+    DashManifest manifest =
+        parser.parse(
+            Uri.parse("https://example.com/test.mpd"),
+            new ByteArrayInputStream(
+                Util.getUtf8Bytes(
+                    buildLiveManifest(
+                        "<S t=\"0\" d=\"96000\" r=\"3\"/><S d=\"48000\"/>"))));
+    List<SegmentTimelineElement> segmentTimeline = getSegmentTimeline(manifest);
+
+    DashManifest refreshedManifest =
+        parser.parse(
+            Uri.parse("https://example.com/test.mpd"),
+            new ByteArrayInputStream(
+                Util.getUtf8Bytes(
+                    buildLiveManifest(
+                        "<S t=\"192000\" d=\"96000\" r=\"1\"/><S d=\"48000\" r=\"1\"/>"
+                            + "<S d=\"96000\"/>"))));
+
+    assertThat(getSegmentTimeline(refreshedManifest))
+        .containsExactly(
+            new SegmentTimelineElement(/* startTime= */ 192000, /* duration= */ 96000),
+            new SegmentTimelineElement(/* startTime= */ 288000, /* duration= */ 96000),
+            new SegmentTimelineElement(/* startTime= */ 384000, /* duration= */ 48000),
+            new SegmentTimelineElement(/* startTime= */ 432000, /* duration= */ 48000),
+            new SegmentTimelineElement(/* startTime= */ 480000, /* duration= */ 96000))
+        .inOrder();
+    assertThat(segmentTimeline)
+        .containsExactly(
+            new SegmentTimelineElement(/* startTime= */ 0, /* duration= */ 96000),
+            new SegmentTimelineElement(/* startTime= */ 96000, /* duration= */ 96000),
+            new SegmentTimelineElement(/* startTime= */ 192000, /* duration= */ 96000),
+            new SegmentTimelineElement(/* startTime= */ 288000, /* duration= */ 96000),
+            new SegmentTimelineElement(/* startTime= */ 384000, /* duration= */ 48000))
+        .inOrder();
+    // The segments both manifests have in common are stored once.
+    assertThat(
+            ((SegmentTimelineList) getSegmentTimeline(refreshedManifest))
+                .sharesStorageWith((SegmentTimelineList) segmentTimeline))
+        .isTrue();
+  }
+
+  @Test
+  public void parse_unrelatedManifest_doesNotShareSegmentTimelineStorage() throws Exception {
+    DashManifestParser parser = new DashManifestParser();
+    DashManifest manifest =
+        parser.parse(
+            Uri.parse("https://example.com/test.mpd"),
+            new ByteArrayInputStream(
+                Util.getUtf8Bytes(buildLiveManifest("<S t=\"0\" d=\"96000\" r=\"3\"/>"))));
+
+    DashManifest otherManifest =
+        parser.parse(
+            Uri.parse("https://example.com/test.mpd"),
+            new ByteArrayInputStream(
+                Util.getUtf8Bytes(
+                    buildLiveManifest("<S t=\"1000000\" d=\"96000\" r=\"3\"/>"))));
+
+    assertThat(
+            ((SegmentTimelineList) getSegmentTimeline(otherManifest))
+                .sharesStorageWith((SegmentTimelineList) getSegmentTimeline(manifest)))
+        .isFalse();
+  }
+
   @Test
   public void parseLabel() throws Exception {
     DashManifestParser parser = new DashManifestParser();
@@ -646,6 +713,27 @@ public class DashManifestParserTest {
     return Collections.singletonList(new Descriptor("urn:scte:dash:cc:cea-708:2015", value, null));
   }
 
+  private static String buildLiveManifest(String segments) {
+    return "<MPD type=\"dynamic\" availabilityStartTime=\"2020-01-01T00:00:00Z\">"
+        + "<Period id=\"1\" start=\"PT0S\">"
+        + "<AdaptationSet mimeType=\"audio/mp4\">"
+        + "<SegmentTemplate timescale=\"48000\" media=\"$Time$.m4a\">"
+        + "<SegmentTimeline>"
+        + segments
+        + "</SegmentTimeline>"
+        + "</SegmentTemplate>"
+        + "<Representation id=\"audio\" bandwidth=\"128000\"/>"
+        + "</AdaptationSet>"
+        + "</Period>"
+        + "</MPD>";
+  }
+
+  private static List<SegmentTimelineElement> getSegmentTimeline(DashManifest manifest) {
+    Representation representation =
+        manifest.getPeriod(0).adaptationSets.get(0).representations.get(0);
+    return ((Representation.MultiSegmentRepresentation) representation).segmentBase.segmentTimeline;
+  }
+
   private static void assertNextTag(XmlPullParser xpp) throws Exception {
     xpp.next();
     assertThat(xpp.getEventType()).isEqualTo(XmlPullParser.START_TAG);
@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.dash.manifest;
+
+import android.net.Uri;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.exoplayer2.source.dash.manifest.Representation.MultiSegmentRepresentation;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.util.Util;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/** Unit tests for {@link DashManifestPatchApplier}. */
+@RunWith(AndroidJUnit4.class)
+public class DashManifestPatchApplierTest {
+    private static final String BASE_URL = "https://example.com/test.mpd";
+    private static final String SAMPLE_MPD_WITH_PATCH_LOCATION = "media/mpd/manifest_patch/mpd_with_patch_location";
+    private static final String SAMPLE_MPD_PATCH_ADD_PERIOD = "media/mpd/manifest_patch/mpd_patch_add_period";
+    private static final String SAMPLE_MPD_PATCH = "media/mpd/manifest_patch/mpd_patch";
+    private static final String VIDEO_TIMELINE_SELECTOR =
+            "/MPD/Period[@id='81']/AdaptationSet/SegmentTemplate/SegmentTimeline";
+    private static final String AUDIO_TIMELINE_SELECTOR =
+            "/MPD/Period[@id='81']/AdaptationSet[2]/SegmentTemplate/SegmentTimeline";
+    private static final String PATCH_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<Patch mpdId=\"mpd-id\" originalPublishTime=\"2020-11-09T03:48:39.514833095Z\""
+            + " publishTime=\"2020-11-09T03:48:43.514902582Z\">\n";
+    private static final String PATCH_FOOTER = "</Patch>";
+
+    private String manifestString;
+    private DashManifestParser manifestParser;
+    private DashManifest manifest;
+
+    @Before
+    public void setUp() throws IOException {
+        manifestString = TestUtil.getString(
+                ApplicationProvider.getApplicationContext(), SAMPLE_MPD_WITH_PATCH_LOCATION);
+        manifestParser = new DashManifestParser();
+        manifest = manifestParser.parse(
+                Uri.parse(BASE_URL), new ByteArrayInputStream(Util.getUtf8Bytes(manifestString)));
+    }
+
+    @Test
+    public void testAddSegmentsSharesUnchangedSubtrees() throws IOException {
+        DashManifestPatch patch = parsePatch(
+                "<add sel=\"/MPD/Period[@id='81']/AdaptationSet[2]/SegmentTemplate/SegmentTimeline\">"
+                        + "<S t=\"240376111\" d=\"39680000\"/>"
+                        + "<S d=\"40106667\" r=\"1\"/>"
+                        + "</add>");
+
+        DashManifest patchedManifest = new DashManifestPatchApplier(manifestParser).apply(manifest, patch);
+
+        assertThat(patchedManifest).isNotNull();
+        Period period = manifest.getPeriod(0);
+        Period patchedPeriod = patchedManifest.getPeriod(0);
+        assertThat(patchedPeriod.adaptationSets.get(0)).isSameInstanceAs(period.adaptationSets.get(0));
+        assertThat(patchedPeriod.eventStreams).isEqualTo(period.eventStreams);
+        List<SegmentBase.SegmentTimelineElement> timeline =
+                getSegmentTimeline(patchedPeriod.adaptationSets.get(1).representations.get(0));
+        List<SegmentBase.SegmentTimelineElement> originalTimeline =
+                getSegmentTimeline(period.adaptationSets.get(1).representations.get(0));
+        assertThat(timeline.subList(0, originalTimeline.size())).isEqualTo(originalTimeline);
+        assertThat(timeline.subList(originalTimeline.size(), timeline.size())).containsExactly(
+                new SegmentBase.SegmentTimelineElement(240376111, 39680000),
+                new SegmentBase.SegmentTimelineElement(280056111, 40106667),
+                new SegmentBase.SegmentTimelineElement(320162778, 40106667)).inOrder();
+    }
+
+    @Test
+    public void testAddSegmentsMatchesDocumentPatch() throws Exception {
+        String patchString = PATCH_HEADER
+                + "<replace sel=\"/MPD/@publishTime\">2020-11-09T03:48:43.514902582Z</replace>"
+                + "<replace sel=\"/MPD/@timeShiftBufferDepth\">PT0M25.112493S</replace>"
+                + "<add sel=\"/MPD/Period[@id='81']/AdaptationSet/SegmentTemplate/SegmentTimeline\">"
+                + "<S t=\"240000000\" d=\"40000000\" r=\"2\"/>"
+                + "</add>"
+                + PATCH_FOOTER;
+
+        assertMatchesDocumentPatch(patchString);
+    }
+
+    @Test
+    public void testLivePatchMatchesDocumentPatch() throws Exception {
+        String patchString = TestUtil.getString(
+                ApplicationProvider.getApplicationContext(), SAMPLE_MPD_PATCH);
+
+        DashManifest patchedManifest = assertMatchesDocumentPatch(patchString);
+
+        assertThat(getSegmentTimeline(
+                patchedManifest.getPeriod(0).adaptationSets.get(0).representations.get(0)))
+                .hasSize(7);
+        assertThat(patchedManifest.getPeriod(0).eventStreams.get(0).events).hasLength(7);
+    }
+
+    @Test
+    public void testReplaceRepeatCountSharesUnchangedSegments() throws Exception {
+        DashManifestPatch patch = parsePatch(
+                "<replace sel=\"" + VIDEO_TIMELINE_SELECTOR + "/S/@r\">6</replace>");
+
+        DashManifest patchedManifest = new DashManifestPatchApplier(manifestParser).apply(manifest, patch);
+
+        List<SegmentBase.SegmentTimelineElement> timeline = getSegmentTimeline(
+                patchedManifest.getPeriod(0).adaptationSets.get(0).representations.get(0));
+        List<SegmentBase.SegmentTimelineElement> originalTimeline = getSegmentTimeline(
+                manifest.getPeriod(0).adaptationSets.get(0).representations.get(0));
+        assertThat(timeline).hasSize(7);
+        assertThat(timeline.get(6)).isEqualTo(new SegmentBase.SegmentTimelineElement(240000000, 40000000));
+        assertThat(timeline.subList(0, 6)).isEqualTo(originalTimeline);
+        assertThat(getSegmentTimeline(
+                patchedManifest.getPeriod(0).adaptationSets.get(0).representations.get(4)))
+                .isSameInstanceAs(timeline);
+    }
+
+    @Test
+    public void testRemoveAndAddRepeatCountMatchesDocumentPatch() throws Exception {
+        assertMatchesDocumentPatch(PATCH_HEADER
+                + "<remove sel=\"" + VIDEO_TIMELINE_SELECTOR + "/S/@r\"/>"
+                + "<add sel=\"" + AUDIO_TIMELINE_SELECTOR + "/S[4]\" type=\"@r\">3</add>"
+                + PATCH_FOOTER);
+    }
+
+    @Test
+    public void testRemoveLeadingSegmentsMatchesDocumentPatch() throws Exception {
+        DashManifest patchedManifest = assertMatchesDocumentPatch(PATCH_HEADER
+                + "<remove sel=\"" + AUDIO_TIMELINE_SELECTOR + "/S[1]\"/>"
+                + "<remove sel=\"" + AUDIO_TIMELINE_SELECTOR + "/S\"/>"
+                + "<replace sel=\"" + AUDIO_TIMELINE_SELECTOR + "/S[@t='120056111']/@t\">"
+                + "120056111</replace>"
+                + "<add sel=\"" + AUDIO_TIMELINE_SELECTOR + "\">"
+                + "<S t=\"240376111\" d=\"39680000\"/>"
+                + "</add>"
+                + PATCH_FOOTER);
+
+        List<SegmentBase.SegmentTimelineElement> timeline = getSegmentTimeline(
+                patchedManifest.getPeriod(0).adaptationSets.get(1).representations.get(0));
+        List<SegmentBase.SegmentTimelineElement> originalTimeline = getSegmentTimeline(
+                manifest.getPeriod(0).adaptationSets.get(1).representations.get(0));
+        assertThat(timeline.subList(0, 3)).isEqualTo(originalTimeline.subList(3, 6));
+        assertThat(timeline.get(3)).isEqualTo(new SegmentBase.SegmentTimelineElement(240376111, 39680000));
+    }
+
+    @Test
+    public void testReplacePatchLocationAndPublishTime() throws IOException {
+        DashManifestPatch patch = parsePatch(
+                "<replace sel=\"/MPD/@publishTime\">2020-11-09T03:48:43.514902582Z</replace>"
+                        + "<replace sel=\"/MPD/PatchLocation\">"
+                        + "<PatchLocation ttl=\"66\">manifest-patch.mpd?publishTime=2020-11-09T03:48:43.514902582Z</PatchLocation>"
+                        + "</replace>");
+
+        DashManifest patchedManifest = new DashManifestPatchApplier(manifestParser).apply(manifest, patch);
+
+        assertThat(patchedManifest.publishTimeMs)
+                .isEqualTo(Util.parseXsDateTime("2020-11-09T03:48:43.514902582Z"));
+        assertThat(patchedManifest.patchLocation).isEqualTo(new PatchLocation(66,
+                "https://example.com/manifest-patch.mpd?publishTime=2020-11-09T03:48:43.514902582Z"));
+        assertThat(patchedManifest.getPeriod(0)).isSameInstanceAs(manifest.getPeriod(0));
+    }
+
+    @Test
+    public void testAddPeriod() throws IOException {
+        DashManifestPatch patch = new DashManifestPatchParser().parse(TestUtil.getString(
+                ApplicationProvider.getApplicationContext(), SAMPLE_MPD_PATCH_ADD_PERIOD));
+
+        DashManifest patchedManifest = new DashManifestPatchApplier(manifestParser).apply(manifest, patch);
+
+        assertThat(patchedManifest.getPeriodCount()).isEqualTo(2);
+        assertThat(patchedManifest.getPeriod(0)).isSameInstanceAs(manifest.getPeriod(0));
+        Period period = patchedManifest.getPeriod(1);
+        assertThat(period.id).isEqualTo("88");
+        assertThat(period.startMs).isEqualTo(Util.parseXsDuration("PT4325M36.059988S"));
+        assertThat(period.adaptationSets).hasSize(2);
+        assertThat(period.eventStreams.get(0).events).hasLength(3);
+        assertThat(getSegmentTimeline(period.adaptationSets.get(0).representations.get(1))).hasSize(3);
+    }
+
+    @Test
+    public void testRemovePeriodAfterAdd() throws IOException {
+        DashManifestPatchApplier patchApplier = new DashManifestPatchApplier(manifestParser);
+        DashManifest patchedManifest = patchApplier.apply(manifest, new DashManifestPatchParser().parse(
+                TestUtil.getString(ApplicationProvider.getApplicationContext(), SAMPLE_MPD_PATCH_ADD_PERIOD)));
+
+        patchedManifest = patchApplier.apply(patchedManifest,
+                parsePatch("<remove sel=\"/MPD/Period[@id='81']\"/>"));
+
+        assertThat(patchedManifest.getPeriodCount()).isEqualTo(1);
+        assertThat(patchedManifest.getPeriod(0).id).isEqualTo("88");
+    }
+
+    @Test
+    public void testUnsupportedOperationReturnsNull() throws IOException {
+        // Removing an element other than the first one could move the elements after it.
+        DashManifestPatch patch = parsePatch(
+                "<remove sel=\"" + AUDIO_TIMELINE_SELECTOR + "/S[2]\"/>");
+
+        assertThat(new DashManifestPatchApplier(manifestParser).apply(manifest, patch)).isNull();
+    }
+
+    @Test
+    public void testRepeatCountOfInnerSegmentElementReturnsNull() throws IOException {
+        DashManifestPatch patch = parsePatch(
+                "<replace sel=\"" + AUDIO_TIMELINE_SELECTOR + "/S[1]/@r\">2</replace>");
+
+        assertThat(new DashManifestPatchApplier(manifestParser).apply(manifest, patch)).isNull();
+    }
+
+    @Test
+    public void testUnknownPeriodReturnsNull() throws IOException {
+        DashManifestPatch patch = parsePatch(
+                "<add sel=\"/MPD/Period[@id='87']/AdaptationSet[2]/SegmentTemplate/SegmentTimeline\">"
+                        + "<S t=\"240376111\" d=\"39680000\"/>"
+                        + "</add>");
+
+        assertThat(new DashManifestPatchApplier(manifestParser).apply(manifest, patch)).isNull();
+    }
+
+    /**
+     * Asserts that applying a patch to the manifest results in the same periods as applying it to
+     * the document of the manifest, and returns the patched manifest.
+     */
+    private DashManifest assertMatchesDocumentPatch(String patchString) throws Exception {
+        DashManifest patchedManifest = new DashManifestPatchApplier(manifestParser).apply(
+                manifest, new DashManifestPatchParser().parse(patchString));
+        DashManifestPatchMerger patchMerger = new DashManifestPatchMerger();
+        patchMerger.setManifestString(manifestString);
+        assertThat(new DashManifestPatchParser().parse(patchString).applyPatch(patchMerger.getDocument()))
+                .isTrue();
+        DashManifest expectedManifest = DocumentToManifestConverter.convert(patchMerger.getDocument(), BASE_URL);
+
+        assertThat(patchedManifest).isNotNull();
+        assertThat(patchedManifest.publishTimeMs).isEqualTo(expectedManifest.publishTimeMs);
+        assertThat(patchedManifest.timeShiftBufferDepthMs).isEqualTo(expectedManifest.timeShiftBufferDepthMs);
+        assertThat(patchedManifest.patchLocation).isEqualTo(expectedManifest.patchLocation);
+        Period patchedPeriod = patchedManifest.getPeriod(0);
+        Period expectedPeriod = expectedManifest.getPeriod(0);
+        assertThat(patchedPeriod.eventStreams).hasSize(expectedPeriod.eventStreams.size());
+        for (int i = 0; i < expectedPeriod.eventStreams.size(); i++) {
+            assertThat(patchedPeriod.eventStreams.get(i).presentationTimesUs)
+                    .isEqualTo(expectedPeriod.eventStreams.get(i).presentationTimesUs);
+        }
+        for (int i = 0; i < expectedPeriod.adaptationSets.size(); i++) {
+            List<Representation> representations = patchedPeriod.adaptationSets.get(i).representations;
+            List<Representation> expectedRepresentations = expectedPeriod.adaptationSets.get(i).representations;
+            assertThat(representations).hasSize(expectedRepresentations.size());
+            for (int j = 0; j < expectedRepresentations.size(); j++) {
+                assertThat(representations.get(j).format).isEqualTo(expectedRepresentations.get(j).format);
+                assertThat(getSegmentTimeline(representations.get(j)))
+                        .isEqualTo(getSegmentTimeline(expectedRepresentations.get(j)));
+            }
+        }
+        return patchedManifest;
+    }
+
+    private static DashManifestPatch parsePatch(String operations) throws IOException {
+        return new DashManifestPatchParser().parse(PATCH_HEADER + operations + PATCH_FOOTER);
+    }
+
+    private static List<SegmentBase.SegmentTimelineElement> getSegmentTimeline(
+            Representation representation) {
+        return ((MultiSegmentRepresentation) representation).segmentBase.segmentTimeline;
+    }
+}
@@ -105,4 +105,14 @@ public class DashManifestPatchParserTest {
         assertThat(DashManifestPatchParser.docToString(operation.element.getOwnerDocument()))
                 .isEqualTo(TestUtil.getString(ApplicationProvider.getApplicationContext(), XML_REPLACE_NODE));
     }
+
+    @Test
+    public void testIsAttributeOperation() {
+        DashManifestPatchParser parser = new DashManifestPatchParser();
+
+        assertThat(parser.isAttributeOperation("/MPD/@publishTime")).isTrue();
+        assertThat(parser.isAttributeOperation("/MPD/Period[@id='81']/@start")).isTrue();
+        assertThat(parser.isAttributeOperation("/MPD/Period[@id='81']")).isFalse();
+        assertThat(parser.isAttributeOperation("/MPD/PatchLocation")).isFalse();
+    }
 }
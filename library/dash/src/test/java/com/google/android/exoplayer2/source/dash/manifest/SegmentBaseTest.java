@@ -19,6 +19,8 @@ import static com.google.common.truth.Truth.assertThat;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -182,4 +184,48 @@ public final class SegmentBaseTest {
                 /* nowUnixTimeUs= */ periodStartUnixTimeUs + 17_500_000))
         .isEqualTo(19_500_000);
   }
+
+  @Test
+  public void getSegmentNum_segmentTimeline() {
+    List<SegmentBase.SegmentTimelineElement> segmentTimeline = new ArrayList<>();
+    long startTime = 1000;
+    for (int i = 0; i < 1000; i++) {
+      // Mix runs of equal durations with single segments of different duration.
+      long duration = i % 10 == 9 ? 44_100 : 88_200 + (i % 50 == 0 ? 1 : 0);
+      segmentTimeline.add(new SegmentBase.SegmentTimelineElement(startTime, duration));
+      startTime += duration;
+    }
+    SegmentBase.SegmentTemplate segmentTemplate =
+        new SegmentBase.SegmentTemplate(
+            /* initialization= */ null,
+            /* timescale= */ 44_100,
+            /* presentationTimeOffset= */ 1000,
+            /* startNumber= */ 42,
+            /* endNumber= */ C.INDEX_UNSET,
+            /* duration= */ C.TIME_UNSET,
+            segmentTimeline,
+            /* availabilityTimeOffsetUs= */ C.TIME_UNSET,
+            /* initializationTemplate= */ null,
+            /* mediaTemplate= */ null,
+            /* timeShiftBufferDepthUs= */ C.TIME_UNSET,
+            /* periodStartUnixTimeUs= */ C.TIME_UNSET);
+
+    assertThat(segmentTemplate.getSegmentNum(/* timeUs= */ -1, C.TIME_UNSET)).isEqualTo(42);
+    assertThat(segmentTemplate.getSegmentNum(/* timeUs= */ Long.MAX_VALUE / 1000, C.TIME_UNSET))
+        .isEqualTo(1041);
+    for (int i = 0; i < 1000; i++) {
+      long segmentNum = 42 + i;
+      long segmentTimeUs = segmentTemplate.getSegmentTimeUs(segmentNum);
+      long expectedDurationUs = segmentTimeline.get(i).duration * C.MICROS_PER_SECOND / 44_100;
+      assertThat(segmentTemplate.getSegmentDurationUs(segmentNum, C.TIME_UNSET))
+          .isEqualTo(expectedDurationUs);
+      assertThat(segmentTemplate.getSegmentNum(segmentTimeUs, C.TIME_UNSET)).isEqualTo(segmentNum);
+      assertThat(segmentTemplate.getSegmentNum(segmentTimeUs + 1, C.TIME_UNSET))
+          .isEqualTo(segmentNum);
+      if (i > 0) {
+        assertThat(segmentTemplate.getSegmentNum(segmentTimeUs - 1, C.TIME_UNSET))
+            .isEqualTo(segmentNum - 1);
+      }
+    }
+  }
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.dash.manifest;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.source.dash.manifest.SegmentBase.SegmentTimelineElement;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link SegmentTimelineList}. */
+@RunWith(AndroidJUnit4.class)
+public final class SegmentTimelineListTest {
+
+  @Test
+  public void build_containsAddedSegments() {
+    SegmentTimelineList segmentTimeline =
+        new SegmentTimelineList.Builder()
+            .add(/* startTime= */ 0, /* duration= */ 10)
+            .add(/* startTime= */ 10, /* duration= */ 10)
+            .add(/* startTime= */ 20, /* duration= */ 5)
+            .add(/* startTime= */ 30, /* duration= */ 5)
+            .build();
+
+    assertThat(segmentTimeline)
+        .containsExactly(
+            new SegmentTimelineElement(/* startTime= */ 0, /* duration= */ 10),
+            new SegmentTimelineElement(/* startTime= */ 10, /* duration= */ 10),
+            new SegmentTimelineElement(/* startTime= */ 20, /* duration= */ 5),
+            new SegmentTimelineElement(/* startTime= */ 30, /* duration= */ 5))
+        .inOrder();
+    assertThat(segmentTimeline.getStartTime(3)).isEqualTo(30);
+    assertThat(segmentTimeline.getDuration(3)).isEqualTo(5);
+  }
+
+  @Test
+  public void copyOf_equalsCopiedList() {
+    List<SegmentTimelineElement> elements = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      elements.add(new SegmentTimelineElement(/* startTime= */ i * 7 + i % 3, /* duration= */ 7));
+    }
+
+    assertThat(SegmentTimelineList.copyOf(elements)).isEqualTo(elements);
+  }
+
+  @Test
+  public void getFloorIndex_returnsLastSegmentStartingAtOrBeforeTime() {
+    SegmentTimelineList segmentTimeline =
+        new SegmentTimelineList.Builder()
+            .add(/* startTime= */ 100, /* duration= */ 10)
+            .add(/* startTime= */ 110, /* duration= */ 10)
+            .add(/* startTime= */ 120, /* duration= */ 5)
+            // Gap between 125 and 200.
+            .add(/* startTime= */ 200, /* duration= */ 10)
+            .build();
+
+    assertThat(segmentTimeline.getFloorIndex(/* time= */ 99)).isEqualTo(-1);
+    assertThat(segmentTimeline.getFloorIndex(/* time= */ 100)).isEqualTo(0);
+    assertThat(segmentTimeline.getFloorIndex(/* time= */ 119)).isEqualTo(1);
+    assertThat(segmentTimeline.getFloorIndex(/* time= */ 120)).isEqualTo(2);
+    assertThat(segmentTimeline.getFloorIndex(/* time= */ 150)).isEqualTo(2);
+    assertThat(segmentTimeline.getFloorIndex(/* time= */ 200)).isEqualTo(3);
+    assertThat(segmentTimeline.getFloorIndex(/* time= */ 1000)).isEqualTo(3);
+    assertThat(segmentTimeline.subList(2, 3).getFloorIndex(/* time= */ 110)).isEqualTo(-1);
+    assertThat(segmentTimeline.subList(1, 3).getFloorIndex(/* time= */ 1000)).isEqualTo(1);
+  }
+
+  @Test
+  public void subList_returnsSegmentsInRange() {
+    SegmentTimelineList segmentTimeline = buildSegmentTimeline(/* startTime= */ 0, /* count= */ 50);
+
+    assertThat(segmentTimeline.subList(10, 13))
+        .containsExactly(
+            new SegmentTimelineElement(/* startTime= */ 100, /* duration= */ 10),
+            new SegmentTimelineElement(/* startTime= */ 110, /* duration= */ 10),
+            new SegmentTimelineElement(/* startTime= */ 120, /* duration= */ 10))
+        .inOrder();
+  }
+
+  @Test
+  public void buildUpon_doesNotModifyOriginalList() {
+    SegmentTimelineList segmentTimeline = buildSegmentTimeline(/* startTime= */ 0, /* count= */ 3);
+    List<SegmentTimelineElement> expectedSegmentTimeline = new ArrayList<>(segmentTimeline);
+
+    SegmentTimelineList extendedSegmentTimeline =
+        SegmentTimelineList.Builder.buildUpon(segmentTimeline)
+            .add(/* startTime= */ 30, /* duration= */ 10)
+            .build();
+    SegmentTimelineList divergingSegmentTimeline =
+        SegmentTimelineList.Builder.buildUpon(segmentTimeline)
+            .add(/* startTime= */ 30, /* duration= */ 20)
+            .build();
+
+    assertThat(segmentTimeline).isEqualTo(expectedSegmentTimeline);
+    assertThat(extendedSegmentTimeline).hasSize(4);
+    assertThat(extendedSegmentTimeline.get(3))
+        .isEqualTo(new SegmentTimelineElement(/* startTime= */ 30, /* duration= */ 10));
+    assertThat(divergingSegmentTimeline).hasSize(4);
+    assertThat(divergingSegmentTimeline.get(3))
+        .isEqualTo(new SegmentTimelineElement(/* startTime= */ 30, /* duration= */ 20));
+    assertThat(divergingSegmentTimeline.subList(0, 3)).isEqualTo(expectedSegmentTimeline);
+  }
+
+  @Test
+  public void reusing_slidingWindow_containsAddedSegments() {
+    SegmentTimelineList segmentTimeline = buildSegmentTimeline(/* startTime= */ 0, /* count= */ 20);
+
+    // Move the window forward by a few segments at a time, with a change of duration in between.
+    for (int i = 1; i < 100; i++) {
+      SegmentTimelineList.Builder builder = SegmentTimelineList.Builder.reusing(segmentTimeline);
+      List<SegmentTimelineElement> expectedSegmentTimeline = new ArrayList<>();
+      for (int j = 0; j < 20; j++) {
+        long startTime = (i * 3 + j) * 10L;
+        long duration = (i * 3 + j) % 17 == 0 ? 5 : 10;
+        builder.add(startTime, duration);
+        expectedSegmentTimeline.add(new SegmentTimelineElement(startTime, duration));
+      }
+      SegmentTimelineList previousSegmentTimeline = segmentTimeline;
+      List<SegmentTimelineElement> expectedPreviousSegmentTimeline =
+          new ArrayList<>(previousSegmentTimeline);
+
+      segmentTimeline = builder.build();
+
+      assertThat(segmentTimeline).isEqualTo(expectedSegmentTimeline);
+      assertThat(previousSegmentTimeline).isEqualTo(expectedPreviousSegmentTimeline);
+    }
+  }
+
+  @Test
+  public void reusing_firstSegmentNotContained_containsAddedSegments() {
+    SegmentTimelineList segmentTimeline = buildSegmentTimeline(/* startTime= */ 0, /* count= */ 5);
+
+    SegmentTimelineList newSegmentTimeline =
+        SegmentTimelineList.Builder.reusing(segmentTimeline)
+            .add(/* startTime= */ 15, /* duration= */ 10)
+            .add(/* startTime= */ 25, /* duration= */ 10)
+            .build();
+
+    assertThat(newSegmentTimeline)
+        .containsExactly(
+            new SegmentTimelineElement(/* startTime= */ 15, /* duration= */ 10),
+            new SegmentTimelineElement(/* startTime= */ 25, /* duration= */ 10))
+        .inOrder();
+  }
+
+  private static SegmentTimelineList buildSegmentTimeline(long startTime, int count) {
+    SegmentTimelineList.Builder builder = new SegmentTimelineList.Builder();
+    for (int i = 0; i < count; i++) {
+      builder.add(startTime + i * 10L, /* duration= */ 10);
+    }
+    return builder.build();
+  }
+}
@@ -43,6 +43,7 @@ import com.google.android.exoplayer2.upstream.DataSpec;
 import com.google.android.exoplayer2.upstream.DummyDataSource;
 import com.google.android.exoplayer2.upstream.cache.Cache;
 import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.ContentMetadata;
 import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
 import com.google.android.exoplayer2.upstream.cache.SimpleCache;
 import com.google.android.exoplayer2.util.MimeTypes;
@@ -116,6 +117,26 @@ public class DashDownloaderTest {
     assertCachedData(cache, new RequestSet(fakeDataSet).useBoundedDataSpecFor("audio_init_data"));
   }
 
+  @Test
+  public void downloadRepresentation_withPinDownloadedContent_pinsAllSegments() throws Exception {
+    FakeDataSet fakeDataSet =
+        new FakeDataSet()
+            .setData(TEST_MPD_URI, TEST_MPD)
+            .setRandomData("audio_init_data", 10)
+            .setRandomData("audio_segment_1", 4)
+            .setRandomData("audio_segment_2", 5)
+            .setRandomData("audio_segment_3", 6);
+    DashDownloader dashDownloader = getDashDownloader(fakeDataSet, new StreamKey(0, 0, 0));
+    dashDownloader.setPinDownloadedContent(true);
+
+    dashDownloader.download(progressListener);
+
+    for (String key :
+        new String[] {"audio_init_data", "audio_segment_1", "audio_segment_2", "audio_segment_3"}) {
+      assertThat(ContentMetadata.isPinned(cache.getContentMetadata(key))).isTrue();
+    }
+  }
+
   @Test
   public void downloadRepresentationInSmallParts() throws Exception {
     FakeDataSet fakeDataSet =
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp4;
+
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import com.google.android.exoplayer2.extractor.mp4.Atom.ContainerAtom;
+import com.google.android.exoplayer2.extractor.mp4.Atom.LeafAtom;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import java.util.ArrayList;
+
+/**
+ * A pool of {@link LeafAtom} and {@link ContainerAtom} instances that are reused for atoms of the
+ * same type, so that atoms that occur repeatedly in a stream can be parsed without allocating.
+ *
+ * <p>Atoms obtained from the pool remain valid until {@link #releaseAll()} is called. The data
+ * array of a pooled {@link LeafAtom} may be longer than the atom, so it must only be read up to
+ * the {@link ParsableByteArray#limit() limit}.
+ */
+/* package */ final class AtomPool {
+
+  private final SparseArray<ArrayList<LeafAtom>> leafAtoms;
+  private final SparseArray<ArrayList<ContainerAtom>> containerAtoms;
+  private final SparseIntArray leafAtomsInUse;
+  private final SparseIntArray containerAtomsInUse;
+
+  public AtomPool() {
+    leafAtoms = new SparseArray<>();
+    containerAtoms = new SparseArray<>();
+    leafAtomsInUse = new SparseIntArray();
+    containerAtomsInUse = new SparseIntArray();
+  }
+
+  /**
+   * Returns a {@link LeafAtom} of the given type, whose data has a limit of {@code size} and a
+   * position of zero.
+   *
+   * @param type The type of the atom.
+   * @param size The size of the atom, including its header.
+   * @return The {@link LeafAtom}.
+   */
+  public LeafAtom obtainLeafAtom(int type, int size) {
+    ArrayList<LeafAtom> atoms = leafAtoms.get(type);
+    if (atoms == null) {
+      atoms = new ArrayList<>();
+      leafAtoms.put(type, atoms);
+    }
+    int inUseCount = leafAtomsInUse.get(type);
+    LeafAtom atom;
+    if (inUseCount < atoms.size()) {
+      atom = atoms.get(inUseCount);
+      atom.data.reset(size);
+    } else {
+      atom = new LeafAtom(type, new ParsableByteArray(size));
+      atoms.add(atom);
+    }
+    leafAtomsInUse.put(type, inUseCount + 1);
+    return atom;
+  }
+
+  /**
+   * Returns a {@link ContainerAtom} of the given type without any children.
+   *
+   * @param type The type of the atom.
+   * @param endPosition The position of the first byte after the end of the atom.
+   * @return The {@link ContainerAtom}.
+   */
+  public ContainerAtom obtainContainerAtom(int type, long endPosition) {
+    ArrayList<ContainerAtom> atoms = containerAtoms.get(type);
+    if (atoms == null) {
+      atoms = new ArrayList<>();
+      containerAtoms.put(type, atoms);
+    }
+    int inUseCount = containerAtomsInUse.get(type);
+    ContainerAtom atom;
+    if (inUseCount < atoms.size()) {
+      atom = atoms.get(inUseCount);
+      atom.reset(endPosition);
+    } else {
+      atom = new ContainerAtom(type, endPosition);
+      atoms.add(atom);
+    }
+    containerAtomsInUse.put(type, inUseCount + 1);
+    return atom;
+  }
+
+  /** Makes all atoms obtained from the pool available to be obtained again. */
+  public void releaseAll() {
+    leafAtomsInUse.clear();
+    containerAtomsInUse.clear();
+  }
+}
@@ -74,7 +74,8 @@ public class FragmentedMp4Extractor implements Extractor {
   /**
    * Flags controlling the behavior of the extractor. Possible flag values are {@link
    * #FLAG_WORKAROUND_EVERY_VIDEO_FRAME_IS_SYNC_FRAME}, {@link #FLAG_WORKAROUND_IGNORE_TFDT_BOX},
-   * {@link #FLAG_ENABLE_EMSG_TRACK} and {@link #FLAG_WORKAROUND_IGNORE_EDIT_LISTS}.
+   * {@link #FLAG_ENABLE_EMSG_TRACK}, {@link #FLAG_WORKAROUND_IGNORE_EDIT_LISTS} and {@link
+   * #FLAG_REUSE_FRAGMENT_ATOMS}.
    */
   @Documented
   @Retention(RetentionPolicy.SOURCE)
@@ -84,7 +85,8 @@ public class FragmentedMp4Extractor implements Extractor {
         FLAG_WORKAROUND_EVERY_VIDEO_FRAME_IS_SYNC_FRAME,
         FLAG_WORKAROUND_IGNORE_TFDT_BOX,
         FLAG_ENABLE_EMSG_TRACK,
-        FLAG_WORKAROUND_IGNORE_EDIT_LISTS
+        FLAG_WORKAROUND_IGNORE_EDIT_LISTS,
+        FLAG_REUSE_FRAGMENT_ATOMS
       })
   public @interface Flags {}
   /**
@@ -105,6 +107,12 @@ public class FragmentedMp4Extractor implements Extractor {
 
   /** Flag to ignore any edit lists in the stream. */
   public static final int FLAG_WORKAROUND_IGNORE_EDIT_LISTS = 1 << 4; // 16
+  /**
+   * Flag to reuse the atoms and atom buffers of fragments, and of top level sidx and emsg atoms,
+   * rather than allocating new ones for each fragment. This reduces garbage collection when
+   * extracting streams with many small fragments, such as low latency CMAF live streams.
+   */
+  public static final int FLAG_REUSE_FRAGMENT_ATOMS = 1 << 5; // 32
 
   private static final String TAG = "FragmentedMp4Extractor";
 
@@ -139,6 +147,7 @@ public class FragmentedMp4Extractor implements Extractor {
   private final ParsableByteArray nalStartCode;
   private final ParsableByteArray nalPrefix;
   private final ParsableByteArray nalBuffer;
+  private final NalUnitStartCodeRewriter nalUnitStartCodeRewriter;
   private final byte[] scratchBytes;
   private final ParsableByteArray scratch;
 
@@ -150,6 +159,7 @@ public class FragmentedMp4Extractor implements Extractor {
   // Parser state.
   private final ParsableByteArray atomHeader;
   private final ArrayDeque<ContainerAtom> containerAtoms;
+  private final AtomPool atomPool;
   private final ArrayDeque<MetadataSampleInfo> pendingMetadataSampleInfos;
   @Nullable private final TrackOutput additionalEmsgTrackOutput;
 
@@ -158,6 +168,7 @@ public class FragmentedMp4Extractor implements Extractor {
   private long atomSize;
   private int atomHeaderBytesRead;
   @Nullable private ParsableByteArray atomData;
+  @Nullable private LeafAtom pooledLeafAtom;
   private long endOfMdatPosition;
   private int pendingMetadataSampleBytes;
   private long pendingSeekTimeUs;
@@ -258,9 +269,11 @@ public class FragmentedMp4Extractor implements Extractor {
     nalStartCode = new ParsableByteArray(NalUnitUtil.NAL_START_CODE);
     nalPrefix = new ParsableByteArray(5);
     nalBuffer = new ParsableByteArray();
+    nalUnitStartCodeRewriter = new NalUnitStartCodeRewriter(/* minNalUnitLength= */ 1);
     scratchBytes = new byte[16];
     scratch = new ParsableByteArray(scratchBytes);
     containerAtoms = new ArrayDeque<>();
+    atomPool = new AtomPool();
     pendingMetadataSampleInfos = new ArrayDeque<>();
     trackBundles = new SparseArray<>();
     durationUs = C.TIME_UNSET;
@@ -313,6 +326,7 @@ public class FragmentedMp4Extractor implements Extractor {
     pendingMetadataSampleBytes = 0;
     pendingSeekTimeUs = timeUs;
     containerAtoms.clear();
+    atomPool.releaseAll();
     enterReadingAtomHeaderState();
   }
 
@@ -412,7 +426,10 @@ public class FragmentedMp4Extractor implements Extractor {
 
     if (shouldParseContainerAtom(atomType)) {
       long endPosition = input.getPosition() + atomSize - Atom.HEADER_SIZE;
-      containerAtoms.push(new ContainerAtom(atomType, endPosition));
+      containerAtoms.push(
+          shouldReuseAtom(atomType)
+              ? atomPool.obtainContainerAtom(atomType, endPosition)
+              : new ContainerAtom(atomType, endPosition));
       if (atomSize == atomHeaderBytesRead) {
         processAtomEnded(endPosition);
       } else {
@@ -426,7 +443,14 @@ public class FragmentedMp4Extractor implements Extractor {
       if (atomSize > Integer.MAX_VALUE) {
         throw new ParserException("Leaf atom with length > 2147483647 (unsupported).");
       }
-      ParsableByteArray atomData = new ParsableByteArray((int) atomSize);
+      ParsableByteArray atomData;
+      if (shouldReuseAtom(atomType)) {
+        pooledLeafAtom = atomPool.obtainLeafAtom(atomType, (int) atomSize);
+        atomData = pooledLeafAtom.data;
+      } else {
+        pooledLeafAtom = null;
+        atomData = new ParsableByteArray((int) atomSize);
+      }
       System.arraycopy(atomHeader.getData(), 0, atomData.getData(), 0, Atom.HEADER_SIZE);
       this.atomData = atomData;
       parserState = STATE_READING_ATOM_PAYLOAD;
@@ -446,7 +470,9 @@ public class FragmentedMp4Extractor implements Extractor {
     @Nullable ParsableByteArray atomData = this.atomData;
     if (atomData != null) {
       input.readFully(atomData.getData(), Atom.HEADER_SIZE, atomPayloadSize);
-      onLeafAtomRead(new LeafAtom(atomType, atomData), input.getPosition());
+      LeafAtom leafAtom =
+          pooledLeafAtom != null ? pooledLeafAtom : new LeafAtom(atomType, atomData);
+      onLeafAtomRead(leafAtom, input.getPosition());
     } else {
       input.skipFully(atomPayloadSize);
     }
@@ -471,6 +497,10 @@ public class FragmentedMp4Extractor implements Extractor {
     } else if (leaf.type == Atom.TYPE_emsg) {
       onEmsgLeafAtomRead(leaf.data);
     }
+    if (containerAtoms.isEmpty()) {
+      // Top level atoms are parsed immediately, so any pooled atoms can be reused.
+      atomPool.releaseAll();
+    }
   }
 
   private void onContainerAtomRead(ContainerAtom container) throws ParserException {
@@ -560,6 +590,8 @@ public class FragmentedMp4Extractor implements Extractor {
     parseMoof(moof, trackBundles, flags, scratchBytes);
 
     @Nullable DrmInitData drmInitData = getDrmInitDataFromAtoms(moof.leafChildren);
+    // The fragment has been parsed into the track fragments, so the pooled atoms can be reused.
+    atomPool.releaseAll();
     if (drmInitData != null) {
       int trackCount = trackBundles.size();
       for (int i = 0; i < trackCount; i++) {
@@ -911,8 +943,20 @@ public class FragmentedMp4Extractor implements Extractor {
         ((atomFlags & 0x20 /* default_sample_flags_present */) != 0)
             ? tfhd.readInt()
             : defaultSampleValues.flags;
-    trackBundle.fragment.header = new DefaultSampleValues(defaultSampleDescriptionIndex,
-        defaultSampleDuration, defaultSampleSize, defaultSampleFlags);
+    @Nullable DefaultSampleValues header = trackBundle.fragment.header;
+    if (header == null
+        || header.sampleDescriptionIndex != defaultSampleDescriptionIndex
+        || header.duration != defaultSampleDuration
+        || header.size != defaultSampleSize
+        || header.flags != defaultSampleFlags) {
+      // The values are usually the same for every fragment, in which case the header is reused.
+      trackBundle.fragment.header =
+          new DefaultSampleValues(
+              defaultSampleDescriptionIndex,
+              defaultSampleDuration,
+              defaultSampleSize,
+              defaultSampleFlags);
+    }
     return trackBundle;
   }
 
@@ -1335,6 +1379,7 @@ public class FragmentedMp4Extractor implements Extractor {
       sampleSize += sampleBytesWritten;
       parserState = STATE_READING_SAMPLE_CONTINUE;
       sampleCurrentNalBytesRemaining = 0;
+      nalUnitStartCodeRewriter.reset();
     }
 
     Track track = trackBundle.moovSampleTable.track;
@@ -1343,7 +1388,17 @@ public class FragmentedMp4Extractor implements Extractor {
     if (timestampAdjuster != null) {
       sampleTimeUs = timestampAdjuster.adjustSampleTimestamp(sampleTimeUs);
     }
-    if (track.nalUnitLengthFieldLength != 0) {
+    if (track.nalUnitLengthFieldLength == NalUnitStartCodeRewriter.NAL_UNIT_LENGTH_FIELD_LENGTH
+        && ceaTrackOutputs.length == 0) {
+      // The length delimiters can be replaced with start codes in place, so read the sample
+      // directly into the track output.
+      nalUnitStartCodeRewriter.setInput(input);
+      while (sampleBytesWritten < sampleSize) {
+        int writtenBytes =
+            output.sampleData(nalUnitStartCodeRewriter, sampleSize - sampleBytesWritten, false);
+        sampleBytesWritten += writtenBytes;
+      }
+    } else if (track.nalUnitLengthFieldLength != 0) {
       // Zero the top three bytes of the array that we'll use to decode nal unit lengths, in case
       // they're only 1 or 2 bytes long.
       byte[] nalPrefixData = nalPrefix.getData();
@@ -1527,6 +1582,31 @@ public class FragmentedMp4Extractor implements Extractor {
         || atom == Atom.TYPE_emsg;
   }
 
+  /**
+   * Returns whether the atom with type {@code atom} should be obtained from the {@link AtomPool}.
+   * Atoms whose data is retained after parsing, such as pssh atoms, must not be reused.
+   */
+  private boolean shouldReuseAtom(int atom) {
+    if ((flags & FLAG_REUSE_FRAGMENT_ATOMS) == 0) {
+      return false;
+    }
+    if (atom == Atom.TYPE_sidx || atom == Atom.TYPE_emsg) {
+      // Only top level sidx and emsg atoms are parsed immediately.
+      return containerAtoms.isEmpty();
+    }
+    return atom == Atom.TYPE_moof
+        || atom == Atom.TYPE_traf
+        || atom == Atom.TYPE_tfhd
+        || atom == Atom.TYPE_tfdt
+        || atom == Atom.TYPE_trun
+        || atom == Atom.TYPE_saiz
+        || atom == Atom.TYPE_saio
+        || atom == Atom.TYPE_senc
+        || atom == Atom.TYPE_uuid
+        || atom == Atom.TYPE_sbgp
+        || atom == Atom.TYPE_sgpd;
+  }
+
   /** Returns whether the extractor should decode a container atom with type {@code atom}. */
   private static boolean shouldParseContainerAtom(int atom) {
     return atom == Atom.TYPE_moov || atom == Atom.TYPE_trak || atom == Atom.TYPE_mdia
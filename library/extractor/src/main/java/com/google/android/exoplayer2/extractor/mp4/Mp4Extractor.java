@@ -140,6 +140,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
   // Temporary arrays.
   private final ParsableByteArray nalStartCode;
   private final ParsableByteArray nalLength;
+  private final NalUnitStartCodeRewriter nalUnitStartCodeRewriter;
   private final ParsableByteArray scratch;
 
   private final ParsableByteArray atomHeader;
@@ -191,6 +192,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     containerAtoms = new ArrayDeque<>();
     nalStartCode = new ParsableByteArray(NalUnitUtil.NAL_START_CODE);
     nalLength = new ParsableByteArray(4);
+    nalUnitStartCodeRewriter = new NalUnitStartCodeRewriter(/* minNalUnitLength= */ 0);
     scratch = new ParsableByteArray();
     sampleTrackIndex = C.INDEX_UNSET;
   }
@@ -584,7 +586,22 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       sampleSize -= Atom.HEADER_SIZE;
     }
     input.skipFully((int) skipAmount);
-    if (track.track.nalUnitLengthFieldLength != 0) {
+    if (track.track.nalUnitLengthFieldLength
+        == NalUnitStartCodeRewriter.NAL_UNIT_LENGTH_FIELD_LENGTH) {
+      // The length delimiters can be replaced with start codes in place, so read the sample
+      // directly into the track output.
+      if (sampleBytesWritten == 0) {
+        nalUnitStartCodeRewriter.reset();
+      }
+      nalUnitStartCodeRewriter.setInput(input);
+      while (sampleBytesWritten < sampleSize) {
+        int writtenBytes =
+            trackOutput.sampleData(
+                nalUnitStartCodeRewriter, sampleSize - sampleBytesWritten, false);
+        sampleBytesRead += writtenBytes;
+        sampleBytesWritten += writtenBytes;
+      }
+    } else if (track.track.nalUnitLengthFieldLength != 0) {
       // Zero the top three bytes of the array that we'll use to decode nal unit lengths, in case
       // they're only 1 or 2 bytes long.
       byte[] nalLengthData = nalLength.getData();
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp4;
+
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static java.lang.Math.min;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ParserException;
+import com.google.android.exoplayer2.upstream.DataReader;
+import java.io.IOException;
+
+/**
+ * A {@link DataReader} that reads length delimited NAL units with four byte length fields, and
+ * replaces each length field with a start code in the target array as it's read.
+ *
+ * <p>Since a start code has the same length as the length field it replaces, samples can be read
+ * directly into the memory of a {@link com.google.android.exoplayer2.extractor.TrackOutput}, in
+ * as few reads as the output allows, rather than copying each NAL unit's length field and start
+ * code separately.
+ */
+/* package */ final class NalUnitStartCodeRewriter implements DataReader {
+
+  /** The length of the length fields that can be rewritten in place. */
+  public static final int NAL_UNIT_LENGTH_FIELD_LENGTH = 4;
+
+  private final int minNalUnitLength;
+
+  @Nullable private DataReader input;
+  private int lengthFieldBytesRead;
+  private int nalUnitLength;
+  private int nalUnitBytesRemaining;
+
+  /**
+   * Creates an instance.
+   *
+   * @param minNalUnitLength The minimum valid NAL unit length. Reading a shorter NAL unit fails
+   *     with a {@link ParserException}.
+   */
+  public NalUnitStartCodeRewriter(int minNalUnitLength) {
+    this.minNalUnitLength = minNalUnitLength;
+  }
+
+  /**
+   * Sets the input from which data is read. Must be called before reading, and whenever the input
+   * changes.
+   */
+  public void setInput(DataReader input) {
+    this.input = input;
+  }
+
+  /** Resets the rewriter to read a new sample, which starts with a length field. */
+  public void reset() {
+    lengthFieldBytesRead = 0;
+    nalUnitLength = 0;
+    nalUnitBytesRemaining = 0;
+  }
+
+  @Override
+  public int read(byte[] target, int offset, int length) throws IOException {
+    int bytesRead = checkNotNull(input).read(target, offset, length);
+    if (bytesRead == C.RESULT_END_OF_INPUT) {
+      return C.RESULT_END_OF_INPUT;
+    }
+    int position = offset;
+    int limit = offset + bytesRead;
+    while (position < limit) {
+      if (nalUnitBytesRemaining > 0) {
+        int bytesToSkip = min(nalUnitBytesRemaining, limit - position);
+        position += bytesToSkip;
+        nalUnitBytesRemaining -= bytesToSkip;
+        continue;
+      }
+      // The length field may be split across reads, so it's rewritten one byte at a time.
+      nalUnitLength = (nalUnitLength << 8) | (target[position] & 0xFF);
+      lengthFieldBytesRead++;
+      target[position] = (byte) (lengthFieldBytesRead == NAL_UNIT_LENGTH_FIELD_LENGTH ? 1 : 0);
+      position++;
+      if (lengthFieldBytesRead == NAL_UNIT_LENGTH_FIELD_LENGTH) {
+        if (nalUnitLength < minNalUnitLength) {
+          throw new ParserException("Invalid NAL length");
+        }
+        nalUnitBytesRemaining = nalUnitLength;
+        lengthFieldBytesRead = 0;
+        nalUnitLength = 0;
+      }
+    }
+    return bytesRead;
+  }
+}
@@ -48,6 +48,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
 
 /**
  * Extracts data from the MPEG-2 TS container format.
@@ -113,16 +114,16 @@ public final class TsExtractor implements Extractor {
   private static final long AC4_FORMAT_IDENTIFIER = 0x41432d34;
   private static final long HEVC_FORMAT_IDENTIFIER = 0x48455643;
 
-  private static final int BUFFER_SIZE = TS_PACKET_SIZE * 50;
+  private static final int BUFFER_SIZE = TS_PACKET_SIZE * 200;
   private static final int SNIFF_TS_PACKET_COUNT = 5;
 
   private final @Mode int mode;
   private final int timestampSearchBytes;
   private final List<TimestampAdjuster> timestampAdjusters;
   private final ParsableByteArray tsPacketBuffer;
-  private final SparseIntArray continuityCounters;
+  private final int[] continuityCounters; // Indexed by pid
   private final TsPayloadReader.Factory payloadReaderFactory;
-  private final SparseArray<TsPayloadReader> tsPayloadReaders; // Indexed by pid
+  private final @NullableType TsPayloadReader[] tsPayloadReaders; // Indexed by pid
   private final SparseBooleanArray trackIds;
   private final SparseBooleanArray trackPids;
   private final TsDurationReader durationReader;
@@ -217,8 +218,9 @@ public final class TsExtractor implements Extractor {
     tsPacketBuffer = new ParsableByteArray(new byte[BUFFER_SIZE], 0);
     trackIds = new SparseBooleanArray();
     trackPids = new SparseBooleanArray();
-    tsPayloadReaders = new SparseArray<>();
-    continuityCounters = new SparseIntArray();
+    tsPayloadReaders = new TsPayloadReader[MAX_PID_PLUS_ONE];
+    continuityCounters = new int[MAX_PID_PLUS_ONE];
+    Arrays.fill(continuityCounters, C.INDEX_UNSET);
     durationReader = new TsDurationReader(timestampSearchBytes);
     pcrPid = -1;
     resetPayloadReaders();
@@ -276,9 +278,11 @@ public final class TsExtractor implements Extractor {
       tsBinarySearchSeeker.setSeekTargetUs(timeUs);
     }
     tsPacketBuffer.reset(/* limit= */ 0);
-    continuityCounters.clear();
-    for (int i = 0; i < tsPayloadReaders.size(); i++) {
-      tsPayloadReaders.valueAt(i).seek();
+    Arrays.fill(continuityCounters, C.INDEX_UNSET);
+    for (TsPayloadReader payloadReader : tsPayloadReaders) {
+      if (payloadReader != null) {
+        payloadReader.seek();
+      }
     }
     bytesSinceLastSync = 0;
   }
@@ -317,12 +321,36 @@ public final class TsExtractor implements Extractor {
       return RESULT_END_OF_INPUT;
     }
 
+    // Read all of the packets in the buffer, unless the tracks end. When they do, the state at the
+    // start of this method must be re-evaluated before reading further.
+    boolean wereTracksEnded = tracksEnded;
     int endOfPacket = findEndOfFirstTsPacketInBuffer();
-    int limit = tsPacketBuffer.limit();
-    if (endOfPacket > limit) {
-      return RESULT_CONTINUE;
+    while (endOfPacket <= tsPacketBuffer.limit()) {
+      readPacket(endOfPacket);
+      if (tracksEnded != wereTracksEnded) {
+        if (mode != MODE_HLS && inputLength != C.LENGTH_UNSET) {
+          // We have read all tracks from all PMTs in this non-live stream. Now seek to the
+          // beginning and read again to make sure we output all media, including any contained in
+          // packets prior to those containing the track information.
+          pendingSeekToStart = true;
+        }
+        break;
+      }
+      endOfPacket = findEndOfFirstTsPacketInBuffer();
     }
+    return RESULT_CONTINUE;
+  }
 
+  // Internals.
+
+  /**
+   * Reads the TS packet at the current position of the packet buffer, and sets the position to the
+   * end of the packet.
+   *
+   * @param endOfPacket The position of the end of the packet (exclusive) in the packet buffer.
+   */
+  private void readPacket(int endOfPacket) throws ParserException {
+    int limit = tsPacketBuffer.limit();
     @TsPayloadReader.Flags int packetHeaderFlags = 0;
 
     // Note: See ISO/IEC 13818-1, section 2.4.3.2 for details of the header format.
@@ -330,7 +358,7 @@ public final class TsExtractor implements Extractor {
     if ((tsPacketHeader & 0x800000) != 0) { // transport_error_indicator
       // There are uncorrectable errors in this packet.
       tsPacketBuffer.setPosition(endOfPacket);
-      return RESULT_CONTINUE;
+      return;
     }
     packetHeaderFlags |= (tsPacketHeader & 0x400000) != 0 ? FLAG_PAYLOAD_UNIT_START_INDICATOR : 0;
     // Ignoring transport_priority (tsPacketHeader & 0x200000)
@@ -339,21 +367,24 @@ public final class TsExtractor implements Extractor {
     boolean adaptationFieldExists = (tsPacketHeader & 0x20) != 0;
     boolean payloadExists = (tsPacketHeader & 0x10) != 0;
 
-    TsPayloadReader payloadReader = payloadExists ? tsPayloadReaders.get(pid) : null;
+    @Nullable TsPayloadReader payloadReader = payloadExists ? tsPayloadReaders[pid] : null;
     if (payloadReader == null) {
       tsPacketBuffer.setPosition(endOfPacket);
-      return RESULT_CONTINUE;
+      return;
     }
 
     // Discontinuity check.
     if (mode != MODE_HLS) {
       int continuityCounter = tsPacketHeader & 0xF;
-      int previousCounter = continuityCounters.get(pid, continuityCounter - 1);
-      continuityCounters.put(pid, continuityCounter);
+      int previousCounter = continuityCounters[pid];
+      if (previousCounter == C.INDEX_UNSET) {
+        previousCounter = continuityCounter - 1;
+      }
+      continuityCounters[pid] = continuityCounter;
       if (previousCounter == continuityCounter) {
         // Duplicate packet found.
         tsPacketBuffer.setPosition(endOfPacket);
-        return RESULT_CONTINUE;
+        return;
       } else if (continuityCounter != ((previousCounter + 1) & 0xF)) {
         // Discontinuity found.
         payloadReader.seek();
@@ -373,25 +404,14 @@ public final class TsExtractor implements Extractor {
     }
 
     // Read the payload.
-    boolean wereTracksEnded = tracksEnded;
     if (shouldConsumePacketPayload(pid)) {
       tsPacketBuffer.setLimit(endOfPacket);
       payloadReader.consume(tsPacketBuffer, packetHeaderFlags);
       tsPacketBuffer.setLimit(limit);
     }
-    if (mode != MODE_HLS && !wereTracksEnded && tracksEnded && inputLength != C.LENGTH_UNSET) {
-      // We have read all tracks from all PMTs in this non-live stream. Now seek to the beginning
-      // and read again to make sure we output all media, including any contained in packets prior
-      // to those containing the track information.
-      pendingSeekToStart = true;
-    }
-
     tsPacketBuffer.setPosition(endOfPacket);
-    return RESULT_CONTINUE;
   }
 
-  // Internals.
-
   private void maybeOutputSeekMap(long inputLength) {
     if (!hasOutputSeekMap) {
       hasOutputSeekMap = true;
@@ -467,14 +487,14 @@ public final class TsExtractor implements Extractor {
 
   private void resetPayloadReaders() {
     trackIds.clear();
-    tsPayloadReaders.clear();
+    Arrays.fill(tsPayloadReaders, null);
     SparseArray<TsPayloadReader> initialPayloadReaders =
         payloadReaderFactory.createInitialPayloadReaders();
     int initialPayloadReadersSize = initialPayloadReaders.size();
     for (int i = 0; i < initialPayloadReadersSize; i++) {
-      tsPayloadReaders.put(initialPayloadReaders.keyAt(i), initialPayloadReaders.valueAt(i));
+      tsPayloadReaders[initialPayloadReaders.keyAt(i)] = initialPayloadReaders.valueAt(i);
     }
-    tsPayloadReaders.put(TS_PAT_PID, new SectionReader(new PatReader()));
+    tsPayloadReaders[TS_PAT_PID] = new SectionReader(new PatReader());
     id3Reader = null;
   }
 
@@ -521,14 +541,14 @@ public final class TsExtractor implements Extractor {
           patScratch.skipBits(13); // network_PID (13)
         } else {
           int pid = patScratch.readBits(13);
-          if (tsPayloadReaders.get(pid) == null) {
-            tsPayloadReaders.put(pid, new SectionReader(new PmtReader(pid)));
+          if (tsPayloadReaders[pid] == null) {
+            tsPayloadReaders[pid] = new SectionReader(new PmtReader(pid));
             remainingPmts++;
           }
         }
       }
       if (mode != MODE_HLS) {
-        tsPayloadReaders.remove(TS_PAT_PID);
+        tsPayloadReaders[TS_PAT_PID] = null;
       }
     }
 
@@ -667,7 +687,7 @@ public final class TsExtractor implements Extractor {
             reader.init(timestampAdjuster, output,
                 new TrackIdGenerator(programNumber, trackId, MAX_PID_PLUS_ONE));
           }
-          tsPayloadReaders.put(trackPid, reader);
+          tsPayloadReaders[trackPid] = reader;
         }
       }
 
@@ -678,7 +698,7 @@ public final class TsExtractor implements Extractor {
           tracksEnded = true;
         }
       } else {
-        tsPayloadReaders.remove(pid);
+        tsPayloadReaders[pid] = null;
         remainingPmts = mode == MODE_SINGLE_PMT ? 0 : remainingPmts - 1;
         if (remainingPmts == 0) {
           output.endTracks();
@@ -122,10 +122,39 @@ public final class FragmentedMp4ExtractorTest {
         simulationConfig);
   }
 
+  @Test
+  public void sampleWithReusedFragmentAtoms() throws Exception {
+    ExtractorAsserts.assertBehavior(
+        getExtractorFactory(FragmentedMp4Extractor.FLAG_REUSE_FRAGMENT_ATOMS, ImmutableList.of()),
+        "media/mp4/sample_fragmented.mp4",
+        simulationConfig);
+  }
+
+  @Test
+  public void sampleSeekableWithReusedFragmentAtoms() throws Exception {
+    ExtractorAsserts.assertBehavior(
+        getExtractorFactory(FragmentedMp4Extractor.FLAG_REUSE_FRAGMENT_ATOMS, ImmutableList.of()),
+        "media/mp4/sample_fragmented_seekable.mp4",
+        simulationConfig);
+  }
+
+  @Test
+  public void sampleWithProtectedAc4TrackAndReusedFragmentAtoms() throws Exception {
+    ExtractorAsserts.assertBehavior(
+        getExtractorFactory(FragmentedMp4Extractor.FLAG_REUSE_FRAGMENT_ATOMS, ImmutableList.of()),
+        "media/mp4/sample_ac4_protected.mp4",
+        simulationConfig);
+  }
+
   private static ExtractorFactory getExtractorFactory(final List<Format> closedCaptionFormats) {
+    return getExtractorFactory(/* flags= */ 0, closedCaptionFormats);
+  }
+
+  private static ExtractorFactory getExtractorFactory(
+      @FragmentedMp4Extractor.Flags int flags, final List<Format> closedCaptionFormats) {
     return () ->
         new FragmentedMp4Extractor(
-            /* flags= */ 0,
+            flags,
             /* timestampAdjuster= */ null,
             /* sideloadedTrack= */ null,
             closedCaptionFormats);
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp4;
+
+import static com.google.android.exoplayer2.testutil.TestUtil.createByteArray;
+import static com.google.common.truth.Truth.assertThat;
+import static java.lang.Math.min;
+import static org.junit.Assert.assertThrows;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.ParserException;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import java.io.IOException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link NalUnitStartCodeRewriter}. */
+@RunWith(AndroidJUnit4.class)
+public final class NalUnitStartCodeRewriterTest {
+
+  private static final byte[] LENGTH_DELIMITED_DATA =
+      createByteArray(0, 0, 0, 2, 0x65, 0x11, 0, 0, 0, 3, 0x41, 0x22, 0x33, 0, 0, 0, 1, 0x06);
+  private static final byte[] START_CODE_DELIMITED_DATA =
+      createByteArray(0, 0, 0, 1, 0x65, 0x11, 0, 0, 0, 1, 0x41, 0x22, 0x33, 0, 0, 0, 1, 0x06);
+
+  @Test
+  public void read_replacesLengthFieldsWithStartCodes() throws IOException {
+    NalUnitStartCodeRewriter rewriter = new NalUnitStartCodeRewriter(/* minNalUnitLength= */ 1);
+    rewriter.setInput(new FakeExtractorInput.Builder().setData(LENGTH_DELIMITED_DATA).build());
+    rewriter.reset();
+
+    assertThat(readFully(rewriter, LENGTH_DELIMITED_DATA.length, /* maxReadLength= */ 100))
+        .isEqualTo(START_CODE_DELIMITED_DATA);
+  }
+
+  @Test
+  public void read_withLengthFieldsSplitAcrossReads_replacesLengthFieldsWithStartCodes()
+      throws IOException {
+    NalUnitStartCodeRewriter rewriter = new NalUnitStartCodeRewriter(/* minNalUnitLength= */ 1);
+    rewriter.setInput(
+        new FakeExtractorInput.Builder()
+            .setData(LENGTH_DELIMITED_DATA)
+            .setSimulatePartialReads(true)
+            .build());
+    rewriter.reset();
+
+    assertThat(readFully(rewriter, LENGTH_DELIMITED_DATA.length, /* maxReadLength= */ 3))
+        .isEqualTo(START_CODE_DELIMITED_DATA);
+  }
+
+  @Test
+  public void read_withNalUnitShorterThanMinimum_throwsParserException() {
+    NalUnitStartCodeRewriter rewriter = new NalUnitStartCodeRewriter(/* minNalUnitLength= */ 1);
+    byte[] data = createByteArray(0, 0, 0, 0, 0x65);
+    rewriter.setInput(new FakeExtractorInput.Builder().setData(data).build());
+    rewriter.reset();
+
+    assertThrows(
+        ParserException.class,
+        () -> readFully(rewriter, data.length, /* maxReadLength= */ data.length));
+  }
+
+  private static byte[] readFully(NalUnitStartCodeRewriter rewriter, int length, int maxReadLength)
+      throws IOException {
+    byte[] data = new byte[length];
+    int position = 0;
+    while (position < length) {
+      position += rewriter.read(data, position, min(maxReadLength, length - position));
+    }
+    return data;
+  }
+}
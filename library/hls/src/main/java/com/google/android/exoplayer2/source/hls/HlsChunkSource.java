@@ -503,6 +503,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       scratchSpace = encryptionKeyChunk.getDataHolder();
       keyCache.put(encryptionKeyChunk.dataSpec.uri, checkNotNull(encryptionKeyChunk.getResult()));
     }
+    trackSelection.onChunkLoadCompleted(chunk);
   }
 
   /**
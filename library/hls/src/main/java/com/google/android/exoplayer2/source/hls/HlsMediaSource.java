@@ -60,6 +60,7 @@ import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /** An HLS {@link MediaSource}. */
 public final class HlsMediaSource extends BaseMediaSource
@@ -109,6 +110,7 @@ public final class HlsMediaSource extends BaseMediaSource
     private List<StreamKey> streamKeys;
     @Nullable private Object tag;
     private long elapsedRealTimeOffsetMs;
+    @Nullable private Executor loadExecutor;
 
     /**
      * Creates a new factory for {@link HlsMediaSource}s.
@@ -231,6 +233,27 @@ public final class HlsMediaSource extends BaseMediaSource
       return this;
     }
 
+    /**
+     * Sets a shared {@link Executor} on which playlists and chunks are loaded. The default is null,
+     * in which case each loader of a created media source loads on a thread of its own.
+     *
+     * <p>Sharing a bounded executor between the media sources of many players limits the number
+     * of loading threads. Loads are queued while all of the executor's threads are busy, so it
+     * should have enough threads for the loads that are expected to run at the same time. The
+     * executor is not shut down when media sources are released.
+     *
+     * <p>Playlists are only loaded on the executor if the default {@link
+     * DefaultHlsPlaylistTracker#FACTORY} is used. A custom {@link HlsPlaylistTracker} manages its
+     * own loading.
+     *
+     * @param loadExecutor A shared {@link Executor}, or null to use a thread per loader.
+     * @return This factory, for convenience.
+     */
+    public Factory setLoadExecutor(@Nullable Executor loadExecutor) {
+      this.loadExecutor = loadExecutor;
+      return this;
+    }
+
     /**
      * Sets whether chunkless preparation is allowed. If true, preparation without chunk downloads
      * will be enabled for streams that provide sufficient information in their master playlist.
@@ -387,6 +410,20 @@ public final class HlsMediaSource extends BaseMediaSource
       } else if (needsStreamKeys) {
         mediaItem = mediaItem.buildUpon().setStreamKeys(streamKeys).build();
       }
+      HlsPlaylistTracker playlistTracker;
+      if (loadExecutor != null && playlistTrackerFactory == DefaultHlsPlaylistTracker.FACTORY) {
+        playlistTracker =
+            new DefaultHlsPlaylistTracker(
+                hlsDataSourceFactory,
+                loadErrorHandlingPolicy,
+                playlistParserFactory,
+                DefaultHlsPlaylistTracker.DEFAULT_PLAYLIST_STUCK_TARGET_DURATION_COEFFICIENT,
+                loadExecutor);
+      } else {
+        playlistTracker =
+            playlistTrackerFactory.createTracker(
+                hlsDataSourceFactory, loadErrorHandlingPolicy, playlistParserFactory);
+      }
       return new HlsMediaSource(
           mediaItem,
           hlsDataSourceFactory,
@@ -394,12 +431,12 @@ public final class HlsMediaSource extends BaseMediaSource
           compositeSequenceableLoaderFactory,
           drmSessionManagerProvider.get(mediaItem),
           loadErrorHandlingPolicy,
-          playlistTrackerFactory.createTracker(
-              hlsDataSourceFactory, loadErrorHandlingPolicy, playlistParserFactory),
+          playlistTracker,
           elapsedRealTimeOffsetMs,
           allowChunklessPreparation,
           metadataType,
-          useSessionKeys);
+          useSessionKeys,
+          loadExecutor);
     }
 
     @Override
@@ -420,6 +457,7 @@ public final class HlsMediaSource extends BaseMediaSource
   private final HlsPlaylistTracker playlistTracker;
   private final long elapsedRealTimeOffsetMs;
   private final MediaItem mediaItem;
+  @Nullable private final Executor loadExecutor;
 
   private MediaItem.LiveConfiguration liveConfiguration;
   @Nullable private TransferListener mediaTransferListener;
@@ -435,7 +473,8 @@ public final class HlsMediaSource extends BaseMediaSource
       long elapsedRealTimeOffsetMs,
       boolean allowChunklessPreparation,
       @MetadataType int metadataType,
-      boolean useSessionKeys) {
+      boolean useSessionKeys,
+      @Nullable Executor loadExecutor) {
     this.playbackProperties = checkNotNull(mediaItem.playbackProperties);
     this.mediaItem = mediaItem;
     this.liveConfiguration = mediaItem.liveConfiguration;
@@ -449,6 +488,7 @@ public final class HlsMediaSource extends BaseMediaSource
     this.allowChunklessPreparation = allowChunklessPreparation;
     this.metadataType = metadataType;
     this.useSessionKeys = useSessionKeys;
+    this.loadExecutor = loadExecutor;
   }
 
   /**
@@ -498,7 +538,8 @@ public final class HlsMediaSource extends BaseMediaSource
         compositeSequenceableLoaderFactory,
         allowChunklessPreparation,
         metadataType,
-        useSessionKeys);
+        useSessionKeys,
+        loadExecutor);
   }
 
   @Override
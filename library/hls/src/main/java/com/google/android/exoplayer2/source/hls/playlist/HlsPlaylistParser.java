@@ -38,6 +38,7 @@ import com.google.android.exoplayer2.source.hls.playlist.HlsMasterPlaylist.Varia
 import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist.Part;
 import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist.RenditionReport;
 import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist.Segment;
+import com.google.android.exoplayer2.source.hls.playlist.HlsMediaPlaylist.SegmentBase;
 import com.google.android.exoplayer2.upstream.ParsingLoadable;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Log;
@@ -129,6 +130,11 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
   private static final String BOOLEAN_FALSE = "NO";
 
   private static final String ATTR_CLOSED_CAPTIONS_NONE = "CLOSED-CAPTIONS=NONE";
+  private static final String ATTR_URI = "URI";
+  private static final String ATTR_DURATION = "DURATION";
+  private static final String ATTR_INDEPENDENT = "INDEPENDENT";
+  private static final String ATTR_GAP = "GAP";
+  private static final String ATTR_BYTERANGE = "BYTERANGE";
 
   private static final Pattern REGEX_AVERAGE_BANDWIDTH =
       Pattern.compile("AVERAGE-BANDWIDTH=(\\d+)\\b");
@@ -164,13 +170,9 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
       + ":(\\d+)\\b");
   private static final Pattern REGEX_MEDIA_DURATION = Pattern.compile(TAG_MEDIA_DURATION
       + ":([\\d\\.]+)\\b");
-  private static final Pattern REGEX_MEDIA_TITLE =
-      Pattern.compile(TAG_MEDIA_DURATION + ":[\\d\\.]+\\b,(.+)");
   private static final Pattern REGEX_LAST_MSN = Pattern.compile("LAST-MSN" + "=(\\d+)\\b");
   private static final Pattern REGEX_LAST_PART = Pattern.compile("LAST-PART" + "=(\\d+)\\b");
   private static final Pattern REGEX_TIME_OFFSET = Pattern.compile("TIME-OFFSET=(-?[\\d\\.]+)\\b");
-  private static final Pattern REGEX_BYTERANGE = Pattern.compile(TAG_BYTERANGE
-      + ":(\\d+(?:@\\d+)?)\\b");
   private static final Pattern REGEX_ATTR_BYTERANGE =
       Pattern.compile("BYTERANGE=\"(\\d+(?:@\\d+)?)\\b\"");
   private static final Pattern REGEX_BYTERANGE_START = Pattern.compile("BYTERANGE-START=(\\d+)\\b");
@@ -208,8 +210,6 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
   private static final Pattern REGEX_AUTOSELECT = compileBooleanAttrPattern("AUTOSELECT");
   private static final Pattern REGEX_DEFAULT = compileBooleanAttrPattern("DEFAULT");
   private static final Pattern REGEX_FORCED = compileBooleanAttrPattern("FORCED");
-  private static final Pattern REGEX_INDEPENDENT = compileBooleanAttrPattern("INDEPENDENT");
-  private static final Pattern REGEX_GAP = compileBooleanAttrPattern("GAP");
   private static final Pattern REGEX_VALUE = Pattern.compile("VALUE=\"(.+?)\"");
   private static final Pattern REGEX_IMPORT = Pattern.compile("IMPORT=\"(.+?)\"");
   private static final Pattern REGEX_VARIABLE_REFERENCE =
@@ -634,6 +634,9 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
     HashMap<String, Segment> urlToInferredInitSegment = new HashMap<>();
     List<Segment> segments = new ArrayList<>();
     List<Part> trailingParts = new ArrayList<>();
+    // The number of trailing parts derived from the parts of the same segment in the previous
+    // playlist.
+    int previousTrailingPartCount = 0;
     @Nullable Part preloadPart = null;
     Map<Uri, RenditionReport> renditionReports = new HashMap<>();
     List<String> tags = new ArrayList<>();
@@ -708,13 +711,27 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
               "The encryption IV attribute must be present when an initialization segment is "
                   + "encrypted with METHOD=AES-128.");
         }
-        initializationSegment =
-            new Segment(
-                uri,
-                segmentByteRangeOffset,
-                segmentByteRangeLength,
-                fullSegmentEncryptionKeyUri,
-                fullSegmentEncryptionIV);
+        @Nullable
+        Segment previousInitializationSegment =
+            getPreviousInitializationSegment(previousMediaPlaylist, segmentMediaSequence);
+        if (previousInitializationSegment != null
+            && previousInitializationSegment.url.equals(uri)
+            && previousInitializationSegment.byteRangeOffset == segmentByteRangeOffset
+            && previousInitializationSegment.byteRangeLength == segmentByteRangeLength
+            && Util.areEqual(
+                previousInitializationSegment.fullSegmentEncryptionKeyUri,
+                fullSegmentEncryptionKeyUri)
+            && Util.areEqual(previousInitializationSegment.encryptionIV, fullSegmentEncryptionIV)) {
+          initializationSegment = previousInitializationSegment;
+        } else {
+          initializationSegment =
+              new Segment(
+                  uri,
+                  segmentByteRangeOffset,
+                  segmentByteRangeLength,
+                  fullSegmentEncryptionKeyUri,
+                  fullSegmentEncryptionIV);
+        }
         segmentByteRangeOffset = 0;
         segmentByteRangeLength = C.LENGTH_UNSET;
       } else if (line.startsWith(TAG_TARGET_DURATION)) {
@@ -739,9 +756,25 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
               parseStringAttr(line, REGEX_VALUE, variableDefinitions));
         }
       } else if (line.startsWith(TAG_MEDIA_DURATION)) {
+        // Parsed without regular expressions, as this tag is present for every segment.
+        int durationStartIndex = TAG_MEDIA_DURATION.length() + 1;
+        int durationEndIndex = durationStartIndex;
+        while (durationEndIndex < line.length() && isDecimalChar(line.charAt(durationEndIndex))) {
+          durationEndIndex++;
+        }
+        if (durationEndIndex == durationStartIndex || line.charAt(durationStartIndex - 1) != ':') {
+          throw new ParserException(
+              "Couldn't match " + REGEX_MEDIA_DURATION.pattern() + " in " + line);
+        }
         segmentDurationUs =
-            (long) (parseDoubleAttr(line, REGEX_MEDIA_DURATION) * C.MICROS_PER_SECOND);
-        segmentTitle = parseOptionalStringAttr(line, REGEX_MEDIA_TITLE, "", variableDefinitions);
+            (long)
+                (Double.parseDouble(line.substring(durationStartIndex, durationEndIndex))
+                    * C.MICROS_PER_SECOND);
+        segmentTitle =
+            durationEndIndex + 1 < line.length() && line.charAt(durationEndIndex) == ','
+                ? replaceVariableReferences(
+                    line.substring(durationEndIndex + 1), variableDefinitions)
+                : "";
       } else if (line.startsWith(TAG_SKIP)) {
         int skippedSegmentCount = parseIntAttr(line, REGEX_SKIPPED_SEGMENTS);
         checkState(previousMediaPlaylist != null && segments.isEmpty());
@@ -810,11 +843,17 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
           }
         }
       } else if (line.startsWith(TAG_BYTERANGE)) {
-        String byteRange = parseStringAttr(line, REGEX_BYTERANGE, variableDefinitions);
+        if (line.length() <= TAG_BYTERANGE.length() + 1
+            || line.charAt(TAG_BYTERANGE.length()) != ':') {
+          throw new ParserException("Missing byte range value in " + line);
+        }
+        String byteRange =
+            replaceVariableReferences(
+                line.substring(TAG_BYTERANGE.length() + 1), variableDefinitions);
         String[] splitByteRange = Util.split(byteRange, "@");
-        segmentByteRangeLength = Long.parseLong(splitByteRange[0]);
+        segmentByteRangeLength = parseByteRangeValue(splitByteRange[0], line);
         if (splitByteRange.length > 1) {
-          segmentByteRangeOffset = Long.parseLong(splitByteRange[1]);
+          segmentByteRangeOffset = parseByteRangeValue(splitByteRange[1], line);
         }
       } else if (line.startsWith(TAG_DISCONTINUITY_SEQUENCE)) {
         hasDiscontinuitySequence = true;
@@ -892,22 +931,29 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
         String segmentEncryptionIV =
             getSegmentEncryptionIV(
                 segmentMediaSequence, fullSegmentEncryptionKeyUri, fullSegmentEncryptionIV);
-        String url = parseStringAttr(line, REGEX_URI, variableDefinitions);
+        // Attributes are parsed without regular expressions, as there are many parts per segment.
+        String url =
+            replaceVariableReferences(
+                parseAttributeValue(line, ATTR_URI), variableDefinitions);
         long partDurationUs =
-            (long) (parseDoubleAttr(line, REGEX_ATTR_DURATION) * C.MICROS_PER_SECOND);
+            (long)
+                (Double.parseDouble(parseAttributeValue(line, ATTR_DURATION))
+                    * C.MICROS_PER_SECOND);
         boolean isIndependent =
-            parseOptionalBooleanAttribute(line, REGEX_INDEPENDENT, /* defaultValue= */ false);
+            BOOLEAN_TRUE.equals(parseOptionalAttributeValue(line, ATTR_INDEPENDENT));
         // The first part of a segment is always independent if the segments are independent.
         isIndependent |= hasIndependentSegmentsTag && trailingParts.isEmpty();
-        boolean isGap = parseOptionalBooleanAttribute(line, REGEX_GAP, /* defaultValue= */ false);
-        @Nullable
-        String byteRange = parseOptionalStringAttr(line, REGEX_ATTR_BYTERANGE, variableDefinitions);
+        boolean isGap = BOOLEAN_TRUE.equals(parseOptionalAttributeValue(line, ATTR_GAP));
+        @Nullable String byteRange = parseOptionalAttributeValue(line, ATTR_BYTERANGE);
+        if (byteRange != null) {
+          byteRange = replaceVariableReferences(byteRange, variableDefinitions);
+        }
         long partByteRangeLength = C.LENGTH_UNSET;
         if (byteRange != null) {
           String[] splitByteRange = Util.split(byteRange, "@");
-          partByteRangeLength = Long.parseLong(splitByteRange[0]);
+          partByteRangeLength = parseByteRangeValue(splitByteRange[0], line);
           if (splitByteRange.length > 1) {
-            partByteRangeOffset = Long.parseLong(splitByteRange[1]);
+            partByteRangeOffset = parseByteRangeValue(splitByteRange[1], line);
           }
         }
         if (partByteRangeLength == C.LENGTH_UNSET) {
@@ -920,21 +966,46 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
             playlistProtectionSchemes = getPlaylistProtectionSchemes(encryptionScheme, schemeDatas);
           }
         }
-        trailingParts.add(
-            new Part(
+        @Nullable
+        Part previousPart =
+            getPreviousPart(previousMediaPlaylist, segmentMediaSequence, trailingParts.size());
+        if (previousPart != null
+            && !previousPart.isPreload
+            && previousPart.isIndependent == isIndependent
+            && hasSameProperties(
+                previousPart,
                 url,
                 initializationSegment,
                 partDurationUs,
-                relativeDiscontinuitySequence,
-                partStartTimeUs,
                 cachedDrmInitData,
                 fullSegmentEncryptionKeyUri,
                 segmentEncryptionIV,
                 partByteRangeOffset,
                 partByteRangeLength,
-                isGap,
-                isIndependent,
-                /* isPreload= */ false));
+                isGap)) {
+          if (previousPart.relativeStartTimeUs != partStartTimeUs
+              || previousPart.relativeDiscontinuitySequence != relativeDiscontinuitySequence) {
+            previousPart = previousPart.copyWith(partStartTimeUs, relativeDiscontinuitySequence);
+          }
+          trailingParts.add(previousPart);
+          previousTrailingPartCount++;
+        } else {
+          trailingParts.add(
+              new Part(
+                  url,
+                  initializationSegment,
+                  partDurationUs,
+                  relativeDiscontinuitySequence,
+                  partStartTimeUs,
+                  cachedDrmInitData,
+                  fullSegmentEncryptionKeyUri,
+                  segmentEncryptionIV,
+                  partByteRangeOffset,
+                  partByteRangeLength,
+                  isGap,
+                  isIndependent,
+                  /* isPreload= */ false));
+        }
         partStartTimeUs += partDurationUs;
         if (partByteRangeLength != C.LENGTH_UNSET) {
           partByteRangeOffset += partByteRangeLength;
@@ -944,6 +1015,8 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
         String segmentEncryptionIV =
             getSegmentEncryptionIV(
                 segmentMediaSequence, fullSegmentEncryptionKeyUri, fullSegmentEncryptionIV);
+        @Nullable
+        Segment previousSegment = getPreviousSegment(previousMediaPlaylist, segmentMediaSequence);
         segmentMediaSequence++;
         String segmentUri = replaceVariableReferences(line, variableDefinitions);
         @Nullable Segment inferredInitSegment = urlToInferredInitSegment.get(segmentUri);
@@ -974,26 +1047,56 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
           }
         }
 
-        segments.add(
-            new Segment(
+        @Nullable
+        Segment segmentInitializationSegment =
+            initializationSegment != null ? initializationSegment : inferredInitSegment;
+        if (previousSegment != null
+            && previousSegment.title.equals(segmentTitle)
+            && previousSegment.parts.size() == trailingParts.size()
+            && previousTrailingPartCount == trailingParts.size()
+            && hasSameProperties(
+                previousSegment,
                 segmentUri,
-                initializationSegment != null ? initializationSegment : inferredInitSegment,
-                segmentTitle,
+                segmentInitializationSegment,
                 segmentDurationUs,
-                relativeDiscontinuitySequence,
-                segmentStartTimeUs,
                 cachedDrmInitData,
                 fullSegmentEncryptionKeyUri,
                 segmentEncryptionIV,
                 segmentByteRangeOffset,
                 segmentByteRangeLength,
-                hasGapTag,
-                trailingParts));
+                hasGapTag)) {
+          // The segment is unchanged since the previous playlist, so the instance can be reused.
+          // If the window of the playlist has moved, only the position of the segment relative to
+          // the start of the playlist has changed, as for segments skipped by EXT-X-SKIP.
+          if (previousSegment.relativeStartTimeUs != segmentStartTimeUs
+              || previousSegment.relativeDiscontinuitySequence != relativeDiscontinuitySequence) {
+            previousSegment =
+                previousSegment.copyWith(segmentStartTimeUs, relativeDiscontinuitySequence);
+          }
+          segments.add(previousSegment);
+        } else {
+          segments.add(
+              new Segment(
+                  segmentUri,
+                  segmentInitializationSegment,
+                  segmentTitle,
+                  segmentDurationUs,
+                  relativeDiscontinuitySequence,
+                  segmentStartTimeUs,
+                  cachedDrmInitData,
+                  fullSegmentEncryptionKeyUri,
+                  segmentEncryptionIV,
+                  segmentByteRangeOffset,
+                  segmentByteRangeLength,
+                  hasGapTag,
+                  trailingParts));
+        }
         segmentStartTimeUs += segmentDurationUs;
         partStartTimeUs = segmentStartTimeUs;
         segmentDurationUs = 0;
         segmentTitle = "";
         trailingParts = new ArrayList<>();
+        previousTrailingPartCount = 0;
         if (segmentByteRangeLength != C.LENGTH_UNSET) {
           segmentByteRangeOffset += segmentByteRangeLength;
         }
@@ -1173,6 +1276,14 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
     return Double.parseDouble(parseStringAttr(line, pattern, Collections.emptyMap()));
   }
 
+  private static long parseByteRangeValue(String value, String line) throws ParserException {
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw new ParserException("Invalid byte range in " + line, e);
+    }
+  }
+
   private static String parseStringAttr(
       String line, Pattern pattern, Map<String, String> variableDefinitions)
       throws ParserException {
@@ -1211,6 +1322,10 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
 
   private static String replaceVariableReferences(
       String string, Map<String, String> variableDefinitions) {
+    if (variableDefinitions.isEmpty() || !string.contains("{$")) {
+      // Avoid the matcher allocations for the common case of a string without references.
+      return string;
+    }
     Matcher matcher = REGEX_VARIABLE_REFERENCE.matcher(string);
     // TODO: Replace StringBuffer with StringBuilder once Java 9 is available.
     StringBuffer stringWithReplacements = new StringBuffer();
@@ -1227,6 +1342,154 @@ public final class HlsPlaylistParser implements ParsingLoadable.Parser<HlsPlayli
     return stringWithReplacements.toString();
   }
 
+  /**
+   * Returns the value of the attribute with the given name in the attribute list of a tag line,
+   * with the quotes of a quoted-string value removed.
+   *
+   * @throws ParserException If the tag does not have the attribute.
+   */
+  private static String parseAttributeValue(String line, String name) throws ParserException {
+    @Nullable String value = parseOptionalAttributeValue(line, name);
+    if (value != null) {
+      return value;
+    } else {
+      throw new ParserException("Couldn't find " + name + " in " + line);
+    }
+  }
+
+  /**
+   * Returns the value of the attribute with the given name in the attribute list of a tag line,
+   * with the quotes of a quoted-string value removed, or null if the tag does not have the
+   * attribute.
+   *
+   * <p>Unlike the regular expression based methods, the attribute list is scanned in a single pass
+   * and only the value of the requested attribute is copied. See RFC 8216, Section 4.2.
+   */
+  @Nullable
+  private static String parseOptionalAttributeValue(String line, String name) {
+    int length = line.length();
+    int attributeStartIndex = line.indexOf(':') + 1;
+    while (attributeStartIndex > 0 && attributeStartIndex < length) {
+      while (attributeStartIndex < length && line.charAt(attributeStartIndex) == ' ') {
+        attributeStartIndex++;
+      }
+      int nameEndIndex = line.indexOf('=', attributeStartIndex);
+      if (nameEndIndex == -1) {
+        return null;
+      }
+      int valueStartIndex = nameEndIndex + 1;
+      int valueEndIndex;
+      int nextAttributeIndex;
+      if (valueStartIndex < length && line.charAt(valueStartIndex) == '"') {
+        valueStartIndex++;
+        valueEndIndex = line.indexOf('"', valueStartIndex);
+        if (valueEndIndex == -1) {
+          valueEndIndex = length;
+        }
+        nextAttributeIndex = line.indexOf(',', valueEndIndex);
+      } else {
+        valueEndIndex = line.indexOf(',', valueStartIndex);
+        if (valueEndIndex == -1) {
+          valueEndIndex = length;
+        }
+        nextAttributeIndex = valueEndIndex;
+      }
+      if (nameEndIndex - attributeStartIndex == name.length()
+          && line.regionMatches(attributeStartIndex, name, 0, name.length())) {
+        return line.substring(valueStartIndex, valueEndIndex);
+      }
+      attributeStartIndex = nextAttributeIndex + 1;
+    }
+    return null;
+  }
+
+  private static boolean isDecimalChar(char c) {
+    return (c >= '0' && c <= '9') || c == '.';
+  }
+
+  /**
+   * Returns the segment with the given media sequence number in the previous playlist, or null if
+   * there is no previous playlist or it does not contain the segment.
+   */
+  @Nullable
+  private static Segment getPreviousSegment(
+      @Nullable HlsMediaPlaylist previousMediaPlaylist, long mediaSequence) {
+    if (previousMediaPlaylist == null) {
+      return null;
+    }
+    long index = mediaSequence - previousMediaPlaylist.mediaSequence;
+    return index >= 0 && index < previousMediaPlaylist.segments.size()
+        ? previousMediaPlaylist.segments.get((int) index)
+        : null;
+  }
+
+  /**
+   * Returns the part with the given index of the segment with the given media sequence number in
+   * the previous playlist, or null if the previous playlist does not contain the part. The parts of
+   * the segment following the last complete segment are the trailing parts of the playlist.
+   */
+  @Nullable
+  private static Part getPreviousPart(
+      @Nullable HlsMediaPlaylist previousMediaPlaylist, long mediaSequence, int partIndex) {
+    if (previousMediaPlaylist == null) {
+      return null;
+    }
+    long index = mediaSequence - previousMediaPlaylist.mediaSequence;
+    List<Part> parts;
+    if (index >= 0 && index < previousMediaPlaylist.segments.size()) {
+      parts = previousMediaPlaylist.segments.get((int) index).parts;
+    } else if (index == previousMediaPlaylist.segments.size()) {
+      parts = previousMediaPlaylist.trailingParts;
+    } else {
+      return null;
+    }
+    return partIndex < parts.size() ? parts.get(partIndex) : null;
+  }
+
+  /**
+   * Returns the initialization segment of the previous playlist that applies to the segment with
+   * the given media sequence number, or null if there is none.
+   */
+  @Nullable
+  private static Segment getPreviousInitializationSegment(
+      @Nullable HlsMediaPlaylist previousMediaPlaylist, long mediaSequence) {
+    @Nullable Segment segment = getPreviousSegment(previousMediaPlaylist, mediaSequence);
+    if (segment == null && previousMediaPlaylist != null) {
+      // The segment is newer than the previous playlist. Use the most recent initialization
+      // segment instead, as it usually applies to new segments too.
+      segment = Iterables.getLast(previousMediaPlaylist.segments, /* defaultValue= */ null);
+    }
+    return segment != null ? segment.initializationSegment : null;
+  }
+
+  /**
+   * Returns whether the properties of a segment or part of the previous playlist are equal to the
+   * given values, in which case the instance can be reused in the playlist being parsed. The
+   * relative start time and discontinuity sequence are not compared, as they change whenever the
+   * media sequence of the playlist advances. Initialization segments are compared by identity.
+   */
+  private static boolean hasSameProperties(
+      SegmentBase segmentBase,
+      String url,
+      @Nullable Segment initializationSegment,
+      long durationUs,
+      @Nullable DrmInitData drmInitData,
+      @Nullable String fullSegmentEncryptionKeyUri,
+      @Nullable String encryptionIV,
+      long byteRangeOffset,
+      long byteRangeLength,
+      boolean hasGapTag) {
+    return segmentBase.durationUs == durationUs
+        && segmentBase.byteRangeOffset == byteRangeOffset
+        && segmentBase.byteRangeLength == byteRangeLength
+        && segmentBase.hasGapTag == hasGapTag
+        && segmentBase.initializationSegment == initializationSegment
+        && segmentBase.url.equals(url)
+        && Util.areEqual(segmentBase.fullSegmentEncryptionKeyUri, fullSegmentEncryptionKeyUri)
+        && Util.areEqual(segmentBase.encryptionIV, encryptionIV)
+        && Util.areEqual(segmentBase.drmInitData, drmInitData);
+  }
+
   private static boolean parseOptionalBooleanAttribute(
       String line, Pattern pattern, boolean defaultValue) {
     Matcher matcher = pattern.matcher(line);
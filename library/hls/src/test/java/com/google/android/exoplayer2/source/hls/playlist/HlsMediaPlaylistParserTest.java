@@ -16,6 +16,7 @@
 package com.google.android.exoplayer2.source.hls.playlist;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.fail;
 
 import android.net.Uri;
@@ -411,6 +412,160 @@ public class HlsMediaPlaylistParserTest {
     assertThat(playlist.trailingParts.get(0).relativeDiscontinuitySequence).isEqualTo(1);
   }
 
+  @Test
+  public void parseMediaPlaylist_withUnchangedSegments_reusesSegmentsOfPreviousPlaylist()
+      throws IOException {
+    Uri playlistUri = Uri.parse("https://example.com/test.m3u8");
+    String previousPlaylistString =
+        "#EXTM3U\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-VERSION:6\n"
+            + "#EXT-X-PART-INF:PART-TARGET=2\n"
+            + "#EXT-X-MEDIA-SEQUENCE:266\n"
+            + "#EXT-X-MAP:URI=\"init.mp4\"\n"
+            + "#EXT-X-PART:DURATION=2.00000,URI=\"part266.1.mp4\"\n"
+            + "#EXT-X-PART:DURATION=2.00000,URI=\"part266.2.mp4\"\n"
+            + "#EXTINF:4.00000,\n"
+            + "fileSequence266.mp4\n"
+            + "#EXT-X-PART:DURATION=2.00000,URI=\"part267.1.mp4\"\n"
+            + "#EXT-X-PRELOAD-HINT:TYPE=PART,URI=\"part267.2.mp4\"\n";
+    String playlistString =
+        "#EXTM3U\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-VERSION:6\n"
+            + "#EXT-X-PART-INF:PART-TARGET=2\n"
+            + "#EXT-X-MEDIA-SEQUENCE:266\n"
+            + "#EXT-X-MAP:URI=\"init.mp4\"\n"
+            + "#EXT-X-PART:DURATION=2.00000,URI=\"part266.1.mp4\"\n"
+            + "#EXT-X-PART:DURATION=2.00000,URI=\"part266.2.mp4\"\n"
+            + "#EXTINF:4.00000,\n"
+            + "fileSequence266.mp4\n"
+            + "#EXT-X-PART:DURATION=2.00000,URI=\"part267.1.mp4\"\n"
+            + "#EXT-X-PART:DURATION=2.00000,URI=\"part267.2.mp4\"\n"
+            + "#EXTINF:4.00000,\n"
+            + "fileSequence267.mp4\n";
+    HlsMediaPlaylist previousPlaylist =
+        (HlsMediaPlaylist)
+            new HlsPlaylistParser()
+                .parse(
+                    playlistUri,
+                    new ByteArrayInputStream(Util.getUtf8Bytes(previousPlaylistString)));
+
+    HlsMediaPlaylist playlist =
+        (HlsMediaPlaylist)
+            new HlsPlaylistParser(HlsMasterPlaylist.EMPTY, previousPlaylist)
+                .parse(playlistUri, new ByteArrayInputStream(Util.getUtf8Bytes(playlistString)));
+
+    assertThat(playlist.segments).hasSize(2);
+    assertThat(playlist.segments.get(0)).isSameInstanceAs(previousPlaylist.segments.get(0));
+    HlsMediaPlaylist.Segment newSegment = playlist.segments.get(1);
+    assertThat(newSegment.url).isEqualTo("fileSequence267.mp4");
+    assertThat(newSegment.initializationSegment)
+        .isSameInstanceAs(previousPlaylist.segments.get(0).initializationSegment);
+    assertThat(newSegment.parts).hasSize(2);
+    assertThat(newSegment.parts.get(0)).isSameInstanceAs(previousPlaylist.trailingParts.get(0));
+    // The preload part of the previous playlist is replaced by a complete part.
+    assertThat(previousPlaylist.trailingParts.get(1).isPreload).isTrue();
+    assertThat(newSegment.parts.get(1).isPreload).isFalse();
+    assertThat(newSegment.parts.get(1).durationUs).isEqualTo(2_000_000);
+    assertThat(newSegment.parts.get(1).relativeStartTimeUs).isEqualTo(6_000_000);
+  }
+
+  @Test
+  public void parseMediaPlaylist_withAdvancedMediaSequence_reusesPropertiesOfShiftedSegments()
+      throws IOException {
+    Uri playlistUri = Uri.parse("https://example.com/test.m3u8");
+    String previousPlaylistString =
+        "#EXTM3U\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-VERSION:6\n"
+            + "#EXT-X-PART-INF:PART-TARGET=2\n"
+            + "#EXT-X-MEDIA-SEQUENCE:266\n"
+            + "#EXTINF:4.00000,\n"
+            + "fileSequence266.mp4\n"
+            + "#EXT-X-DISCONTINUITY\n"
+            + "#EXTINF:4.00000,\n"
+            + "fileSequence267.mp4\n"
+            + "#EXT-X-PART:DURATION=2.00000,URI=\"part268.1.mp4\"\n"
+            + "#EXT-X-PART:DURATION=2.00000,URI=\"part268.2.mp4\"\n"
+            + "#EXTINF:4.00000,\n"
+            + "fileSequence268.mp4\n";
+    String playlistString =
+        "#EXTM3U\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-VERSION:6\n"
+            + "#EXT-X-PART-INF:PART-TARGET=2\n"
+            + "#EXT-X-MEDIA-SEQUENCE:267\n"
+            + "#EXT-X-DISCONTINUITY-SEQUENCE:1\n"
+            + "#EXTINF:4.00000,\n"
+            + "fileSequence267.mp4\n"
+            + "#EXT-X-PART:DURATION=2.00000,URI=\"part268.1.mp4\"\n"
+            + "#EXT-X-PART:DURATION=2.00000,URI=\"part268.2.mp4\"\n"
+            + "#EXTINF:4.00000,\n"
+            + "fileSequence268.mp4\n"
+            + "#EXTINF:4.00000,\n"
+            + "fileSequence269.mp4\n";
+    HlsMediaPlaylist previousPlaylist =
+        (HlsMediaPlaylist)
+            new HlsPlaylistParser()
+                .parse(
+                    playlistUri,
+                    new ByteArrayInputStream(Util.getUtf8Bytes(previousPlaylistString)));
+
+    HlsMediaPlaylist playlist =
+        (HlsMediaPlaylist)
+            new HlsPlaylistParser(HlsMasterPlaylist.EMPTY, previousPlaylist)
+                .parse(playlistUri, new ByteArrayInputStream(Util.getUtf8Bytes(playlistString)));
+
+    assertThat(playlist.segments).hasSize(3);
+    // The shifted segments are copies of the previous ones with updated positions.
+    HlsMediaPlaylist.Segment previousSegment = previousPlaylist.segments.get(1);
+    HlsMediaPlaylist.Segment segment = playlist.segments.get(0);
+    assertThat(segment).isNotSameInstanceAs(previousSegment);
+    assertThat(segment.url).isSameInstanceAs(previousSegment.url);
+    assertThat(previousSegment.relativeStartTimeUs).isEqualTo(4_000_000);
+    assertThat(previousSegment.relativeDiscontinuitySequence).isEqualTo(1);
+    assertThat(segment.relativeStartTimeUs).isEqualTo(0);
+    assertThat(segment.relativeDiscontinuitySequence).isEqualTo(0);
+    previousSegment = previousPlaylist.segments.get(2);
+    segment = playlist.segments.get(1);
+    assertThat(segment.url).isSameInstanceAs(previousSegment.url);
+    assertThat(segment.relativeStartTimeUs).isEqualTo(4_000_000);
+    assertThat(segment.parts).hasSize(2);
+    assertThat(segment.parts.get(0).url).isSameInstanceAs(previousSegment.parts.get(0).url);
+    assertThat(segment.parts.get(0).relativeStartTimeUs).isEqualTo(4_000_000);
+    assertThat(segment.parts.get(1).relativeStartTimeUs).isEqualTo(6_000_000);
+    assertThat(playlist.segments.get(2).url).isEqualTo("fileSequence269.mp4");
+    assertThat(playlist.segments.get(2).relativeStartTimeUs).isEqualTo(8_000_000);
+  }
+
+  @Test
+  public void parseMediaPlaylist_withQuotedCommaInPartUri_parsesPartAttributes()
+      throws IOException {
+    Uri playlistUri = Uri.parse("https://example.com/test.m3u8");
+    String playlistString =
+        "#EXTM3U\n"
+            + "#EXT-X-TARGETDURATION:4\n"
+            + "#EXT-X-VERSION:6\n"
+            + "#EXT-X-MEDIA-SEQUENCE:266\n"
+            + "#EXT-X-PART:URI=\"part266.1.ts?a=1,DURATION=9\",INDEPENDENT=YES,DURATION=1.5\n"
+            + "#EXTINF:4.00000,title,with comma\n"
+            + "fileSequence266.ts\n";
+
+    HlsMediaPlaylist playlist =
+        (HlsMediaPlaylist)
+            new HlsPlaylistParser()
+                .parse(playlistUri, new ByteArrayInputStream(Util.getUtf8Bytes(playlistString)));
+
+    HlsMediaPlaylist.Segment segment = playlist.segments.get(0);
+    assertThat(segment.title).isEqualTo("title,with comma");
+    assertThat(segment.durationUs).isEqualTo(4_000_000);
+    HlsMediaPlaylist.Part part = segment.parts.get(0);
+    assertThat(part.url).isEqualTo("part266.1.ts?a=1,DURATION=9");
+    assertThat(part.durationUs).isEqualTo(1_500_000);
+    assertThat(part.isIndependent).isTrue();
+  }
+
   @Test
   public void parseMediaPlaylist_withParts_parsesPartWithAllAttributes() throws IOException {
     Uri playlistUri = Uri.parse("https://example.com/test.m3u8");
@@ -1174,6 +1329,59 @@ public class HlsMediaPlaylistParserTest {
     }
   }
 
+  @Test
+  public void parseMediaPlaylist_withMalformedByteRange_throwsParserException() {
+    Uri playlistUri = Uri.parse("https://example.com/test.m3u8");
+    String playlistString =
+        "#EXTM3U\n"
+            + "#EXT-X-VERSION:4\n"
+            + "#EXT-X-TARGETDURATION:5\n"
+            + "#EXTINF:5.005,\n"
+            + "#EXT-X-BYTERANGE:abc@0\n"
+            + "segment.ts\n";
+    InputStream inputStream = new ByteArrayInputStream(Util.getUtf8Bytes(playlistString));
+
+    assertThrows(
+        ParserException.class, () -> new HlsPlaylistParser().parse(playlistUri, inputStream));
+  }
+
+  @Test
+  public void parseMediaPlaylist_withByteRangeWithoutValue_throwsParserException() {
+    Uri playlistUri = Uri.parse("https://example.com/test.m3u8");
+    String playlistString =
+        "#EXTM3U\n"
+            + "#EXT-X-VERSION:4\n"
+            + "#EXT-X-TARGETDURATION:5\n"
+            + "#EXTINF:5.005,\n"
+            + "#EXT-X-BYTERANGE\n"
+            + "segment.ts\n";
+    InputStream inputStream = new ByteArrayInputStream(Util.getUtf8Bytes(playlistString));
+
+    assertThrows(
+        ParserException.class, () -> new HlsPlaylistParser().parse(playlistUri, inputStream));
+  }
+
+  @Test
+  public void parseMediaPlaylist_withVariableInByteRange_substitutesVariable() throws IOException {
+    Uri playlistUri = Uri.parse("https://example.com/test.m3u8");
+    String playlistString =
+        "#EXTM3U\n"
+            + "#EXT-X-VERSION:8\n"
+            + "#EXT-X-TARGETDURATION:5\n"
+            + "#EXT-X-DEFINE:NAME=\"length\",VALUE=\"1000\"\n"
+            + "#EXTINF:5.005,\n"
+            + "#EXT-X-BYTERANGE:{$length}@200\n"
+            + "segment.ts\n";
+    InputStream inputStream = new ByteArrayInputStream(Util.getUtf8Bytes(playlistString));
+
+    HlsMediaPlaylist playlist =
+        (HlsMediaPlaylist) new HlsPlaylistParser().parse(playlistUri, inputStream);
+
+    Segment segment = playlist.segments.get(0);
+    assertThat(segment.byteRangeLength).isEqualTo(1000);
+    assertThat(segment.byteRangeOffset).isEqualTo(200);
+  }
+
   @Test
   public void masterPlaylistAttributeInheritance() throws IOException {
     Uri playlistUri = Uri.parse("https://example.com/test3.m3u8");
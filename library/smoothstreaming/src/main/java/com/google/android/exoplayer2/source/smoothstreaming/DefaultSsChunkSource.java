@@ -269,7 +269,7 @@ public class DefaultSsChunkSource implements SsChunkSource {
 
   @Override
   public void onChunkLoadCompleted(Chunk chunk) {
-    // Do nothing.
+    trackSelection.onChunkLoadCompleted(chunk);
   }
 
   @Override
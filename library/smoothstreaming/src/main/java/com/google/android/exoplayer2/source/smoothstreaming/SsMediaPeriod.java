@@ -39,6 +39,7 @@ import com.google.android.exoplayer2.upstream.TransferListener;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 import org.checkerframework.checker.nullness.compatqual.NullableType;
 
 /** A SmoothStreaming {@link MediaPeriod}. */
@@ -55,6 +56,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
   private final Allocator allocator;
   private final TrackGroupArray trackGroups;
   private final CompositeSequenceableLoaderFactory compositeSequenceableLoaderFactory;
+  @Nullable private final Executor loadExecutor;
 
   @Nullable private Callback callback;
   private SsManifest manifest;
@@ -71,7 +73,8 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
       LoadErrorHandlingPolicy loadErrorHandlingPolicy,
       MediaSourceEventListener.EventDispatcher mediaSourceEventDispatcher,
       LoaderErrorThrower manifestLoaderErrorThrower,
-      Allocator allocator) {
+      Allocator allocator,
+      @Nullable Executor loadExecutor) {
     this.manifest = manifest;
     this.chunkSourceFactory = chunkSourceFactory;
     this.transferListener = transferListener;
@@ -82,6 +85,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     this.mediaSourceEventDispatcher = mediaSourceEventDispatcher;
     this.allocator = allocator;
     this.compositeSequenceableLoaderFactory = compositeSequenceableLoaderFactory;
+    this.loadExecutor = loadExecutor;
     trackGroups = buildTrackGroups(manifest, drmSessionManager);
     sampleStreams = newSampleStreamArray(0);
     compositeSequenceableLoader =
@@ -249,7 +253,8 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
         drmSessionManager,
         drmEventDispatcher,
         loadErrorHandlingPolicy,
-        mediaSourceEventDispatcher);
+        mediaSourceEventDispatcher,
+        loadExecutor);
   }
 
   private static TrackGroupArray buildTrackGroups(
@@ -66,6 +66,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /** A SmoothStreaming {@link MediaSource}. */
 public final class SsMediaSource extends BaseMediaSource
@@ -86,6 +87,7 @@ public final class SsMediaSource extends BaseMediaSource
     private DrmSessionManagerProvider drmSessionManagerProvider;
     private LoadErrorHandlingPolicy loadErrorHandlingPolicy;
     private long livePresentationDelayMs;
+    @Nullable private Executor loadExecutor;
     @Nullable private ParsingLoadable.Parser<? extends SsManifest> manifestParser;
     private List<StreamKey> streamKeys;
     @Nullable private Object tag;
@@ -192,6 +194,23 @@ public final class SsMediaSource extends BaseMediaSource
       return this;
     }
 
+    /**
+     * Sets a shared {@link Executor} on which manifests and chunks are loaded. The default is null,
+     * in which case each loader of a created media source loads on a thread of its own.
+     *
+     * <p>Sharing a bounded executor between the media sources of many players limits the number
+     * of loading threads. Loads are queued while all of the executor's threads are busy, so it
+     * should have enough threads for the loads that are expected to run at the same time. The
+     * executor is not shut down when media sources are released.
+     *
+     * @param loadExecutor A shared {@link Executor}, or null to use a thread per loader.
+     * @return This factory, for convenience.
+     */
+    public Factory setLoadExecutor(@Nullable Executor loadExecutor) {
+      this.loadExecutor = loadExecutor;
+      return this;
+    }
+
     @Override
     public Factory setDrmSessionManagerProvider(
         @Nullable DrmSessionManagerProvider drmSessionManagerProvider) {
@@ -302,7 +321,8 @@ public final class SsMediaSource extends BaseMediaSource
           compositeSequenceableLoaderFactory,
           drmSessionManagerProvider.get(mediaItem),
           loadErrorHandlingPolicy,
-          livePresentationDelayMs);
+          livePresentationDelayMs,
+          loadExecutor);
     }
 
     /**
@@ -346,7 +366,8 @@ public final class SsMediaSource extends BaseMediaSource
           compositeSequenceableLoaderFactory,
           drmSessionManagerProvider.get(mediaItem),
           loadErrorHandlingPolicy,
-          livePresentationDelayMs);
+          livePresentationDelayMs,
+          loadExecutor);
     }
 
     @Override
@@ -383,6 +404,7 @@ public final class SsMediaSource extends BaseMediaSource
   private final EventDispatcher manifestEventDispatcher;
   private final ParsingLoadable.Parser<? extends SsManifest> manifestParser;
   private final ArrayList<SsMediaPeriod> mediaPeriods;
+  @Nullable private final Executor loadExecutor;
 
   private DataSource manifestDataSource;
   private Loader manifestLoader;
@@ -403,7 +425,8 @@ public final class SsMediaSource extends BaseMediaSource
       CompositeSequenceableLoaderFactory compositeSequenceableLoaderFactory,
       DrmSessionManager drmSessionManager,
       LoadErrorHandlingPolicy loadErrorHandlingPolicy,
-      long livePresentationDelayMs) {
+      long livePresentationDelayMs,
+      @Nullable Executor loadExecutor) {
     Assertions.checkState(manifest == null || !manifest.isLive);
     this.mediaItem = mediaItem;
     playbackProperties = checkNotNull(mediaItem.playbackProperties);
@@ -419,6 +442,7 @@ public final class SsMediaSource extends BaseMediaSource
     this.drmSessionManager = drmSessionManager;
     this.loadErrorHandlingPolicy = loadErrorHandlingPolicy;
     this.livePresentationDelayMs = livePresentationDelayMs;
+    this.loadExecutor = loadExecutor;
     this.manifestEventDispatcher = createEventDispatcher(/* mediaPeriodId= */ null);
     sideloadedManifest = manifest != null;
     mediaPeriods = new ArrayList<>();
@@ -451,7 +475,8 @@ public final class SsMediaSource extends BaseMediaSource
       processManifest();
     } else {
       manifestDataSource = manifestDataSourceFactory.createDataSource();
-      manifestLoader = new Loader("Loader:Manifest");
+      manifestLoader =
+          loadExecutor != null ? new Loader(loadExecutor) : new Loader("Loader:Manifest");
       manifestLoaderErrorThrower = manifestLoader;
       manifestRefreshHandler = Util.createHandlerForCurrentLooper();
       startLoadingManifest();
@@ -478,7 +503,8 @@ public final class SsMediaSource extends BaseMediaSource
             loadErrorHandlingPolicy,
             mediaSourceEventDispatcher,
             manifestLoaderErrorThrower,
-            allocator);
+            allocator,
+            loadExecutor);
     mediaPeriods.add(period);
     return period;
   }
@@ -74,7 +74,8 @@ public class SsMediaPeriodTest {
               new MediaSourceEventListener.EventDispatcher()
                   .withParameters(/* windowIndex= */ 0, mediaPeriodId, /* mediaTimeOffsetMs= */ 0),
               mock(LoaderErrorThrower.class),
-              mock(Allocator.class));
+              mock(Allocator.class),
+              /* loadExecutor= */ null);
         };
 
     MediaPeriodAsserts.assertGetStreamKeysAndManifestFilterIntegration(
@@ -22,6 +22,7 @@ import android.os.Looper;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.DefaultLoadControl;
 import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.PlaybackThreadPool;
 import com.google.android.exoplayer2.Renderer;
 import com.google.android.exoplayer2.RenderersFactory;
 import com.google.android.exoplayer2.SimpleExoPlayer;
@@ -44,6 +45,8 @@ public class TestExoPlayerBuilder {
   @Nullable private Renderer[] renderers;
   @Nullable private RenderersFactory renderersFactory;
   private boolean useLazyPreparation;
+  private boolean dynamicSchedulingEnabled;
+  @Nullable private PlaybackThreadPool playbackThreadPool;
   private @MonotonicNonNull Looper looper;
 
   public TestExoPlayerBuilder(Context context) {
@@ -175,6 +178,32 @@ public class TestExoPlayerBuilder {
     return renderersFactory;
   }
 
+  /**
+   * Sets whether the player's playback loop is scheduled dynamically while playing. The default
+   * value is {@code false}.
+   *
+   * @param dynamicSchedulingEnabled Whether to enable dynamic scheduling.
+   * @return This builder.
+   */
+  public TestExoPlayerBuilder experimentalSetDynamicSchedulingEnabled(
+      boolean dynamicSchedulingEnabled) {
+    this.dynamicSchedulingEnabled = dynamicSchedulingEnabled;
+    return this;
+  }
+
+  /**
+   * Sets the {@link PlaybackThreadPool} providing the player's playback thread. The default value
+   * is null, in which case the player uses a playback thread of its own.
+   *
+   * @param playbackThreadPool A {@link PlaybackThreadPool}, or null.
+   * @return This builder.
+   */
+  public TestExoPlayerBuilder setPlaybackThreadPool(
+      @Nullable PlaybackThreadPool playbackThreadPool) {
+    this.playbackThreadPool = playbackThreadPool;
+    return this;
+  }
+
   /**
    * Sets the {@link Clock} to be used by the player. The default value is a {@link
    * AutoAdvancingFakeClock}.
@@ -247,6 +276,8 @@ public class TestExoPlayerBuilder {
         .setClock(clock)
         .setUseLazyPreparation(useLazyPreparation)
         .setLooper(looper)
+        .experimentalSetDynamicSchedulingEnabled(dynamicSchedulingEnabled)
+        .setPlaybackThreadPool(playbackThreadPool)
         .build();
   }
 }